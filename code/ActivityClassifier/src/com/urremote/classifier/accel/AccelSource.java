@@ -0,0 +1,35 @@
+package com.urremote.classifier.accel;
+
+import com.urremote.classifier.accel.async.AsyncAccelReader;
+
+/**
+ * A source of accelerometer samples, used by the {@link AsyncAccelReader}.
+ * Hides where the samples come from, e.g. the device's accelerometer,
+ * or previously recorded samples being replayed.
+ * 
+ * @author Umran
+ *
+ */
+public interface AccelSource {
+
+	/**
+	 * Starts delivering samples to the listener given.
+	 * 
+	 * @param listener
+	 * 		the listener to deliver samples to
+	 * 
+	 * @param samplingRate
+	 * 		either one of the predefined rates e.g. SensorManager.SENSOR_DELAY_FASTEST,
+	 * 		or the period between subsequent samples in microseconds
+	 * 
+	 * @return
+	 * 		false if the source is unable to start
+	 */
+	public boolean start(AccelSourceListener listener, int samplingRate);
+	
+	/**
+	 * Stops delivering samples.
+	 */
+	public void stop();
+	
+}
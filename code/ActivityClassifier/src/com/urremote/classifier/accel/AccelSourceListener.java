@@ -0,0 +1,14 @@
+package com.urremote.classifier.accel;
+
+public interface AccelSourceListener {
+	
+	/**
+	 * @param timeNs
+	 * 		the time the sample was taken (in ns)
+	 * @param values
+	 * 		the sample, an array of {@link com.urremote.classifier.common.Constants#ACCEL_DIM} values,
+	 * 		which is only valid until this function returns
+	 */
+	public void onAccelSample(long timeNs, float[] values);
+	
+}
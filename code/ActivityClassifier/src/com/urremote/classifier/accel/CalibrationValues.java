@@ -0,0 +1,81 @@
+package com.urremote.classifier.accel;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ *
+ * The calibration values taken out of the samples of a batch before
+ * its features are computed.
+ *
+ * <p>
+ * Instances are published by the commit stage of the
+ * {@link com.urremote.classifier.service.threads.ClassifierThread} every time
+ * the calibration changes, and read by its dispatch and compute stages, and by
+ * the samplers extracting features while sampling (see
+ * {@link SampleBatchBuffer#getCalibration()}), hence are never modified once created.
+ *
+ * @author Umran
+ *
+ */
+public final class CalibrationValues {
+
+	//	the axis offsets and scales to take out of the samples, null if not calibrated
+	private final float[] offset;
+	private final float[] scale;
+	//	the expected gravity value
+	private final float gravity;
+
+	/**
+	 * @param offset
+	 * the axis offsets to take out of the samples, or null if not calibrated
+	 */
+	public CalibrationValues(float[] offset, float[] scale, float gravity) {
+		this.offset = offset!=null ? offset.clone() : null;
+		this.scale = offset!=null ? scale.clone() : null;
+		this.gravity = gravity;
+	}
+
+	public boolean isCalibrated() {
+		return offset!=null;
+	}
+
+	/**
+	 * @return
+	 * the axis offsets to take out of the samples, or null if not calibrated,
+	 * not to be modified
+	 */
+	public float[] getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return
+	 * the axis scales to take out of the samples, or null if not calibrated,
+	 * not to be modified
+	 */
+	public float[] getScale() {
+		return scale;
+	}
+
+	public float getGravity() {
+		return gravity;
+	}
+
+	/**
+	 * @return
+	 * true if the values given are the same as these values,
+	 * used to avoid publishing new instances when nothing changed
+	 */
+	public boolean matches(float[] offset, float[] scale, float gravity) {
+		if (this.gravity!=gravity || (this.offset!=null)!=(offset!=null))
+			return false;
+		if (offset!=null) {
+			for (int d=0; d<Constants.ACCEL_DIM; ++d) {
+				if (this.offset[d]!=offset[d] || this.scale[d]!=scale[d])
+					return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.urremote.classifier.accel;
 
 import com.urremote.classifier.common.Constants;
+import com.urremote.classifier.utils.FeatureExtractor;
 
 import android.util.Log;
 
@@ -22,12 +23,26 @@ public class SampleBatch {
 	
 	public long sampleTime;
 	public final long[] timeStamps;
-	public final float[][] data;
+	
+	/**
+	 * The samples, kept in one array per axis, i.e. <code>axisData[d][i]</code>
+	 * is the value of sample <code>i</code> on axis <code>d</code>.
+	 * Keeping each axis contiguous allows the processing loops
+	 * to run over a single flat array per axis.
+	 */
+	public final float[][] axisData;
 	private int currentSample;
 	private boolean charging;
+	private boolean featuresOnly;
+	
+	//	features extracted while sampling, if any, see SlidingWindow
+	private final float[] streamingFeatures = new float[FeatureExtractor.NUM_FEATURES];
+	private boolean hasStreamingFeatures;
+	//	the calibration values taken out of the samples before the features were extracted
+	private CalibrationValues streamingCalibration;
 	
 	public SampleBatch() {
-		data = new float[Constants.NUMBER_OF_SAMPLES][Constants.ACCEL_DIM];
+		axisData = new float[Constants.ACCEL_DIM][Constants.NUMBER_OF_SAMPLES];
 		timeStamps = new long[Constants.NUMBER_OF_SAMPLES];
 		currentSample = 0;
 	}
@@ -36,10 +51,6 @@ public class SampleBatch {
 		return currentSample>0;
 	}
 	
-	public float[] getLastSample() {
-		return this.data[currentSample-1];
-	}
-	
 	public long getFirstSampleTime() {
 		return this.timeStamps[0];
 	}
@@ -51,10 +62,21 @@ public class SampleBatch {
 	public void assignSample(long time, float[] data) {
 		timeStamps[currentSample] = time;
 		for (int d=0; d<Constants.ACCEL_DIM; ++d)
-			this.data[currentSample][d] = data[d];
+			this.axisData[d][currentSample] = data[d];
 		++currentSample;
 	}
 	
+	/**
+	 * Copies <code>length</code> samples from the arrays given (one array per axis),
+	 * starting at <code>srcPos</code>, to the end of this batch.
+	 */
+	public void assignSamples(long[] srcTimeStamps, float[][] srcAxisData, int srcPos, int length) {
+		System.arraycopy(srcTimeStamps, srcPos, timeStamps, currentSample, length);
+		for (int d=0; d<Constants.ACCEL_DIM; ++d)
+			System.arraycopy(srcAxisData[d], srcPos, axisData[d], currentSample, length);
+		currentSample += length;
+	}
+	
 	public boolean hasSpace() {
 		return currentSample<Constants.NUMBER_OF_SAMPLES;
 	}
@@ -66,10 +88,13 @@ public class SampleBatch {
 		
 		int step = currentSample / size;
 		int write = 0;
-		for (int read=0; read<currentSample; read+=step) {
-			for (int d=0; d<Constants.ACCEL_DIM; ++d)
-				data[write][d] = data[read][d];
-			++write;
+		for (int d=0; d<Constants.ACCEL_DIM; ++d) {
+			float[] axis = axisData[d];
+			write = 0;
+			for (int read=0; read<currentSample; read+=step) {
+				axis[write] = axis[read];
+				++write;
+			}
 		}
 		
 		currentSample = write;
@@ -89,6 +114,8 @@ public class SampleBatch {
 	
 	public void reset() {
 		currentSample = 0;
+		hasStreamingFeatures = false;
+		streamingCalibration = null;
 	}
 	
 	public int getSize() {
@@ -102,6 +129,58 @@ public class SampleBatch {
 	public void setCharging(boolean charging) {
 		this.charging = charging;
 	}
+
+	/**
+	 * @return
+	 * true if only the classification should be computed for this batch,
+	 * see {@link com.urremote.classifier.common.Constants#OVERLOAD_FEATURES_ONLY}
+	 */
+	public boolean isFeaturesOnly() {
+		return featuresOnly;
+	}
+
+	public void setFeaturesOnly(boolean featuresOnly) {
+		this.featuresOnly = featuresOnly;
+	}
+
+	/**
+	 * @return
+	 * true if the features of the samples were extracted while sampling,
+	 * see {@link #getStreamingFeatures()}
+	 */
+	public boolean hasStreamingFeatures() {
+		return hasStreamingFeatures;
+	}
+
+	/**
+	 * @return
+	 * the features extracted while sampling (see {@link FeatureExtractor#FEATURE_NAMES}),
+	 * only valid if {@link #hasStreamingFeatures()} is true
+	 */
+	public float[] getStreamingFeatures() {
+		return streamingFeatures;
+	}
+
+	/**
+	 * Marks the features returned by {@link #getStreamingFeatures()}
+	 * as assigned.
+	 */
+	public void setHasStreamingFeatures(boolean hasStreamingFeatures) {
+		this.hasStreamingFeatures = hasStreamingFeatures;
+	}
+
+	/**
+	 * @return
+	 * the calibration values taken out of the samples before the features
+	 * returned by {@link #getStreamingFeatures()} were extracted
+	 */
+	public CalibrationValues getStreamingCalibration() {
+		return streamingCalibration;
+	}
+
+	public void setStreamingCalibration(CalibrationValues streamingCalibration) {
+		this.streamingCalibration = streamingCalibration;
+	}
 	
 	
 }
@@ -1,5 +1,8 @@
 package com.urremote.classifier.accel;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.urremote.classifier.common.Constants;
 import com.urremote.classifier.utils.TwoWayBlockingQueue;
 
 /**
@@ -13,19 +16,126 @@ import com.urremote.classifier.utils.TwoWayBlockingQueue;
  * <p>
  *  Empty batches are waiting to be filled (by {@link com.urremote.classifier.service.RecorderService}), while
  *  Filled batches are waiting to be processed (by {@link com.urremote.classifier.service.ClassifierService})
+ *  
+ * <p>
+ *  When batches are filled faster than they are processed, the buffer applies the overload
+ *  policy given (see {@link Constants#BATCH_OVERLOAD_POLICY}), using
+ *  {@link #pollEmptyForSampling()} and {@link #takeFilledForProcessing()}, and counts
+ *  the batches dropped and processed partially.
  *
  */
 public class SampleBatchBuffer extends TwoWayBlockingQueue<SampleBatch> {
 	
 	public static final int TOTAL_BATCH_COUNT = 20;
+	
+	//	number of filled batches waiting, at or above which, the buffer is regarded as overloaded
+	public static final int OVERLOAD_THRESHOLD = TOTAL_BATCH_COUNT / 2;
+	
+	private final int overloadPolicy;
+	
+	private final AtomicInteger droppedCount = new AtomicInteger();
+	private final AtomicInteger featuresOnlyCount = new AtomicInteger();
+	
+	//	the calibration values batches are currently computed with
+	private volatile CalibrationValues calibration;
 
 	public SampleBatchBuffer() {
+		this(Constants.BATCH_OVERLOAD_POLICY);
+	}
+
+	/**
+	 * @param overloadPolicy
+	 * one of {@link Constants#OVERLOAD_SKIP_NEWEST}, {@link Constants#OVERLOAD_DROP_OLDEST}
+	 * or {@link Constants#OVERLOAD_FEATURES_ONLY}
+	 */
+	public SampleBatchBuffer(int overloadPolicy) {
 		super(TOTAL_BATCH_COUNT);
+		this.overloadPolicy = overloadPolicy;
 	}
 
 	@Override
 	protected SampleBatch getNewInstance() {
 		return new SampleBatch();
 	}
+	
+	public boolean isOverloaded() {
+		return getPendingFilledInstances()>=OVERLOAD_THRESHOLD;
+	}
+	
+	/**
+	 * Takes an empty batch to sample into, without blocking.
+	 * If no empty batch is available, and the policy is {@link Constants#OVERLOAD_DROP_OLDEST},
+	 * the oldest filled batch is dropped and returned instead.
+	 * 
+	 * @return
+	 * an empty batch, or null if none is available (in which case the new batch is dropped)
+	 */
+	public SampleBatch pollEmptyForSampling() {
+		SampleBatch batch = pollEmptyInstance();
+		if (batch!=null)
+			return batch;
+		
+		//	either the oldest or the newest batch is dropped
+		droppedCount.incrementAndGet();
+		
+		if (overloadPolicy==Constants.OVERLOAD_DROP_OLDEST) {
+			batch = pollFilledInstance();
+			if (batch!=null)
+				batch.reset();
+		}
+		return batch;
+	}
+	
+	/**
+	 * Takes the next filled batch to process, blocking until one is available.
+	 * While overloaded, with {@link Constants#OVERLOAD_FEATURES_ONLY}, the batch is
+	 * marked as features only (see {@link SampleBatch#isFeaturesOnly()}).
+	 */
+	public SampleBatch takeFilledForProcessing() throws InterruptedException {
+		SampleBatch batch = takeFilledInstance();
+		
+		boolean featuresOnly = overloadPolicy==Constants.OVERLOAD_FEATURES_ONLY && isOverloaded();
+		batch.setFeaturesOnly(featuresOnly);
+		if (featuresOnly) {
+			featuresOnlyCount.incrementAndGet();
+		}
+		
+		return batch;
+	}
+	
+	/**
+	 * @return
+	 * the number of batches dropped, either because no empty batch was available
+	 * to sample into, or because the oldest filled batch was reused
+	 */
+	public int getDroppedCount() {
+		return droppedCount.get();
+	}
+	
+	/**
+	 * Publishes the calibration values the classifier currently computes
+	 * batches with, for the samplers extracting features while sampling
+	 * (see {@link SlidingWindow#setCalibration(CalibrationValues)}).
+	 */
+	public void setCalibration(CalibrationValues calibration) {
+		this.calibration = calibration;
+	}
+	
+	/**
+	 * @return
+	 * the calibration values the classifier currently computes batches with,
+	 * or null if not published yet
+	 */
+	public CalibrationValues getCalibration() {
+		return calibration;
+	}
+	
+	/**
+	 * @return
+	 * the number of batches marked as features only
+	 */
+	public int getFeaturesOnlyCount() {
+		return featuresOnlyCount.get();
+	}
 
 }
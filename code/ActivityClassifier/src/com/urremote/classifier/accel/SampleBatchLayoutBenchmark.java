@@ -0,0 +1,197 @@
+package com.urremote.classifier.accel;
+
+import java.util.Random;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ * Compares the per-batch processing time of the two layouts of the samples
+ * of a {@link SampleBatch}: the array of samples (<code>float[128][3]</code>,
+ * one array per sample) the batch used to keep, and the array of axes
+ * (<code>float[3][128]</code>, one contiguous array per axis) it keeps now,
+ * see {@link SampleBatch#axisData}.
+ *
+ * <p>
+ * Each batch goes through the passes the classifier used to make over the samples:
+ * the statistics of the raw samples, taking out the calibration offsets, rotating
+ * the samples, the statistics of the rotated samples, and those of the horizontal
+ * magnitude and vertical component. Both layouts run the same operations in the
+ * same order, hence the results are checked to be exactly the same.
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path), e.g.:
+ * <pre>
+ *	java com.urremote.classifier.accel.SampleBatchLayoutBenchmark 200000
+ * </pre>
+ *
+ * @author Umran
+ */
+public class SampleBatchLayoutBenchmark {
+
+	private static final int DIM = Constants.ACCEL_DIM;
+	private static final int NUM_SAMPLES = Constants.NUMBER_OF_SAMPLES;
+	//	batches the samples are cycled through, so that they don't all stay in the cache
+	private static final int NUM_BATCHES = 64;
+
+	private static final float[] OFFSET = { 0.1f, -0.2f, 0.15f };
+	private static final float[] SCALE = { 1.01f, 0.99f, 1.02f };
+	//	a rotation matrix, row by row
+	private static final float[] ROTATION = {
+		0.8f, -0.6f, 0.0f,
+		0.36f, 0.48f, -0.8f,
+		0.48f, 0.64f, 0.6f,
+	};
+
+	//	dimensions: pass*DIM+axis, for the min, max, sum and sum of squares of each pass,
+	//		the last pass has 2 axes, the horizontal magnitude and the vertical component
+	private static final int NUM_STATISTICS = 2*DIM+2;
+	private final float[] min = new float[NUM_STATISTICS];
+	private final float[] max = new float[NUM_STATISTICS];
+	private final float[] sum = new float[NUM_STATISTICS];
+	private final float[] sumSqr = new float[NUM_STATISTICS];
+
+	private void resetStatistics() {
+		for (int i=0; i<min.length; ++i) {
+			min[i] = Float.POSITIVE_INFINITY;
+			max[i] = Float.NEGATIVE_INFINITY;
+			sum[i] = 0.0f;
+			sumSqr[i] = 0.0f;
+		}
+	}
+
+	private void add(int pass, int axis, float val) {
+		int i = pass*DIM+axis;
+		sum[i] += val;
+		sumSqr[i] += val*val;
+		if (val<min[i])
+			min[i] = val;
+		if (val>max[i])
+			max[i] = val;
+	}
+
+	/**
+	 * @param samples
+	 * dimensions: sample, axis
+	 */
+	void processSamples(float[][] samples, float[][] rotated) {
+		resetStatistics();
+		for (int s=0; s<NUM_SAMPLES; ++s)
+			for (int d=0; d<DIM; ++d)
+				add(0, d, samples[s][d]);
+		for (int s=0; s<NUM_SAMPLES; ++s)
+			for (int d=0; d<DIM; ++d)
+				rotated[s][d] = (samples[s][d] - OFFSET[d]) / SCALE[d];
+		for (int s=0; s<NUM_SAMPLES; ++s) {
+			float[] sample = rotated[s];
+			float x = sample[0], y = sample[1], z = sample[2];
+			sample[0] = ROTATION[0]*x + ROTATION[1]*y + ROTATION[2]*z;
+			sample[1] = ROTATION[3]*x + ROTATION[4]*y + ROTATION[5]*z;
+			sample[2] = ROTATION[6]*x + ROTATION[7]*y + ROTATION[8]*z;
+		}
+		for (int s=0; s<NUM_SAMPLES; ++s)
+			for (int d=0; d<DIM; ++d)
+				add(1, d, rotated[s][d]);
+		for (int s=0; s<NUM_SAMPLES; ++s) {
+			float[] sample = rotated[s];
+			add(2, 0, (float)Math.sqrt(sample[0]*sample[0] + sample[1]*sample[1]));
+			add(2, 1, sample[2]);
+		}
+	}
+
+	/**
+	 * @param axes
+	 * dimensions: axis, sample
+	 */
+	void processAxes(float[][] axes, float[][] rotated) {
+		resetStatistics();
+		for (int s=0; s<NUM_SAMPLES; ++s)
+			for (int d=0; d<DIM; ++d)
+				add(0, d, axes[d][s]);
+		for (int d=0; d<DIM; ++d) {
+			final float[] in = axes[d];
+			final float[] out = rotated[d];
+			final float offset = OFFSET[d], scale = SCALE[d];
+			for (int s=0; s<NUM_SAMPLES; ++s)
+				out[s] = (in[s] - offset) / scale;
+		}
+		final float[] xs = rotated[0], ys = rotated[1], zs = rotated[2];
+		for (int s=0; s<NUM_SAMPLES; ++s) {
+			float x = xs[s], y = ys[s], z = zs[s];
+			xs[s] = ROTATION[0]*x + ROTATION[1]*y + ROTATION[2]*z;
+			ys[s] = ROTATION[3]*x + ROTATION[4]*y + ROTATION[5]*z;
+			zs[s] = ROTATION[6]*x + ROTATION[7]*y + ROTATION[8]*z;
+		}
+		for (int s=0; s<NUM_SAMPLES; ++s)
+			for (int d=0; d<DIM; ++d)
+				add(1, d, rotated[d][s]);
+		for (int s=0; s<NUM_SAMPLES; ++s) {
+			add(2, 0, (float)Math.sqrt(xs[s]*xs[s] + ys[s]*ys[s]));
+			add(2, 1, zs[s]);
+		}
+	}
+
+	private float checksum() {
+		float checksum = 0.0f;
+		for (int i=0; i<min.length; ++i)
+			checksum += min[i] + max[i] + sum[i] + sumSqr[i];
+		return checksum;
+	}
+
+	public static void main(String[] args) {
+		int iterations = args.length>0 ? Integer.parseInt(args[0]) : 100000;
+
+		Random random = new Random(1234L);
+		float[][][] samples = new float[NUM_BATCHES][NUM_SAMPLES][DIM];
+		float[][][] axes = new float[NUM_BATCHES][DIM][NUM_SAMPLES];
+		for (int b=0; b<NUM_BATCHES; ++b) {
+			for (int s=0; s<NUM_SAMPLES; ++s) {
+				for (int d=0; d<DIM; ++d) {
+					float val = (float)random.nextGaussian() + (d==2 ? 9.81f : 0.0f);
+					samples[b][s][d] = val;
+					axes[b][d][s] = val;
+				}
+			}
+		}
+		float[][] rotatedSamples = new float[NUM_SAMPLES][DIM];
+		float[][] rotatedAxes = new float[DIM][NUM_SAMPLES];
+
+		SampleBatchLayoutBenchmark samplesLayout = new SampleBatchLayoutBenchmark();
+		SampleBatchLayoutBenchmark axesLayout = new SampleBatchLayoutBenchmark();
+		for (int b=0; b<NUM_BATCHES; ++b) {
+			samplesLayout.processSamples(samples[b], rotatedSamples);
+			axesLayout.processAxes(axes[b], rotatedAxes);
+			if (samplesLayout.checksum()!=axesLayout.checksum()) {
+				System.err.println("The layouts give different results for batch "+b);
+				System.exit(2);
+			}
+		}
+
+		//	alternate the layouts over a few rounds, the first rounds warm up the JIT
+		for (int round=0; round<5; ++round) {
+			//	kept, so that the work can't be optimised away
+			double checksum = 0.0;
+			long start = System.nanoTime();
+			for (int i=0; i<iterations; ++i) {
+				samplesLayout.processSamples(samples[i%NUM_BATCHES], rotatedSamples);
+				checksum += samplesLayout.checksum();
+			}
+			long samplesTime = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i=0; i<iterations; ++i) {
+				axesLayout.processAxes(axes[i%NUM_BATCHES], rotatedAxes);
+				checksum += axesLayout.checksum();
+			}
+			long axesTime = System.nanoTime() - start;
+
+			System.out.println(String.format(
+					"Round %d: float[%d][%d] %.0f ns/batch, float[%d][%d] %.0f ns/batch (%.2fx) [checksum %.3g]",
+					round,
+					NUM_SAMPLES, DIM, samplesTime/(double)iterations,
+					DIM, NUM_SAMPLES, axesTime/(double)iterations,
+					samplesTime/(double)axesTime,
+					checksum));
+		}
+	}
+
+}
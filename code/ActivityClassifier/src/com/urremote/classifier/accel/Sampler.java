@@ -17,6 +17,8 @@ public interface Sampler {
 	/**
 	 * Start sampling, save the sampled data to the batch given.
 	 * The sampler will stop after sampling 1 whole batch.
+	 * This function doesn't wait for the batch to be sampled,
+	 * the batch is passed to the {@link SamplerCallback} once done.
 	 * 
 	 * @param currentBatch
 	 * 		Batch to save the sampled data to.
@@ -0,0 +1,174 @@
+package com.urremote.classifier.accel;
+
+import com.urremote.classifier.common.Constants;
+import com.urremote.classifier.utils.SlidingFeatureExtractor;
+
+/**
+ *
+ * @author Umran
+ *
+ * <p>
+ * A ring buffer holding the latest {@link Constants#NUMBER_OF_SAMPLES} samples
+ * received from the accelerometer while sampling continuously.
+ *
+ * <p>
+ * Once the buffer is full, a window is ready every <code>hopSize</code> samples.
+ * The window is then copied into a {@link SampleBatch}, so that the rest of the
+ * system can process overlapping windows the same way as it processes
+ * batches sampled in bursts.
+ *
+ * <p>
+ * If {@link Constants#USE_STREAMING_FEATURES} is set, the features of the
+ * window are also extracted as the samples arrive, with the calibration given
+ * to {@link #setCalibration(CalibrationValues)}, and copied into the batch
+ * along with the samples.
+ *
+ */
+public class SlidingWindow {
+
+	private final int windowSize;
+	private final int hopSize;
+	private final long[] timeStamps;
+	//	one array per axis, as in SampleBatch
+	private final float[][] axisData;
+
+	//	index where the next sample is written
+	private int head;
+	//	number of valid samples in the buffer (at most windowSize)
+	private int size;
+	//	number of samples assigned since the last window was ready
+	private int samplesSinceLastWindow;
+
+	//	null if not extracting the features while sampling
+	private final SlidingFeatureExtractor featureExtractor;
+	//	the calibration the features are extracted with
+	private CalibrationValues calibration;
+	private final float[] sample = new float[Constants.ACCEL_DIM];
+
+	public SlidingWindow(int hopSize) {
+		if (hopSize<1 || hopSize>Constants.NUMBER_OF_SAMPLES)
+			throw new IllegalArgumentException("Invalid hop size "+hopSize+", expected 1.."+Constants.NUMBER_OF_SAMPLES);
+
+		this.windowSize = Constants.NUMBER_OF_SAMPLES;
+		this.hopSize = hopSize;
+		this.timeStamps = new long[windowSize];
+		this.axisData = new float[Constants.ACCEL_DIM][windowSize];
+		this.featureExtractor = Constants.USE_STREAMING_FEATURES ? new SlidingFeatureExtractor() : null;
+		reset();
+	}
+
+	public boolean hasLastSample() {
+		return size>0;
+	}
+
+	public long getLastSampleTime() {
+		return timeStamps[(head+windowSize-1) % windowSize];
+	}
+
+	/**
+	 * Adds a sample to the buffer, overwriting the oldest sample
+	 * if the buffer is full.
+	 *
+	 * @return
+	 * true if a new window is ready, see {@link #copyWindowTo(SampleBatch)}
+	 */
+	public boolean assignSample(long time, float[] sample) {
+		timeStamps[head] = time;
+		for (int d=0; d<Constants.ACCEL_DIM; ++d)
+			axisData[d][head] = sample[d];
+
+		if (featureExtractor!=null)
+			featureExtractor.addSample(sample);
+
+		head = (head+1) % windowSize;
+		if (size<windowSize)
+			++size;
+		++samplesSinceLastWindow;
+
+		return isWindowReady();
+	}
+
+	/**
+	 * Sets the calibration taken out of the samples before their features are
+	 * extracted. If it changed, the features are extracted again from the samples
+	 * in the window, first to compute the rotation from their calibrated mean,
+	 * then to add the rotated samples.
+	 */
+	public void setCalibration(CalibrationValues calibration) {
+		if (featureExtractor==null || calibration==this.calibration)
+			return;
+
+		this.calibration = calibration;
+		if (calibration!=null)
+			featureExtractor.setCalibration(calibration.getOffset(), calibration.getScale());
+		else
+			featureExtractor.setCalibration(null, null);
+
+		featureExtractor.reset();
+		if (size>0) {
+			addWindowToExtractor();
+			featureExtractor.updateRotation();
+			featureExtractor.clearSamples();
+			addWindowToExtractor();
+		}
+	}
+
+	private void addWindowToExtractor() {
+		int start = (head+windowSize-size) % windowSize;
+		for (int s=0; s<size; ++s) {
+			int index = (start+s) % windowSize;
+			for (int d=0; d<Constants.ACCEL_DIM; ++d)
+				sample[d] = axisData[d][index];
+			featureExtractor.addSample(sample);
+		}
+	}
+
+	public boolean isWindowReady() {
+		return size==windowSize && samplesSinceLastWindow>=hopSize;
+	}
+
+	/**
+	 * Copies the current window, oldest sample first, to the batch given.
+	 * The batch's sample time is set to the (approximate) wall-clock time
+	 * of the first sample in the window.
+	 */
+	public void copyWindowTo(SampleBatch batch) {
+		batch.reset();
+		//	the oldest sample is at head once the buffer has wrapped around,
+		//		hence copy the samples in (at most) two contiguous runs
+		int start = (head+windowSize-size) % windowSize;
+		int firstRun = Math.min(size, windowSize-start);
+		batch.assignSamples(timeStamps, axisData, start, firstRun);
+		if (firstRun<size)
+			batch.assignSamples(timeStamps, axisData, 0, size-firstRun);
+		batch.sampleTime = System.currentTimeMillis() - (batch.getLastSampleTime()-batch.getFirstSampleTime());
+		samplesSinceLastWindow = 0;
+
+		if (featureExtractor!=null) {
+			if (featureExtractor.isReady()) {
+				featureExtractor.getFeatures(batch.getStreamingFeatures());
+				batch.setHasStreamingFeatures(true);
+				batch.setStreamingCalibration(calibration);
+			}
+			//	the samples of the next hop are rotated using the mean of this window
+			featureExtractor.updateRotation();
+		}
+	}
+
+	public void reset() {
+		head = 0;
+		size = 0;
+		samplesSinceLastWindow = 0;
+		if (featureExtractor!=null)
+			featureExtractor.reset();
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getHopSize() {
+		return hopSize;
+	}
+
+}
@@ -0,0 +1,173 @@
+package com.urremote.classifier.accel;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ *
+ * @author Umran
+ *
+ * <p>
+ * Converts the accelerometer events, which arrive at whatever times the
+ * hardware delivers them, to samples on an exact grid of
+ * {@link Constants#RECOMMENDED_SAMPLING_FREQUENCY}, by interpolating
+ * between the events.
+ *
+ * <p>
+ * Events are added using {@link #addSample(long, float[])}, after which
+ * the samples falling between the events received so far are retrieved
+ * by calling {@link #nextSample(float[])} until it returns false.
+ *
+ * <p>
+ * In linear mode, samples are interpolated between the last two events.
+ * In cubic mode, samples are interpolated between the 2nd and 3rd last events,
+ * using a cubic Hermite spline with tangents estimated from the neighbouring
+ * events, hence samples are delayed by one event.
+ *
+ */
+public class UniformResampler {
+
+	//	number of events kept, the most recent last
+	private static final int HISTORY = 4;
+
+	private final boolean cubic;
+	private final long periodNs;
+
+	private final long[] eventTimes = new long[HISTORY];
+	private final float[][] eventValues = new float[HISTORY][Constants.ACCEL_DIM];
+	private int eventCount;
+
+	//	time of the next sample on the grid (in ns)
+	private long nextSampleTime;
+	//	time of the sample last returned by nextSample (in ns)
+	private long sampleTime;
+
+	/**
+	 * @param mode
+	 * either {@link Constants#RESAMPLING_LINEAR} or {@link Constants#RESAMPLING_CUBIC}
+	 */
+	public UniformResampler(int mode) {
+		if (mode!=Constants.RESAMPLING_LINEAR && mode!=Constants.RESAMPLING_CUBIC)
+			throw new IllegalArgumentException("Invalid resampling mode "+mode);
+
+		this.cubic = mode==Constants.RESAMPLING_CUBIC;
+		this.periodNs = 1000000000L / Constants.RECOMMENDED_SAMPLING_FREQUENCY;
+		reset();
+	}
+
+	public void reset() {
+		eventCount = 0;
+		nextSampleTime = 0;
+		sampleTime = 0;
+	}
+
+	/**
+	 * Adds an accelerometer event.
+	 *
+	 * @param timeNs
+	 * the event's time stamp (in ns), events should be added in order
+	 *
+	 * @param values
+	 * the event's values
+	 */
+	public void addSample(long timeNs, float[] values) {
+		if (eventCount>0 && timeNs<=eventTimes[HISTORY-1]) {
+			//	out of order or duplicate event, can't interpolate using it
+			return;
+		}
+
+		//	shift the history, reusing the oldest array
+		float[] reuse = eventValues[0];
+		for (int i=1; i<HISTORY; ++i) {
+			eventTimes[i-1] = eventTimes[i];
+			eventValues[i-1] = eventValues[i];
+		}
+		eventTimes[HISTORY-1] = timeNs;
+		eventValues[HISTORY-1] = reuse;
+		for (int d=0; d<Constants.ACCEL_DIM; ++d)
+			reuse[d] = values[d];
+
+		if (eventCount==0)
+			nextSampleTime = timeNs;	// grid starts at the first event
+		if (eventCount<HISTORY)
+			++eventCount;
+	}
+
+	/**
+	 * Interpolates the next sample on the grid, if the events received so far
+	 * are enough to interpolate it.
+	 *
+	 * @param out
+	 * an array of {@link Constants#ACCEL_DIM} floats to save the sample in
+	 *
+	 * @return
+	 * true if a sample was saved in the array given, false if more events
+	 * are required
+	 */
+	public boolean nextSample(float[] out) {
+		//	index of the events we're interpolating between (p1 & p2)
+		int i2 = cubic?HISTORY-2:HISTORY-1;
+		int i1 = i2-1;
+
+		//	the event at i1 is required for both modes,
+		//		in cubic mode, the event after i2 is also required
+		if (eventCount<HISTORY-i1)
+			return false;
+
+		long t1 = eventTimes[i1];
+		long t2 = eventTimes[i2];
+		long t = nextSampleTime;
+		if (t>t2)
+			return false;
+
+		if (t<t1) {
+			//	only happens for the first sample(s), when the grid starts before t1
+			t = t1;
+		}
+
+		float[] p1 = eventValues[i1];
+		float[] p2 = eventValues[i2];
+		double h = (double)(t2-t1);
+		double u = (t-t1)/h;
+
+		if (!cubic) {
+			for (int d=0; d<Constants.ACCEL_DIM; ++d)
+				out[d] = (float)(p1[d] + (p2[d]-p1[d])*u);
+		} else {
+			//	neighbouring events, when not yet available use the end points
+			boolean hasP0 = eventCount==HISTORY;
+			int i0 = hasP0?i1-1:i1;
+			int i3 = i2+1;
+			float[] p0 = eventValues[i0];
+			float[] p3 = eventValues[i3];
+			double t0 = eventTimes[i0];
+			double t3 = eventTimes[i3];
+
+			double u2 = u*u;
+			double u3 = u2*u;
+			double h00 = 2*u3 - 3*u2 + 1;
+			double h10 = u3 - 2*u2 + u;
+			double h01 = -2*u3 + 3*u2;
+			double h11 = u3 - u2;
+
+			for (int d=0; d<Constants.ACCEL_DIM; ++d) {
+				//	tangents (per ns), estimated from the neighbouring events
+				double m1 = (p2[d]-p0[d])/(t2-t0);
+				double m2 = (p3[d]-p1[d])/(t3-t1);
+				out[d] = (float)(h00*p1[d] + h10*h*m1 + h01*p2[d] + h11*h*m2);
+			}
+		}
+
+		sampleTime = nextSampleTime;
+		nextSampleTime += periodNs;
+		return true;
+	}
+
+	/**
+	 * @return
+	 * the time (in ns) of the sample last returned by {@link #nextSample(float[])}
+	 */
+	public long getSampleTime() {
+		return sampleTime;
+	}
+
+}
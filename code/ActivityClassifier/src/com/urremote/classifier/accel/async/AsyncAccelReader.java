@@ -24,7 +24,11 @@ package com.urremote.classifier.accel.async;
 
 import java.util.Set;
 
+import com.urremote.classifier.accel.AccelSource;
+import com.urremote.classifier.accel.AccelSourceListener;
 import com.urremote.classifier.accel.SampleBatch;
+import com.urremote.classifier.accel.SlidingWindow;
+import com.urremote.classifier.accel.UniformResampler;
 import com.urremote.classifier.common.Constants;
 import com.urremote.classifier.db.OptionUpdateHandler;
 import com.urremote.classifier.db.OptionsTable;
@@ -32,15 +36,12 @@ import com.urremote.classifier.db.SqlLiteAdapter;
 import com.urremote.classifier.exception.HardwareFaultException;
 
 import android.content.Context;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.util.Log;
 
 /**
  * An accelerometer reader which reads real data from the device's
- * accelerometer.
+ * accelerometer, or from any other {@link AccelSource}.
  *
  * @author chris
  */
@@ -60,66 +61,58 @@ public class AsyncAccelReader {
 		SensorManager.SENSOR_DELAY_NORMAL,
 	};
 
-    private final SensorEventListener accelListener = new SensorEventListener() {
+    private final AccelSourceListener accelListener = new AccelSourceListener() {
     	
-        /** {@inheritDoc} */
-//        @Override
-        public void onSensorChanged(final SensorEvent event) {
-        	//Log.d(Constants.TAG+"Sensor", Long.toString(event.timestamp));
+        public void onAccelSample(long timeNs, float[] values) {
+        	//Log.d(Constants.TAG+"Sensor", Long.toString(timeNs));
         	
-        	if (assigningValues && currentBatch!=null) {
-        		if (currentBatch.hasSpace()) {
-        			long currentSampleTime = event.timestamp/1000000;
-        			float[] currentSample = event.values;
-        			
-        			if (currentBatch.hasLastSample()) {
-        				long prevSampleTime = currentBatch.getLastSampleTime();
-        				
-        				if (currentSampleTime-prevSampleTime>=SPECIFIC_SAMPLING_PERIOD*9/10) {
-            				float[] prevSample = currentBatch.getLastSample();
-            				
-    						/*
-    						 * Some phone's accelerometers aren't that good,
-    						 * sometimes, all of a sudden the accelerometer would
-    						 * return zeros in one or more accelerometer axis for a
-    						 * one or more samples. To detect and remove these
-    						 * anomalies (at the cost of sample timing), we check
-    						 * that the value is not zero, or if it is, then there
-    						 * were values close to zero before.
-    						 */
-    						for (int i = 0; i < Constants.ACCEL_DIM; ++i) {
-    							if (currentSample[i] == 0.0f) {
-    								double diffFromLast = currentSample[i] - prevSample[i];
-    								if (diffFromLast < 0.0f)
-    									diffFromLast = -diffFromLast;
-    								if (diffFromLast > 0.1f) {
-    									return;
-    								}
-    							}
-    						}
-            				
-            				double timeDiff = (currentSampleTime-prevSampleTime)/1000.0;
-            				++samplingQualityCount;
-            				samplingQualitySum += timeDiff;
-            				samplingQualitySumSqr += timeDiff*timeDiff;
-        				} else {
-        					return;
-        				}
-        			}
-        			
-    				currentBatch.assignSample(currentSampleTime, currentSample);
+        	if (!assigningValues)
+        		return;
+        	
+        	long currentSampleTime = timeNs/1000000;
+        	float[] currentSample = values;
+        	
+        	//	local copies, in case sampling is stopped in another thread
+        	SlidingWindow window = slidingWindow;
+        	SampleBatch batch = currentBatch;
+        	
+        	if (window==null && batch==null) {
+        		return;
+        	}
+        	
+        	if (resampler!=null) {
+        		if (!acceptSample(currentSampleTime, currentSample)) {
+        			return;
         		}
         		
-        		if (!currentBatch.hasSpace()) {
-        			finishedSamplingRunnable.run();
+        		resampler.addSample(timeNs, currentSample);
+        		while (resampler.nextSample(resampledSample)) {
+        			assignSample(window, batch, resampler.getSampleTime()/1000000, resampledSample);
+        		}
+        	} else {
+        		if ((window!=null || batch.hasSpace()) && 
+        				!acceptSample(currentSampleTime, currentSample)) {
+        			return;
         		}
+        		
+        		assignSample(window, batch, currentSampleTime, currentSample);
         	}
         }
-
-        /** {@inheritDoc} */
-//        @Override
-        public void onAccuracyChanged(final Sensor sensor, final int accuracy) {
-            // Don't really care
+        
+        private void assignSample(SlidingWindow window, SampleBatch batch, long sampleTime, float[] sample) {
+        	if (window!=null) {
+        		if (window.assignSample(sampleTime, sample)) {
+        			samplingRunnable.run();
+        		}
+        	} else {
+        		if (batch.hasSpace()) {
+    				batch.assignSample(sampleTime, sample);
+        		}
+        		
+        		if (!batch.hasSpace()) {
+        			samplingRunnable.run();
+        		}
+        	}
         }
 
     };
@@ -127,15 +120,25 @@ public class AsyncAccelReader {
     private int currentSamplingRate;
     private boolean assigningValues;
     private SampleBatch currentBatch;
-    private SensorManager manager;
-    //private Sensor accelerometer;
+    private SlidingWindow slidingWindow;
+    private final AccelSource source;
     
     private SqlLiteAdapter sqlLiteAdapter;
     private OptionsTable optionsTable;
     
     private boolean accelListenerRegistered;
     
-    private Runnable finishedSamplingRunnable;
+    //	run when a batch is filled, or when a sliding window is ready
+    private Runnable samplingRunnable;
+    
+    //	the last sample accepted since sampling started, used to validate the next sample
+    private boolean hasPrevSample;
+    private long prevSampleTime;
+    private final float[] prevSample = new float[Constants.ACCEL_DIM];
+    
+    //	interpolates the events to the sampling frequency, null if not resampling
+    private final UniformResampler resampler;
+    private final float[] resampledSample = new float[Constants.ACCEL_DIM];
     
     //	used to compute sampling quality
     private double samplingQualitySum;
@@ -146,14 +149,39 @@ public class AsyncAccelReader {
     private double samplingQualityStdDev;
 
     public AsyncAccelReader(final Context context) {
-        manager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-        //accelerometer = manager.getDefaultSensor(SensorManager.SENSOR_ACCELEROMETER);
+    	this(context, new SensorManagerAccelSource(context));
+    }
+    
+    /**
+     * @param source
+     * where the samples are read from, e.g. the device's accelerometer,
+     * or a {@link com.urremote.classifier.accel.replay.RawDumpReplaySource}
+     */
+    public AsyncAccelReader(final Context context, final AccelSource source) {
+    	this(source);
         
         sqlLiteAdapter = SqlLiteAdapter.getInstance(context);
         optionsTable = sqlLiteAdapter.getOptionsTable();
+    }
+    
+    /**
+     * A reader that doesn't read the options, hence the source is stopped
+     * every time sampling stops (as if the "full time accelerometer" option
+     * is off), e.g. to read a fake source in {@link SamplerLatencyBenchmark}.
+     */
+    AsyncAccelReader(final AccelSource source) {
+    	this.source = source;
         
         accelListenerRegistered = false;
-        currentSamplingRate = SPECIFIC_SAMPLING_RATE; 
+        
+        if (Constants.RESAMPLING_MODE!=Constants.RESAMPLING_NONE) {
+        	//	read the accelerometer as fast as possible, the resampler takes care of the sampling frequency
+        	resampler = new UniformResampler(Constants.RESAMPLING_MODE);
+        	currentSamplingRate = GENERIC_SAMPLING_RATE;
+        } else {
+        	resampler = null;
+        	currentSamplingRate = SPECIFIC_SAMPLING_RATE;
+        }
     }
     
     public int getCurrentSamplingRate() {
@@ -164,74 +192,121 @@ public class AsyncAccelReader {
 		this.currentSamplingRate = currentSamplingRate;
 		
 		if (accelListenerRegistered) {
-			manager.unregisterListener(accelListener);
-			manager.registerListener(
-					accelListener,
-                    manager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-                    currentSamplingRate
-                    );
+			source.stop();
+			source.start(accelListener, currentSamplingRate);
 		}
 	}
     
+    /**
+     * Starts filling the batch given, the runnable is run once the batch is full.
+     */
     public void startSampling(SampleBatch batch, Runnable finishedSamplingRunnable) throws HardwareFaultException {
-    	boolean initSuccess = false;
-    	try {
-    		Log.d(Constants.TAG, "Reader starting sampling");
+    	internStartSampling(batch, null, finishedSamplingRunnable);
+    }
+    
+    /**
+     * Starts sampling continuously into the sliding window given,
+     * the runnable is run every time a new window is ready.
+     * Sampling continues until {@link #stopSampling()} is called.
+     */
+    public void startContinuousSampling(SlidingWindow window, Runnable windowReadyRunnable) throws HardwareFaultException {
+    	internStartSampling(null, window, windowReadyRunnable);
+    }
+    
+    /**
+     * @return
+     * the number of samples assigned to the current batch or sliding window,
+     * used by the samplers to detect an accelerometer that isn't delivering samples.
+     */
+    public int getAssignedSampleCount() {
+    	SampleBatch batch = currentBatch;
+    	if (batch!=null)
+    		return batch.getSize();
+    	SlidingWindow window = slidingWindow;
+    	if (window!=null)
+    		return window.getSize();
+    	return 0;
+    }
+    
+    private void internStartSampling(SampleBatch batch, SlidingWindow window, Runnable samplingRunnable) throws HardwareFaultException {
+		Log.d(Constants.TAG, "Reader starting sampling");
+		
+        samplingQualitySum = 0.0;
+        samplingQualitySumSqr = 0.0;
+        samplingQualityCount = 0.0;
+        hasPrevSample = false;
+        if (resampler!=null)
+        	resampler.reset();
+        currentBatch = batch;
+        slidingWindow = window;
+        this.samplingRunnable = samplingRunnable;
+    	assigningValues = true;
+    	
+    	if (!accelListenerRegistered) {
+    		Log.i(Constants.TAG, "Turning accelerometer on");
+    		boolean registered = source.start(accelListener, currentSamplingRate);
     		
-	    	if (!accelListenerRegistered) {
-	    		Log.i(Constants.TAG, "Turning accelerometer on");
-	    		if (currentSamplingRate<10) {
-	    			//	the sampling rate is one of the predefined generic rates e.g. fastest
-		            manager.registerListener(accelListener,
-		                    manager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-		                    currentSamplingRate
-		                    );
-	    		} else {
-	    			//	the sampling rate is the period between subsequent samples
-		            manager.registerListener(accelListener,
-		                    manager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
-		                    currentSamplingRate*95/100
-		                    );
-	    		}
-	            accelListenerRegistered = true;
-	    	}
-	    	
-	        samplingQualitySum = 0.0;
-	        samplingQualitySumSqr = 0.0;
-	        samplingQualityCount = 0.0;
-	        currentBatch = batch;
-	        this.finishedSamplingRunnable = finishedSamplingRunnable;
-	    	assigningValues = true;
-	    	
-//	    	boolean that = true;
-//	    	if (that==true) {
-//	    		throw new HardwareFaultException("Unable to start accelerometer.");
-//	    	}
-	    	
-	    	//	sometimes values are requested before the first
-	    	//		accelerometer sensor change event has occurred,
-	    	//		so wait for the sensor to change.
-	    	if (currentBatch.getSize()<2 && assigningValues) {
-	    		Log.v(Constants.TAG, "No values assigned yet from accelerometer, going to wait for values.");
-	    		long startWait = System.currentTimeMillis();
-	    		long current = startWait;
-		    	while (currentBatch.getSize()<2 && assigningValues) {
-		    		Thread.yield();
-		    		current = System.currentTimeMillis();
-		    		if (current-startWait>Constants.DELAY_SAMPLE_BATCH && assigningValues) {
-		    			throw new HardwareFaultException("Unable to start accelerometer.");
-		    		}
-		    	}
-	//	    	Log.v(Constants.TAG, "Done, waited for "+((current-startWait)/1000)+"s");
-	    	}
-	    	
-	    	initSuccess = true;
-    	} finally {
-    		if (!initSuccess) {
+    		if (!registered) {
     			assigningValues = false;
     			currentBatch = null;
+    			slidingWindow = null;
+    			throw new HardwareFaultException("Unable to start accelerometer.");
     		}
+            accelListenerRegistered = true;
     	}
+    	
+    	//	the samplers don't wait here for the first samples to arrive,
+    	//		they schedule a timeout instead, see getAssignedSampleCount()
+    }
+
+    /**
+     * Checks whether the current sample should be accepted, given the previously accepted sample,
+     * and if it is, keeps it as the previous sample and updates the sampling quality statistics.
+     */
+    private boolean acceptSample(long currentSampleTime, float[] currentSample) {
+    	if (!hasPrevSample) {
+    		hasPrevSample = true;
+    		prevSampleTime = currentSampleTime;
+    		for (int i = 0; i < Constants.ACCEL_DIM; ++i)
+    			prevSample[i] = currentSample[i];
+    		return true;
+    	}
+    	
+		//	when resampling, events are expected to arrive faster than the sampling period
+		if (resampler==null && currentSampleTime-prevSampleTime<SPECIFIC_SAMPLING_PERIOD*9/10) {
+			return false;
+		}
+		
+		/*
+		 * Some phone's accelerometers aren't that good,
+		 * sometimes, all of a sudden the accelerometer would
+		 * return zeros in one or more accelerometer axis for a
+		 * one or more samples. To detect and remove these
+		 * anomalies (at the cost of sample timing), we check
+		 * that the value is not zero, or if it is, then there
+		 * were values close to zero before.
+		 */
+		for (int i = 0; i < Constants.ACCEL_DIM; ++i) {
+			if (currentSample[i] == 0.0f) {
+				double diffFromLast = currentSample[i] - prevSample[i];
+				if (diffFromLast < 0.0f)
+					diffFromLast = -diffFromLast;
+				if (diffFromLast > 0.1f) {
+					return false;
+				}
+			}
+		}
+		
+		double timeDiff = (currentSampleTime-prevSampleTime)/1000.0;
+		++samplingQualityCount;
+		samplingQualitySum += timeDiff;
+		samplingQualitySumSqr += timeDiff*timeDiff;
+		
+		prevSampleTime = currentSampleTime;
+		for (int i = 0; i < Constants.ACCEL_DIM; ++i)
+			prevSample[i] = currentSample[i];
+		
+		return true;
     }
 
     public void stopSampling() {
@@ -246,6 +321,7 @@ public class AsyncAccelReader {
     	
     	assigningValues = false;
     	currentBatch = null;
+    	slidingWindow = null;
     	if (samplingQualityCount>2) {
 			samplingQualityMean = samplingQualitySum / samplingQualityCount;
 			samplingQualityStdDev = Math.sqrt(
@@ -255,8 +331,8 @@ public class AsyncAccelReader {
 			Log.d(Constants.TAG, String.format("Sampling Quality: Delay: Mean=%.2f ms, S.D=%.2f ms", samplingQualityMean, samplingQualityStdDev));
     	}
 		
-		if (!optionsTable.getFullTimeAccel()) {
-    		manager.unregisterListener(accelListener);
+		if (optionsTable==null || !optionsTable.getFullTimeAccel()) {
+    		source.stop();
     		accelListenerRegistered = false;
     		Log.i(Constants.TAG, "Turning accelerometer off");
     	}
@@ -22,9 +22,6 @@
 
 package com.urremote.classifier.accel.async;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import com.urremote.classifier.accel.SampleBatch;
 import com.urremote.classifier.accel.Sampler;
 import com.urremote.classifier.accel.SamplerCallback;
@@ -43,12 +40,10 @@ import com.urremote.classifier.rpc.ActivityRecorderBinder;
  * each sample. When the Sampler has finished, it executes a runnable so that
  * the data may be retrieved and analysed.
  * 
- * This class uses Timer and TimerTask classes to schedule sampling.
- * Even though the Timer class introduces a new Thread hence incurs
- * some performance penalty, but the Timer class's scheduleAtFixedRate()
- * function guarantees a more consistent scheduling rate than the alternative:
- * The Handler's postDelayed() function. The consistency is important for
- * any FFT computations undertaken later.
+ * Sampling is event driven: the batch is handed over to the callback from
+ * the sensor's thread as soon as it is full, and a timeout is posted to the
+ * handler to detect an accelerometer that is too slow or not delivering
+ * samples at all. Hence no thread is blocked waiting for the batch.
  *
  * @author chris
  */
@@ -60,23 +55,46 @@ public class AsyncSampler implements Sampler {
     private final Handler handler; 
     
     private SampleBatch currentBatch;
-    private boolean sampling;
+    private volatile boolean sampling;
     
     private int samplingHardwareErrorCount = 0; 
     
+    //	run by the reader (in the sensor's thread) once the batch is full
     private Runnable finishSampling = new Runnable() {
 		public void run() {
-			if (sampling) {
-				Log.d(Constants.TAG, "Finished sampling: sampled "+currentBatch.getSize()+" samples.");
-	    		finalizeSampling();
+			SampleBatch batch = finalizeSampling();
+			if (batch!=null) {
+				Log.d(Constants.TAG, "Finished sampling: sampled "+batch.getSize()+" samples.");
+				if (samplingHardwareErrorCount>0) {
+					Log.d(Constants.TAG, "Resetting hardware error count to zero");
+					samplingHardwareErrorCount = 0;
+				}
 	            if (callback != null) {
-	            	callback.samplerFinished(currentBatch);
-	            	currentBatch = null;
+	            	callback.samplerFinished(batch);
 	            }
 			}
 		}
 	};
 	
+	//	scheduled on the handler when sampling starts, in case the batch isn't filled in time
+	private Runnable samplingTimeout = new Runnable() {
+		public void run() {
+			SampleBatch batch = finalizeSampling();
+			if (batch!=null) {
+				if (batch.getSize()<2) {
+					handleHardwareFault(batch, new HardwareFaultException("Unable to start accelerometer."));
+				} else {
+					handleHardwareFault(batch, new HardwareFaultException("Accelerometer rate too slow."));
+				}
+			}
+		}
+	};
+	
+    /**
+     * @param handler
+     * the handler the sampling timeout is posted to, or null if batches
+     * aren't timed out, e.g. with a fake source (see {@link SamplerLatencyBenchmark})
+     */
     public AsyncSampler(
     		final ActivityRecorderBinder service, 
     		final AsyncAccelReader reader,
@@ -88,88 +106,89 @@ public class AsyncSampler implements Sampler {
         this.handler = handler;
     }
     
+    /**
+     * Starts filling the batch given, and returns without waiting for the batch
+     * to be filled. The callback is notified once the batch is full, or once
+     * the period between batches (~30s) passes without the batch being filled.
+     */
     public void start(SampleBatch currentBatch) {
-    	this.currentBatch = currentBatch;
-    	this.currentBatch.reset();
-    	this.currentBatch.sampleTime = System.currentTimeMillis();
+    	currentBatch.reset();
+    	currentBatch.sampleTime = System.currentTimeMillis();
+    	
+    	synchronized (this) {
+        	this.currentBatch = currentBatch;
+	        this.sampling = true;
+    	}
     	
         try {
 			reader.startSampling(currentBatch, finishSampling);
 	        Log.d(Constants.TAG, "Started sampling");
-	        this.sampling = true;
-	        
-	        //	wait for either all samples to be gathered, or for the period between batches (~30s) to finish. 
-	        long currentTime = System.currentTimeMillis();
-	        while (sampling && currentBatch.getSize()<Constants.NUMBER_OF_SAMPLES && 
-	        		currentTime-currentBatch.sampleTime<Constants.DELAY_SAMPLE_BATCH) {
-	        	try {
-					Thread.sleep(1000L);
-				} catch (InterruptedException e) {
-				}
-	        }
-	        
-	        if (sampling && currentBatch.getSize()<Constants.NUMBER_OF_SAMPLES) {
-	        	throw new HardwareFaultException("Accelerometer rate too slow.");
-	        }
-	        
-			if (samplingHardwareErrorCount>0) {
-				Log.d(Constants.TAG, "Resetting hardware error count to zero");
-				samplingHardwareErrorCount = 0;
-//				if (service.isHardwareNotificationOn()) {
-//					Log.d(Constants.TAG, "Clearing Faulty Hardware Notification");
-//					service.cancelHardwareNotification();
-//				}
-			}
-	        
+	        if (handler!=null)
+	        	handler.postDelayed(samplingTimeout, Constants.DELAY_SAMPLE_BATCH);
         } catch (HardwareFaultException e) {
-        	++samplingHardwareErrorCount;
-			Log.w(Constants.TAG, "Hardware Fault While Starting Sampling ("+samplingHardwareErrorCount+")", e);
-			
-            if (callback != null) {
-            	callback.samplerError(currentBatch, e);
-            	currentBatch = null;
-            }
-			
-			if (samplingHardwareErrorCount>=3) {
-				if (reader.getCurrentSamplingRate()>10) {
-					reader.setCurrentSamplingRate(AsyncAccelReader.GENERIC_SAMPLING_RATE);
-					samplingHardwareErrorCount = 0;
-				} else {
-					try {
-//						if (!service.isHardwareNotificationOn())
-						{
-							service.handleHardwareFaultException("Faulty Accelerometer", e.getMessage());
-						}
-					} catch (RemoteException e1) {
-						e1.printStackTrace();
+			SampleBatch batch = finalizeSampling();
+			if (batch!=null) {
+				handleHardwareFault(batch, e);
+			}
+		}
+    }
+    
+    private void handleHardwareFault(SampleBatch batch, HardwareFaultException e) {
+    	++samplingHardwareErrorCount;
+		Log.w(Constants.TAG, "Hardware Fault While Sampling ("+samplingHardwareErrorCount+")", e);
+		
+        if (callback != null) {
+        	callback.samplerError(batch, e);
+        }
+		
+		if (samplingHardwareErrorCount>=3) {
+			if (reader.getCurrentSamplingRate()>10) {
+				reader.setCurrentSamplingRate(AsyncAccelReader.GENERIC_SAMPLING_RATE);
+				samplingHardwareErrorCount = 0;
+			} else {
+				try {
+//					if (!service.isHardwareNotificationOn())
+					{
+						service.handleHardwareFaultException("Faulty Accelerometer", e.getMessage());
 					}
+				} catch (RemoteException e1) {
+					e1.printStackTrace();
 				}
 			}
-			
-			return;
-		} finally {
-			
 		}
-        
     }
     
     public int getSamplingHardwareErrorCount() {
 		return samplingHardwareErrorCount;
 	}
     
-    private void finalizeSampling() {
-        this.sampling = false;
+    /**
+     * Stops sampling, the batch is returned only to the first caller,
+     * since the batch may be completed, timed out or stopped in different threads.
+     * 
+     * @return
+     * the batch being sampled, or null if sampling has already been finalized
+     */
+    private SampleBatch finalizeSampling() {
+    	SampleBatch batch;
+    	synchronized (this) {
+    		if (!sampling)
+    			return null;
+    		this.sampling = false;
+    		batch = currentBatch;
+    		currentBatch = null;
+    	}
+    	if (handler!=null)
+    		handler.removeCallbacks(samplingTimeout);
     	reader.stopSampling();
+    	return batch;
     }
 
     public void stop() {
-    	if (sampling) {
-	    	finalizeSampling();
-	        if (callback != null) {
-	        	callback.samplerStopped(currentBatch);
-	        	currentBatch = null;
-	        }
-    	}
+    	SampleBatch batch = finalizeSampling();
+        if (batch!=null && callback != null) {
+        	callback.samplerStopped(batch);
+        }
         Log.i(Constants.TAG, "Sampling Stopped.");
     }
     
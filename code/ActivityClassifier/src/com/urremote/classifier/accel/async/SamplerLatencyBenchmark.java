@@ -0,0 +1,133 @@
+package com.urremote.classifier.accel.async;
+
+import java.util.Arrays;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.urremote.classifier.accel.AccelSource;
+import com.urremote.classifier.accel.AccelSourceListener;
+import com.urremote.classifier.accel.SampleBatch;
+import com.urremote.classifier.accel.SamplerCallback;
+import com.urremote.classifier.common.Constants;
+
+/**
+ * Measures the wake-to-handoff latency of the {@link AsyncSampler}, i.e. the
+ * time from the sensor delivering the last sample of a batch, to the batch
+ * being handed over to the {@link SamplerCallback}.
+ *
+ * <p>
+ * The samples come from a fake {@link AccelSource}, which delivers a sample every
+ * millisecond on its own thread (as the sensor's thread does), time stamped as if
+ * sampled at {@link Constants#RECOMMENDED_SAMPLING_FREQUENCY}. The sampler is
+ * created without a handler, hence without a timeout.
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path, with the
+ * {@link android.util.Log} methods returning defaults), e.g.:
+ * <pre>
+ *	java com.urremote.classifier.accel.async.SamplerLatencyBenchmark 200
+ * </pre>
+ * Exits with a non-zero status if a batch isn't handed over within a second,
+ * which the polling sampler this replaced could take.
+ *
+ * @author Umran
+ */
+public class SamplerLatencyBenchmark {
+
+	private static final long HANDOFF_TIMEOUT_MS = 1000L;
+
+	/**
+	 * Delivers a sample every millisecond, on its own thread, from start until stop.
+	 */
+	static class FakeAccelSource implements AccelSource {
+
+		private final float[] sample = new float[Constants.ACCEL_DIM];
+		private final long samplePeriodNs = 1000000000L/Constants.RECOMMENDED_SAMPLING_FREQUENCY;
+		private long sampleTimeNs;
+		//	incremented on every start and stop, a thread stops delivering once changed
+		private volatile int generation;
+		//	when the latest sample was delivered, in System.nanoTime()
+		volatile long lastDeliveryNs;
+
+		public synchronized boolean start(final AccelSourceListener listener, int samplingRate) {
+			final int threadGeneration = ++generation;
+			Thread thread = new Thread("FakeAccelSource") {
+				public void run() {
+					while (generation==threadGeneration) {
+						sampleTimeNs += samplePeriodNs;
+						sample[Constants.ACCEL_X_AXIS] = (float)Math.sin(sampleTimeNs*1e-9);
+						sample[Constants.ACCEL_Y_AXIS] = 0.5f;
+						sample[Constants.ACCEL_Z_AXIS] = 9.81f;
+						lastDeliveryNs = System.nanoTime();
+						listener.onAccelSample(sampleTimeNs, sample);
+						try {
+							Thread.sleep(1);
+						} catch (InterruptedException e) {
+							return;
+						}
+					}
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+			return true;
+		}
+
+		public synchronized void stop() {
+			++generation;
+		}
+
+	}
+
+	public static void main(String[] args) throws Exception {
+		int numOfBatches = args.length>0 ? Integer.parseInt(args[0]) : 100;
+
+		final FakeAccelSource source = new FakeAccelSource();
+		final SynchronousQueue<Long> handoffs = new SynchronousQueue<Long>();
+		SamplerCallback callback = new SamplerCallback() {
+			public void samplerFinished(SampleBatch batch) {
+				long latency = System.nanoTime() - source.lastDeliveryNs;
+				try {
+					handoffs.put(latency);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			public void samplerStopped(SampleBatch batch) {
+			}
+			public void samplerError(SampleBatch batch, Exception e) {
+				e.printStackTrace();
+			}
+		};
+
+		AsyncAccelReader reader = new AsyncAccelReader(source);
+		AsyncSampler sampler = new AsyncSampler(null, reader, callback, null);
+		SampleBatch batch = new SampleBatch();
+
+		long[] latencies = new long[numOfBatches];
+		for (int b=0; b<numOfBatches; ++b) {
+			sampler.start(batch);
+			Long latency = handoffs.poll(
+					HANDOFF_TIMEOUT_MS + 2L*Constants.NUMBER_OF_SAMPLES, TimeUnit.MILLISECONDS);
+			if (latency==null || latency>HANDOFF_TIMEOUT_MS*1000000L) {
+				System.err.println("Batch "+b+" wasn't handed over within "+HANDOFF_TIMEOUT_MS+" ms");
+				System.exit(2);
+			}
+			latencies[b] = latency;
+		}
+		sampler.stop();
+
+		Arrays.sort(latencies);
+		long sum = 0;
+		for (long latency:latencies)
+			sum += latency;
+		System.out.println(String.format(
+				"Wake-to-handoff latency over %d batches: mean=%.1f us, median=%.1f us, 99th=%.1f us, max=%.1f us",
+				numOfBatches,
+				sum/1000.0/numOfBatches,
+				latencies[numOfBatches/2]/1000.0,
+				latencies[Math.min(numOfBatches-1, numOfBatches*99/100)]/1000.0,
+				latencies[numOfBatches-1]/1000.0));
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.urremote.classifier.accel.async;
+
+import com.urremote.classifier.accel.AccelSource;
+import com.urremote.classifier.accel.AccelSourceListener;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+
+/**
+ * An {@link AccelSource} which delivers samples from the device's accelerometer.
+ * 
+ * @author chris
+ *
+ */
+public class SensorManagerAccelSource implements AccelSource {
+	
+	private final SensorManager manager;
+	private volatile AccelSourceListener listener;
+	
+    private final SensorEventListener accelListener = new SensorEventListener() {
+    	
+        /** {@inheritDoc} */
+//        @Override
+        public void onSensorChanged(final SensorEvent event) {
+        	AccelSourceListener listener = SensorManagerAccelSource.this.listener;
+        	if (listener!=null)
+        		listener.onAccelSample(event.timestamp, event.values);
+        }
+
+        /** {@inheritDoc} */
+//        @Override
+        public void onAccuracyChanged(final Sensor sensor, final int accuracy) {
+            // Don't really care
+        }
+
+    };
+	
+	public SensorManagerAccelSource(final Context context) {
+        manager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+	}
+
+	public boolean start(AccelSourceListener listener, int samplingRate) {
+		this.listener = listener;
+		if (samplingRate<10) {
+			//	the sampling rate is one of the predefined generic rates e.g. fastest
+			return manager.registerListener(accelListener,
+                    manager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
+                    samplingRate
+                    );
+		} else {
+			//	the sampling rate is the period between subsequent samples
+			return manager.registerListener(accelListener,
+                    manager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER),
+                    samplingRate*95/100
+                    );
+		}
+	}
+
+	public void stop() {
+		manager.unregisterListener(accelListener);
+		this.listener = null;
+	}
+
+}
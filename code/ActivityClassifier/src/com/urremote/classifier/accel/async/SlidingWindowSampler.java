@@ -0,0 +1,238 @@
+package com.urremote.classifier.accel.async;
+
+import java.util.concurrent.TimeUnit;
+
+import com.urremote.classifier.accel.SampleBatch;
+import com.urremote.classifier.accel.SampleBatchBuffer;
+import com.urremote.classifier.accel.Sampler;
+import com.urremote.classifier.accel.SamplerCallback;
+import com.urremote.classifier.accel.SlidingWindow;
+import com.urremote.classifier.common.Constants;
+import com.urremote.classifier.exception.HardwareFaultException;
+import com.urremote.classifier.rpc.ActivityRecorderBinder;
+
+import android.os.Handler;
+import android.os.RemoteException;
+import android.util.Log;
+
+/**
+ * A sampler which keeps the accelerometer on and samples continuously
+ * into a {@link SlidingWindow}. Every time a new window is ready (i.e. every
+ * {@link Constants#SLIDING_WINDOW_HOP_SIZE} samples), the window is copied
+ * into an empty batch taken from the {@link SampleBatchBuffer}, and passed
+ * on through {@link SamplerCallback#samplerFinished(SampleBatch)}.
+ *
+ * <p>
+ * Unlike the {@link AsyncSampler}, sampling doesn't stop once a batch
+ * is filled, but continues until {@link #stop()} is called. The batch given
+ * to {@link #start(SampleBatch)} is used for the first window.
+ *
+ * <p>
+ * Windows are passed on from the sensor's thread, hence if no empty batch
+ * is available when a window is ready, the buffer's overload policy decides
+ * whether the oldest batch waiting or the new window is dropped, rather than
+ * blocking the sensor's thread. When the samples are replayed, the replay's
+ * thread waits for an empty batch instead, so that no window is dropped
+ * however fast the samples are replayed.
+ *
+ * @author Umran
+ */
+public class SlidingWindowSampler implements Sampler {
+
+	//	how long the replay's thread waits for an empty batch before logging that it's still waiting
+	private static final long EMPTY_BATCH_WAIT_LOG_PERIOD = 10000L;
+
+	private final ActivityRecorderBinder service;
+    private final AsyncAccelReader reader;
+    private final SamplerCallback callback;
+    private final SampleBatchBuffer batchBuffer;
+    private final Handler handler;
+    private final SlidingWindow window;
+    //	wait for an empty batch rather than dropping windows
+    private final boolean waitForEmptyBatch;
+
+    private SampleBatch currentBatch;
+    private volatile boolean sampling;
+
+    private int samplingHardwareErrorCount = 0;
+    private int droppedWindowCount = 0;
+
+    private Runnable windowReady = new Runnable() {
+		public void run() {
+			if (sampling) {
+				SampleBatch batch;
+				synchronized (SlidingWindowSampler.this) {
+					batch = currentBatch;
+					currentBatch = null;
+				}
+				if (batch==null) {
+					if (waitForEmptyBatch) {
+						batch = awaitEmptyBatch();
+						if (batch==null) {
+							//	stopped or interrupted, not dropped
+							return;
+						}
+					} else {
+						batch = batchBuffer.pollEmptyForSampling();
+					}
+				}
+
+				if (batch==null) {
+					++droppedWindowCount;
+					Log.w(Constants.TAG, "No empty batch available, dropping window ("+droppedWindowCount+" dropped so far)");
+					return;
+				}
+
+				if (samplingHardwareErrorCount>0) {
+					Log.d(Constants.TAG, "Resetting hardware error count to zero");
+					samplingHardwareErrorCount = 0;
+				}
+
+				//	extract the features with the calibration the batch is likely computed with
+				window.setCalibration(batchBuffer.getCalibration());
+				window.copyWindowTo(batch);
+	            if (callback != null) {
+	            	callback.samplerFinished(batch);
+	            }
+			}
+		}
+	};
+
+	/**
+	 * Waits for an empty batch while sampling. A timeout only means that the
+	 * classifier is slow, hence the wait goes on until sampling stops or the
+	 * thread is interrupted.
+	 *
+	 * @return
+	 * an empty batch, or null if sampling stopped or the thread was interrupted,
+	 * in which case the thread's interrupt flag is set again, for its loop to exit
+	 */
+	private SampleBatch awaitEmptyBatch() {
+		while (sampling) {
+			try {
+				SampleBatch batch = batchBuffer.pollEmptyInstance(EMPTY_BATCH_WAIT_LOG_PERIOD, TimeUnit.MILLISECONDS);
+				if (batch!=null)
+					return batch;
+				Log.w(Constants.TAG, "Still waiting for an empty batch after "+EMPTY_BATCH_WAIT_LOG_PERIOD+"ms");
+			} catch (InterruptedException e) {
+				Log.w(Constants.TAG, "Interrupted while waiting for an empty batch", e);
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		return null;
+	}
+
+	//	scheduled on the handler when sampling starts, in case the accelerometer doesn't start
+	private Runnable startTimeout = new Runnable() {
+		public void run() {
+			if (sampling && reader.getAssignedSampleCount()<2) {
+				handleHardwareFault(new HardwareFaultException("Unable to start accelerometer."));
+			}
+		}
+	};
+
+    public SlidingWindowSampler(
+    		final ActivityRecorderBinder service,
+    		final AsyncAccelReader reader,
+            final SamplerCallback callback,
+            final SampleBatchBuffer batchBuffer,
+            final Handler handler,
+            final int hopSize) {
+    	this(service, reader, callback, batchBuffer, handler, hopSize, false);
+    }
+
+    /**
+     * @param waitForEmptyBatch
+     * if true, the thread delivering the samples waits for an empty batch when none
+     * is available, rather than dropping the window, only to be used when the samples
+     * are replayed (see {@link com.urremote.classifier.accel.replay.RawDumpReplaySource}),
+     * never with the device's accelerometer
+     */
+    public SlidingWindowSampler(
+    		final ActivityRecorderBinder service,
+    		final AsyncAccelReader reader,
+            final SamplerCallback callback,
+            final SampleBatchBuffer batchBuffer,
+            final Handler handler,
+            final int hopSize,
+            final boolean waitForEmptyBatch) {
+    	this.service = service;
+        this.reader = reader;
+        this.callback = callback;
+        this.batchBuffer = batchBuffer;
+        this.handler = handler;
+        this.window = new SlidingWindow(hopSize);
+        this.waitForEmptyBatch = waitForEmptyBatch;
+    }
+
+    public void start(SampleBatch firstBatch) {
+    	this.currentBatch = firstBatch;
+    	this.currentBatch.reset();
+    	this.window.reset();
+
+        try {
+	        this.sampling = true;
+			reader.startContinuousSampling(window, windowReady);
+	        Log.d(Constants.TAG, "Started continuous sampling, hop size="+window.getHopSize());
+	        handler.postDelayed(startTimeout, Constants.DELAY_SAMPLE_BATCH);
+        } catch (HardwareFaultException e) {
+        	handleHardwareFault(e);
+		}
+    }
+
+    private void handleHardwareFault(HardwareFaultException e) {
+    	this.sampling = false;
+    	reader.stopSampling();
+    	++samplingHardwareErrorCount;
+		Log.w(Constants.TAG, "Hardware Fault While Sampling ("+samplingHardwareErrorCount+")", e);
+
+		returnCurrentBatch(e);
+
+		if (samplingHardwareErrorCount>=3) {
+			try {
+				service.handleHardwareFaultException("Faulty Accelerometer", e.getMessage());
+			} catch (RemoteException e1) {
+				e1.printStackTrace();
+			}
+		}
+    }
+
+    private synchronized void returnCurrentBatch(Exception error) {
+    	SampleBatch batch = currentBatch;
+    	currentBatch = null;
+    	if (batch!=null && callback!=null) {
+    		if (error!=null)
+    			callback.samplerError(batch, error);
+    		else
+    			callback.samplerStopped(batch);
+    	}
+    }
+
+    public int getSamplingHardwareErrorCount() {
+		return samplingHardwareErrorCount;
+	}
+
+    /**
+     * @return
+     * the number of windows dropped because no empty batches were available
+     */
+    public int getDroppedWindowCount() {
+		return droppedWindowCount;
+	}
+
+    public void stop() {
+    	if (sampling) {
+    		sampling = false;
+    		handler.removeCallbacks(startTimeout);
+    		reader.stopSampling();
+    		returnCurrentBatch(null);
+    	}
+        Log.i(Constants.TAG, "Sampling Stopped.");
+    }
+
+	public boolean isSampling() {
+		return sampling;
+	}
+
+}
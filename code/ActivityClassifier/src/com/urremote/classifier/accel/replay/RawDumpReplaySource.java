@@ -0,0 +1,201 @@
+package com.urremote.classifier.accel.replay;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.urremote.classifier.accel.AccelSource;
+import com.urremote.classifier.accel.AccelSourceListener;
+import com.urremote.classifier.common.Constants;
+import com.urremote.classifier.utils.RawDump;
+
+import android.util.Log;
+
+/**
+ * An {@link AccelSource} which replays the samples saved by {@link RawDump},
+ * in the order they were saved.
+ *
+ * <p>
+ * The samples are replayed in a separate thread, either keeping the timing
+ * between the samples (scaled by the speed given), or as fast as possible,
+ * which allows pushing recorded data through the rest of the pipeline faster
+ * than real time. The replay pauses while no listener is set, so that no
+ * samples are lost while the samples aren't being listened to, and the thread
+ * delivering the samples may block in the listener (e.g. waiting for an empty
+ * batch) to slow the replay down to the rate the samples are processed at.
+ * Once all the files are replayed, the number of samples replayed per second
+ * is logged.
+ *
+ * @author Umran
+ *
+ */
+public class RawDumpReplaySource implements AccelSource {
+
+	private final List<File> files;
+	private final float speed;
+
+	private volatile AccelSourceListener listener;
+	private Thread replayThread;
+	private volatile boolean finished;
+
+	/**
+	 * Replays all the dump files found in {@link RawDump#PATH_DUMP_FOLDER}.
+	 *
+	 * @param speed
+	 * 		how much faster than real time to replay the samples,
+	 * 		e.g. 1.0 to keep the original timing,
+	 * 		or 0.0 (or less) to replay as fast as possible
+	 */
+	public RawDumpReplaySource(float speed) {
+		this(listFiles(new File(RawDump.PATH_DUMP_FOLDER)), speed);
+	}
+
+	/**
+	 * @param files
+	 * 		the dump files to replay, in the order given
+	 *
+	 * @param speed
+	 * 		see {@link #RawDumpReplaySource(float)}
+	 */
+	public RawDumpReplaySource(List<File> files, float speed) {
+		this.files = files;
+		this.speed = speed;
+		this.finished = false;
+	}
+
+	private static List<File> listFiles(File folder) {
+		ArrayList<String> names = RawDump.listDumpFiles(folder);
+		List<File> files = new ArrayList<File>(names.size());
+		for (String name:names)
+			files.add(new File(folder, name));
+		return files;
+	}
+
+	/**
+	 * The sampling rate is ignored, the samples are replayed at the rate they were saved.
+	 */
+	public synchronized boolean start(AccelSourceListener listener, int samplingRate) {
+		this.listener = listener;
+		notifyAll();
+
+		if (replayThread==null) {
+			if (files.isEmpty()) {
+				Log.w(Constants.TAG, "No raw dump files found to replay");
+				return false;
+			}
+
+			replayThread = new Thread(replayRunnable, RawDumpReplaySource.class.getName());
+			replayThread.setDaemon(true);
+			replayThread.start();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stops delivering samples, the replay pauses until the next call to
+	 * {@link #start(AccelSourceListener, int)}, and continues from the
+	 * next sample, with the time paused excluded from the replay's timing.
+	 */
+	public synchronized void stop() {
+		this.listener = null;
+	}
+
+	/**
+	 * Stops the replay thread.
+	 */
+	public synchronized void close() {
+		this.listener = null;
+		if (replayThread!=null) {
+			replayThread.interrupt();
+			replayThread = null;
+		}
+	}
+
+	/**
+	 * @return
+	 * true once all the files have been replayed
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Waits until a listener is set.
+	 */
+	private synchronized AccelSourceListener awaitListener() throws InterruptedException {
+		while (listener==null)
+			wait();
+		return listener;
+	}
+
+	private Runnable replayRunnable = new Runnable() {
+
+		public void run() {
+			float[] values = new float[Constants.ACCEL_DIM];
+			long samplesReplayed = 0;
+			long replayStart = System.currentTimeMillis();
+			long firstSampleTime = -1;
+
+			try {
+				for (File file:files) {
+					BufferedReader in = new BufferedReader(new FileReader(file));
+					try {
+						String line;
+						while ((line = in.readLine())!=null) {
+							if (Thread.interrupted())
+								return;
+
+							//	each line is: index,time stamp (ms),x,y,z
+							String[] fields = line.split(",");
+							if (fields.length<2+Constants.ACCEL_DIM)
+								continue;
+
+							long sampleTime = Long.parseLong(fields[1]);
+							for (int d=0; d<Constants.ACCEL_DIM; ++d)
+								values[d] = Float.parseFloat(fields[2+d]);
+
+							if (firstSampleTime<0)
+								firstSampleTime = sampleTime;
+
+							AccelSourceListener listener = RawDumpReplaySource.this.listener;
+							if (listener==null) {
+								//	the time paused isn't replayed
+								long pauseStart = System.currentTimeMillis();
+								listener = awaitListener();
+								replayStart += System.currentTimeMillis()-pauseStart;
+							}
+
+							if (speed>0.0f) {
+								long wait = replayStart + (long)((sampleTime-firstSampleTime)/speed) - System.currentTimeMillis();
+								if (wait>0)
+									Thread.sleep(wait);
+							}
+
+							listener.onAccelSample(sampleTime*1000000L, values);
+							++samplesReplayed;
+						}
+					} finally {
+						in.close();
+					}
+				}
+			} catch (IOException e) {
+				Log.e(Constants.TAG, "Error while replaying raw dump files", e);
+			} catch (NumberFormatException e) {
+				Log.e(Constants.TAG, "Invalid sample found while replaying raw dump files", e);
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				long duration = System.currentTimeMillis()-replayStart;
+				Log.i(Constants.TAG, "Replayed "+samplesReplayed+" samples in "+duration+"ms ("+
+						(duration>0?(samplesReplayed*1000L/duration):samplesReplayed)+" samples/sec)");
+			}
+
+			finished = true;
+		}
+	};
+
+}
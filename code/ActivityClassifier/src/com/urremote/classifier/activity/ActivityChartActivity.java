@@ -7,7 +7,6 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Formatter;
-import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
 import com.urremote.classifier.R;
@@ -59,8 +58,8 @@ public class ActivityChartActivity extends Activity {
 	private UpdateInterfaceRunnable updateInterfaceRunnable = new UpdateInterfaceRunnable();
 
 	private ChartHelper chartHelper;
-	private Map<String,Integer> activityIndexes;
-	private Map<String,String> activityNiceNames;
+	private String[] activityNiceNames;
+	private int[] activityColors;
 	private volatile ChartHelper.ChartData chartData;
 	
 
@@ -287,8 +286,8 @@ public class ActivityChartActivity extends Activity {
 		super.onCreate(savedInstanceState);
 		Thread.setDefaultUncaughtExceptionHandler(new ExceptionHandler(this));
 		chartHelper = new ChartHelper(this);
-		activityIndexes = chartHelper.getActivityIndexes();
 		activityNiceNames = chartHelper.getActivityNiceNames();
+		activityColors = chartHelper.getActivityColors();
 		
 		flipper = new ViewFlipper(this);
 		sqlLiteAdapter = SqlLiteAdapter.getInstance(this);
@@ -430,22 +429,8 @@ public class ActivityChartActivity extends Activity {
 				canvas.drawText(ChartHelper.FOOTER_NAMES[i], i*width/3+((width/3)-sizeOfFooters[i])/2, height-(((height/6)-17)/2), paint);
 			}
 			
-			String[] tempActivityNames = activityIndexes.keySet().toArray(new String[activityIndexes.size()]);
-			
-			String[] activityNames = new String[tempActivityNames.length];
+			String[] activityNames = activityNiceNames;
 			float[][] sizeOfActivityNames = new float[chartData.numOfDurations][chartData.numOfActivities];
-			
-			int[] activityColors = new int[tempActivityNames.length];
-			
-			for(int i=0;i<tempActivityNames.length;i++){
-				activityNames[i] = activityNiceNames.get(tempActivityNames[i]);
-				
-				Integer color = ChartHelper.COLOR_ACTIVITIES.get(tempActivityNames[i]);
-				if (color!=null)
-					activityColors[i] = color;
-				else
-					activityColors[i] = Color.BLACK;
-			}
 
 			
 			paint.setTextSize(TEXT_SIZE_ACTIVITYNAME);
@@ -1,11 +1,8 @@
 package com.urremote.classifier.activity;
 
 import java.util.Arrays;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
 
-import com.urremote.classifier.common.ActivityNames;
+import com.urremote.classifier.common.ActivityRegistry;
 import com.urremote.classifier.common.Constants;
 import com.urremote.classifier.common.StringComparator;
 import com.urremote.classifier.db.ActivitiesTable;
@@ -53,19 +50,21 @@ public class ChartHelper {
 	// the index of the ChartData in the dataSets array, where the chart should load from
 	private int currentLoadData = -1;
 	
-	//	an index of the activities available to the system
-	private Map<String,Integer> activityIndexes;
+	//	the ids of the activities in the chart (see ActivityRegistry), in the order of the rows
+	private int[] activities;
 	
-	//	map of activity names to nice names
-	private Map<String,String> activityNiceNames;
+	//	the row of each activity id, or -1 if not in the chart
+	private int[] activityRows;
 	
-	//	the colors of different activities by their indexes
+	//	the nice names of the activities, by their rows
+	private String[] activityNiceNames;
+	
+	//	the colors of the activities, by their rows
 	private int[] activityColors;
 	
 	private Context context;
 	private SqlLiteAdapter sqlLiteAdapter;
 	private ActivitiesTable activitiesTable;
-	private Set<String> allActivities;
 	
 	//	reusable instances
 	private Classification classification = new Classification();
@@ -84,39 +83,68 @@ public class ChartHelper {
 		this.context = context;
 		this.sqlLiteAdapter = SqlLiteAdapter.getInstance(context);
 		this.activitiesTable = this.sqlLiteAdapter.getActivitiesTable();
-		this.allActivities = ActivityNames.getAllActivities(context);
-		
-		this.sumMatrix = new long[COL_DURATIONS.length][allActivities.size()];
-		this.col_size = COL_DURATIONS.length;
-		this.row_size = allActivities.size();
 		
-		this.activityIndexes = new TreeMap<String,Integer>(StringComparator.CASE_INSENSITIVE_INSTANCE);
-		{
-			int index = 0;
-			for (String activity:allActivities) {
-				this.activityIndexes.put(activity, index);
-				++index;
+		//	the activities are shown in the order of their names
+		int numOfActivities = 0;
+		int[] activities = new int[ActivityRegistry.size()];
+		for (int id=0; id<ActivityRegistry.size(); ++id) {
+			if (!ActivityRegistry.isActivity(id))
+				continue;
+			String name = ActivityRegistry.getName(id);
+			int row = numOfActivities++;
+			while (row>0 && StringComparator.CASE_INSENSITIVE_INSTANCE.compare(
+					ActivityRegistry.getName(activities[row-1]), name)>0) {
+				activities[row] = activities[row-1];
+				--row;
 			}
+			activities[row] = id;
 		}
+		this.activities = new int[numOfActivities];
+		System.arraycopy(activities, 0, this.activities, 0, numOfActivities);
 		
-		this.activityNiceNames = new TreeMap<String,String>(StringComparator.CASE_INSENSITIVE_INSTANCE);
-		for (String activity:allActivities) {
-			String niceName = Classification.getNiceName(context, activity);
-			this.activityNiceNames.put(activity, niceName);
+		this.activityRows = new int[ActivityRegistry.size()];
+		Arrays.fill(this.activityRows, -1);
+		this.activityNiceNames = new String[numOfActivities];
+		this.activityColors = new int[numOfActivities];
+		for (int row=0; row<numOfActivities; ++row) {
+			int id = this.activities[row];
+			this.activityRows[id] = row;
+			this.activityNiceNames[row] = Classification.getNiceName(context, ActivityRegistry.getName(id));
+			this.activityColors[row] = getActivityColor(id);
 		}
 		
+		this.sumMatrix = new long[COL_DURATIONS.length][numOfActivities];
+		this.col_size = COL_DURATIONS.length;
+		this.row_size = numOfActivities;
+		
 		for (int i=0; i<NUM_OF_DATA_SETS; ++i)
-			dataSets[i] = new ChartData(this.allActivities.size());
+			dataSets[i] = new ChartData(numOfActivities);
 	}
 	
-	public Map<String, Integer> getActivityIndexes(){
-		return activityIndexes;
+	/**
+	 * @return
+	 * the ids of the activities in the chart (see {@link ActivityRegistry}), by their rows
+	 */
+	public int[] getActivities(){
+		return activities;
 	}
 	
-	public Map<String, String> getActivityNiceNames(){
+	/**
+	 * @return
+	 * the nice names of the activities in the chart, by their rows
+	 */
+	public String[] getActivityNiceNames(){
 		return activityNiceNames;
 	}
 	
+	/**
+	 * @return
+	 * the colors of the activities in the chart, by their rows
+	 */
+	public int[] getActivityColors(){
+		return activityColors;
+	}
+	
 	public ChartData getData() {
 		return dataSets[currentLoadData];
 	}
@@ -130,7 +158,7 @@ public class ChartHelper {
 		final long periodEnd = periodStart - maxDuration;
 		
 		for (int i=0; i<COL_DURATIONS.length; ++i) {
-			for (int j=0; j<allActivities.size(); ++j) {
+			for (int j=0; j<activities.length; ++j) {
 				sumMatrix[i][j] = 0;
 			}
 		}
@@ -140,11 +168,12 @@ public class ChartHelper {
 //						if (!ActivityNames.isSystemActivity(classification.getClassification())) {
 //							return;
 //						}
-						if (!activityIndexes.containsKey(classification.getClassification())) {
+						int id = classification.getActivityId();
+						int index = id!=ActivityRegistry.NONE ? activityRows[id] : -1;
+						if (index<0) {
 							Log.e(Constants.TAG, "ERROR: UNKNOWN ACTIVITY '"+classification.getClassification()+"' FOUND");
 							return;
 						}
-						int index = activityIndexes.get(classification.getClassification());
 						long howLongAgoStarted = periodStart - classification.getStart();
 						long howLongAgoEnded = periodStart - classification.getEnd();
 						for (int i=0; i<COL_DURATIONS.length; ++i) {
@@ -165,15 +194,14 @@ public class ChartHelper {
 		
 		
 		for (int i=0; i<COL_DURATIONS.length; ++i) {
+			int indexOff = activityRows[ActivityRegistry.OFF];
 			long totalNonSystem = 0;
-			for (String activity:allActivities) {
-				if (!ActivityNames.OFF.equals(activity)) {
-					int index = activityIndexes.get(activity);
-					totalNonSystem += sumMatrix[i][index];
+			for (int j=0; j<activities.length; ++j) {
+				if (j!=indexOff) {
+					totalNonSystem += sumMatrix[i][j];
 				}
 			}
 			
-			int indexOff = activityIndexes.get(ActivityNames.OFF);
 			sumMatrix[i][indexOff] = COL_DURATIONS[i] - totalNonSystem;
 			
 //			Log.d(Constants.TAG+"Chart", "col_"+i+" col_duration="+COL_DURATIONS[i]+", total_non_sys="+totalNonSystem+", off="+sumMatrix[i][indexOff]);
@@ -184,7 +212,7 @@ public class ChartHelper {
 		ChartData data = dataSets[currentComputeData];
 		
 		for (int i=0; i<COL_DURATIONS.length; ++i) {
-			for (int j=0; j<allActivities.size(); ++j) {
+			for (int j=0; j<activities.length; ++j) {
 				data.percentageMatrix[i][j] = 100.0f * (float)sumMatrix[i][j] / (float)COL_DURATIONS[i];
 			}
 		}
@@ -224,23 +252,24 @@ public class ChartHelper {
 	/**
 	 * Colors of activities
 	 */
-	@SuppressWarnings("serial")
-	public final static Map<String,Integer> COLOR_ACTIVITIES = new TreeMap<String,Integer>(StringComparator.CASE_SENSITIVE_INSTANCE) {
-		{
-			this.put(ActivityNames.OFF,					Color.argb(255, 128, 128, 128));
-			this.put(ActivityNames.END,					Color.argb(255, 255, 255, 255));
-			this.put(ActivityNames.UNKNOWN,				Color.argb(255, 160, 160, 160));
-			this.put(ActivityNames.UNCARRIED,			Color.argb(255, 109, 206, 250));
-			this.put(ActivityNames.CHARGING,			Color.argb(255, 122, 181, 204));
-			this.put(ActivityNames.CHARGING_TRAVELLING, Color.argb(255, 153, 102, 255));
-			this.put(ActivityNames.STATIONARY,			Color.argb(255,   1, 190, 171));
-			this.put(ActivityNames.TRAVELING,			Color.argb(255,   0, 102, 255));
-			this.put(ActivityNames.WALKING,				Color.argb(255,   0, 191,  48));
-			this.put(ActivityNames.PADDLING,			Color.argb(255, 181,  48,   0));
-			this.put(ActivityNames.ROWING,				Color.argb(255, 181,  48,   0));
-			this.put(ActivityNames.CYCLING,				Color.argb(255, 191, 134,   0));
-			this.put(ActivityNames.RUNNING,				Color.argb(255, 187, 191,   0));
-			
+	public static int getActivityColor(int activity) {
+		switch (activity) {
+		case ActivityRegistry.OFF:					return Color.argb(255, 128, 128, 128);
+		case ActivityRegistry.END:					return Color.argb(255, 255, 255, 255);
+		case ActivityRegistry.UNKNOWN:				return Color.argb(255, 160, 160, 160);
+		case ActivityRegistry.UNCARRIED:			return Color.argb(255, 109, 206, 250);
+		case ActivityRegistry.CHARGING:				return Color.argb(255, 122, 181, 204);
+		case ActivityRegistry.CHARGING_TRAVELLING:	return Color.argb(255, 153, 102, 255);
+		case ActivityRegistry.STATIONARY:			return Color.argb(255,   1, 190, 171);
+		case ActivityRegistry.TRAVELING:			return Color.argb(255,   0, 102, 255);
+		case ActivityRegistry.WALKING:				return Color.argb(255,   0, 191,  48);
+		case ActivityRegistry.PADDLING:				return Color.argb(255, 181,  48,   0);
+		case ActivityRegistry.ROWING:				return Color.argb(255, 181,  48,   0);
+		case ActivityRegistry.CYCLING:				return Color.argb(255, 191, 134,   0);
+		case ActivityRegistry.RUNNING:				return Color.argb(255, 187, 191,   0);
+		default:									return Color.BLACK;
+		}
+		
 //		//Charging Colour
 //		Color.argb(255, 153, 153, 153),
 //		//Orange
@@ -258,7 +287,6 @@ public class ChartHelper {
 //		//Off, light green
 //		Color.argb(255, 181, 204, 122),
 //		Color.argb(255, 181, 204, 0),
-		}
-	};
+	}
 	
 }
@@ -67,6 +67,7 @@ public class MainSettingsActivity extends PreferenceActivity {
 
 	private CheckBoxPreferenceWithLongSummary calibrationSummary; 
 	private CheckBoxPreference aggregatePref;
+	private CheckBoxPreference hmmAggregatorPref;
 	private CheckBoxPreference fulltimeAccelPref;
 	private PreferenceScreen selectAccountPref;
 	private CheckBoxPreference fftOnPref; 
@@ -129,6 +130,16 @@ public class MainSettingsActivity extends PreferenceActivity {
 				
 			}
 			
+			if (Constants.IS_DEV_VERSION &&
+					updatedKeys.contains(OptionsTable.KEY_AGGREGATOR_TYPE)) {
+				mainLooperHandler.post(new Runnable() {
+					public void run() {
+						hmmAggregatorPref.setChecked(optionsTable.getAggregatorType()==Constants.AGGREGATOR_HMM);
+					}
+				});
+				
+			}
+			
 		}
 	};
 	
@@ -435,6 +446,23 @@ public class MainSettingsActivity extends PreferenceActivity {
 			});
 			aggregatePref.setChecked(optionsTable.getUseAggregator());
 
+			hmmAggregatorPref = new CheckBoxPreference(this);
+			hmmAggregatorPref.setKey("hmm_aggregator_preference");
+			hmmAggregatorPref.setTitle("Aggregate with HMM");
+			hmmAggregatorPref.setSummary("Smoothen activity classification using a hidden Markov model learnt from the saved activities");
+			hmmAggregatorPref.setOnPreferenceChangeListener(new CheckBoxPreference.OnPreferenceChangeListener(){
+
+				public boolean onPreferenceChange(Preference arg0, Object arg1) {
+					boolean checked = (Boolean) arg1; 
+					optionsTable.setAggregatorType(checked?Constants.AGGREGATOR_HMM:Constants.AGGREGATOR_HIERARCHICAL);
+					optionsTable.save();
+					hmmAggregatorPref.setChecked(checked);
+					return false;
+				}
+
+			});
+			hmmAggregatorPref.setChecked(optionsTable.getAggregatorType()==Constants.AGGREGATOR_HMM);
+
 			final CheckBoxPreference invokeMyTracksPref = new CheckBoxPreference(this);
 			invokeMyTracksPref.setKey("invoke_mytracks_pref");
 			invokeMyTracksPref.setTitle("Invoke Google MyTracks Recording");
@@ -484,6 +512,7 @@ public class MainSettingsActivity extends PreferenceActivity {
 			
 			root.addPreference(developerPrefCat);
 			developerPrefCat.addPreference(aggregatePref);
+			developerPrefCat.addPreference(hmmAggregatorPref);
 			developerPrefCat.addPreference(invokeMyTracksPref);
 			developerPrefCat.addPreference(restorePref);
 		}
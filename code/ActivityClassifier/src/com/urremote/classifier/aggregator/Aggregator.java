@@ -22,18 +22,7 @@
 
 package com.urremote.classifier.aggregator;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
-import java.util.Map.Entry;
-import java.util.TreeMap;
-import java.util.TreeSet;
-
-import com.urremote.classifier.common.ActivityNames;
-import com.urremote.classifier.common.Constants;
-import com.urremote.classifier.common.StringComparator;
-
-import android.util.Log;
+import com.urremote.classifier.common.ActivityRegistry;
 
 /**
  * Aggregates a stream of classifications and performs averaging in order to
@@ -43,6 +32,17 @@ import android.util.Log;
  * cases produce a result that is not in itself a normal activity because of
  * this (for example, it may classify unclear data as
  * <code>CLASSIFIED/VEHICLE</code>, rather than as a sub-type as expected).
+ * 
+ * <p>
+ * The hierarchy (the nodes, their children and the children's initial scores)
+ * is compiled once into flat arrays, with the children of each node in a
+ * contiguous range. Each aggregator only has its own array of scores, one per
+ * child, hence updates and reads are proportional to the number of children
+ * along the path, and don't allocate anything.
+ * 
+ * <p>
+ * Where the scores of children are tied, the last child in the order listed in
+ * {@link #DEFAULT_CHILDREN} wins.
  *
  * @author chris
  */
@@ -50,162 +50,217 @@ public class Aggregator {
 
 	private static final double DELTA = 0.25;
 	private static final double THRESHOLD = 0.1;
-
-    private static final Map<String, Map<String, Double>> DEFAULT_SCORES = 
-    	new HashMap<String, Map<String, Double>>() {
-	{
-		
-	put("", new HashMap<String, Double>() {{
-		put("CLASSIFIED", 0.5d);
-		put("UNKNOWN", 0.5d);
-	}});
-
-	put("CLASSIFIED", new HashMap<String, Double>() {{
-		put("UNCARRIED", 0.14d);
-		put("STATIONARY", 0.14d);
-		//put("traveling", 0.14d);
-		put("WALKING", 0.14d);
-		put("PADDLING", 0.14d);
-		//put("ROWING", 0.14d);
-		put("CYCLING", 0.1d);
-		put("RUNNING", 0.14d);
-	}});
 	
-	}
+	//	the parent of the top level activities (i.e. the "" path)
+	private static final int ROOT = ActivityRegistry.NONE;
+	
+	//	the nodes of the hierarchy, with the children and initial scores of each
+	private static final int[] DEFAULT_NODES = {
+		ROOT,
+		ActivityRegistry.CLASSIFIED,
 	};
 	
-	/*
-    private final HashMap<String, HashMap<String, Double>> scores
-    	= new HashMap<String, HashMap<String, Double>>() {{
-		put("", new HashMap<String, Double>() {{
-			put("null", 0.5d);
-			put("CLASSIFIED", 0.5d);
-			put("UNCLASSIFIED", 0.333d);
-		}});
-
-		put("CLASSIFIED", new HashMap<String, Double>() {{
-//  		put("null", 0.1d);
-			put("CHARGING", 0.1d);
-			put("UNCARRIED", 0.1d);
-			put("END", 0.1d);
-			put("WALKING", 0.1d);
-			put("PADDLING", 0.1d);
-			put("traveling", 0.1d);
-			put("ACTIVE", 0.1d);
-			put("DANCING", 0.1d);
-			put("VEHICLE",0.1d);
-			put("IDLE", 0.1d);
-//  		put("WAITING", 0.1428d);
-		}});
-
-
-		put("CLASSIFIED/WALKING", new HashMap<String, Double>() {{
-//  		put("null", 0.5d);
-//  		put("STAIRS",0.5d);
-		}});
-
-		put("CLASSIFIED/VEHICLE", new HashMap<String, Double>() {{
-//  		put("null", 0.333d);
-//  		put("CAR", 0.333d);
-//  		put("BUS", 0.333d);
-		}});
-
-		put("CLASSIFIED/IDLE", new HashMap<String, Double>() {{
-			put("null", 0.333d);
-			put("STANDING", 0.333d);
-			put("SITTING", 0.333d);
-		}});
-
-		put("CLASSIFIED/WALKING/STAIRS", new HashMap<String, Double>() {{
-//  		put("null", 0.333d);
-//  		put("UP", 0.333d);
-//  		put("DOWN", 0.333d);
-		}});
-	}};
-	*/
+	private static final int[][] DEFAULT_CHILDREN = {
+		{
+			ActivityRegistry.CLASSIFIED,
+			ActivityRegistry.UNKNOWN,
+		},
+		{
+			ActivityRegistry.WALKING,
+			ActivityRegistry.RUNNING,
+			ActivityRegistry.CYCLING,
+			ActivityRegistry.PADDLING,
+			ActivityRegistry.UNCARRIED,
+			ActivityRegistry.STATIONARY,
+			//ActivityRegistry.TRAVELING,
+			//ActivityRegistry.ROWING,
+		},
+	};
+	
+	private static final double[][] DEFAULT_SCORES = {
+		{
+			0.5d,
+			0.5d,
+		},
+		{
+			0.14d,
+			0.14d,
+			0.1d,
+			0.14d,
+			0.14d,
+			0.14d,
+			//0.14d,
+			//0.14d,
+		},
+	};
+	
+	//	the compiled hierarchy, node 0 is the root
+	
+	//	the range of children of each node, in the arrays below
+	private static final int[] NODE_CHILDREN_START;
+	private static final int[] NODE_CHILDREN_END;
+	//	the node of each activity id, or -1 if it isn't a node
+	private static final int[] ACTIVITY_NODES;
+	
+	//	per child
+	private static final int[] CHILD_ACTIVITIES;
+	private static final int[] CHILD_NODES;
+	private static final boolean[] CHILD_STICKY;
+	private static final double[] CHILD_INITIAL_SCORES;
+	
+	//	uncarried and charging (which are detected reliably) are given the full score
+	//		when classified, and zeroed otherwise, per activity id
+	private static final boolean[] STICKY_ACTIVITIES;
+	
+	static {
+		int numOfActivities = ActivityRegistry.size();
+		
+		STICKY_ACTIVITIES = new boolean[numOfActivities];
+		for (int id=0; id<numOfActivities; ++id) {
+			String part = ActivityRegistry.getPart(id);
+			STICKY_ACTIVITIES[id] = part.equalsIgnoreCase("uncarried") || part.equalsIgnoreCase("charging");
+		}
+		
+		ACTIVITY_NODES = new int[numOfActivities];
+		for (int id=0; id<numOfActivities; ++id)
+			ACTIVITY_NODES[id] = -1;
+		for (int node=1; node<DEFAULT_NODES.length; ++node)
+			ACTIVITY_NODES[DEFAULT_NODES[node]] = node;
+		
+		int numOfChildren = 0;
+		for (int[] children:DEFAULT_CHILDREN)
+			numOfChildren += children.length;
+		
+		NODE_CHILDREN_START = new int[DEFAULT_NODES.length];
+		NODE_CHILDREN_END = new int[DEFAULT_NODES.length];
+		CHILD_ACTIVITIES = new int[numOfChildren];
+		CHILD_NODES = new int[numOfChildren];
+		CHILD_STICKY = new boolean[numOfChildren];
+		CHILD_INITIAL_SCORES = new double[numOfChildren];
+		
+		for (int node=0, c=0; node<DEFAULT_NODES.length; ++node) {
+			NODE_CHILDREN_START[node] = c;
+			for (int i=0; i<DEFAULT_CHILDREN[node].length; ++i, ++c) {
+				int child = DEFAULT_CHILDREN[node][i];
+				if (ActivityRegistry.getParent(child)!=DEFAULT_NODES[node])
+					throw new RuntimeException("Activity "+ActivityRegistry.getName(child)+
+							" is not a child of node "+node);
+				CHILD_ACTIVITIES[c] = child;
+				CHILD_NODES[c] = ACTIVITY_NODES[child];
+				CHILD_STICKY[c] = STICKY_ACTIVITIES[child];
+				CHILD_INITIAL_SCORES[c] = DEFAULT_SCORES[node][i];
+			}
+			NODE_CHILDREN_END[node] = c;
+		}
+	}
 	
-	private Map<String, Map<String, Double>> scores;
+	private final double[] scores;
+	//	the activity ids along the path of a classification, from the top level
+	private final int[] path;
 	private boolean firstActivity = true; 
 	
-    public Aggregator() {
-		this.scores = DEFAULT_SCORES;
-    }
+	public Aggregator() {
+		this.scores = CHILD_INITIAL_SCORES.clone();
+		
+		int maxDepth = 0;
+		for (int id=0; id<ActivityRegistry.size(); ++id)
+			maxDepth = Math.max(maxDepth, ActivityRegistry.getDepth(id));
+		this.path = new int[maxDepth+1];
+	}
+	
+	/**
+	 * @param activity
+	 * the id of the classification, see {@link ActivityRegistry}
+	 */
+	public void addClassification(final int activity) {
+		int depth = ActivityRegistry.getDepth(activity);
+		for (int i=depth, id=activity; i>=0; --i, id=ActivityRegistry.getParent(id))
+			path[i] = id;
+		
+		int node = 0;
+		for (int i=0; i<=depth; ++i) {
+			if (node<0) {
+				throw new RuntimeException("Path not found: " + ActivityRegistry.getName(path[i-1])
+						+ " (classification: " + ActivityRegistry.getName(activity) + ")");
+			}
+			
+			updateScores(node, path[i]);
+			node = ACTIVITY_NODES[path[i]];
+		}
+		
+		if (node>=0) {
+			//	the classification is an inner node, none of its children were classified
+			updateScores(node, ActivityRegistry.NONE);
+		}
+	}
+	
+	void updateScores(final int node, final int target) {
+		final double[] scores = this.scores;
+		final int start = NODE_CHILDREN_START[node];
+		final int end = NODE_CHILDREN_END[node];
+		final boolean stickyTarget = target!=ActivityRegistry.NONE && STICKY_ACTIVITIES[target];
+		
+		for (int c=start; c<end; ++c) {
+			scores[c] = scores[c] * (1 - DELTA);
+			
+			if (CHILD_ACTIVITIES[c]==target) {
+				scores[c] = scores[c] + DELTA;
+				if (stickyTarget)
+					scores[c] = 1;
+			}
+		}
+		
+		if (!stickyTarget) {
+			for (int c=start; c<end; ++c) {
+				if (CHILD_STICKY[c])
+					scores[c] = 0;
+			}
+		}
+	}
+	
+	/**
+	 * @return
+	 * the id of the aggregated classification (see {@link ActivityRegistry}),
+	 * or {@link ActivityRegistry#NONE} if there is none yet
+	 */
+	public int getClassification() {
+		final double[] scores = this.scores;
+		int activity = ActivityRegistry.NONE;
+		
+		for (int node=0; node>=0; ) {
+			double best = THRESHOLD;
+			int bestChild = -1;
+			
+			for (int c=NODE_CHILDREN_START[node], end=NODE_CHILDREN_END[node]; c<end; ++c) {
+				if (scores[c] >= best) {
+					best = scores[c];
+					bestChild = c;
+				}
+			}
+			
+			if (bestChild<0) {
+				//	none of the children are likely enough
+				activity = ActivityRegistry.NONE;
+				break;
+			}
+			
+			activity = CHILD_ACTIVITIES[bestChild];
+			node = CHILD_NODES[bestChild];
+		}
+		
+		if (activity==ActivityRegistry.NONE) {
+			activity = ActivityRegistry.UNKNOWN;
+			addClassification(activity);
+		}
+		
+		if (firstActivity) {
+			if (activity==ActivityRegistry.UNKNOWN) {
+				activity = ActivityRegistry.NONE;
+			}
+			firstActivity = false;
+		}
+		
+		return activity;
+	}
 	
-	public void addClassification(final String classification) {
-    	
-        String path = "";
-
-        for (String part : classification.split("/")) {
-            if (!scores.containsKey(path)) {
-                throw new RuntimeException("Path not found: " + path
-                        + " (classification: " + classification + ")");
-            }
-
-            updateScores(scores.get(path), part);
-            path = path + (path.length() == 0 ? "" : "/") + part;
-        }
-
-        if (scores.containsKey(path)) {
-    		updateScores(scores.get(path), "null");
-        }
-    }
-
-    void updateScores(final Map<String, Double> map, final String target) {
-        for (Map.Entry<String, Double> entry : map.entrySet()) {
-//            Log.d(Constants.TAG, "Score for " + entry.getKey() + " was: " + entry.getValue());
-            entry.setValue(entry.getValue() * (1 - DELTA));
-
-            if (entry.getKey().equals(target)) {
-                entry.setValue(entry.getValue() + DELTA);
-            }
-            
-            if (target.equalsIgnoreCase("uncarried") || target.equalsIgnoreCase("charging")) {
-            	if (entry.getKey().equals(target)) {
-            		entry.setValue((double) 1);
-                }            
-            } else {
-            	for(Map.Entry<String, Double> entry1 : map.entrySet()){
-            		if (entry1.getKey().equalsIgnoreCase("uncarried") ||entry1.getKey().equalsIgnoreCase("charging")) {
-            			entry1.setValue((double) 0);
-                    }
-            	}
-            }
-            Log.d(Constants.TAG, "Score for " + entry.getKey() + " is now: " + entry.getValue());
-        }
-    }
-
-    public String getClassification() {
-        String path = "";
-
-        do {
-            final Map<String, Double> map = scores.get(path);
-            double best = THRESHOLD;
-            String bestPath = "null";
-
-            for (Map.Entry<String, Double> entry : map.entrySet()) {
-                if (entry.getValue() >= best) {
-                    best = entry.getValue();
-                    bestPath = entry.getKey();
-                }
-            }
-
-            path = path + (path.length() == 0 ? "" : "/") + bestPath;
-        } while (scores.containsKey(path));
-        
-        if (path.length()==0 || "null".equals(path) || "CLASSIFIED/null".equals(path)) {
-        	path = ActivityNames.UNKNOWN;
-        	addClassification(path);
-        }
-        
-        if (firstActivity) {
-	        if (ActivityNames.UNKNOWN.equals(path)) {
-	        	path = "";
-	        }
-	        firstActivity = false;
-        }
-        
-        return path;
-    }
-    
-
 }
@@ -0,0 +1,321 @@
+package com.urremote.classifier.aggregator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.urremote.classifier.common.ActivityNames;
+import com.urremote.classifier.common.ActivityRegistry;
+
+/**
+ * Replays sequences of classifications through the {@link Aggregator} and through
+ * the map based aggregator it replaced (kept here as {@link MapAggregator}),
+ * checking that both smooth them to exactly the same aggregated activities,
+ * and compares how long each takes per classification.
+ *
+ * <p>
+ * The sequences are either read from files, with one classification per line
+ * (e.g. the activities saved by the application, one row per classification),
+ * or generated: runs of random length of each activity, with single
+ * misclassifications in between, including the inner node
+ * <code>CLASSIFIED</code>, {@link ActivityNames#UNKNOWN} and the activities
+ * that aren't part of the hierarchy (for which both have to fail).
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path), e.g.:
+ * <pre>
+ *	java com.urremote.classifier.aggregator.AggregatorReplayBenchmark [classifications.txt ...]
+ * </pre>
+ *
+ * @author Umran
+ */
+public class AggregatorReplayBenchmark {
+
+	private static final int GENERATED_SEQUENCES = 200;
+	private static final int GENERATED_LENGTH = 2000;
+	private static final int TIMING_ROUNDS = 5;
+
+	/**
+	 * The aggregator as it was before the hierarchy was compiled to arrays,
+	 * without the logging, and with its own copy of the default scores
+	 * (these used to be shared by all the instances).
+	 */
+	private static class MapAggregator {
+
+		private static final double DELTA = 0.25;
+		private static final double THRESHOLD = 0.1;
+
+		private final Map<String, Map<String, Double>> scores = new HashMap<String, Map<String, Double>>();
+		private boolean firstActivity = true;
+
+		MapAggregator() {
+			Map<String, Double> root = new HashMap<String, Double>();
+			root.put("CLASSIFIED", 0.5d);
+			root.put("UNKNOWN", 0.5d);
+			scores.put("", root);
+
+			Map<String, Double> classified = new HashMap<String, Double>();
+			classified.put("UNCARRIED", 0.14d);
+			classified.put("STATIONARY", 0.14d);
+			classified.put("WALKING", 0.14d);
+			classified.put("PADDLING", 0.14d);
+			classified.put("CYCLING", 0.1d);
+			classified.put("RUNNING", 0.14d);
+			scores.put("CLASSIFIED", classified);
+		}
+
+		void addClassification(final String classification) {
+			String path = "";
+
+			for (String part : classification.split("/")) {
+				if (!scores.containsKey(path)) {
+					throw new RuntimeException("Path not found: " + path
+							+ " (classification: " + classification + ")");
+				}
+
+				updateScores(scores.get(path), part);
+				path = path + (path.length() == 0 ? "" : "/") + part;
+			}
+
+			if (scores.containsKey(path)) {
+				updateScores(scores.get(path), "null");
+			}
+		}
+
+		void updateScores(final Map<String, Double> map, final String target) {
+			for (Map.Entry<String, Double> entry : map.entrySet()) {
+				entry.setValue(entry.getValue() * (1 - DELTA));
+
+				if (entry.getKey().equals(target)) {
+					entry.setValue(entry.getValue() + DELTA);
+				}
+
+				if (target.equalsIgnoreCase("uncarried") || target.equalsIgnoreCase("charging")) {
+					if (entry.getKey().equals(target)) {
+						entry.setValue((double) 1);
+					}
+				} else {
+					for (Map.Entry<String, Double> entry1 : map.entrySet()) {
+						if (entry1.getKey().equalsIgnoreCase("uncarried") || entry1.getKey().equalsIgnoreCase("charging")) {
+							entry1.setValue((double) 0);
+						}
+					}
+				}
+			}
+		}
+
+		String getClassification() {
+			String path = "";
+
+			do {
+				final Map<String, Double> map = scores.get(path);
+				double best = THRESHOLD;
+				String bestPath = "null";
+
+				for (Map.Entry<String, Double> entry : map.entrySet()) {
+					if (entry.getValue() >= best) {
+						best = entry.getValue();
+						bestPath = entry.getKey();
+					}
+				}
+
+				path = path + (path.length() == 0 ? "" : "/") + bestPath;
+			} while (scores.containsKey(path));
+
+			if (path.length() == 0 || "null".equals(path) || "CLASSIFIED/null".equals(path)) {
+				path = ActivityNames.UNKNOWN;
+				addClassification(path);
+			}
+
+			if (firstActivity) {
+				if (ActivityNames.UNKNOWN.equals(path)) {
+					path = "";
+				}
+				firstActivity = false;
+			}
+
+			return path;
+		}
+	}
+
+	/**
+	 * @return
+	 * the ids of the classifications that can be replayed, i.e. all but the system activities
+	 */
+	private static int[] getReplayedActivities() {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int id=0; id<ActivityRegistry.size(); ++id)
+			if (!ActivityRegistry.isSystemActivity(id))
+				ids.add(id);
+		int[] result = new int[ids.size()];
+		for (int i=0; i<result.length; ++i)
+			result[i] = ids.get(i);
+		return result;
+	}
+
+	private static int[] generateSequence(Random random, int[] activities) {
+		int[] sequence = new int[GENERATED_LENGTH];
+		int current = activities[random.nextInt(activities.length)];
+		for (int i=0; i<sequence.length; ) {
+			int runLength = 1 + random.nextInt(40);
+			for (int r=0; r<runLength && i<sequence.length; ++r, ++i) {
+				//	an occasional misclassification within the run
+				sequence[i] = random.nextInt(10)==0 ? activities[random.nextInt(activities.length)] : current;
+			}
+			current = activities[random.nextInt(activities.length)];
+		}
+		return sequence;
+	}
+
+	private static int[] readSequence(File file) throws Exception {
+		List<Integer> ids = new ArrayList<Integer>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine())!=null) {
+				line = line.trim();
+				if (line.length()==0)
+					continue;
+				int id = ActivityRegistry.getId(line);
+				if (id==ActivityRegistry.NONE)
+					throw new RuntimeException(file+": unknown activity '"+line+"'");
+				if (!ActivityRegistry.isSystemActivity(id))
+					ids.add(id);
+			}
+		} finally {
+			reader.close();
+		}
+		int[] sequence = new int[ids.size()];
+		for (int i=0; i<sequence.length; ++i)
+			sequence[i] = ids.get(i);
+		return sequence;
+	}
+
+	/**
+	 * @return
+	 * the index of the first classification after which the two differ, or -1 if none
+	 */
+	private static int replay(int[] sequence) {
+		MapAggregator mapAggregator = new MapAggregator();
+		Aggregator aggregator = new Aggregator();
+
+		for (int i=0; i<sequence.length; ++i) {
+			String name = ActivityRegistry.getName(sequence[i]);
+
+			boolean mapFailed = false, failed = false;
+			try {
+				mapAggregator.addClassification(name);
+			} catch (RuntimeException e) {
+				mapFailed = true;
+			}
+			try {
+				aggregator.addClassification(sequence[i]);
+			} catch (RuntimeException e) {
+				failed = true;
+			}
+			if (mapFailed!=failed) {
+				System.out.println("  "+name+": map aggregator "+(mapFailed?"failed":"succeeded")+
+						", aggregator "+(failed?"failed":"succeeded"));
+				return i;
+			}
+
+			String expected = mapAggregator.getClassification();
+			int activity = aggregator.getClassification();
+			String actual = activity==ActivityRegistry.NONE ? "" : ActivityRegistry.getName(activity);
+			if (!expected.equals(actual)) {
+				System.out.println("  after "+name+": map aggregator '"+expected+"', aggregator '"+actual+"'");
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void time(List<int[]> sequences) {
+		String[] names = new String[ActivityRegistry.size()];
+		for (int id=0; id<names.length; ++id)
+			names[id] = ActivityRegistry.getName(id);
+
+		long count = 0;
+		for (int[] sequence:sequences)
+			count += sequence.length;
+
+		double sink = 0.0;
+		for (int round=0; round<TIMING_ROUNDS; ++round) {
+			long start = System.nanoTime();
+			for (int[] sequence:sequences) {
+				MapAggregator mapAggregator = new MapAggregator();
+				for (int id:sequence) {
+					mapAggregator.addClassification(names[id]);
+					sink += mapAggregator.getClassification().length();
+				}
+			}
+			long mapTime = System.nanoTime()-start;
+
+			start = System.nanoTime();
+			for (int[] sequence:sequences) {
+				Aggregator aggregator = new Aggregator();
+				for (int id:sequence) {
+					aggregator.addClassification(id);
+					sink += aggregator.getClassification();
+				}
+			}
+			long arrayTime = System.nanoTime()-start;
+
+			System.out.printf("round %d: map aggregator %6.0f ns, aggregator %6.0f ns per classification%n",
+					round, (double)mapTime/count, (double)arrayTime/count);
+		}
+		System.out.printf("[checksum %.0f]%n", sink);
+	}
+
+	private static boolean isInHierarchy(int id) {
+		//	the activities both aggregators accept, i.e. those not below a leaf
+		return id!=ActivityRegistry.CHARGING_TRAVELLING;
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<int[]> sequences = new ArrayList<int[]>();
+		if (args.length>0) {
+			for (String arg:args)
+				sequences.add(readSequence(new File(arg)));
+		} else {
+			Random random = new Random(12345L);
+			int[] activities = getReplayedActivities();
+			for (int i=0; i<GENERATED_SEQUENCES; ++i)
+				sequences.add(generateSequence(random, activities));
+		}
+
+		long replayed = 0;
+		for (int s=0; s<sequences.size(); ++s) {
+			int[] sequence = sequences.get(s);
+			int differsAt = replay(sequence);
+			if (differsAt>=0) {
+				System.out.println("Sequence "+s+" differs at classification "+differsAt);
+				System.exit(2);
+			}
+			replayed += sequence.length;
+		}
+		System.out.println("Replayed "+sequences.size()+" sequences, "+replayed+
+				" classifications, with the same aggregated activities");
+
+		//	timed without the classifications both fail on
+		List<int[]> timed = new ArrayList<int[]>();
+		for (int[] sequence:sequences) {
+			int length = 0;
+			for (int id:sequence)
+				if (isInHierarchy(id))
+					++length;
+			int[] filtered = new int[length];
+			for (int i=0, j=0; i<sequence.length; ++i)
+				if (isInHierarchy(sequence[i]))
+					filtered[j++] = sequence[i];
+			timed.add(filtered);
+		}
+		time(timed);
+	}
+
+}
@@ -1,33 +1,320 @@
 package com.urremote.classifier.aggregator;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
 
-import com.urremote.classifier.common.ActivityNames;
-
-import android.content.Context;
+import com.urremote.classifier.common.ActivityRegistry;
+import com.urremote.classifier.db.ActivitiesTable;
+import com.urremote.classifier.rpc.Classification;
 
+/**
+ * Smooths the classifier's posteriors with a hidden Markov model, whose
+ * states are the classifier's labels, and whose observations are the
+ * classifier's posteriors of each batch.
+ *
+ * <p>
+ * The state probabilities are kept in log-space, and updated online with
+ * the forward algorithm (filtering), normalised after every batch so that
+ * they never underflow. When a lag is given, the most likely sequence of
+ * states is also kept with the Viterbi algorithm, with the back-pointers of
+ * only the last <code>lag</code> batches kept in a ring, and the activity
+ * output is the one on the most likely sequence, <code>lag</code> batches
+ * before the latest. Either way, each batch takes O(K^2) time, for K labels,
+ * and no memory is allocated after {@link #init(int[])}.
+ *
+ * <p>
+ * The transitions start with a fixed probability of staying in the same
+ * activity, and can be learnt from the activities saved, see
+ * {@link #learnTransitions(ActivitiesTable, long, long)}.
+ *
+ * <p>
+ * Batches classified without posteriors (see {@link #updateActivity(int)})
+ * are given a confident observation of the activity if it is one of the
+ * labels, otherwise (e.g. uncarried, unknown) the state is left untouched,
+ * and the activity is output as is.
+ *
+ * @author Umran
+ */
 public class HmmAggregator implements IAggregator {
-	
-	float[][] transitionProbNumerator;
-	float[][] transitionProbDenomenator;
 
-	public void init(Context context) {
-		Set<String> activities = ActivityNames.getAllActivities(context);
-		
-		int numberOfActivities = activities.size();
-		transitionProbNumerator = new float[numberOfActivities][numberOfActivities];
-		transitionProbDenomenator = new float[numberOfActivities][numberOfActivities];
+	//	posteriors are floored to this, so that a single batch can't rule out any activity
+	private static final double MIN_OBSERVATION = 1e-3;
+
+	//	the posterior given to the activity of batches classified without posteriors
+	private static final float HARD_OBSERVATION = 0.9f;
+
+	//	the number of transitions the default transition probabilities count as,
+	//		from each activity, when transitions are learnt
+	private static final double PRIOR_TRANSITION_COUNT = 10.0;
+
+	private final int lag;
+	private final double stayProbability;
+
+	private int numOfStates;
+	//	the activity id of each label
+	private int[] labelActivities;
+	//	the label of each activity id, or -1 if the activity isn't a label
+	private int[] activityLabels;
+
+	//	transitions counted, dimensions: from*numOfStates+to
+	private double[] transitionCounts;
+	//	log transition probabilities, dimensions: to*numOfStates+from
+	private double[] logTransitions;
+
+	//	log of the observation of the latest batch
+	private double[] logObservation;
+	//	buffer for the observation of batches classified without posteriors
+	private float[] hardObservation;
+
+	//	forward algorithm, the log probability of each state, normalised
+	private double[] logAlpha;
+	private double[] nextLogAlpha;
+
+	//	viterbi algorithm, the log probability of the most likely sequence ending in each state,
+	//		relative to the most likely one
+	private double[] logDelta;
+	private double[] nextLogDelta;
+	//	the previous state on the most likely sequence ending in each state, for the last lag batches,
+	//		dimensions: ringIndex*numOfStates+state
+	private int[] backPointers;
+	//	the ring index the next batch's back-pointers are written to
+	private int ringIndex;
+
+	//	the number of batches the state was updated with
+	private long numOfUpdates;
+
+	//	the activity of the latest batch, if it isn't a label, otherwise NONE
+	private int passThroughActivity;
+
+	/**
+	 * @param lag
+	 * the number of batches the output lags behind, 0 for forward filtering only,
+	 * see {@link com.urremote.classifier.common.Constants#HMM_SMOOTHING_LAG}
+	 *
+	 * @param stayProbability
+	 * the probability of staying in the same activity from one batch to the next,
+	 * before any transitions are learnt
+	 */
+	public HmmAggregator(int lag, double stayProbability) {
+		if (lag<0)
+			throw new IllegalArgumentException("Invalid smoothing lag: "+lag);
+		if (stayProbability<=0.0 || stayProbability>=1.0)
+			throw new IllegalArgumentException("Invalid stay probability: "+stayProbability);
+		this.lag = lag;
+		this.stayProbability = stayProbability;
+	}
+
+	public void init(int[] labelActivities) {
+		int k = labelActivities.length;
+		this.numOfStates = k;
+		this.labelActivities = labelActivities.clone();
+		this.activityLabels = new int[ActivityRegistry.size()];
+		Arrays.fill(this.activityLabels, -1);
+		for (int label=0; label<k; ++label)
+			this.activityLabels[labelActivities[label]] = label;
+
+		this.transitionCounts = new double[k*k];
+		this.logTransitions = new double[k*k];
+		this.logObservation = new double[k];
+		this.hardObservation = new float[k];
+		this.logAlpha = new double[k];
+		this.nextLogAlpha = new double[k];
+		this.logDelta = new double[k];
+		this.nextLogDelta = new double[k];
+		this.backPointers = new int[lag*k];
+
+		assignPriorCounts();
+		computeLogTransitions();
+		reset();
+	}
+
+	/**
+	 * Forgets the batches seen, without forgetting the transitions.
+	 */
+	public void reset() {
+		double logUniform = -Math.log(numOfStates);
+		Arrays.fill(logAlpha, logUniform);
+		Arrays.fill(logDelta, logUniform);
+		ringIndex = 0;
+		numOfUpdates = 0;
+		passThroughActivity = ActivityRegistry.NONE;
+	}
+
+	/**
+	 * Learns the transition probabilities from the activities saved, each saved
+	 * activity counts as one less self-transition than its number of batches, and
+	 * each pair of consecutive activities as a transition between them. Activities
+	 * that aren't labels (e.g. uncarried, charging, off) break the sequence. The
+	 * default transition probabilities are added as {@link #PRIOR_TRANSITION_COUNT}
+	 * transitions from each activity.
+	 *
+	 * @return
+	 * the number of transitions counted
+	 */
+	public long learnTransitions(ActivitiesTable activitiesTable, long start, long end) {
+		assignPriorCounts();
+
+		final long[] numOfTransitions = { 0 };
+		final int[] prevLabel = { -1 };
+		activitiesTable.loadAllBetween(start, end, new Classification(),
+				new ActivitiesTable.ClassificationDataCallback() {
+					public void onRetrieve(Classification classification) {
+						int activity = classification.getActivityId();
+						int label = activity!=ActivityRegistry.NONE ? activityLabels[activity] : -1;
+						if (label>=0) {
+							int stays = Math.max(0, classification.getNumberOfBatches()-1);
+							transitionCounts[label*numOfStates+label] += stays;
+							numOfTransitions[0] += stays;
+							if (prevLabel[0]>=0) {
+								transitionCounts[prevLabel[0]*numOfStates+label] += 1.0;
+								++numOfTransitions[0];
+							}
+						}
+						prevLabel[0] = label;
+					}
+				});
+
+		computeLogTransitions();
+		return numOfTransitions[0];
+	}
+
+	private void assignPriorCounts() {
+		int k = numOfStates;
+		double stay = k>1 ? stayProbability : 1.0;
+		double move = k>1 ? (1.0-stayProbability)/(k-1) : 0.0;
+		for (int from=0; from<k; ++from) {
+			for (int to=0; to<k; ++to) {
+				transitionCounts[from*k+to] = PRIOR_TRANSITION_COUNT * (from==to ? stay : move);
+			}
+		}
+	}
+
+	private void computeLogTransitions() {
+		int k = numOfStates;
+		for (int from=0; from<k; ++from) {
+			double total = 0.0;
+			for (int to=0; to<k; ++to)
+				total += transitionCounts[from*k+to];
+			double logTotal = Math.log(total);
+			for (int to=0; to<k; ++to)
+				logTransitions[to*k+from] = Math.log(transitionCounts[from*k+to]) - logTotal;
+		}
+	}
+
+	public void update(float[] posteriors) {
+		int k = numOfStates;
+		passThroughActivity = ActivityRegistry.NONE;
+
+		for (int state=0; state<k; ++state)
+			logObservation[state] = Math.log(Math.max(posteriors[state], MIN_OBSERVATION));
+
+		//	forward: alpha'[to] = obs[to] * sum(alpha[from] * a[from][to])
+		double logTotal = Double.NEGATIVE_INFINITY;
+		for (int to=0; to<k; ++to) {
+			int row = to*k;
+			double max = Double.NEGATIVE_INFINITY;
+			for (int from=0; from<k; ++from) {
+				double v = logAlpha[from] + logTransitions[row+from];
+				if (v>max)
+					max = v;
+			}
+			double sum = 0.0;
+			for (int from=0; from<k; ++from)
+				sum += Math.exp(logAlpha[from] + logTransitions[row+from] - max);
+			double v = logObservation[to] + max + Math.log(sum);
+			nextLogAlpha[to] = v;
+			logTotal = logSumExp(logTotal, v);
+		}
+		for (int state=0; state<k; ++state)
+			nextLogAlpha[state] -= logTotal;
+		double[] tmp = logAlpha;
+		logAlpha = nextLogAlpha;
+		nextLogAlpha = tmp;
+
+		if (lag>0) {
+			//	viterbi: delta'[to] = obs[to] * max(delta[from] * a[from][to])
+			int ringRow = ringIndex*k;
+			double best = Double.NEGATIVE_INFINITY;
+			for (int to=0; to<k; ++to) {
+				int row = to*k;
+				double max = Double.NEGATIVE_INFINITY;
+				int argMax = 0;
+				for (int from=0; from<k; ++from) {
+					double v = logDelta[from] + logTransitions[row+from];
+					if (v>max) {
+						max = v;
+						argMax = from;
+					}
+				}
+				double v = logObservation[to] + max;
+				nextLogDelta[to] = v;
+				backPointers[ringRow+to] = argMax;
+				if (v>best)
+					best = v;
+			}
+			for (int state=0; state<k; ++state)
+				nextLogDelta[state] -= best;
+			tmp = logDelta;
+			logDelta = nextLogDelta;
+			nextLogDelta = tmp;
+			ringIndex = (ringIndex+1)%lag;
+		}
+
+		++numOfUpdates;
+	}
+
+	public void updateActivity(int activity) {
+		int label = activity!=ActivityRegistry.NONE ? activityLabels[activity] : -1;
+		if (label<0) {
+			passThroughActivity = activity;
+			return;
+		}
+
+		int k = numOfStates;
+		float other = k>1 ? (1.0f-HARD_OBSERVATION)/(k-1) : 0.0f;
+		for (int state=0; state<k; ++state)
+			hardObservation[state] = state==label ? HARD_OBSERVATION : other;
+		update(hardObservation);
+	}
+
+	public int getActivity() {
+		if (passThroughActivity!=ActivityRegistry.NONE)
+			return passThroughActivity;
+		if (numOfUpdates==0)
+			return ActivityRegistry.NONE;
+
+		if (lag==0)
+			return labelActivities[argMax(logAlpha)];
+
+		//	backtrack from the most likely state of the latest batch, the first
+		//		batch's back-pointers point to the initial (uniform) state, hence aren't followed
+		int state = argMax(logDelta);
+		long steps = Math.min(lag, numOfUpdates-1);
+		int index = ringIndex;
+		for (long step=0; step<steps; ++step) {
+			index = (index+lag-1)%lag;
+			state = backPointers[index*numOfStates+state];
+		}
+		return labelActivities[state];
 	}
 
-	public void update(Map<String, Float> activityValues) {
-		
-		
-		
+	private static int argMax(double[] values) {
+		int best = 0;
+		for (int i=1; i<values.length; ++i) {
+			if (values[i]>values[best])
+				best = i;
+		}
+		return best;
 	}
 
-	public String getActivity() {
-		return null;
+	private static double logSumExp(double a, double b) {
+		if (a==Double.NEGATIVE_INFINITY)
+			return b;
+		if (b==Double.NEGATIVE_INFINITY)
+			return a;
+		if (a>b)
+			return a + Math.log1p(Math.exp(b-a));
+		else
+			return b + Math.log1p(Math.exp(a-b));
 	}
 
 }
@@ -1,13 +1,38 @@
 package com.urremote.classifier.aggregator;
 
-import java.util.Map;
-
-import android.content.Context;
-
+/**
+ * Smooths the classifier's output over consecutive batches, using the
+ * posterior of each label, as output by
+ * {@link com.urremote.classifier.classifier.Classifier#classify(float[], float[])}.
+ */
 public interface IAggregator {
 	
-	void init(Context context);
-	void update(Map<String, Float> activityValues);
-	String getActivity();
+	/**
+	 * @param labelActivities
+	 * the activity id of each of the classifier's labels,
+	 * see {@link com.urremote.classifier.common.ActivityRegistry}
+	 */
+	void init(int[] labelActivities);
+	
+	/**
+	 * @param posteriors
+	 * the posterior of each label of the latest batch, indexed by the label id,
+	 * only read during the call (the buffer is reused by the caller)
+	 */
+	void update(float[] posteriors);
+	
+	/**
+	 * @param activity
+	 * the activity id of the latest batch, which was classified without the
+	 * classifier's posteriors (e.g. by the cascade, or the calibrator)
+	 */
+	void updateActivity(int activity);
+	
+	/**
+	 * @return
+	 * the activity id of the smoothed classification,
+	 * or {@link com.urremote.classifier.common.ActivityRegistry#NONE} if none yet
+	 */
+	int getActivity();
 
 }
@@ -0,0 +1,36 @@
+package com.urremote.classifier.classifier;
+
+import com.urremote.classifier.common.ActivityRegistry;
+import com.urremote.classifier.utils.RunningStatistics;
+
+/**
+ * A cheap stage of the {@link ClassifierCascade}, which classifies
+ * a batch from the statistics of its unrotated samples, if it can
+ * do so with high confidence.
+ *
+ * <p>
+ * Stages are shared by the classifier's worker threads, hence should
+ * only be read from.
+ *
+ * @author Umran
+ */
+public interface CascadeStage {
+
+	/**
+	 * @return
+	 * the name of the stage, used when logging
+	 */
+	public abstract String getName();
+
+	/**
+	 * @param rawStatistics
+	 * the statistics of the batch's samples, before rotation
+	 *
+	 * @return
+	 * the id of the activity of the batch (see {@link ActivityRegistry}),
+	 * or {@link ActivityRegistry#NONE} if the batch should be passed on
+	 * to the next stage
+	 */
+	public abstract int classify(RunningStatistics rawStatistics);
+
+}
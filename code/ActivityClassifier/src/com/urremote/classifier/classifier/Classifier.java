@@ -1,11 +1,10 @@
 package com.urremote.classifier.classifier;
 
-import java.util.Map.Entry;
-import java.util.Set;
+import com.urremote.classifier.model.ClassifierModel;
 
 public interface Classifier {
 
-	public abstract void setModel(final Set<Entry<Float[], Object[]>> model);
+	public abstract void setModel(final ClassifierModel model);
 	
 	/**
 	 * Extracts required features and uses an algorithm to classify the data
@@ -16,5 +15,63 @@ public interface Classifier {
 	 * @return best classification name
 	 */
 	public abstract String classify(final float[] extractedData);
+	
+	/**
+	 * Classifies the features, as {@link #classify(float[])}, and saves the
+	 * posterior probability of each label in the buffer given, so that
+	 * later stages (e.g. an {@link com.urremote.classifier.aggregator.IAggregator})
+	 * can use the classifier's confidence without allocating anything.
+	 * 
+	 * @param outPosteriors
+	 * an array of at least {@link #getNumOfLabels()} floats, indexed by the label id,
+	 * the posteriors saved sum to 1, or are all 0 if the features can't be classified
+	 * 
+	 * @return
+	 * the id of the most likely label, or -1 if the features can't be classified
+	 */
+	public abstract int classify(final float[] extractedData, float[] outPosteriors);
+	
+	/**
+	 * @return
+	 * the number of labels (activities) of the model, i.e. the number of
+	 * posteriors of each sample classified by {@link #classifyBatch(float[], int, int, int[], float[])}
+	 */
+	public abstract int getNumOfLabels();
+	
+	/**
+	 * @return
+	 * the name of the label (activity) with the id given,
+	 * i.e. the model's label names, see {@link ClassifierModel#getLabelNames()}
+	 */
+	public abstract String getLabelName(int label);
+	
+	/**
+	 * Classifies a range of samples at once, e.g. a backlog of batches, or features
+	 * stored earlier. The features are row-major (as in {@link ClassifierModel}),
+	 * i.e. the f-th feature of the s-th sample is at <code>s*numOfFeatures+f</code>.
+	 * 
+	 * <p>
+	 * Unlike {@link #classify(float[])}, may be called concurrently, for example
+	 * with different ranges of the same arrays from different threads.
+	 * 
+	 * @param features
+	 * the features of the samples
+	 * 
+	 * @param start
+	 * the first sample to classify
+	 * 
+	 * @param count
+	 * the number of samples to classify
+	 * 
+	 * @param outLabels
+	 * the label id of each sample is saved here, at the sample's index,
+	 * or -1 if the sample can't be classified (see {@link #getLabelName(int)})
+	 * 
+	 * @param outScores
+	 * if not null, the posterior probability of each label for each sample is saved here,
+	 * at <code>s*getNumOfLabels()+label</code>, as by {@link #classify(float[], float[])},
+	 * i.e. the posteriors of each sample sum to 1, or are all 0 if the sample can't be classified
+	 */
+	public abstract void classifyBatch(final float[] features, int start, int count, int[] outLabels, float[] outScores);
 
 }
\ No newline at end of file
@@ -0,0 +1,146 @@
+package com.urremote.classifier.classifier;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.urremote.classifier.common.ActivityRegistry;
+import com.urremote.classifier.utils.RunningStatistics;
+
+/**
+ * Passes batches through a series of cheap {@link CascadeStage}s, each
+ * computed from the statistics of the unrotated samples, before the full
+ * classification (rotation, features and classifier). A batch exits the
+ * cascade at the first stage that classifies it, hence only the batches
+ * that none of the cheap stages are confident about reach the full
+ * classification.
+ *
+ * <p>
+ * The number of batches leaving at each stage, and the time spent in each
+ * stage are counted, from which the time saved by the cheap stages is estimated,
+ * i.e. the mean time of the full classification for each batch that exited early,
+ * less the time spent in the cheap stages.
+ *
+ * <p>
+ * Shared by the classifier's worker threads.
+ *
+ * @author Umran
+ */
+public class ClassifierCascade {
+
+	private final CascadeStage[] stages;
+
+	//	per cheap stage
+	private final AtomicLong[] exitCounts;
+	private final AtomicLong[] stageNanos;
+
+	//	the full classification
+	private final AtomicLong fullCount = new AtomicLong();
+	private final AtomicLong fullNanos = new AtomicLong();
+
+	public ClassifierCascade(CascadeStage[] stages) {
+		this.stages = stages.clone();
+		this.exitCounts = new AtomicLong[stages.length];
+		this.stageNanos = new AtomicLong[stages.length];
+		for (int i=0; i<stages.length; ++i) {
+			this.exitCounts[i] = new AtomicLong();
+			this.stageNanos[i] = new AtomicLong();
+		}
+	}
+
+	/**
+	 * Passes the batch through the cheap stages.
+	 *
+	 * @param rawStatistics
+	 * the statistics of the batch's samples, before rotation
+	 *
+	 * @return
+	 * the id of the activity of the batch, or {@link ActivityRegistry#NONE}
+	 * if the batch requires the full classification, in which case {@link #addFullClassificationTime(long)}
+	 * should be called once the batch is classified
+	 */
+	public int classify(RunningStatistics rawStatistics) {
+		for (int i=0; i<stages.length; ++i) {
+			long start = System.nanoTime();
+			int classification = stages[i].classify(rawStatistics);
+			stageNanos[i].addAndGet(System.nanoTime()-start);
+			if (classification!=ActivityRegistry.NONE) {
+				exitCounts[i].incrementAndGet();
+				return classification;
+			}
+		}
+		return ActivityRegistry.NONE;
+	}
+
+	/**
+	 * @param nanos
+	 * the time taken by the full classification of a batch that
+	 * passed through all the cheap stages
+	 */
+	public void addFullClassificationTime(long nanos) {
+		fullCount.incrementAndGet();
+		fullNanos.addAndGet(nanos);
+	}
+
+	public int getStageCount() {
+		return stages.length;
+	}
+
+	public String getStageName(int stage) {
+		return stages[stage].getName();
+	}
+
+	/**
+	 * @return
+	 * the number of batches classified by the given cheap stage
+	 */
+	public long getExitCount(int stage) {
+		return exitCounts[stage].get();
+	}
+
+	/**
+	 * @return
+	 * the number of batches that required the full classification
+	 */
+	public long getFullCount() {
+		return fullCount.get();
+	}
+
+	/**
+	 * @return
+	 * the estimated time saved by the cheap stages (in ns)
+	 */
+	public long getSavedNanos() {
+		long full = fullCount.get();
+		if (full==0)
+			return 0;
+
+		long meanFullNanos = fullNanos.get() / full;
+		long saved = 0;
+		for (int i=0; i<stages.length; ++i) {
+			saved += exitCounts[i].get() * meanFullNanos;
+			saved -= stageNanos[i].get();
+		}
+		return saved;
+	}
+
+	/**
+	 * @return
+	 * the exit rate of each stage, and the time saved, for logging
+	 */
+	public String getSummary() {
+		long total = fullCount.get();
+		for (int i=0; i<stages.length; ++i)
+			total += exitCounts[i].get();
+
+		StringBuilder builder = new StringBuilder("Cascade exits:");
+		for (int i=0; i<stages.length; ++i) {
+			long count = exitCounts[i].get();
+			builder.append(String.format(" %s %d (%.1f%%),", stages[i].getName(), count,
+					total>0 ? count*100.0/total : 0.0));
+		}
+		long full = fullCount.get();
+		builder.append(String.format(" full %d (%.1f%%), saved %.1fms",
+				full, total>0 ? full*100.0/total : 0.0, getSavedNanos()/1000000.0));
+		return builder.toString();
+	}
+
+}
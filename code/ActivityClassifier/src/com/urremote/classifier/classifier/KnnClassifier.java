@@ -22,23 +22,9 @@
 
 package com.urremote.classifier.classifier;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
-
 import com.urremote.classifier.common.ActivityNames;
-import com.urremote.classifier.common.Constants;
-import com.urremote.classifier.common.StringComparator;
-import com.urremote.classifier.utils.CalcStatistics;
-import com.urremote.classifier.utils.FeatureExtractor;
-
-import android.util.Log;
+import com.urremote.classifier.model.ClassifierModel;
+import com.urremote.classifier.utils.RunningStatistics;
 
 /**
  * Extracts basic features and applies a K-Nearest Network algorithm to an
@@ -46,20 +32,49 @@ import android.util.Log;
  * of two interleaved data sets, and each set has two features extracted -
  * the range and the mean.
  * 
+ * <p>
+ * The features are normalised to z-scores, using the mean and standard
+ * deviation of each feature over the whole model, so that features with
+ * larger ranges don't dominate the distances. The normalised model samples
+ * are kept in a KD-tree, built when the model is set, and the K nearest
+ * samples are kept in a bounded max-heap while searching the tree, hence
+ * most of the model samples are never compared with.
+ * 
+ * <p>
+ * The KD-tree is implicit: the samples are reordered so that each node is
+ * the median of its range of samples, along the dimension of the largest
+ * spread in the range, with the samples before it (in the same range) on one
+ * side, and those after it on the other. Ranges of {@link #LEAF_SIZE} samples
+ * or less are searched linearly.
+ * 
  * @author chris
  */
 public class KnnClassifier implements Classifier {
 	
-    private Set<Map.Entry<Float[], Object[]>> model;
+	//	ranges of samples this size or smaller aren't split any further
+	private static final int LEAF_SIZE = 8;
 	
 	private int kValue;
-    
-    //	the distances of each of the samples found in the model to the newly sampled data
-    private ClassificationDist[] distances;
-    //	a comparator that compares between two ClassificationDist instances
-    private ClassificationDistComparator distanceComparator = new ClassificationDistComparator();
-    //	used to obtain the counts of different activities within the K-nearest neighbours in the KNN
-    private Map<String,Integer> activityCounts = new TreeMap<String,Integer>(StringComparator.CASE_INSENSITIVE_INSTANCE);
+	
+	private int numOfFeatures;
+	private int numOfSamples;
+	private String[] activityNames;
+	
+	//	the mean and standard deviation of each feature, used to normalise
+	private float[] featureMeans;
+	private float[] featureInvSds;
+	
+	//	the normalised model samples, in tree order, dimensions: sample*numOfFeatures+feature
+	private float[] samples;
+	//	the activity of each sample, in tree order
+	private int[] sampleActivities;
+	//	the dimension each node (i.e. the median of each range) splits its range along
+	private int[] splitDims;
+	
+	//	used by classify
+	private Search search;
+	//	used by classifyBatch, one per calling thread, replaced with the model
+	private ThreadLocal<Search> batchSearches;
     
     /**
      * Set the clustered data set for classification.
@@ -69,140 +84,341 @@ public class KnnClassifier implements Classifier {
 		this.kValue = kValue;
     }
 
-	public void setModel(final Set<Entry<Float[], Object[]>> model) {
-		//	statistics about each feature selected
-		Map<String,CalcStatistics> activityFeatureStatistics;
-
-		activityFeatureStatistics = new TreeMap<String,CalcStatistics>(StringComparator.CASE_INSENSITIVE_INSTANCE);
+	public void setModel(final ClassifierModel model) {
+		int numOfFeatures = model.getNumOfFeatures();
+		int numOfSamples = model.getNumOfSamples();
+		int numOfActivities = model.getNumOfLabels();
 		
-		int numOfFeatures = Integer.MAX_VALUE;
+		//	statistics about each feature selected, per activity
+		RunningStatistics[] activityFeatureStatistics = new RunningStatistics[numOfActivities];
+		for (int a=0; a<numOfActivities; ++a) {
+			activityFeatureStatistics[a] = new RunningStatistics(numOfFeatures);
+		}
+		
+		//	the samples are normalised in a copy of the model's features
+		float[] samples = model.getFeatureMatrix().clone();
+		int[] sampleActivities = new int[numOfSamples];
 		
-		for (Entry<Float[],Object[]> entry:model) {
-			if (entry.getKey().length<numOfFeatures) {
-				numOfFeatures = entry.getKey().length;
+		{
+			float[] sampleData = new float[numOfFeatures];
+			for (int s=0; s<numOfSamples; ++s) {
+				model.getFeatures(s, sampleData);
+				sampleActivities[s] = model.getLabel(s);
+				activityFeatureStatistics[sampleActivities[s]].add(sampleData);
 			}
 		}
 		
-		if (numOfFeatures==0 || numOfFeatures==Integer.MAX_VALUE)
-			throw new RuntimeException("Unable to determine number of features, either no features, or no data");
-
-		for (Entry<Float[], Object[]> sample:model) {
-			String activity = (String)sample.getValue()[0];
-			if (!activityFeatureStatistics.containsKey(activity)) {
-				activityFeatureStatistics.put(activity, new CalcStatistics(numOfFeatures));
+		//	the statistics of the whole model, from those of each activity
+		RunningStatistics modelStatistics = new RunningStatistics(numOfFeatures);
+		for (RunningStatistics statistics:activityFeatureStatistics) {
+			modelStatistics.merge(statistics);
+		}
+		
+		float[] featureMeans = modelStatistics.getMean().clone();
+		float[] featureInvSds = new float[numOfFeatures];
+		float[] featureSds = modelStatistics.getPopStandardDeviation();
+		for (int f=0; f<numOfFeatures; ++f) {
+			featureInvSds[f] = featureSds[f]>0.0f ? 1.0f/featureSds[f] : 1.0f;
+		}
+		
+		for (int s=0, i=0; s<numOfSamples; ++s) {
+			for (int f=0; f<numOfFeatures; ++f, ++i) {
+				samples[i] = (samples[i] - featureMeans[f]) * featureInvSds[f];
 			}
 		}
-
-		for (String activity:activityFeatureStatistics.keySet()) {
-			CalcStatistics features = activityFeatureStatistics.get(activity);
-
-			ArrayList<float[]> featureData = new ArrayList<float[]>(model.size());
-			for (Entry<Float[], Object[]> sample:model) {
-				String activityName = (String)sample.getValue()[0];
-				if (activity.equalsIgnoreCase(activityName)) {
-					Float[] origSampleData = sample.getKey();
-					float[] sampleData = new float[origSampleData.length];
-					for (int i=0; i<origSampleData.length; ++i)
-						sampleData[i] = origSampleData[i];
-					featureData.add(sampleData);
-				}
+		
+		this.numOfFeatures = numOfFeatures;
+		this.numOfSamples = numOfSamples;
+		this.activityNames = model.getLabelNames();
+		this.featureMeans = featureMeans;
+		this.featureInvSds = featureInvSds;
+		this.samples = samples;
+		this.sampleActivities = sampleActivities;
+		this.splitDims = new int[numOfSamples];
+		buildTree(0, numOfSamples);
+		
+		this.search = new Search();
+		this.batchSearches = new ThreadLocal<Search>() {
+			@Override
+			protected Search initialValue() {
+				return new Search();
+			}
+		};
+	}
+	
+	/**
+	 * Reorders the samples in the range given into a KD-tree.
+	 */
+	private void buildTree(int start, int end) {
+		if (end-start<=LEAF_SIZE)
+			return;
+		
+		//	split along the dimension of the largest spread
+		int splitDim = 0;
+		float largestSpread = Float.NEGATIVE_INFINITY;
+		for (int f=0; f<numOfFeatures; ++f) {
+			float min = Float.POSITIVE_INFINITY;
+			float max = Float.NEGATIVE_INFINITY;
+			for (int s=start; s<end; ++s) {
+				float val = samples[s*numOfFeatures+f];
+				if (val<min)
+					min = val;
+				if (val>max)
+					max = val;
+			}
+			if (max-min>largestSpread) {
+				largestSpread = max-min;
+				splitDim = f;
 			}
-
-			features.assign(featureData.toArray(new float[featureData.size()][]), featureData.size());
 		}
-
-        this.model = model;
-        
-        this.distances = new ClassificationDist[model.size()];
-        for (int i=0; i<model.size(); ++i)
-        	this.distances[i] = new ClassificationDist();
+		
+		int median = (start+end) >>> 1;
+		selectNth(start, end, median, splitDim);
+		splitDims[median] = splitDim;
+		
+		buildTree(start, median);
+		buildTree(median+1, end);
 	}
 	
+	/**
+	 * Reorders the samples in the range given, so that the n-th sample is the
+	 * one that would be there if the range was sorted along the given dimension,
+	 * with the samples before it no larger, and the samples after it no smaller.
+	 */
+	private void selectNth(int start, int end, int nth, int dim) {
+		int lo = start;
+		int hi = end-1;
+		while (lo<hi) {
+			float pivot = samples[((lo+hi) >>> 1)*numOfFeatures+dim];
+			int i = lo;
+			int j = hi;
+			while (i<=j) {
+				while (samples[i*numOfFeatures+dim]<pivot)
+					++i;
+				while (samples[j*numOfFeatures+dim]>pivot)
+					--j;
+				if (i<=j) {
+					swapSamples(i, j);
+					++i;
+					--j;
+				}
+			}
+			if (nth<=j)
+				hi = j;
+			else if (nth>=i)
+				lo = i;
+			else
+				break;
+		}
+	}
 	
+	private void swapSamples(int a, int b) {
+		if (a==b)
+			return;
+		for (int f=0, ia=a*numOfFeatures, ib=b*numOfFeatures; f<numOfFeatures; ++f, ++ia, ++ib) {
+			float temp = samples[ia];
+			samples[ia] = samples[ib];
+			samples[ib] = temp;
+		}
+		int temp = sampleActivities[a];
+		sampleActivities[a] = sampleActivities[b];
+		sampleActivities[b] = temp;
+	}
 
     /* (non-Javadoc)
 	 * @see com.urremote.classifier.classifier.Classifier#classifyRotated(float[][])
 	 */
 	synchronized
     public String classify(final float[] extractedData) {
-    	return internClassify(extractedData);
+    	int best = search.classify(extractedData, 0, null, 0);
+    	
+    	if (best<0)
+    		return ActivityNames.UNKNOWN;
+    	else
+    		return activityNames[best];
     }
     
-    private String internClassify(float[] features) {
-    	float temp;
-    	
-        /*
-         *  Compare between the points from the sample data and the points from the clustered data set.
-         *  Get the closest points in the clustered data set, and classify the activity.
-         */
-        //	TODO: This doesn't have to be iterative (linear). It can be optimized using windows
-        //			to cut out most of the checking.
-    	
-    	{	// compute distances
-	        int i = 0;
-	        
-	        for (Map.Entry<Float[], Object[]> entry : model) {
-	        	Object[] values = entry.getValue();
-	        	String activity = (String)values[0];
-	        	Integer identity = (Integer)values[1];
-	        	Float[] activityFeatures = entry.getKey();
-	        	
-	            float distance = 0;
-	
-	            for (int f = 0; f < features.length; f++) {
-					temp = features[f] - activityFeatures[f];
-					distance += temp*temp;
-				}
-	            
-	            distances[i].classification = activity;
-	            distances[i].distance = distance;
-	            distances[i].entry = entry;
-	            ++i;
-	        }
+    /**
+     * The posteriors are the fraction of the K nearest samples of each activity.
+     */
+	synchronized
+    public int classify(final float[] extractedData, float[] outPosteriors) {
+    	return search.classify(extractedData, 0, outPosteriors, 0);
+    }
+    
+    /**
+     * The posteriors are the fraction of the K nearest samples of each activity,
+     * as in {@link #classify(float[], float[])}.
+     */
+    public void classifyBatch(final float[] features, int start, int count, int[] outLabels, float[] outScores) {
+    	//	each thread searches with its own heap, so calls can run concurrently
+    	Search search = batchSearches.get();
+    	for (int s=start, end=start+count; s<end; ++s) {
+    		outLabels[s] = search.classify(features, s*numOfFeatures, outScores, s*activityNames.length);
     	}
-    	
-    	// sort distances
-        Arrays.sort(distances, distanceComparator);
-        activityCounts.clear();
-
-        String bestActivity = "UNKNOWN";
-        int bestCount = 0;
-        
-        for (int l = model.size(), i=0; i<kValue && i<l; ++i) {
-        	Integer count = activityCounts.get(distances[i].classification);
-        	if (count==null)
-        		count = 0;
-        	count = count + 1;
-        	activityCounts.put(distances[i].classification, count);
-        	
-        	if (count>bestCount) {
-        		bestCount = count;
-        		bestActivity = distances[i].classification;
-        	}
-        }
-        
-
-        return bestActivity;
     }
     
-    private static class ClassificationDist {
-    	String classification;
-    	float distance;
-    	Map.Entry<Float[], Object[]> entry;
-    	
-		public ClassificationDist() {
-			this.classification = "";
-			this.distance = 0.0f;
-			this.entry = null;
-		}
-
+    public int getNumOfLabels() {
+    	return activityNames.length;
     }
     
-    private static class ClassificationDistComparator implements Comparator<ClassificationDist> {
-
-		public int compare(ClassificationDist arg0, ClassificationDist arg1) {
-			return Double.compare(arg0.distance, arg1.distance);
-		}
+    public String getLabelName(int label) {
+    	return activityNames[label];
+    }
+    
+    /**
+     * The state of a search of the tree, i.e. the normalised query and
+     * the K nearest samples found.
+     */
+    private class Search {
+    	
+    	private final float[] query;
+    	//	bounded max-heap of the K nearest samples found so far
+    	private final float[] heapDistances;
+    	private final int[] heapActivities;
+    	private int heapSize;
+    	//	used to obtain the counts of different activities within the K-nearest neighbours in the KNN
+    	private final int[] activityCounts;
+    	
+    	Search() {
+    		this.query = new float[numOfFeatures];
+    		this.heapDistances = new float[kValue];
+    		this.heapActivities = new int[kValue];
+    		this.activityCounts = new int[activityNames.length];
+    	}
+    	
+    	/**
+    	 * @param outScores
+    	 * if not null, the fraction of the neighbours of each activity is saved here,
+    	 * starting at <code>scoresOffset</code>
+    	 * 
+    	 * @return
+    	 * the activity of most of the K nearest samples, or -1 if none
+    	 */
+    	int classify(float[] features, int offset, float[] outScores, int scoresOffset) {
+    		for (int f=0; f<numOfFeatures; ++f) {
+    			query[f] = (features[offset+f] - featureMeans[f]) * featureInvSds[f];
+    		}
+    		
+    		heapSize = 0;
+    		if (kValue>0)
+    			searchTree(0, numOfSamples);
+    		
+    		//	sort the neighbours found, nearest first, in place of the heap
+    		for (int i=heapSize-1; i>0; --i) {
+    			float distance = heapDistances[0];
+    			int activity = heapActivities[0];
+    			heapDistances[0] = heapDistances[i];
+    			heapActivities[0] = heapActivities[i];
+    			heapDistances[i] = distance;
+    			heapActivities[i] = activity;
+    			siftDown(0, i);
+    		}
+    		
+    		for (int a=0; a<activityCounts.length; ++a)
+    			activityCounts[a] = 0;
+    		
+    		int bestActivity = -1;
+    		int bestCount = 0;
+    		
+    		for (int i=0; i<heapSize; ++i) {
+    			int activity = heapActivities[i];
+    			int count = ++activityCounts[activity];
+    			
+    			if (count>bestCount) {
+    				bestCount = count;
+    				bestActivity = activity;
+    			}
+    		}
+    		
+    		if (outScores!=null) {
+    			float scale = heapSize>0 ? 1.0f/heapSize : 0.0f;
+    			for (int a=0; a<activityCounts.length; ++a)
+    				outScores[scoresOffset+a] = activityCounts[a]*scale;
+    		}
+    		
+    		return bestActivity;
+    	}
+    	
+    	/**
+    	 * Adds the nearest samples in the range given (a subtree) to the heap.
+    	 */
+    	private void searchTree(int start, int end) {
+    		if (end-start<=LEAF_SIZE) {
+    			for (int s=start; s<end; ++s)
+    				offer(s);
+    			return;
+    		}
+    		
+    		int median = (start+end) >>> 1;
+    		int splitDim = splitDims[median];
+    		float diff = query[splitDim] - samples[median*numOfFeatures+splitDim];
+    		
+    		//	search the side of the query first, then the other side,
+    		//		only if it could have samples nearer than the K-th nearest so far
+    		if (diff<0.0f) {
+    			searchTree(start, median);
+    			offer(median);
+    			if (heapSize<kValue || diff*diff<heapDistances[0])
+    				searchTree(median+1, end);
+    		} else {
+    			searchTree(median+1, end);
+    			offer(median);
+    			if (heapSize<kValue || diff*diff<heapDistances[0])
+    				searchTree(start, median);
+    		}
+    	}
+    	
+    	/**
+    	 * Adds the sample to the heap, if it is one of the nearest K so far.
+    	 */
+    	private void offer(int sample) {
+    		float distance = 0.0f;
+    		float temp;
+    		for (int f=0, i=sample*numOfFeatures; f<numOfFeatures; ++f, ++i) {
+    			temp = query[f] - samples[i];
+    			distance += temp*temp;
+    		}
+    		
+    		if (heapSize<kValue) {
+    			//	sift up
+    			int i = heapSize++;
+    			while (i>0) {
+    				int parent = (i-1) >> 1;
+    				if (heapDistances[parent]>=distance)
+    					break;
+    				heapDistances[i] = heapDistances[parent];
+    				heapActivities[i] = heapActivities[parent];
+    				i = parent;
+    			}
+    			heapDistances[i] = distance;
+    			heapActivities[i] = sampleActivities[sample];
+    		} else if (distance<heapDistances[0]) {
+    			heapDistances[0] = distance;
+    			heapActivities[0] = sampleActivities[sample];
+    			siftDown(0, heapSize);
+    		}
+    	}
+    	
+    	private void siftDown(int i, int size) {
+    		float distance = heapDistances[i];
+    		int activity = heapActivities[i];
+    		while (true) {
+    			int child = 2*i+1;
+    			if (child>=size)
+    				break;
+    			if (child+1<size && heapDistances[child+1]>heapDistances[child])
+    				++child;
+    			if (heapDistances[child]<=distance)
+    				break;
+    			heapDistances[i] = heapDistances[child];
+    			heapActivities[i] = heapActivities[child];
+    			i = child;
+    		}
+    		heapDistances[i] = distance;
+    		heapActivities[i] = activity;
+    	}
     	
     }
+    
 }
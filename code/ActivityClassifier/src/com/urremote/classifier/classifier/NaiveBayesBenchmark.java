@@ -0,0 +1,201 @@
+package com.urremote.classifier.classifier;
+
+import java.io.File;
+import java.util.Random;
+
+import com.urremote.classifier.model.ClassifierModel;
+import com.urremote.classifier.model.ModelConverter;
+
+/**
+ * Checks that the log domain {@link NaiveBayesClassifier} picks the same
+ * activities as the linear domain classifier it replaced (kept here as
+ * {@link LinearNaiveBayes}), on the serialised models of <code>res/raw</code>,
+ * and compares how long each takes.
+ *
+ * <p>
+ * Each model's own samples are classified, as well as copies of them with
+ * some noise added, so that samples between the classes are also covered.
+ * The linear classifier multiplies the densities, which underflow far from
+ * the means, after which it clamps them to {@link Float#MIN_VALUE}, hence its
+ * choice is arbitrary once the product of the best activity underflows to 0
+ * (or ties with another). Features with a variance of 0 (some of the models
+ * have features that are always 0) make its densities NaN, hence it can't classify
+ * anything with such a model, while the log domain classifier keeps the variances
+ * above a minimum. These samples are counted separately, and only the samples it
+ * classifies without underflowing have to match.
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path), from the
+ * project's directory, e.g.:
+ * <pre>
+ *	java com.urremote.classifier.classifier.NaiveBayesBenchmark res/raw/new_basic_model res/raw/basic_model
+ * </pre>
+ *
+ * @author Umran
+ */
+public class NaiveBayesBenchmark {
+
+	private static final String[] DEFAULT_MODELS = {
+		"res/raw/basic_model",
+		"res/raw/basic_model_filtered_wsr",
+		"res/raw/basic_model_filtered_wsrc",
+		"res/raw/basic_model_filtered_wts",
+		"res/raw/basic_model_notfiltered_wts",
+		"res/raw/basic_model_with_running",
+		"res/raw/new_basic_model",
+	};
+
+	private static final int NOISY_COPIES = 4;
+	private static final int ROUNDS = 5;
+
+	/**
+	 * The classifier as it was before moving to the log domain, computing
+	 * the normal densities on every call, and multiplying them.
+	 */
+	private static class LinearNaiveBayes {
+		private final int numOfActivities;
+		private final int numOfFeatures;
+		private final float[] means;
+		private final float[] vars;
+		private final float prior;
+		//	the posterior of the last activity chosen
+		float bestPosterior;
+		//	whether the best posterior was shared with another activity
+		boolean tied;
+
+		LinearNaiveBayes(ClassifierModel model) {
+			this.numOfActivities = model.getNumOfLabels();
+			this.numOfFeatures = model.getNumOfFeatures();
+			this.means = model.getClassMeans();
+			this.vars = model.getClassVariances();
+			this.prior = 1.0f / numOfActivities;
+		}
+
+		int classify(float[] data) {
+			int best = -1;
+			float bestValue = Float.NEGATIVE_INFINITY;
+			tied = false;
+			for (int a = 0; a < numOfActivities; ++a) {
+				float posterior = prior;
+				for (int f = 0; f < numOfFeatures; ++f)
+					posterior *= computeProbFeatureClass(a, f, data);
+				if (posterior > bestValue) {
+					bestValue = posterior;
+					best = a;
+					tied = false;
+				} else if (posterior == bestValue) {
+					tied = true;
+				}
+			}
+			bestPosterior = bestValue;
+			return best;
+		}
+
+		private float computeProbFeatureClass(int activity, int featureClass, float[] data) {
+			float mean = means[activity*numOfFeatures+featureClass];
+			float var = vars[activity*numOfFeatures+featureClass];
+			float value = data[featureClass];
+
+			float val = (float) ((1.0 / (Math.sqrt(2.0 * Math.PI * var))) * Math
+					.exp(-((value - mean) * (value - mean)) / (2 * var)));
+
+			if (val == 0.0f)
+				val = Float.MIN_VALUE;
+			else if (Float.isInfinite(val))
+				val = Float.MAX_VALUE;
+
+			return val;
+		}
+	}
+
+	/**
+	 * @return
+	 * the samples of the model, followed by noisy copies of them, row-major
+	 */
+	private static float[] createSamples(ClassifierModel model, Random random) {
+		float[] original = model.getFeatureMatrix();
+		int numOfFeatures = model.getNumOfFeatures();
+		float[] variances = model.getClassVariances();
+		int[] labels = model.getLabels();
+		float[] samples = new float[original.length*(1+NOISY_COPIES)];
+
+		System.arraycopy(original, 0, samples, 0, original.length);
+		for (int c = 1, i = original.length; c <= NOISY_COPIES; ++c) {
+			for (int s = 0; s < model.getNumOfSamples(); ++s) {
+				for (int f = 0; f < numOfFeatures; ++f, ++i) {
+					//	noise of up to twice the class's standard deviation
+					float sd = (float)Math.sqrt(Math.max(0.0f, variances[labels[s]*numOfFeatures+f]));
+					samples[i] = original[s*numOfFeatures+f] + c*0.5f*sd*(float)random.nextGaussian();
+				}
+			}
+		}
+		return samples;
+	}
+
+	private static boolean compare(File file, Random random) throws Exception {
+		ClassifierModel model = ModelConverter.readSerialised(file);
+		int numOfFeatures = model.getNumOfFeatures();
+
+		NaiveBayesClassifier logClassifier = new NaiveBayesClassifier();
+		logClassifier.setModel(model);
+		LinearNaiveBayes linearClassifier = new LinearNaiveBayes(model);
+
+		float[] samples = createSamples(model, random);
+		int numOfSamples = samples.length/numOfFeatures;
+		float[] sample = new float[numOfFeatures];
+		int matched = 0, underflowed = 0, undefined = 0, mismatched = 0;
+
+		for (int s = 0; s < numOfSamples; ++s) {
+			System.arraycopy(samples, s*numOfFeatures, sample, 0, numOfFeatures);
+			int linear = linearClassifier.classify(sample);
+			int log = logClassifier.computeLogPosteriors(sample, null);
+			if (linear < 0) {
+				++undefined;
+			} else if (linearClassifier.tied || !(linearClassifier.bestPosterior > Float.MIN_VALUE)) {
+				++underflowed;
+			} else if (linear == log) {
+				++matched;
+			} else {
+				++mismatched;
+				if (mismatched <= 5)
+					System.out.println("  sample "+s+": linear="+model.getLabelName(linear)+
+							", log="+model.getLabelName(log));
+			}
+		}
+
+		double sink = 0.0;
+		long linearTime = Long.MAX_VALUE, logTime = Long.MAX_VALUE;
+		for (int round = 0; round < ROUNDS; ++round) {
+			long start = System.nanoTime();
+			for (int s = 0; s < numOfSamples; ++s) {
+				System.arraycopy(samples, s*numOfFeatures, sample, 0, numOfFeatures);
+				sink += linearClassifier.classify(sample);
+			}
+			linearTime = Math.min(linearTime, System.nanoTime()-start);
+
+			start = System.nanoTime();
+			for (int s = 0; s < numOfSamples; ++s) {
+				System.arraycopy(samples, s*numOfFeatures, sample, 0, numOfFeatures);
+				sink += logClassifier.computeLogPosteriors(sample, null);
+			}
+			logTime = Math.min(logTime, System.nanoTime()-start);
+		}
+
+		System.out.printf("%s: %d labels, %d samples, %d match, %d differ, in the linear domain %d underflowed " +
+				"and %d were NaN; linear %.0f ns/sample, log %.0f ns/sample [checksum %.0f]%n",
+				file.getName(), model.getNumOfLabels(), numOfSamples, matched, mismatched, underflowed, undefined,
+				(double)linearTime/numOfSamples, (double)logTime/numOfSamples, sink);
+		return mismatched == 0;
+	}
+
+	public static void main(String[] args) throws Exception {
+		String[] models = args.length>0 ? args : DEFAULT_MODELS;
+		Random random = new Random(12345L);
+		boolean ok = true;
+		for (String model:models)
+			ok &= compare(new File(model), random);
+		if (!ok)
+			System.exit(2);
+	}
+
+}
@@ -1,180 +1,303 @@
 package com.urremote.classifier.classifier;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import com.urremote.classifier.common.ActivityNames;
 import com.urremote.classifier.common.Constants;
-import com.urremote.classifier.common.StringComparator;
-import com.urremote.classifier.db.ActivitiesTable;
-import com.urremote.classifier.utils.CalcStatistics;
-import com.urremote.classifier.utils.FeatureExtractor;
+import com.urremote.classifier.model.ClassifierModel;
 
 import android.util.Log;
 
 /**
+ * 
+ * <p>
+ * The posterior of each activity is computed in the log domain, i.e. the
+ * log of the prior plus the log of the normal density of each feature,
+ * which unlike the product of the densities doesn't underflow. The constant
+ * parts of the log densities (<code>-0.5*log(2*PI*var)</code> and
+ * <code>1/(2*var)</code>) are computed in {@link #setModel(ClassifierModel)}, and kept
+ * in flat arrays indexed the same way as the model's class means and variances
+ * (<code>activity*numOfFeatures+feature</code>, see {@link ClassifierModel#getClassMeans()}),
+ * whose means are used as they are, hence classification is a multiply-add per
+ * activity and feature.
  * 
  * @author abd01c
  */
 public class NaiveBayesClassifier implements Classifier {
 
-	private static final int ACTIVITY_FEATURE_CLASS_MEAN = 0;
-	private static final int ACTIVITY_FEATURE_CLASS_VAR = 1;
+	//	variances are kept above this, to keep the log densities finite
+	private static final double MIN_VARIANCE = 1e-10;
+	
+	//	the number of samples classified together by classifyBatch
+	private static final int BATCH_BLOCK_SIZE = 64;
 
 	private int numOfActivities;
 	private int numOfFeatures;
 	private List<String> activityNames;
-	private float[][][] model; // dimensions: activity, mean/var, feature
-	private float[] priorProbActivity;
+	
+	//	dimensions: activity*numOfFeatures+feature, the model's class means
+	private float[] featureMeans;
+	//	-0.5*log(2*PI*var)
+	private float[] logNormConsts;
+	//	1/(2*var)
+	private float[] invTwoVars;
+	//	log of the prior of each activity
+	private float[] logPriors;
+	
+	//	the buffers of each thread calling classifyBatch, replaced with the model
+	private ThreadLocal<BatchBuffers> batchBuffers;
 
 	public NaiveBayesClassifier() {
 
 	}
 
-	public void setModel(final Set<Entry<Float[], Object[]>> model) {
-		initModel(model);
-		this.priorProbActivity = new float[numOfActivities];
-
-		// initial prior prob activity set equal to all
-		for (int i = 0; i < numOfActivities; ++i) {
-			this.priorProbActivity[i] = 1.0f / numOfActivities;
-		}
+	public void setModel(final ClassifierModel model) {
+		this.numOfFeatures = model.getNumOfFeatures();
+		this.numOfActivities = model.getNumOfLabels();
+		this.activityNames = Arrays.asList(model.getLabelNames());
+		
+		initLogConstants(model);
+		logModel(model);
+		
+		this.batchBuffers = new ThreadLocal<BatchBuffers>() {
+			@Override
+			protected BatchBuffers initialValue() {
+				return new BatchBuffers();
+			}
+		};
 	}
 
 	public String classify(final float[] extractedData) {
-		String bestActivity = "UNKNOWN";
-		float bestActivityValue = Float.NEGATIVE_INFINITY;
-
-		for (int a = 0; a < numOfActivities; ++a) {
-			float posterior = priorProbActivity[a];
-
-			// System.out.println("activity: "+activityNames.get(a));
-
-			for (int f = 0; f < numOfFeatures; ++f) {
-				float probFeatureClass = computeProbFeatureClass(a, f,
-						extractedData);
-
-				// System.out.println("\t\t"+probFeatureClass);
-
-				posterior *= probFeatureClass;
+		int best = findBestActivity(extractedData, null);
+		
+		if (best<0)
+			return ActivityNames.UNKNOWN;
+		else
+			return activityNames.get(best);
+	}
+	
+	/**
+	 * The posteriors are the exponents of the log posteriors (see
+	 * {@link #computeLogPosteriors(float[], float[])}), less the largest,
+	 * normalised, hence don't underflow unless much less likely than the best.
+	 */
+	public int classify(final float[] extractedData, float[] outPosteriors) {
+		int best = findBestActivity(extractedData, outPosteriors);
+		toPosteriors(outPosteriors, 0, best);
+		return best;
+	}
+	
+	/**
+	 * Replaces the log posteriors of a sample with the posteriors, i.e. their exponents,
+	 * less the largest, normalised, or with 0 if the sample couldn't be classified.
+	 * 
+	 * @param offset
+	 * the index of the sample's first log posterior
+	 * 
+	 * @param best
+	 * the index of the largest log posterior, or -1 if none
+	 */
+	private void toPosteriors(float[] logPosteriors, int offset, int best) {
+		final int end = offset + numOfActivities;
+		
+		if (best<0) {
+			for (int i = offset; i < end; ++i)
+				logPosteriors[i] = 0.0f;
+			return;
+		}
+		
+		float maxLogPosterior = logPosteriors[offset + best];
+		float sum = 0.0f;
+		for (int i = offset; i < end; ++i) {
+			float posterior = (float) Math.exp(logPosteriors[i] - maxLogPosterior);
+			logPosteriors[i] = posterior;
+			sum += posterior;
+		}
+		float invSum = 1.0f / sum;
+		for (int i = offset; i < end; ++i)
+			logPosteriors[i] *= invSum;
+	}
+	
+	/**
+	 * Computes the log of the posterior of each activity, up to a constant
+	 * common to all the activities (i.e. the log of the prior plus the log
+	 * likelihood of the features).
+	 * 
+	 * @param extractedData
+	 * the features to classify
+	 * 
+	 * @param outLogPosteriors
+	 * an array of {@link #getNumOfLabels()} floats to save the log posteriors
+	 * in, in the order of {@link #getLabelName(int)}
+	 * 
+	 * @return
+	 * the index of the most likely activity, or -1 if none (e.g. the features are NaN)
+	 */
+	public int computeLogPosteriors(final float[] extractedData, float[] outLogPosteriors) {
+		return findBestActivity(extractedData, outLogPosteriors);
+	}
+	
+	private int findBestActivity(final float[] extractedData, float[] outLogPosteriors) {
+		final int features = this.numOfFeatures;
+		final float[] means = this.featureMeans;
+		final float[] norms = this.logNormConsts;
+		final float[] invs = this.invTwoVars;
+		
+		int best = -1;
+		float bestValue = Float.NEGATIVE_INFINITY;
+		
+		for (int a = 0, i = 0; a < numOfActivities; ++a) {
+			float logPosterior = logPriors[a];
+			for (int f = 0; f < features; ++f, ++i) {
+				float diff = extractedData[f] - means[i];
+				logPosterior += norms[i] - diff * diff * invs[i];
 			}
-
-			// System.out.println("\t"+posterior);
-
-			if (posterior > bestActivityValue) {
-				bestActivityValue = posterior;
-				bestActivity = activityNames.get(a);
+			
+			if (outLogPosteriors!=null)
+				outLogPosteriors[a] = logPosterior;
+			
+			if (logPosterior > bestValue) {
+				bestValue = logPosterior;
+				best = a;
 			}
 		}
-
-		return bestActivity;
+		
+		return best;
 	}
-
-	private void initModel(Set<Entry<Float[], Object[]>> model) {
-
-		Map<String, List<float[]>> activityFeatures = new TreeMap<String, List<float[]>>(
-				StringComparator.CASE_INSENSITIVE_INSTANCE);
-
-		this.numOfFeatures = Integer.MAX_VALUE;
-
-		for (Entry<Float[], Object[]> entry : model) {
-			String activityName = (String) entry.getValue()[0];
-			Float[] features = entry.getKey();
-
-			if (features.length < this.numOfFeatures) {
-				this.numOfFeatures = features.length;
+	
+	/**
+	 * The posteriors are normalised per sample, as in {@link #classify(float[], float[])}.
+	 * 
+	 * <p>
+	 * The samples are classified in blocks of {@link #BATCH_BLOCK_SIZE}, transposed so that
+	 * the innermost loop runs over the samples of the block, with the constants of the
+	 * activity and feature fixed, hence the log posteriors are exactly those of
+	 * {@link #classify(float[])} (the same operations in the same order).
+	 */
+	public void classifyBatch(final float[] features, int start, int count, int[] outLabels, float[] outScores) {
+		final int numOfFeatures = this.numOfFeatures;
+		final int numOfActivities = this.numOfActivities;
+		final float[] means = this.featureMeans;
+		final float[] norms = this.logNormConsts;
+		final float[] invs = this.invTwoVars;
+		
+		final BatchBuffers buffers = batchBuffers.get();
+		final float[] block = buffers.block;
+		final float[] logPosteriors = buffers.logPosteriors;
+		
+		for (int blockStart = start, end = start + count; blockStart < end; blockStart += BATCH_BLOCK_SIZE) {
+			final int size = Math.min(BATCH_BLOCK_SIZE, end - blockStart);
+			
+			for (int s = 0, i = blockStart * numOfFeatures; s < size; ++s) {
+				for (int f = 0; f < numOfFeatures; ++f, ++i) {
+					block[f * BATCH_BLOCK_SIZE + s] = features[i];
+				}
 			}
-
-			float[] featureArray = new float[features.length];
-			for (int i = 0; i < features.length; ++i) {
-				featureArray[i] = (Float) features[i];
+			
+			for (int a = 0, i = 0; a < numOfActivities; ++a) {
+				final int row = a * BATCH_BLOCK_SIZE;
+				final float logPrior = logPriors[a];
+				for (int s = 0; s < size; ++s) {
+					logPosteriors[row + s] = logPrior;
+				}
+				for (int f = 0; f < numOfFeatures; ++f, ++i) {
+					final int col = f * BATCH_BLOCK_SIZE;
+					final float mean = means[i];
+					final float norm = norms[i];
+					final float inv = invs[i];
+					for (int s = 0; s < size; ++s) {
+						float diff = block[col + s] - mean;
+						logPosteriors[row + s] += norm - diff * diff * inv;
+					}
+				}
 			}
-
-			List<float[]> featureArrayList = activityFeatures.get(activityName);
-
-			if (featureArrayList == null) {
-				featureArrayList = new ArrayList<float[]>();
-				activityFeatures.put(activityName, featureArrayList);
+			
+			for (int s = 0; s < size; ++s) {
+				int best = -1;
+				float bestValue = Float.NEGATIVE_INFINITY;
+				for (int a = 0; a < numOfActivities; ++a) {
+					float logPosterior = logPosteriors[a * BATCH_BLOCK_SIZE + s];
+					if (logPosterior > bestValue) {
+						bestValue = logPosterior;
+						best = a;
+					}
+				}
+				outLabels[blockStart + s] = best;
+			}
+			
+			if (outScores != null) {
+				for (int s = 0; s < size; ++s) {
+					final int offset = (blockStart + s) * numOfActivities;
+					for (int a = 0, i = offset; a < numOfActivities; ++a, ++i) {
+						outScores[i] = logPosteriors[a * BATCH_BLOCK_SIZE + s];
+					}
+					toPosteriors(outScores, offset, outLabels[blockStart + s]);
+				}
 			}
-
-			featureArrayList.add(featureArray);
 		}
+	}
+	
+	public int getNumOfLabels() {
+		return numOfActivities;
+	}
+	
+	public String getLabelName(int label) {
+		return activityNames.get(label);
+	}
+	
+	private void initLogConstants(ClassifierModel model) {
+		float[] variances = model.getClassVariances();
+		int size = numOfActivities * numOfFeatures;
+		float[] norms = new float[size];
+		float[] invs = new float[size];
+		float[] priors = new float[numOfActivities];
+		
+		// initial prior prob activity set equal to all
+		float logPrior = (float) Math.log(1.0 / numOfActivities);
+		
+		for (int a = 0, i = 0; a < numOfActivities; ++a) {
+			for (int f = 0; f < numOfFeatures; ++f, ++i) {
+				double var = variances[i];
+				if (!(var > MIN_VARIANCE))
+					var = MIN_VARIANCE;
+				norms[i] = (float) (-0.5 * Math.log(2.0 * Math.PI * var));
+				invs[i] = (float) (1.0 / (2.0 * var));
+			}
+			priors[a] = logPrior;
+		}
+		
+		this.featureMeans = model.getClassMeans();
+		this.logNormConsts = norms;
+		this.invTwoVars = invs;
+		this.logPriors = priors;
+	}
 
-		this.numOfActivities = activityFeatures.size();
-		this.activityNames = new ArrayList<String>(activityFeatures.keySet());
-
-		if (this.numOfFeatures == 0 || this.numOfFeatures == Integer.MAX_VALUE)
-			throw new RuntimeException(
-					"Unable to determine number of features, either no features, or no data");
-
-		float[][][] newModel = new float[this.numOfActivities][][];
-		CalcStatistics calcFeatureStatistics = new CalcStatistics(numOfFeatures);
-
-		for (int len = this.activityNames.size(), a = 0; a < len; ++a) {
-
-			String activityName = this.activityNames.get(a);
-			List<float[]> featureList = activityFeatures.get(activityName);
-			int numOfSamples = featureList.size();
-			float[][] featureArray = new float[numOfSamples][];
-			featureArray = featureList.toArray(featureArray);
-			calcFeatureStatistics.assign(featureArray, numOfSamples);
-			float[] mean = calcFeatureStatistics.getMean();
-			float[] var = calcFeatureStatistics.getSampleVariance();
+	/**
+	 * The blocks {@link #classifyBatch(float[], int, int, int[], float[])} works on,
+	 * one instance per thread, so that calls can run concurrently without allocating.
+	 */
+	private class BatchBuffers {
+		//	dimensions: feature*BATCH_BLOCK_SIZE+sample
+		final float[] block = new float[numOfFeatures * BATCH_BLOCK_SIZE];
+		//	dimensions: activity*BATCH_BLOCK_SIZE+sample
+		final float[] logPosteriors = new float[numOfActivities * BATCH_BLOCK_SIZE];
+	}
 
-			float[][] classDetails = new float[2][];
-			classDetails[ACTIVITY_FEATURE_CLASS_MEAN] = mean.clone();
-			classDetails[ACTIVITY_FEATURE_CLASS_VAR] = var.clone();
-			newModel[a] = classDetails;
+	private void logModel(ClassifierModel model) {
+		float[] classMeans = model.getClassMeans();
+		float[] classVariances = model.getClassVariances();
+		String[] featureNames = model.getFeatureNames();
 
-			String debugOut = String.format("%-25s", activityName) + "\t";
-			for (int f = 0; f < numOfFeatures; ++f) {
+		for (int a = 0, i = 0; a < numOfActivities; ++a) {
+			String debugOut = String.format("%-25s", activityNames.get(a)) + "\t";
+			for (int f = 0; f < numOfFeatures; ++f, ++i) {
 				debugOut += "\t" +
-					FeatureExtractor.FEATURE_NAMES[f] + "=" + 
-                       String.format("%8.5f(%8.5f)",
-								classDetails[ACTIVITY_FEATURE_CLASS_MEAN][f],
-								classDetails[ACTIVITY_FEATURE_CLASS_VAR][f]
-								);
+					featureNames[f] + "=" + 
+                       String.format("%8.5f(%8.5f)", classMeans[i], classVariances[i]);
 			}
 			Log.i(Constants.TAG, debugOut);
 		}
-
-		// int walking = -1;
-		// for (int i=0; i<this.activityNames.size(); ++i) {
-		// if (this.activityNames.get(i).contains("WALKING")) {
-		// walking = i;
-		// break;
-		// }
-		// }
-		// if (walking>=0) {
-		// newModel[walking][ACTIVITY_FEATURE_CLASS_VAR][FeatureExtractor.FEATURE_VER_RANGE]
-		// = 5.0f*5.0f;
-		// System.out.println("CHANGED THE WALKING VARIANCE");
-		// }
-
-		this.model = newModel;
-	}
-
-	private float computeProbFeatureClass(int activity, int featureClass,
-			float[] data) {
-		float[][] activityFeatureClassDetails = this.model[activity];
-		float mean = activityFeatureClassDetails[ACTIVITY_FEATURE_CLASS_MEAN][featureClass];
-		float var = activityFeatureClassDetails[ACTIVITY_FEATURE_CLASS_VAR][featureClass];
-		float value = data[featureClass];
-
-		float val = (float) ((1.0 / (Math.sqrt(2.0 * Math.PI * var))) * Math
-				.exp(-((value - mean) * (value - mean)) / (2 * var)));
-
-		if (val == 0.0f)
-			val = Float.MIN_VALUE;
-		else if (Float.isInfinite(val))
-			val = Float.MAX_VALUE;
-
-		return val;
 	}
 
 }
@@ -0,0 +1,43 @@
+package com.urremote.classifier.classifier;
+
+import com.urremote.classifier.common.ActivityRegistry;
+import com.urremote.classifier.common.Constants;
+import com.urremote.classifier.utils.RunningStatistics;
+
+/**
+ * Classifies batches in which none of the accelerometer axes vary
+ * (i.e. the phone is still) as stationary, the same way the calibrator
+ * detects periods without motion.
+ *
+ * <p>
+ * Whether a still phone is uncarried is decided by the calibrator over
+ * a longer period, after the batch is classified.
+ *
+ * @author Umran
+ */
+public class StillnessStage implements CascadeStage {
+
+	private final float maxSd;
+
+	/**
+	 * @param maxSd
+	 * the largest standard deviation of every axis for the batch to be still
+	 */
+	public StillnessStage(float maxSd) {
+		this.maxSd = maxSd;
+	}
+
+	public String getName() {
+		return "still";
+	}
+
+	public int classify(RunningStatistics rawStatistics) {
+		float[] sd = rawStatistics.getSampleStandardDeviation();
+		for (int axis=0; axis<Constants.ACCEL_DIM; ++axis) {
+			if (!(sd[axis]<=maxSd))
+				return ActivityRegistry.NONE;
+		}
+		return ActivityRegistry.STATIONARY;
+	}
+
+}
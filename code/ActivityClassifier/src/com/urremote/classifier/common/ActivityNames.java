@@ -3,11 +3,11 @@ package com.urremote.classifier.common;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import com.urremote.classifier.model.ClassifierModel;
 import com.urremote.classifier.model.ModelReader;
 import com.urremote.classifier.service.RecorderService;
 
@@ -45,7 +45,7 @@ public class ActivityNames {
 	
 	public static Set<String> getAllActivities(Context context) {
 		
-		Map<Float[],Object[]> model = ModelReader.getModel(context, R.raw.basic_model);
+		ClassifierModel model = ModelReader.getModel(context, R.raw.basic_model);
 		
 		Set<String> declaredActivities = new TreeSet<String>(StringComparator.CASE_INSENSITIVE_INSTANCE);
 		
@@ -69,8 +69,7 @@ public class ActivityNames {
 		
 		Set<String> modelActivities = new TreeSet<String>(StringComparator.CASE_INSENSITIVE_INSTANCE);
 		
-        for (Map.Entry<Float[], Object[]> entry : model.entrySet()) {
-        	String activity = (String)entry.getValue()[0];
+        for (String activity : model.getLabelNames()) {
         	modelActivities.add(activity);
         }
         
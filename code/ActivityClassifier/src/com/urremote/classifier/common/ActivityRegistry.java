@@ -0,0 +1,220 @@
+package com.urremote.classifier.common;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Assigns compact integer ids to the activities in {@link ActivityNames},
+ * which are passed around the system in place of the activity names.
+ * The names are only needed when displayed, saved, or exported.
+ *
+ * <p>
+ * The activities form a hierarchy, given by the parts of their names
+ * (e.g. <code>CLASSIFIED/CHARGING/TRAVELLING</code> is a child of
+ * <code>CLASSIFIED/CHARGING</code>, which is a child of <code>CLASSIFIED</code>).
+ * The parent, depth and last part of the name of each activity are
+ * computed once, in arrays indexed by the activity's id. The inner nodes
+ * of the hierarchy that aren't activities themselves (i.e. <code>CLASSIFIED</code>)
+ * are also given ids, see {@link #isActivity(int)}.
+ *
+ * <p>
+ * Ids are assigned in the order the activities are listed in {@link #NAMES},
+ * new activities should be added at the end.
+ *
+ * @author Umran
+ */
+public class ActivityRegistry {
+
+	/**
+	 * Not an activity, e.g. the parent of the top level activities,
+	 * or the id of an unrecognised name.
+	 */
+	public static final int NONE = -1;
+
+	public static final int OFF						= 0;
+	public static final int END						= 1;
+	public static final int UNKNOWN					= 2;
+	public static final int CLASSIFIED				= 3;
+	public static final int UNCARRIED				= 4;
+	public static final int CHARGING				= 5;
+	public static final int CHARGING_TRAVELLING		= 6;
+	public static final int STATIONARY				= 7;
+	public static final int TRAVELING				= 8;
+	public static final int WALKING					= 9;
+	public static final int PADDLING				= 10;
+	public static final int ROWING					= 11;
+	public static final int CYCLING					= 12;
+	public static final int RUNNING					= 13;
+
+	private static final String[] NAMES = {
+		ActivityNames.OFF,
+		ActivityNames.END,
+		ActivityNames.UNKNOWN,
+		"CLASSIFIED",
+		ActivityNames.UNCARRIED,
+		ActivityNames.CHARGING,
+		ActivityNames.CHARGING_TRAVELLING,
+		ActivityNames.STATIONARY,
+		ActivityNames.TRAVELING,
+		ActivityNames.WALKING,
+		ActivityNames.PADDLING,
+		ActivityNames.ROWING,
+		ActivityNames.CYCLING,
+		ActivityNames.RUNNING,
+	};
+
+	//	the inner nodes of the hierarchy, which aren't activities
+	private static final int[] INNER_NODES = { CLASSIFIED };
+
+	private static final String[] PARTS = new String[NAMES.length];
+	private static final int[] PARENTS = new int[NAMES.length];
+	private static final int[] DEPTHS = new int[NAMES.length];
+	private static final boolean[] ACTIVITIES = new boolean[NAMES.length];
+	private static final boolean[] SYSTEM = new boolean[NAMES.length];
+	private static final boolean[] TRAVELLING = new boolean[NAMES.length];
+
+	private static final Map<String,Integer> IDS = new HashMap<String,Integer>();
+
+	static {
+		for (int id=0; id<NAMES.length; ++id) {
+			IDS.put(NAMES[id], id);
+		}
+
+		for (int id=0; id<NAMES.length; ++id) {
+			String name = NAMES[id];
+			int separator = name.lastIndexOf('/');
+			if (separator<0) {
+				PARTS[id] = name;
+				PARENTS[id] = NONE;
+			} else {
+				PARTS[id] = name.substring(separator+1);
+				Integer parent = IDS.get(name.substring(0, separator));
+				if (parent==null)
+					throw new RuntimeException("The parent of activity '"+name+"' is not registered");
+				PARENTS[id] = parent;
+			}
+			ACTIVITIES[id] = true;
+			SYSTEM[id] = ActivityNames.isSystemActivity(name);
+			TRAVELLING[id] = name.contains("TRAVEL");
+		}
+
+		for (int id=0; id<NAMES.length; ++id) {
+			int depth = 0;
+			for (int parent=PARENTS[id]; parent!=NONE; parent=PARENTS[parent])
+				++depth;
+			DEPTHS[id] = depth;
+		}
+
+		for (int id:INNER_NODES)
+			ACTIVITIES[id] = false;
+	}
+
+	/**
+	 * @return
+	 * the number of ids assigned, ids range from 0 to one less than this
+	 */
+	public static int size() {
+		return NAMES.length;
+	}
+
+	/**
+	 * @return
+	 * the id of the activity with the name given (case insensitive),
+	 * or {@link #NONE} if the name isn't registered
+	 */
+	public static int getId(String name) {
+		if (name==null)
+			return NONE;
+		Integer id = IDS.get(name);
+		if (id==null)
+			id = IDS.get(name.toUpperCase(Locale.US));
+		return id!=null ? id : NONE;
+	}
+
+	/**
+	 * @return
+	 * the ids of the activities with the names given, e.g. the labels of a model
+	 *
+	 * @throws RuntimeException
+	 * if any of the names isn't registered
+	 */
+	public static int[] getIds(String[] names) {
+		int[] ids = new int[names.length];
+		for (int i=0; i<names.length; ++i) {
+			ids[i] = getId(names[i]);
+			if (ids[i]==NONE || !ACTIVITIES[ids[i]])
+				throw new RuntimeException("Undeclared activity found: '"+names[i]+"'");
+		}
+		return ids;
+	}
+
+	/**
+	 * @return
+	 * the full name of the activity, as in {@link ActivityNames}
+	 */
+	public static String getName(int id) {
+		return NAMES[id];
+	}
+
+	/**
+	 * @return
+	 * the last part of the activity's name, e.g. <code>WALKING</code>
+	 * for <code>CLASSIFIED/WALKING</code>
+	 */
+	public static String getPart(int id) {
+		return PARTS[id];
+	}
+
+	/**
+	 * @return
+	 * the id of the activity's parent, or {@link #NONE} if it is at the top level
+	 */
+	public static int getParent(int id) {
+		return PARENTS[id];
+	}
+
+	/**
+	 * @return
+	 * the number of ancestors of the activity, 0 if it is at the top level
+	 */
+	public static int getDepth(int id) {
+		return DEPTHS[id];
+	}
+
+	/**
+	 * @return
+	 * true if the first activity is the second, or one of its ancestors
+	 */
+	public static boolean isAncestorOrSelf(int ancestor, int id) {
+		for (; id!=NONE; id=PARENTS[id]) {
+			if (id==ancestor)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return
+	 * false if the id is only an inner node of the hierarchy, e.g. <code>CLASSIFIED</code>
+	 */
+	public static boolean isActivity(int id) {
+		return ACTIVITIES[id];
+	}
+
+	/**
+	 * @see ActivityNames#isSystemActivity(String)
+	 */
+	public static boolean isSystemActivity(int id) {
+		return SYSTEM[id];
+	}
+
+	/**
+	 * @return
+	 * true if the activity involves travelling (in a vehicle)
+	 */
+	public static boolean isTravelling(int id) {
+		return TRAVELLING[id];
+	}
+
+}
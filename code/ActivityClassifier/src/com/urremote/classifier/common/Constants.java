@@ -88,13 +88,218 @@ public class Constants {
 	 * The number of samples per batch to take while sampling
 	 */
 	public static final int NUMBER_OF_SAMPLES = 128;
-	
+
+	/**
+	 * <p>Should the accelerometer be sampled continuously, emitting overlapping
+	 * windows of {@link #NUMBER_OF_SAMPLES} samples every {@link #SLIDING_WINDOW_HOP_SIZE}
+	 * samples?</p>
+	 * <p>
+	 * If false, a single window is sampled every {@link #DELAY_SAMPLE_BATCH} ms
+	 * and the accelerometer is turned off in between.
+	 * </p>
+	 */
+	public static final boolean USE_SLIDING_WINDOW_SAMPLING = false;
+
+	/**
+	 * The number of new samples between two consecutive windows
+	 * while sampling continuously (see {@link #USE_SLIDING_WINDOW_SAMPLING}).
+	 */
+	public static final int SLIDING_WINDOW_HOP_SIZE = 32;
+
+	/**
+	 * The delay between two consecutive classifications (in ms), i.e. the period
+	 * each classification is taken to represent.
+	 */
+	public static final int DELAY_BETWEEN_CLASSIFICATIONS = USE_SLIDING_WINDOW_SAMPLING?
+			(SLIDING_WINDOW_HOP_SIZE*1000/RECOMMENDED_SAMPLING_FREQUENCY):
+			DELAY_SAMPLE_BATCH;
+
+	/**
+	 * Values for {@link #RESAMPLING_MODE}
+	 */
+	public static final int RESAMPLING_NONE = 0;
+	public static final int RESAMPLING_LINEAR = 1;
+	public static final int RESAMPLING_CUBIC = 2;
+
+	/**
+	 * <p>How the accelerometer events are converted to samples.</p>
+	 * <p>
+	 * With {@link #RESAMPLING_NONE}, events are used as samples as they arrive, and
+	 * events arriving too soon after the previous one are dropped.
+	 * Otherwise, the accelerometer is read at its fastest rate, and the events are
+	 * interpolated (linearly or using cubic splines) to samples taken exactly at
+	 * {@link #RECOMMENDED_SAMPLING_FREQUENCY}.
+	 * </p>
+	 */
+	public static final int RESAMPLING_MODE = RESAMPLING_NONE;
+
+	/**
+	 * Values for {@link #BATCH_OVERLOAD_POLICY}
+	 */
+	public static final int OVERLOAD_SKIP_NEWEST = 0;
+	public static final int OVERLOAD_DROP_OLDEST = 1;
+	public static final int OVERLOAD_FEATURES_ONLY = 2;
+
+	/**
+	 * <p>What to do when batches are sampled faster than they are classified
+	 * (see {@link com.urremote.classifier.accel.SampleBatchBuffer}).</p>
+	 * <ul>
+	 * <li>{@link #OVERLOAD_SKIP_NEWEST}: new batches aren't sampled until an empty batch is available.</li>
+	 * <li>{@link #OVERLOAD_DROP_OLDEST}: the oldest batch waiting to be classified is dropped to sample a new one.</li>
+	 * <li>{@link #OVERLOAD_FEATURES_ONLY}: while overloaded, batches are only classified, without computing
+	 * 		MET or saving debugging data.</li>
+	 * </ul>
+	 * <p>Skipping the newest batches is what the sampler always did, hence it stays the default.</p>
+	 */
+	public static final int BATCH_OVERLOAD_POLICY = OVERLOAD_SKIP_NEWEST;
+
+	/**
+	 * Should the features be extracted from the samples as they arrive while
+	 * sampling continuously (see {@link com.urremote.classifier.utils.SlidingFeatureExtractor}),
+	 * so that windows can be classified without rotating them when the classifier is
+	 * overloaded?
+	 * <p>
+	 * These features are only used for the batches marked as features only, which
+	 * only exist with {@link #OVERLOAD_FEATURES_ONLY}, hence they aren't extracted
+	 * under any other policy. Every window is still rotated and has its features
+	 * extracted in full unless marked, and since the streaming rotation lags one hop
+	 * behind, the streaming features only approximate the full ones.
+	 * </p>
+	 */
+	public static final boolean USE_STREAMING_FEATURES = USE_SLIDING_WINDOW_SAMPLING &&
+			BATCH_OVERLOAD_POLICY==OVERLOAD_FEATURES_ONLY;
+
+	/**
+	 * The number of threads used by the classifier to compute the statistics,
+	 * rotation, features, classification and MET of batches in parallel
+	 * (see {@link com.urremote.classifier.service.threads.ClassifierThread}).
+	 * The calibration, aggregation and saving of the results is always done
+	 * one batch at a time, in the order the batches were sampled.
+	 */
+	public static final int CLASSIFIER_WORKER_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * The number of batches the classifier dispatches to its workers ahead of the
+	 * last batch committed (see {@link #CLASSIFIER_WORKER_COUNT}). Each batch is computed
+	 * with the calibration values as they were once the batch this many batches
+	 * before it was committed, hence the results don't depend on the timing of the
+	 * threads, or on the number of workers.
+	 */
+	public static final int CLASSIFIER_PIPELINE_DEPTH = 4;
+
+	/**
+	 * Should batches go through the cheap stages of the classifier cascade
+	 * (see {@link com.urremote.classifier.classifier.ClassifierCascade}) before
+	 * being rotated and classified, so that batches that are plainly still are
+	 * classified without computing the features?
+	 */
+	public static final boolean USE_CLASSIFIER_CASCADE = true;
+
+	/**
+	 * The largest standard deviation (in m/s^2) of every (unrotated) accelerometer
+	 * axis of a batch, for the batch to be classified as stationary by the first
+	 * stage of the classifier cascade (see {@link #USE_CLASSIFIER_CASCADE}). The same
+	 * as the smallest deviation considered motion by the calibrator.
+	 */
+	public static final float CASCADE_STILL_MAX_SD =
+			Constants.CALIBARATION_MIN_ALLOWED_BASE_DEVIATION * Constants.CALIBARATION_ALLOWED_MULTIPLES_DEVIATION;
+
+	/**
+	 * Values for the aggregator type option,
+	 * see {@link com.urremote.classifier.db.OptionsTable#getAggregatorType()}
+	 */
+	public static final int AGGREGATOR_HIERARCHICAL = 0;
+	public static final int AGGREGATOR_HMM = 1;
+
+	/**
+	 * <p>Default value of the aggregator type option, i.e. how the classifications are
+	 * smoothed, when the aggregator is enabled (see {@link com.urremote.classifier.db.OptionsTable#getAggregatorType()}
+	 * and {@link com.urremote.classifier.db.OptionsTable#getUseAggregator()}).</p>
+	 * <ul>
+	 * <li>{@link #AGGREGATOR_HIERARCHICAL}: the scores of the activities classified are averaged
+	 * 		over the hierarchy of activities (see {@link com.urremote.classifier.aggregator.Aggregator}).</li>
+	 * <li>{@link #AGGREGATOR_HMM}: the classifier's posteriors are filtered with a hidden Markov model,
+	 * 		with transitions learnt from the activities saved
+	 * 		(see {@link com.urremote.classifier.aggregator.HmmAggregator}).</li>
+	 * </ul>
+	 */
+	public static final int DEF_AGGREGATOR_TYPE = AGGREGATOR_HIERARCHICAL;
+
+	/**
+	 * The number of batches the output of the HMM aggregator lags behind the
+	 * batches classified (see {@link #AGGREGATOR_HMM}). With 0, the most likely
+	 * activity of the latest batch is output (forward filtering), otherwise, the
+	 * activity of the batch this many batches before the latest, on the most likely
+	 * sequence of activities (fixed-lag Viterbi decoding).
+	 */
+	public static final int HMM_SMOOTHING_LAG = 0;
+
+	/**
+	 * The probability of the HMM aggregator staying in the same activity from
+	 * one batch to the next, before any transitions are learnt.
+	 */
+	public static final float HMM_DEFAULT_STAY_PROBABILITY = 0.9f;
+
+	/**
+	 * <p>Should the samples saved in the raw dump folder be replayed instead of
+	 * reading the device's accelerometer? (see {@link com.urremote.classifier.accel.replay.RawDumpReplaySource})</p>
+	 * <p>
+	 * This should not be used together with {@link #OUTPUT_RAW_DATA}.
+	 * </p>
+	 */
+	public static final boolean REPLAY_RAW_DUMPS = false;
+
+	/**
+	 * How much faster than real time to replay the raw dumps (see {@link #REPLAY_RAW_DUMPS}),
+	 * 0 to replay them as fast as possible.
+	 */
+	public static final float RAW_DUMP_REPLAY_SPEED = 1.0f;
+
+	/**
+	 * <p>Is the accelerometer sampled continuously, rather than a batch every
+	 * {@link #DELAY_SAMPLE_BATCH} ms?</p>
+	 * <p>
+	 * Replayed dumps (see {@link #REPLAY_RAW_DUMPS}) are always sampled continuously,
+	 * so that batches are sampled as fast as the dumps are replayed, rather than
+	 * when the sampling alarm goes off. Unless {@link #USE_SLIDING_WINDOW_SAMPLING}
+	 * is set, the replayed samples are split into consecutive windows that don't overlap.
+	 * </p>
+	 */
+	public static final boolean SAMPLE_CONTINUOUSLY = USE_SLIDING_WINDOW_SAMPLING || REPLAY_RAW_DUMPS;
+
 	/**
 	 * The duration between two contiguous classifications, if greater than which, to
 	 * insert an UNKNOWN classification.
 	 */
 	public static final int DURATION_EMPTY_INSERT_UNKNOWN = DELAY_SAMPLE_BATCH*4;
 	
+	/**
+	 * <p>Should the delay between sampling batches be stretched while the user's
+	 * activity is stable (e.g. stationary, uncarried or charging)?
+	 * (see {@link com.urremote.classifier.service.AdaptiveSamplingScheduler})</p>
+	 * <p>
+	 * The delay is stretched from {@link #DELAY_SAMPLE_BATCH} up to {@link #MAX_DELAY_SAMPLE_BATCH},
+	 * and returns to {@link #DELAY_SAMPLE_BATCH} as soon as any other activity is classified,
+	 * or the phone is plugged in or unplugged. The sampling alarm stays an inexact
+	 * repeating alarm, only its interval is changed along with the delay.
+	 * Not used while sampling continuously (see {@link #SAMPLE_CONTINUOUSLY}).
+	 * </p>
+	 */
+	public static final boolean USE_ADAPTIVE_SAMPLING = true;
+	
+	/**
+	 * The longest delay between sampling batches (in ms), see {@link #USE_ADAPTIVE_SAMPLING}.
+	 * This is also the longest the user can be moving before it is noticed, after a
+	 * long stable period (2 mins with the default delay).
+	 */
+	public static final int MAX_DELAY_SAMPLE_BATCH = DELAY_SAMPLE_BATCH*4;
+	
+	/**
+	 * The number of consecutive batches with the same stable activity before
+	 * the delay between sampling batches is doubled, see {@link #USE_ADAPTIVE_SAMPLING}.
+	 */
+	public static final int STABLE_BATCHES_BEFORE_BACKOFF = 4;
+	
 	/**
 	 * Duration for the {@link AccountThread} to wait for the user's account
 	 * to be set on the phone before checking again.
@@ -183,9 +183,9 @@ public class DebugDataTable extends DbTableAdapter {
 		insertContentValues.put(KEY_STARTED_AT, Constants.DB_DATE_FORMAT.format(this.startedAtDt));
 		if (raw!=null) {
 			for (int i=0; i<Constants.NUMBER_OF_SAMPLES; ++i) {
-				insertContentValues.put(KEY_RAW_X[i], (Float)this.raw[i][Constants.ACCEL_X_AXIS]);
-				insertContentValues.put(KEY_RAW_Y[i], (Float)this.raw[i][Constants.ACCEL_Y_AXIS]);
-				insertContentValues.put(KEY_RAW_Z[i], (Float)this.raw[i][Constants.ACCEL_Z_AXIS]);
+				insertContentValues.put(KEY_RAW_X[i], (Float)this.raw[Constants.ACCEL_X_AXIS][i]);
+				insertContentValues.put(KEY_RAW_Y[i], (Float)this.raw[Constants.ACCEL_Y_AXIS][i]);
+				insertContentValues.put(KEY_RAW_Z[i], (Float)this.raw[Constants.ACCEL_Z_AXIS][i]);
 			}
 		} else {
 			for (int i=0; i<Constants.NUMBER_OF_SAMPLES; ++i) {
@@ -300,6 +300,10 @@ public class DebugDataTable extends DbTableAdapter {
 		this.finalClassifierOutput = null;
 	}
 	
+	/**
+	 * @param raw
+	 * the samples, one array per axis (see {@link com.urremote.classifier.accel.SampleBatch#axisData})
+	 */
 	public void assignRaw(float[][] raw) {
 		this.raw = raw;
 	}
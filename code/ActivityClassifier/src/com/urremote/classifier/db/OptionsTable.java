@@ -62,6 +62,7 @@ public class OptionsTable extends DbTableAdapter {
 	public static final String KEY_ALLOWED_MULTIPLES_OF_SD = "allowedMultiplesOfSd";
 	public static final String KEY_IS_ACCOUNT_SENT = "isAccountSent";
 	public static final String KEY_USE_AGGREGATOR = "useAggregator";
+	public static final String KEY_AGGREGATOR_TYPE = "aggregatorType";
 	public static final String KEY_INVOKE_MYTRACKS = "invokeMyTracks";
 	public static final String KEY_FULLTIME_ACCEL = "fullTimeAccel";
 	public static final String KEY_SENSOR_RATE = "accelSensorRate";
@@ -119,6 +120,7 @@ public class OptionsTable extends DbTableAdapter {
 		KEY_ALLOWED_MULTIPLES_OF_SD + ", " +
 		KEY_IS_ACCOUNT_SENT + ", " +
 		KEY_USE_AGGREGATOR + ", " +
+		KEY_AGGREGATOR_TYPE + ", " +
 		KEY_INVOKE_MYTRACKS + ", " +
 		KEY_FULLTIME_ACCEL + ", " +
 		KEY_SENSOR_RATE + ", " +
@@ -140,6 +142,7 @@ public class OptionsTable extends DbTableAdapter {
 	private boolean isAccountSent;
 
 	private boolean useAggregator;
+	private int aggregatorType;
 	private boolean fullTimeAccel;
 	private boolean invokeMyTracks;
 	private int accelSensorRate;
@@ -199,6 +202,7 @@ public class OptionsTable extends DbTableAdapter {
 			KEY_ALLOWED_MULTIPLES_OF_SD+" REAL NOT NULL, " + 
 			KEY_IS_ACCOUNT_SENT+" INTEGER NOT NULL, " +
 			KEY_USE_AGGREGATOR+" INTEGER NOT NULL, " +
+			KEY_AGGREGATOR_TYPE+" INTEGER NOT NULL, " +
 			KEY_INVOKE_MYTRACKS+" INTEGER NOT NULL, " +
 			KEY_FULLTIME_ACCEL+" INTEGER NOT NULL, " +
 			KEY_SENSOR_RATE+" INTEGER NOT NULL, " +
@@ -215,6 +219,7 @@ public class OptionsTable extends DbTableAdapter {
 		setAccountSent(false);
 //		setWakeLockSet(false);
 		setUseAggregator(true);
+		setAggregatorType(Constants.DEF_AGGREGATOR_TYPE);
 		setInvokeMyTracks(Constants.DEF_USE_MYTRACKS);
 		setFullTimeAccel(false);
 		setAccelSensorRate(SensorManager.SENSOR_DELAY_NORMAL);
@@ -235,6 +240,15 @@ public class OptionsTable extends DbTableAdapter {
 		this.databaseLoaded = true;
 	}
 
+	/**
+	 * Adds the {@link #KEY_AGGREGATOR_TYPE} column to a table created
+	 * before it existed (database version 9), keeping the other values.
+	 */
+	protected void addAggregatorTypeColumn(SQLiteDatabase database) {
+		database.execSQL("ALTER TABLE "+TABLE_NAME+" ADD COLUMN "+
+				KEY_AGGREGATOR_TYPE+" INTEGER NOT NULL DEFAULT "+Constants.DEF_AGGREGATOR_TYPE);
+	}
+
 	@Override
 	protected void dropTable(SQLiteDatabase database) {
 		//	drop existing table if it exists
@@ -332,6 +346,7 @@ public class OptionsTable extends DbTableAdapter {
 				setAllowedMultiplesOfSd(cursor.getFloat(cursor.getColumnIndex(KEY_ALLOWED_MULTIPLES_OF_SD)));
 				setAccountSent(cursor.getInt(cursor.getColumnIndex(KEY_IS_ACCOUNT_SENT))!=0);
 				setUseAggregator(cursor.getInt(cursor.getColumnIndex(KEY_USE_AGGREGATOR))!=0);
+				setAggregatorType(cursor.getInt(cursor.getColumnIndex(KEY_AGGREGATOR_TYPE)));
 				setInvokeMyTracks(cursor.getInt(cursor.getColumnIndex(KEY_INVOKE_MYTRACKS))!=0);
 				setFullTimeAccel(cursor.getInt(cursor.getColumnIndex(KEY_FULLTIME_ACCEL))!=0);
 				setAccelSensorRate(cursor.getInt(cursor.getColumnIndex(KEY_SENSOR_RATE)));
@@ -559,6 +574,26 @@ public class OptionsTable extends DbTableAdapter {
 		this.updatedKeys.add(KEY_USE_AGGREGATOR);
 	}
 
+	/**
+	 * @return
+	 * how the classifications are smoothed when the aggregator is used,
+	 * {@link Constants#AGGREGATOR_HIERARCHICAL} or {@link Constants#AGGREGATOR_HMM}
+	 */
+	public int getAggregatorType() {
+		return aggregatorType;
+	}
+
+	/**
+	 * Make sure to call {@link #save()} after setting.
+	 * 
+	 * @param aggregatorType the aggregatorType to set
+	 */
+	public void setAggregatorType(int aggregatorType) {
+		this.aggregatorType = aggregatorType;
+		this.contentValues.put(KEY_AGGREGATOR_TYPE, aggregatorType);
+		this.updatedKeys.add(KEY_AGGREGATOR_TYPE);
+	}
+
 	/**
 	 * @return the allowedMultiplesOfSd
 	 */
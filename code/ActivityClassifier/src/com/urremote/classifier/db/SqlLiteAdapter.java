@@ -59,7 +59,7 @@ public class SqlLiteAdapter {
 		return instance;
 	}
 	
-	public static final int DATABASE_VERSION = 9;
+	public static final int DATABASE_VERSION = 10;
 	
 	private Context context;
 	private SQLiteOpenHelper helper;
@@ -103,6 +103,13 @@ public class SqlLiteAdapter {
 
 			@Override
 			public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+				if (oldVersion==9 && newVersion==10) {
+					//	only the aggregator type option was added, keep the recorded activities
+					Log.d(Constants.TAG, "Upgrading DB from version "+oldVersion+" to "+newVersion);
+					SqlLiteAdapter.this.optionsTable.addAggregatorTypeColumn(db);
+					return;
+				}
+				
 				Log.d(Constants.TAG, "Upgrading DB");
 				for (DbTableAdapter tableAdapter:SqlLiteAdapter.this.tableAdapters) {
 					tableAdapter.dropTable(db);
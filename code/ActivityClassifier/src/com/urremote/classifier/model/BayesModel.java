@@ -1,6 +1,6 @@
 package com.urremote.classifier.model;
 
-import com.urremote.classifier.utils.FeatureExtractor;
+import com.urremote.classifier.utils.FeatureRegistry;
 
 public class BayesModel {
 	
@@ -8,8 +8,7 @@ public class BayesModel {
 	//**START-MODEL-DETAILS**//
 
 	//	the names of the features contained in the model,
-	//		used to make sure that the model and the FeatureExtractor
-	//		match
+	//		used to select the features computed (see FeatureRegistry)
 	private static final String[] featureNames = new String[] { 
 		"HOR RANGE",
 		"VER RANGE",
@@ -46,41 +45,33 @@ public class BayesModel {
 	private static boolean featureCorrectnessChecked = false;
 	
 	/**
-	 * Checks to make sure that the model has the same features
-	 * as the FeatureExtractor
+	 * Checks to make sure that all the features of the model
+	 * are in the FeatureRegistry, and that each cluster has
+	 * all the features
 	 */
 	private static void checkFeatures() {
-		//	check to make sure the numbers of features are the same
-		if (featureNames.length!=FeatureExtractor.NUM_FEATURES) {
-			throw new RuntimeException(
-					"Number of features in the model aren't equivalent to " +
-					"number of features in the feature extractor ("+
-					featureNames.length+"!="+FeatureExtractor.NUM_FEATURES+")");
-		}
-		
-		//	check each feature to make sure each has the same name
+		//	check each feature to make sure it can be computed
 		for (int i=0; i<featureNames.length; ++i) {
-			if (!featureNames[i].equals(FeatureExtractor.FEATURE_NAMES[i])) {
+			if (FeatureRegistry.get(featureNames[i])==null) {
 				throw new RuntimeException(
-						"The " + (i+1) +"th features in the model and " +
-						"the feature extractor don't match ('" +
-						featureNames[i]+"'!='"+FeatureExtractor.FEATURE_NAMES[i]+"')");
+						"The " + (i+1) +"th feature in the model " +
+						"isn't registered ('" + featureNames[i]+"')");
 			}
 		}
 		
 		//	check each cluster, to make sure each has the required number of features
 		for (BayesCluster cluster:clusters) {
-			if (cluster.featureMeans.length!=FeatureExtractor.NUM_FEATURES) {
+			if (cluster.featureMeans.length!=featureNames.length) {
 				throw new RuntimeException(
 						"The means of the '" + cluster.clusterName + "' cluster " +
 						"doesn't have the required number of feature means ('" +
-						cluster.featureMeans.length+"'!='"+FeatureExtractor.NUM_FEATURES+"')");
+						cluster.featureMeans.length+"'!='"+featureNames.length+"')");
 			}
-			if (cluster.featureVariances.length!=FeatureExtractor.NUM_FEATURES) {
+			if (cluster.featureVariances.length!=featureNames.length) {
 				throw new RuntimeException(
 						"The variances of the '" + cluster.clusterName + "' cluster " +
 						"doesn't have the required number of feature variances ('" +
-						cluster.featureMeans.length+"'!='"+FeatureExtractor.NUM_FEATURES+"')");
+						cluster.featureMeans.length+"'!='"+featureNames.length+"')");
 			}
 		}
 		
@@ -88,6 +79,19 @@ public class BayesModel {
 		featureCorrectnessChecked = true;
 	}
 	
+	/**
+	 * @return
+	 * the names of the features of the model, in the order of the
+	 * features of each cluster, see {@link FeatureRegistry#select(String[])}
+	 */
+	public static String[] getFeatureNames() {
+		if (!featureCorrectnessChecked) {
+			checkFeatures(); //	will throw an exception on any failure
+		}
+		
+		return featureNames;
+	}
+	
 	public static BayesCluster[] getClusters() {
 		if (!featureCorrectnessChecked) {
 			checkFeatures(); //	will throw an exception on any failure
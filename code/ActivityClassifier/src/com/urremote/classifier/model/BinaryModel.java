@@ -0,0 +1,190 @@
+package com.urremote.classifier.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads and writes {@link ClassifierModel}s in a compact binary format,
+ * which unlike the serialised maps, is read with a single bulk read (or
+ * memory-mapped), and names the features the model was trained on.
+ *
+ * <p>
+ * The format (version 1), all values big-endian:
+ * <pre>
+ *	int				magic number, {@link #MAGIC}
+ *	int				version, {@link #VERSION}
+ *	int				number of features (F)
+ *	int				number of labels (L)
+ *	int				number of samples (N)
+ *	F strings		feature names, see {@link com.urremote.classifier.utils.FeatureRegistry}
+ *	L strings		label names
+ *	0-3 bytes		zeros, up to the next multiple of 4 bytes
+ *	L*F floats		mean of each feature of each label
+ *	L*F floats		sample variance of each feature of each label
+ *	N ints			label of each sample (an index into the label names)
+ *	N*F floats		features of each sample
+ * </pre>
+ * where each string is an unsigned short length followed by that many bytes of UTF-8.
+ *
+ * <p>
+ * Use {@link ModelConverter} to convert the serialised models.
+ *
+ * @author Umran
+ */
+public class BinaryModel {
+
+	/**
+	 * "ACML"
+	 */
+	public static final int MAGIC = 0x41434D4C;
+
+	public static final int VERSION = 1;
+
+	private static final String CHARSET = "UTF-8";
+
+	/**
+	 * Reads a model from a stream, using a single bulk read.
+	 *
+	 * @param is
+	 * the stream to read from, not closed
+	 */
+	public static ClassifierModel read(InputStream is) throws IOException {
+		byte[] data = new byte[Math.max(is.available(), 4096)];
+		int length = 0;
+		int read;
+		while ((read = is.read(data, length, data.length-length))>=0) {
+			length += read;
+			if (length==data.length) {
+				byte[] larger = new byte[data.length*2];
+				System.arraycopy(data, 0, larger, 0, length);
+				data = larger;
+			}
+		}
+		return read(ByteBuffer.wrap(data, 0, length));
+	}
+
+	/**
+	 * Reads a model from a file, memory-mapped.
+	 */
+	public static ClassifierModel read(File file) throws IOException {
+		FileInputStream is = new FileInputStream(file);
+		try {
+			FileChannel channel = is.getChannel();
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Reads a model from a buffer, starting at its position.
+	 */
+	public static ClassifierModel read(ByteBuffer buffer) throws IOException {
+		try {
+			int magic = buffer.getInt();
+			if (magic!=MAGIC)
+				throw new IOException("Not a binary model (magic number "+Integer.toHexString(magic)+")");
+			int version = buffer.getInt();
+			if (version!=VERSION)
+				throw new IOException("Unsupported binary model version "+version+" (expected "+VERSION+")");
+
+			int numOfFeatures = buffer.getInt();
+			int numOfLabels = buffer.getInt();
+			int numOfSamples = buffer.getInt();
+			if (numOfFeatures<=0 || numOfLabels<=0 || numOfSamples<=0)
+				throw new IOException("Invalid binary model dimensions ("+
+						numOfFeatures+" features, "+numOfLabels+" labels, "+numOfSamples+" samples)");
+
+			String[] featureNames = new String[numOfFeatures];
+			for (int f=0; f<numOfFeatures; ++f)
+				featureNames[f] = readString(buffer);
+			String[] labelNames = new String[numOfLabels];
+			for (int l=0; l<numOfLabels; ++l)
+				labelNames[l] = readString(buffer);
+
+			buffer.position((buffer.position()+3) & ~3);
+
+			float[] classMeans = new float[numOfLabels*numOfFeatures];
+			float[] classVariances = new float[numOfLabels*numOfFeatures];
+			int[] labels = new int[numOfSamples];
+			float[] features = new float[numOfSamples*numOfFeatures];
+
+			buffer.asFloatBuffer().get(classMeans);
+			buffer.position(buffer.position()+classMeans.length*4);
+			buffer.asFloatBuffer().get(classVariances);
+			buffer.position(buffer.position()+classVariances.length*4);
+			buffer.asIntBuffer().get(labels);
+			buffer.position(buffer.position()+labels.length*4);
+			buffer.asFloatBuffer().get(features);
+			buffer.position(buffer.position()+features.length*4);
+
+			return new ClassifierModel(featureNames, labelNames, features, labels, classMeans, classVariances);
+		} catch (java.nio.BufferUnderflowException e) {
+			throw new IOException("Binary model is truncated");
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Binary model is truncated");
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		int length = buffer.getShort() & 0xFFFF;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	/**
+	 * Writes a model.
+	 *
+	 * @param os
+	 * the stream to write to, not closed
+	 */
+	public static void write(ClassifierModel model, OutputStream os) throws IOException {
+		int numOfFeatures = model.getNumOfFeatures();
+		int numOfLabels = model.getNumOfLabels();
+		int numOfSamples = model.getNumOfSamples();
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(header);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(numOfFeatures);
+		out.writeInt(numOfLabels);
+		out.writeInt(numOfSamples);
+		for (String name:model.getFeatureNames())
+			writeString(out, name);
+		for (String name:model.getLabelNames())
+			writeString(out, name);
+		while ((out.size() & 3)!=0)
+			out.writeByte(0);
+		out.flush();
+
+		ByteBuffer payload = ByteBuffer.allocate(4*(2*numOfLabels*numOfFeatures + numOfSamples + numOfSamples*numOfFeatures));
+		payload.asFloatBuffer().put(model.getClassMeans());
+		payload.position(payload.position()+numOfLabels*numOfFeatures*4);
+		payload.asFloatBuffer().put(model.getClassVariances());
+		payload.position(payload.position()+numOfLabels*numOfFeatures*4);
+		payload.asIntBuffer().put(model.getLabels());
+		payload.position(payload.position()+numOfSamples*4);
+		payload.asFloatBuffer().put(model.getFeatureMatrix());
+
+		header.writeTo(os);
+		os.write(payload.array());
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(CHARSET);
+		if (bytes.length>0xFFFF)
+			throw new IOException("String too long for a binary model: "+value);
+		out.writeShort(bytes.length);
+		out.write(bytes);
+	}
+
+}
@@ -0,0 +1,265 @@
+package com.urremote.classifier.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.urremote.classifier.common.StringComparator;
+import com.urremote.classifier.utils.FeatureRegistry;
+import com.urremote.classifier.utils.RunningStatistics;
+
+/**
+ * The samples a classifier is trained on, i.e. a feature vector
+ * and an activity (label) per sample.
+ *
+ * <p>
+ * The features are kept in a single row-major array (indexed by
+ * <code>sample*numOfFeatures+feature</code>), and the label of each sample
+ * as an index into a table of label names, hence each label name is kept once.
+ * The label names are sorted (ignoring case), and label names that only differ
+ * in case are considered to be the same label.
+ *
+ * <p>
+ * The mean and (sample) variance of each feature of each label, i.e. the
+ * parameters of each class, are kept along with the samples.
+ *
+ * <p>
+ * Instances are immutable, and shared by all the classifiers using the model.
+ *
+ * @author Umran
+ */
+public class ClassifierModel {
+
+	private final String[] featureNames;
+	private final String[] labelNames;
+	private final int numOfSamples;
+	private final int numOfFeatures;
+	private final float[] features;
+	private final int[] labels;
+	//	dimensions: label*numOfFeatures+feature
+	private final float[] classMeans;
+	private final float[] classVariances;
+
+	/**
+	 * The arrays given are kept (not copied), hence shouldn't be altered afterwards.
+	 *
+	 * @param featureNames
+	 * the names of the features (see {@link FeatureRegistry}), in the order of the features of each sample
+	 *
+	 * @param labelNames
+	 * the names of the labels
+	 *
+	 * @param features
+	 * the features of the samples, row-major, i.e. <code>sample*numOfFeatures+feature</code>
+	 *
+	 * @param labels
+	 * the label of each sample, an index into labelNames
+	 */
+	public ClassifierModel(String[] featureNames, String[] labelNames, float[] features, int[] labels) {
+		this(featureNames, labelNames, features, labels, null, null);
+	}
+
+	/**
+	 * Same as {@link #ClassifierModel(String[], String[], float[], int[])}, with
+	 * the parameters of each class already computed, e.g. read with the model.
+	 *
+	 * @param classMeans
+	 * the mean of each feature of each label (<code>label*numOfFeatures+feature</code>),
+	 * or null to compute them from the samples
+	 *
+	 * @param classVariances
+	 * the sample variance of each feature of each label, or null to compute them from the samples
+	 */
+	public ClassifierModel(String[] featureNames, String[] labelNames, float[] features, int[] labels,
+			float[] classMeans, float[] classVariances) {
+		this.featureNames = featureNames;
+		this.labelNames = labelNames;
+		this.numOfFeatures = featureNames.length;
+		this.numOfSamples = labels.length;
+
+		if (numOfFeatures==0 || numOfSamples==0)
+			throw new RuntimeException("Unable to determine number of features, either no features, or no data");
+		if (features.length!=numOfSamples*numOfFeatures)
+			throw new RuntimeException("The model should have "+numOfFeatures+" features per sample ("+
+					features.length+"!="+numOfSamples+"*"+numOfFeatures+")");
+		for (int label:labels)
+			if (label<0 || label>=labelNames.length)
+				throw new RuntimeException("Invalid label in the model: "+label);
+
+		this.features = features;
+		this.labels = labels;
+
+		if (classMeans==null || classVariances==null) {
+			classMeans = new float[labelNames.length*numOfFeatures];
+			classVariances = new float[labelNames.length*numOfFeatures];
+			computeClassParameters(classMeans, classVariances);
+		} else if (classMeans.length!=labelNames.length*numOfFeatures ||
+				classVariances.length!=labelNames.length*numOfFeatures) {
+			throw new RuntimeException("The model should have the parameters of "+numOfFeatures+
+					" features for each of the "+labelNames.length+" labels");
+		}
+		this.classMeans = classMeans;
+		this.classVariances = classVariances;
+	}
+
+	private void computeClassParameters(float[] outMeans, float[] outVariances) {
+		RunningStatistics[] labelStatistics = new RunningStatistics[labelNames.length];
+		for (int l=0; l<labelNames.length; ++l) {
+			labelStatistics[l] = new RunningStatistics(numOfFeatures);
+		}
+		float[] sampleFeatures = new float[numOfFeatures];
+		for (int s=0; s<numOfSamples; ++s) {
+			getFeatures(s, sampleFeatures);
+			labelStatistics[labels[s]].add(sampleFeatures);
+		}
+		for (int l=0; l<labelNames.length; ++l) {
+			System.arraycopy(labelStatistics[l].getMean(), 0, outMeans, l*numOfFeatures, numOfFeatures);
+			System.arraycopy(labelStatistics[l].getSampleVariance(), 0, outVariances, l*numOfFeatures, numOfFeatures);
+		}
+	}
+
+	/**
+	 * Converts a model saved as a map from each sample's features to
+	 * its details (the first of which is the label), as read by
+	 * {@link ModelReader#getModel(android.content.Context, int)}.
+	 *
+	 * <p>
+	 * These models don't name their features, those with the same number of features
+	 * as {@link FeatureRegistry#DEFAULT_FEATURE_NAMES} were trained on those features,
+	 * while the features of the rest are given placeholder names.
+	 */
+	public static ClassifierModel fromMap(Map<Float[], Object[]> model) {
+		int numOfFeatures = Integer.MAX_VALUE;
+		for (Float[] sampleFeatures:model.keySet()) {
+			if (sampleFeatures.length<numOfFeatures) {
+				numOfFeatures = sampleFeatures.length;
+			}
+		}
+
+		if (numOfFeatures==0 || numOfFeatures==Integer.MAX_VALUE)
+			throw new RuntimeException("Unable to determine number of features, either no features, or no data");
+
+		String[] featureNames;
+		if (numOfFeatures==FeatureRegistry.DEFAULT_FEATURE_NAMES.length) {
+			featureNames = FeatureRegistry.DEFAULT_FEATURE_NAMES;
+		} else {
+			//	older models, trained on other features, which can't be selected
+			featureNames = new String[numOfFeatures];
+			for (int f=0; f<numOfFeatures; ++f)
+				featureNames[f] = "FEATURE "+(f+1);
+		}
+
+		//	intern the labels, sorted, ignoring case
+		Map<String,Integer> labelIndexes = new TreeMap<String,Integer>(StringComparator.CASE_INSENSITIVE_INSTANCE);
+		for (Object[] details:model.values()) {
+			labelIndexes.put((String)details[0], null);
+		}
+		List<String> labelNames = new ArrayList<String>(labelIndexes.keySet());
+		for (int i=0; i<labelNames.size(); ++i) {
+			labelIndexes.put(labelNames.get(i), i);
+		}
+
+		float[] features = new float[model.size()*numOfFeatures];
+		int[] labels = new int[model.size()];
+		int s = 0;
+		for (Map.Entry<Float[], Object[]> entry:model.entrySet()) {
+			Float[] sampleFeatures = entry.getKey();
+			for (int f=0; f<numOfFeatures; ++f) {
+				features[s*numOfFeatures+f] = sampleFeatures[f];
+			}
+			labels[s] = labelIndexes.get((String)entry.getValue()[0]);
+			++s;
+		}
+
+		return new ClassifierModel(featureNames, labelNames.toArray(new String[labelNames.size()]), features, labels);
+	}
+
+	public int getNumOfSamples() {
+		return numOfSamples;
+	}
+
+	public int getNumOfFeatures() {
+		return numOfFeatures;
+	}
+
+	public int getNumOfLabels() {
+		return labelNames.length;
+	}
+
+	/**
+	 * @return
+	 * the names of the features, not to be altered
+	 */
+	public String[] getFeatureNames() {
+		return featureNames;
+	}
+
+	/**
+	 * @return
+	 * the names of the labels, sorted ignoring case, not to be altered
+	 */
+	public String[] getLabelNames() {
+		return labelNames;
+	}
+
+	public String getLabelName(int label) {
+		return labelNames[label];
+	}
+
+	/**
+	 * @return
+	 * the label of the sample, an index into {@link #getLabelNames()}
+	 */
+	public int getLabel(int sample) {
+		return labels[sample];
+	}
+
+	public float getFeature(int sample, int feature) {
+		return features[sample*numOfFeatures+feature];
+	}
+
+	/**
+	 * Copies the features of a sample.
+	 *
+	 * @param outFeatures
+	 * an array of {@link #getNumOfFeatures()} floats to save the features in
+	 */
+	public void getFeatures(int sample, float[] outFeatures) {
+		System.arraycopy(features, sample*numOfFeatures, outFeatures, 0, numOfFeatures);
+	}
+
+	/**
+	 * @return
+	 * the mean of each feature of each label (<code>label*numOfFeatures+feature</code>), not to be altered
+	 */
+	public float[] getClassMeans() {
+		return classMeans;
+	}
+
+	/**
+	 * @return
+	 * the sample variance of each feature of each label (<code>label*numOfFeatures+feature</code>),
+	 * not to be altered
+	 */
+	public float[] getClassVariances() {
+		return classVariances;
+	}
+
+	/**
+	 * @return
+	 * the labels of all the samples, not to be altered
+	 */
+	public int[] getLabels() {
+		return labels;
+	}
+
+	/**
+	 * @return
+	 * the features of all the samples, row-major, not to be altered
+	 */
+	public float[] getFeatureMatrix() {
+		return features;
+	}
+
+}
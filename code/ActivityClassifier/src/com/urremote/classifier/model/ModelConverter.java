@@ -0,0 +1,77 @@
+package com.urremote.classifier.model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Converts models saved as serialised maps (as in <code>res/raw</code>)
+ * to the {@link BinaryModel} format.
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path), e.g.:
+ * <pre>
+ *	java com.urremote.classifier.model.ModelConverter res/raw/new_basic_model res/raw/new_basic_model_bin
+ * </pre>
+ *
+ * @author Umran
+ */
+public class ModelConverter {
+
+	@SuppressWarnings("unchecked")
+	public static ClassifierModel readSerialised(File file) throws IOException, ClassNotFoundException {
+		ObjectInputStream is = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			return ClassifierModel.fromMap((Map<Float[], Object[]>)is.readObject());
+		} finally {
+			is.close();
+		}
+	}
+
+	public static ClassifierModel convert(File input, File output) throws IOException, ClassNotFoundException {
+		ClassifierModel model = readSerialised(input);
+		OutputStream os = new FileOutputStream(output);
+		try {
+			BinaryModel.write(model, os);
+		} finally {
+			os.close();
+		}
+		return model;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length!=2) {
+			System.err.println("Usage: ModelConverter <serialised model> <binary model>");
+			System.exit(1);
+		}
+
+		File input = new File(args[0]);
+		File output = new File(args[1]);
+		ClassifierModel original = convert(input, output);
+
+		//	read it back, to make sure it is the same
+		ClassifierModel converted = BinaryModel.read(output);
+		if (!Arrays.equals(original.getFeatureNames(), converted.getFeatureNames()) ||
+				!Arrays.equals(original.getLabelNames(), converted.getLabelNames()) ||
+				!Arrays.equals(original.getLabels(), converted.getLabels()) ||
+				!Arrays.equals(original.getFeatureMatrix(), converted.getFeatureMatrix()) ||
+				!Arrays.equals(original.getClassMeans(), converted.getClassMeans()) ||
+				!Arrays.equals(original.getClassVariances(), converted.getClassVariances())) {
+			System.err.println("The converted model differs from the original");
+			System.exit(2);
+		}
+
+		System.out.println("Converted "+input+" to "+output+": "+
+				converted.getNumOfSamples()+" samples, "+
+				converted.getNumOfFeatures()+" features, "+
+				converted.getNumOfLabels()+" labels, "+
+				input.length()+" -> "+output.length()+" bytes");
+	}
+
+}
@@ -0,0 +1,121 @@
+package com.urremote.classifier.model;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares the time it takes to load a model at start up, from the serialised
+ * map it used to be loaded from, and from the {@link BinaryModel} it's loaded from now.
+ *
+ * <p>
+ * The binary model is read both from a stream, the way the application reads it from
+ * its resources, and memory-mapped from a file. The first load of each is timed on
+ * its own, as it includes loading the classes involved, which is most of what the
+ * application pays for at start up, followed by the mean of the loads after it.
+ * The models read are checked to be the same, except for the order of the samples,
+ * as a serialised model is an {@link java.util.IdentityHashMap}, whose order
+ * changes from one run to the next.
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path), from the
+ * project's directory, e.g.:
+ * <pre>
+ *	java com.urremote.classifier.model.ModelLoadingBenchmark res/raw/new_basic_model res/raw/new_basic_model_bin 200
+ * </pre>
+ *
+ * @author Umran
+ */
+public class ModelLoadingBenchmark {
+
+	private interface Loader {
+		ClassifierModel load() throws Exception;
+	}
+
+	private static ClassifierModel time(String name, Loader loader, int repeats) throws Exception {
+		long start = System.nanoTime();
+		ClassifierModel model = loader.load();
+		long first = System.nanoTime()-start;
+
+		start = System.nanoTime();
+		for (int i=0; i<repeats; ++i)
+			loader.load();
+		long rest = System.nanoTime()-start;
+
+		System.out.printf("%-12s first load %8.2f ms, then %8.3f ms per load%n",
+				name, first/1e6, rest/1e6/repeats);
+		return model;
+	}
+
+	/**
+	 * @return
+	 * the label and features of each sample, sorted
+	 */
+	private static List<String> getSortedSamples(ClassifierModel model) {
+		List<String> samples = new ArrayList<String>(model.getNumOfSamples());
+		float[] features = new float[model.getNumOfFeatures()];
+		for (int s=0; s<model.getNumOfSamples(); ++s) {
+			model.getFeatures(s, features);
+			samples.add(model.getLabel(s)+":"+Arrays.toString(features));
+		}
+		Collections.sort(samples);
+		return samples;
+	}
+
+	private static boolean same(ClassifierModel a, ClassifierModel b) {
+		return Arrays.equals(a.getFeatureNames(), b.getFeatureNames()) &&
+			Arrays.equals(a.getLabelNames(), b.getLabelNames()) &&
+			getSortedSamples(a).equals(getSortedSamples(b)) &&
+			Arrays.equals(a.getClassMeans(), b.getClassMeans()) &&
+			Arrays.equals(a.getClassVariances(), b.getClassVariances());
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length<2) {
+			System.err.println("Usage: ModelLoadingBenchmark <serialised model> <binary model> [repeats]");
+			System.exit(1);
+		}
+
+		final File serialisedFile = new File(args[0]);
+		final File binaryFile = new File(args[1]);
+		int repeats = args.length>2 ? Integer.parseInt(args[2]) : 200;
+
+		System.out.println(serialisedFile+": "+serialisedFile.length()+" bytes, "+
+				binaryFile+": "+binaryFile.length()+" bytes");
+
+		//	the binary model is loaded first, so that it pays for loading the classes it shares
+		ClassifierModel streamed = time("binary", new Loader() {
+			public ClassifierModel load() throws Exception {
+				InputStream is = new BufferedInputStream(new FileInputStream(binaryFile));
+				try {
+					return BinaryModel.read(is);
+				} finally {
+					is.close();
+				}
+			}
+		}, repeats);
+
+		ClassifierModel mapped = time("mapped", new Loader() {
+			public ClassifierModel load() throws Exception {
+				return BinaryModel.read(binaryFile);
+			}
+		}, repeats);
+
+		ClassifierModel serialised = time("serialised", new Loader() {
+			public ClassifierModel load() throws Exception {
+				return ModelConverter.readSerialised(serialisedFile);
+			}
+		}, repeats);
+
+		if (!same(serialised, streamed) || !same(serialised, mapped)) {
+			System.err.println("The models loaded differ");
+			System.exit(2);
+		}
+	}
+
+}
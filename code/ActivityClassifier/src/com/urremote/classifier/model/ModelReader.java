@@ -31,18 +31,18 @@ import java.util.Map;
 
 /**
  * Provides a static method to read model data stored in a 'raw' resource
- * as a serialised map.
+ * as a serialised map, converted to a {@link ClassifierModel}.
  *
  * @author chris
  */
 public class ModelReader {
 
     @SuppressWarnings("unchecked")
-    public static Map<Float[], Object[]> getModel(final Context context, final int res) {
+    public static ClassifierModel getModel(final Context context, final int res) {
         InputStream is = null;
         try {
             is = context.getResources().openRawResource(res);
-            return (Map<Float[], Object[]>) new ObjectInputStream(is).readObject();
+            return ClassifierModel.fromMap((Map<Float[], Object[]>) new ObjectInputStream(is).readObject());
         } catch (Exception ex) {
             Log.e("ModelReader", "Unable to load model", ex);
         } finally {
@@ -58,4 +58,27 @@ public class ModelReader {
         return null;
     }
 
+    /**
+     * Reads a model stored in a 'raw' resource in the {@link BinaryModel} format.
+     */
+    public static ClassifierModel getBinaryModel(final Context context, final int res) {
+        InputStream is = null;
+        try {
+            is = context.getResources().openRawResource(res);
+            return BinaryModel.read(is);
+        } catch (Exception ex) {
+            Log.e("ModelReader", "Unable to load binary model", ex);
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException ex) {
+                    // Don't care
+                }
+            }
+        }
+
+        return null;
+    }
+
 }
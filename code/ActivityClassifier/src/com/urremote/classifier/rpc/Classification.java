@@ -9,6 +9,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 
 import com.urremote.classifier.common.ActivityNames;
+import com.urremote.classifier.common.ActivityRegistry;
 import com.urremote.classifier.common.Constants;
 import com.urremote.classifier.db.ActivitiesTable;
 import com.urremote.classifier.repository.ActivityQueries;
@@ -28,6 +29,8 @@ public class Classification implements Parcelable, Comparable<Classification> {
 	public final static SimpleDateFormat UI_DATE_FORMAT = new SimpleDateFormat("HH:mm:ss");
 	
 	private String classification;
+	//	see ActivityRegistry, NONE if the classification isn't registered
+	private int activityId;
 	private long start;
 	private long end;
 	private String startStr;
@@ -54,12 +57,17 @@ public class Classification implements Parcelable, Comparable<Classification> {
 		init(classification, start, end);
 	}
 	
+	public Classification(int activityId, long start, long end) {
+		init(activityId, start, end);
+	}
+	
 	public Classification(Classification other) {
 		assignFrom(other);
 	}
 	
 	public void assignFrom(Classification other) {
 		this.classification = other.classification;
+		this.activityId = other.activityId;
 		this.start = other.start;
 		this.end = other.end;
 		this.startStr = other.startStr;
@@ -78,9 +86,18 @@ public class Classification implements Parcelable, Comparable<Classification> {
 	}
 	
 	public void init(String classification, long start, long end) {
-		this.classification = classification;
-		if (this.classification==null)
+		if (classification==null)
 			throw new RuntimeException("Invalid classification with classification name as NULL");
+		init(ActivityRegistry.getId(classification), classification, start, end);
+	}
+	
+	public void init(int activityId, long start, long end) {
+		init(activityId, ActivityRegistry.getName(activityId), start, end);
+	}
+	
+	private void init(int activityId, String classification, long start, long end) {
+		this.classification = classification;
+		this.activityId = activityId;
 		this.start = start;
 		this.end = end;
 		this.myTracksId = null;
@@ -150,11 +167,29 @@ public class Classification implements Parcelable, Comparable<Classification> {
 	 */
 	public void setClassification(String classification) {
 		this.classification = classification;
+		this.activityId = ActivityRegistry.getId(classification);
 	}
 	
 	public String getClassification() {
 		return classification;
 	}
+	
+	/**
+	 * @param activityId the id of the classification to set, see {@link ActivityRegistry}
+	 */
+	public void setActivityId(int activityId) {
+		this.activityId = activityId;
+		this.classification = ActivityRegistry.getName(activityId);
+	}
+	
+	/**
+	 * @return
+	 * the id of the classification (see {@link ActivityRegistry}),
+	 * or {@link ActivityRegistry#NONE} if the classification isn't registered
+	 */
+	public int getActivityId() {
+		return activityId;
+	}
 
 	/**
 	 * @param start the start to set
@@ -0,0 +1,141 @@
+package com.urremote.classifier.service;
+
+import com.urremote.classifier.common.ActivityRegistry;
+import com.urremote.classifier.common.Constants;
+
+import android.util.Log;
+
+/**
+ * Decides the delay until the next sampling batch, based on the latest classification.
+ * 
+ * <p>
+ * While the same stable activity (stationary, uncarried or charging) is classified
+ * for {@link Constants#STABLE_BATCHES_BEFORE_BACKOFF} consecutive batches, the delay
+ * is doubled, up to {@link Constants#MAX_DELAY_SAMPLE_BATCH}. As soon as any other
+ * activity is classified, the delay returns to {@link Constants#DELAY_SAMPLE_BATCH}.
+ * 
+ * <p>
+ * Motion is only noticed when the next batch is sampled, hence the longest delay is
+ * also the longest the user can be moving before the fast schedule resumes. The delay
+ * is capped rather than stretched indefinitely to keep this bounded, trading some
+ * of the sensor-on time saved for detection latency. Events that don't need the
+ * accelerometer, and suggest the phone is being handled (e.g. being plugged in or
+ * unplugged), call {@link #wakeUp()} so that a batch is sampled straight away.
+ * 
+ * <p>
+ * Also keeps track of the time the accelerometer has been on while sampling,
+ * in order to report the sensor-on duty cycle.
+ * 
+ * @author Umran
+ *
+ */
+public class AdaptiveSamplingScheduler {
+	
+	private final long minDelay;
+	private final long maxDelay;
+	private final int stableBatchesBeforeBackoff;
+	
+	private long currentDelay;
+	private int lastActivity;
+	private int stableBatchCount;
+	
+	private long startTime;
+	private long sensorOnTime;
+	
+	public AdaptiveSamplingScheduler(long minDelay, long maxDelay, int stableBatchesBeforeBackoff) {
+		if (minDelay<=0 || maxDelay<minDelay)
+			throw new IllegalArgumentException("Invalid delay bounds ["+minDelay+","+maxDelay+"]");
+		
+		this.minDelay = minDelay;
+		this.maxDelay = maxDelay;
+		this.stableBatchesBeforeBackoff = stableBatchesBeforeBackoff;
+		reset(System.currentTimeMillis());
+	}
+	
+	public synchronized void reset(long currentTime) {
+		this.currentDelay = minDelay;
+		this.lastActivity = ActivityRegistry.NONE;
+		this.stableBatchCount = 0;
+		this.startTime = currentTime;
+		this.sensorOnTime = 0;
+	}
+	
+	/**
+	 * @return
+	 * true if the activity given is not expected to change
+	 * without the user starting to move first
+	 */
+	public static boolean isStableActivity(int activity) {
+		return activity==ActivityRegistry.STATIONARY ||
+			activity==ActivityRegistry.UNCARRIED ||
+			activity==ActivityRegistry.CHARGING;
+	}
+	
+	/**
+	 * Updates the delay until the next sampling batch given the latest classification.
+	 * 
+	 * @return
+	 * the delay (in ms) until the next sampling batch
+	 */
+	public synchronized long update(int activity) {
+		if (isStableActivity(activity) && activity==lastActivity) {
+			++stableBatchCount;
+			if (stableBatchCount>=stableBatchesBeforeBackoff && currentDelay<maxDelay) {
+				currentDelay = Math.min(currentDelay*2, maxDelay);
+				stableBatchCount = 0;
+				Log.d(Constants.TAG, "Stable activity "+ActivityRegistry.getName(activity)+", sampling delay increased to "+currentDelay+"ms");
+			}
+		} else {
+			if (currentDelay!=minDelay) {
+				Log.d(Constants.TAG, "Activity changed to "+ActivityRegistry.getName(activity)+", sampling delay reset to "+minDelay+"ms");
+			}
+			currentDelay = minDelay;
+			stableBatchCount = 0;
+		}
+		lastActivity = activity;
+		
+		return currentDelay;
+	}
+	
+	/**
+	 * Returns to the fast schedule, without waiting for the next batch to be classified.
+	 * 
+	 * @return
+	 * true if the delay was stretched, i.e. the next batch should be sampled
+	 * earlier than scheduled
+	 */
+	public synchronized boolean wakeUp() {
+		boolean stretched = currentDelay!=minDelay;
+		if (stretched) {
+			Log.d(Constants.TAG, "Woken up, sampling delay reset to "+minDelay+"ms");
+		}
+		currentDelay = minDelay;
+		stableBatchCount = 0;
+		lastActivity = ActivityRegistry.NONE;
+		return stretched;
+	}
+	
+	public synchronized long getCurrentDelay() {
+		return currentDelay;
+	}
+	
+	/**
+	 * Adds the duration (in ms) the accelerometer was on while sampling a batch.
+	 */
+	public synchronized void addSensorOnTime(long duration) {
+		if (duration>0)
+			sensorOnTime += duration;
+	}
+	
+	/**
+	 * @return
+	 * the fraction of time the accelerometer has been on since the scheduler was reset
+	 */
+	public synchronized float getDutyCycle(long currentTime) {
+		long elapsed = currentTime-startTime;
+		if (elapsed<=0)
+			return 0.0f;
+		return (float)sensorOnTime/elapsed;
+	}
+
+}
@@ -24,9 +24,11 @@ import com.urremote.classifier.accel.Sampler;
 import com.urremote.classifier.accel.SamplerCallback;
 import com.urremote.classifier.accel.async.AsyncAccelReader;
 import com.urremote.classifier.accel.async.AsyncSampler;
+import com.urremote.classifier.accel.async.SlidingWindowSampler;
+import com.urremote.classifier.accel.replay.RawDumpReplaySource;
 import com.urremote.classifier.activity.MainTabActivity;
 import com.urremote.classifier.auth.AuthManager;
-import com.urremote.classifier.common.ActivityNames;
+import com.urremote.classifier.common.ActivityRegistry;
 import com.urremote.classifier.common.Constants;
 import com.urremote.classifier.common.DbFileUtil;
 import com.urremote.classifier.common.ExceptionHandler;
@@ -80,7 +82,10 @@ import android.widget.Toast;
  * on.
  * 
  * It calls Sampler and AccelReader to sample for 6.4 sec (128 sample point
- * every 50 msec), and it repeats every 30 sec.
+ * every 50 msec), and it repeats every 30 sec. If
+ * {@link Constants#USE_SLIDING_WINDOW_SAMPLING} is set, it samples continuously
+ * instead, and classifies overlapping windows of 128 samples. Replayed dumps
+ * are always sampled continuously (see {@link Constants#SAMPLE_CONTINUOUSLY}).
  * 
  * Update activity history to web server every 5 min. If there is bad internet
  * connection, then it does not send them and waits for next time.
@@ -121,6 +126,10 @@ public class RecorderService extends Service implements Runnable {
 	private PendingIntent pendingSamplingIntent;
 	private PendingIntent pendingBackupIntent;
 	private ExecutorService samplingExecutorService;
+	//	null if the delay between batches is fixed
+	private AdaptiveSamplingScheduler samplingScheduler;
+	//	the interval the repeating sampling alarm is currently set to, when sampling adaptively
+	private volatile long samplingInterval;
 	
 	private NotificationManager notificationManager;
 	
@@ -148,11 +157,18 @@ public class RecorderService extends Service implements Runnable {
 		@Override
 		public void onReceive(Context arg0, Intent arg1) {
 			int status = arg1.getIntExtra("plugged", -1);
+			boolean wasCharging = charging;
 			if (status != 0) {
 				charging = true;
 			} else {
 				charging = false;
 			}
+			
+			//	the phone was just plugged in or unplugged, hence is being handled,
+			//		don't wait for the stretched sampling delay to pass
+			if (charging!=wasCharging && samplingScheduler!=null && samplingScheduler.wakeUp()) {
+				scheduleSampling(System.currentTimeMillis(), samplingScheduler.getCurrentDelay());
+			}
 		}
 	};
 
@@ -179,7 +195,8 @@ public class RecorderService extends Service implements Runnable {
 				partialWakeLockShouldBeOn = true;
 			}
 			if (!wakelock && partialWakeLock.isHeld()) {
-				if (!optionsTable.getFullTimeAccel()) {
+				//	when sampling continuously, the accelerometer has to stay on between classifications
+				if (!optionsTable.getFullTimeAccel() && !Constants.SAMPLE_CONTINUOUSLY) {
 					partialWakeLock.release();
 				}
 				partialWakeLockShouldBeOn = false;
@@ -217,9 +234,14 @@ public class RecorderService extends Service implements Runnable {
 			return mainLooperHandler;
 		}
 
-		public void submitClassification(long sampleTime, String classification, double eeAct, double met) throws RemoteException {
-			Log.i(Constants.TAG, "Recorder Service: Received classification: '" + classification + "'");
-			updateScores(sampleTime, classification, eeAct, met);
+		public void submitClassification(long sampleTime, int activity, double eeAct, double met) throws RemoteException {
+			Log.i(Constants.TAG, "Recorder Service: Received classification: '" + ActivityRegistry.getName(activity) + "'");
+			try {
+				updateScores(sampleTime, activity, eeAct, met);
+			} finally {
+				//	sampling goes on at the new delay, even if the classification couldn't be saved
+				applySamplingDelay();
+			}
 		}
 
 		public List<Classification> getClassifications() throws RemoteException {
@@ -300,36 +322,37 @@ public class RecorderService extends Service implements Runnable {
 	};
 	
 	/**
-	 * Sampling has to be started in another thread, since it's time consuming.
-	 * If done in the main UI thread, the UI gets unresponsive and the application crashes.
+	 * Sampling is started in another thread, since the garbage collection invoked
+	 * before sampling is time consuming. The sampler doesn't wait for the batch to be
+	 * sampled, so the thread is released as soon as sampling has started.
 	 */
 	private Runnable samplingInvoker = new Runnable() {
 		
 		public void run() {
 			//	if the sampler is not sampling...
 			if (!sampler.isSampling()) {
-				applyWakeLock(true); // start of sampling/classification cycle, turn on wake lock
-				
 				//	take an empty batch and give it to the sampler to sample...
-				try {
-					//	to make the sample timing more accurate,
-					//		we invoke the gc before we start sampling,
-					//		in the hopes that it wont happen in the sampling
-					//		period.
-					System.gc();
-
-					//					Log.v(Constants.TAG, "Sending an empty batch for sampling.");
-
-					//	please note that this function blocks until an empty batch is found
-					//	which is why it is important to start with a sufficient number of batches
-					//	and process the batches as fast as possible
-					SampleBatch batch = batchBuffer.takeEmptyInstance();
-					Log.i(Constants.TAG, "Sampling Batch");
-					sampler.start(batch);
-					
-				} catch (InterruptedException e) {
-					e.printStackTrace();
+				
+				//	this function doesn't block, if all the batches are still waiting
+				//	to be classified, depending on the overload policy, either the oldest
+				//	batch is dropped, or this sampling period is skipped, and sampling
+				//	is attempted again when the next sampling alarm goes off.
+				SampleBatch batch = batchBuffer.pollEmptyForSampling();
+				if (batch==null) {
+					Log.w(Constants.TAG, "No empty batch available, skipping sampling. Filled batches = "+batchBuffer.getFilledSize());
+					return;
 				}
+				
+				applyWakeLock(true); // start of sampling/classification cycle, turn on wake lock
+				
+				//	to make the sample timing more accurate,
+				//		we invoke the gc before we start sampling,
+				//		in the hopes that it wont happen in the sampling
+				//		period.
+				System.gc();
+				
+				Log.i(Constants.TAG, "Sampling Batch");
+				sampler.start(batch);
 			}
 		}
 	};
@@ -344,6 +367,10 @@ public class RecorderService extends Service implements Runnable {
 				//	set any required properties
 				batch.setCharging(charging);
 				
+				if (samplingScheduler!=null) {
+					samplingScheduler.addSensorOnTime(batch.getLastSampleTime()-batch.getFirstSampleTime());
+				}
+				
 				//	put it back into the buffer as a filled batch
 				try {
 					batchBuffer.returnFilledInstance(batch);
@@ -375,15 +402,48 @@ public class RecorderService extends Service implements Runnable {
 
 	};
 
-	private void updateScores(long sampleTime, String best, double eeAct, double met) {
+	/**
+	 * Sets the repeating sampling alarm to go off at the time given, and every
+	 * interval given after that, replacing the previous alarm. The alarm keeps
+	 * repeating whether or not the batches are classified, hence sampling never
+	 * stops because a batch wasn't, and the alarm is only set again when the
+	 * adaptive delay changes. As with the fixed delay, the alarm is inexact,
+	 * so that the system can deliver it along with other alarms.
+	 */
+	private void scheduleSampling(long firstTime, long interval) {
+		samplingInterval = interval;
+		alarmManager.setInexactRepeating(AlarmManager.RTC_WAKEUP, firstTime, interval, pendingSamplingIntent);
+	}
+	
+	/**
+	 * Sets the sampling alarm's interval to the current adaptive delay, if it changed.
+	 */
+	private void applySamplingDelay() {
+		if (samplingScheduler!=null) {
+			long delay = samplingScheduler.getCurrentDelay();
+			if (delay!=samplingInterval) {
+				scheduleSampling(System.currentTimeMillis()+delay, delay);
+			}
+		}
+	}
+
+	private void updateScores(long sampleTime, int best, double eeAct, double met) {
 		long start = sampleTime;
-		long end = sampleTime+Constants.DELAY_SAMPLE_BATCH;
+		long end = sampleTime+Constants.DELAY_BETWEEN_CLASSIFICATIONS;
+		
+		if (samplingScheduler!=null) {
+			//	the classification lasts until the next batch is sampled
+			long delay = samplingScheduler.update(best);
+			end = sampleTime+delay;
+			Log.d(Constants.TAG, String.format("Next sampling in %ds, sensor duty cycle %.1f%%",
+					delay/1000, samplingScheduler.getDutyCycle(System.currentTimeMillis())*100.0f));
+		}
 		
 		if (activitiesTable.loadLatest(latestClassification)) {
 			long durationSinceLast = start-latestClassification.getEnd()-2;
 			
 			if (durationSinceLast>Constants.DURATION_EMPTY_INSERT_UNKNOWN) {
-				Classification unknown = new Classification(ActivityNames.UNKNOWN, latestClassification.getEnd()+1, start-1);
+				Classification unknown = new Classification(ActivityRegistry.UNKNOWN, latestClassification.getEnd()+1, start-1);
 				
 				unknown.withContext(this);
 				unknown.setNumberOfBatches(1);
@@ -409,7 +469,7 @@ public class RecorderService extends Service implements Runnable {
 		}
 		
 		if (Constants.OUTPUT_DEBUG_INFO) {
-			debugDataTable.updateFinalSystemOutput(sampleTime, best);
+			debugDataTable.updateFinalSystemOutput(sampleTime, ActivityRegistry.getName(best));
 		}
 		
 		applyWakeLock(false); // end of sampling/classification cycle, turn off wake lock after updating
@@ -425,7 +485,7 @@ public class RecorderService extends Service implements Runnable {
 				activitiesTable.update(latestClassification);
 			}
 			
-			if (latestClassification.getClassification().equals(newClassification.getClassification())) {
+			if (latestClassification.getActivityId()==newClassification.getActivityId()) {
 				int prevNumBatches = latestClassification.getNumberOfBatches();
 				int currNumBatches = newClassification.getNumberOfBatches();
 				int totalNumBatches = prevNumBatches + currNumBatches;
@@ -604,11 +664,11 @@ public class RecorderService extends Service implements Runnable {
 				}
 				long start = lastClassification.getEnd() + 1;
 				
-				if (ActivityNames.OFF.equals(lastClassification.getClassification())) {
+				if (lastClassification.getActivityId()==ActivityRegistry.OFF) {
 					lastClassification.setEnd(end);
 					activitiesTable.update(lastClassification);
 				} else {
-					Classification offClass = new Classification(ActivityNames.OFF, start, end);
+					Classification offClass = new Classification(ActivityRegistry.OFF, start, end);
 					offClass.setMet(1.0f);
 					activitiesTable.insert(offClass);
 				}
@@ -619,8 +679,22 @@ public class RecorderService extends Service implements Runnable {
 			}
 		}
 
-		AsyncAccelReader reader = new AsyncAccelReader(this);
-		sampler = new AsyncSampler(binder, reader, samplerCallback, handler);
+		AsyncAccelReader reader;
+		if (Constants.REPLAY_RAW_DUMPS) {
+			reader = new AsyncAccelReader(this, new RawDumpReplaySource(Constants.RAW_DUMP_REPLAY_SPEED));
+		} else {
+			reader = new AsyncAccelReader(this);
+		}
+		if (Constants.SAMPLE_CONTINUOUSLY) {
+			//	the alarm only restarts the sampler if it stopped (e.g. due to a hardware fault),
+			//		replayed dumps are split into consecutive windows, unless sliding windows are used,
+			//		and the replay waits for empty batches, rather than dropping windows
+			int hopSize = Constants.USE_SLIDING_WINDOW_SAMPLING ? Constants.SLIDING_WINDOW_HOP_SIZE : Constants.NUMBER_OF_SAMPLES;
+			sampler = new SlidingWindowSampler(binder, reader, samplerCallback, batchBuffer, handler,
+					hopSize, Constants.REPLAY_RAW_DUMPS);
+		} else {
+			sampler = new AsyncSampler(binder, reader, samplerCallback, handler);
+		}
 
 		//        SyncAccelReader reader = new SyncAccelReaderFactory().getReader(this);
 		//		sampler = new SyncSampler(reader, analyseRunnable);
@@ -645,9 +719,17 @@ public class RecorderService extends Service implements Runnable {
 		String samplingIntentAction = Constants.DEFAULT_PACKAGE+".intent.sampling.start";
 		Intent samplingIntent = new Intent(samplingIntentAction);
 		pendingSamplingIntent = PendingIntent.getBroadcast(this, 0, samplingIntent, 0);
-		alarmManager.setInexactRepeating(AlarmManager.RTC_WAKEUP, 
-				Constants.DELAY_SAMPLE_BATCH, Constants.DELAY_SAMPLE_BATCH, pendingSamplingIntent);
 		this.registerReceiver(startSamplingBroadcastReceiver, new IntentFilter(samplingIntentAction));
+		if (Constants.USE_ADAPTIVE_SAMPLING && !Constants.SAMPLE_CONTINUOUSLY) {
+			//	the alarm's interval is changed whenever a classified batch changes the delay
+			samplingScheduler = new AdaptiveSamplingScheduler(
+					Constants.DELAY_SAMPLE_BATCH, Constants.MAX_DELAY_SAMPLE_BATCH, Constants.STABLE_BATCHES_BEFORE_BACKOFF);
+			scheduleSampling(System.currentTimeMillis(), samplingScheduler.getCurrentDelay());
+		} else {
+			samplingScheduler = null;
+			alarmManager.setInexactRepeating(AlarmManager.RTC_WAKEUP, 
+					Constants.DELAY_SAMPLE_BATCH, Constants.DELAY_SAMPLE_BATCH, pendingSamplingIntent);
+		}
 		
 		if (Constants.BACKUP_DB_TO_SDCARD) {
 			long currentTime = System.currentTimeMillis();
@@ -0,0 +1,315 @@
+package com.urremote.classifier.service.threads;
+
+import com.urremote.classifier.accel.CalibrationValues;
+import com.urremote.classifier.accel.SampleBatch;
+import com.urremote.classifier.classifier.Classifier;
+import com.urremote.classifier.classifier.ClassifierCascade;
+import com.urremote.classifier.common.ActivityRegistry;
+import com.urremote.classifier.common.Constants;
+import com.urremote.classifier.utils.FeatureInputs;
+import com.urremote.classifier.utils.FeatureRegistry;
+import com.urremote.classifier.utils.FeatureSet;
+import com.urremote.classifier.utils.FusedFeatureKernel;
+import com.urremote.classifier.utils.MetUtilOrig;
+import com.urremote.classifier.utils.RunningStatistics;
+
+/**
+ * 
+ * A sample batch passing through the {@link ClassifierThread}'s pipeline,
+ * along with the values computed for it.
+ * 
+ * <p>
+ * The compute stage ({@link #run()}) only depends on the batch, and the
+ * {@link CalibrationValues} published when the job was dispatched, hence jobs are computed
+ * in parallel on the classifier's worker threads. Each job has its own
+ * {@link FusedFeatureKernel} and {@link FeatureInputs}, while the classifier,
+ * the cascade, the {@link FeatureSet} and the MET utility are shared, and are
+ * only read from (apart from the cascade's counters).
+ * 
+ * <p>
+ * Once computed, the results are committed by the {@link ClassifierThread}
+ * in the order the jobs were dispatched.
+ * 
+ * <p>
+ * Jobs are pre-allocated, one per sample batch, and reused.
+ * 
+ * @author Umran
+ *
+ */
+class ClassificationJob implements Runnable {
+	
+	//	outcomes of the compute stage
+	public static final int RESULT_NONE = 0;
+	public static final int RESULT_CLASSIFIED = 1;
+	public static final int RESULT_ROTATION_FAILED = 2;
+	public static final int RESULT_GRAVITY_OUT_OF_LIMITS = 3;
+	public static final int RESULT_CALIBRATION = 4;
+	//	classified using the features extracted while sampling, see SampleBatch.getStreamingFeatures()
+	public static final int RESULT_CLASSIFIED_STREAMING = 5;
+	//	classified by one of the cheap stages of the cascade, see ClassifierCascade
+	public static final int RESULT_CLASSIFIED_EARLY = 6;
+	
+	private final ClassifierThread owner;
+	private final Classifier classifier;
+	private final ClassifierCascade cascade;
+	private final FeatureSet featureSet;
+	private final MetUtilOrig metUtil;
+	//	the activity id of each of the classifier's labels
+	private final int[] labelActivities;
+	
+	//	set when dispatched
+	private volatile long sequence = -1;
+	private volatile boolean computed;
+	private SampleBatch batch;
+	private boolean forceCalibration;
+	private CalibrationValues calibration;
+	
+	//	set by the compute stage
+	private int result;
+	private float calcGravity;
+	private float minGravity;
+	private float maxGravity;
+	//	see ActivityRegistry
+	private int activity;
+	private final float[] features;
+	//	the classifier's posterior of each label, see Classifier.classify(float[], float[])
+	private final float[] posteriors;
+	private double eeAct;
+	private double met;
+	private long computeStart;
+	private long computeEnd;
+	
+	//	computes the statistics and features, kept with the job for the commit stage
+	private final FusedFeatureKernel kernel = new FusedFeatureKernel();
+	//	computes the intermediate results the model's features require, and the counts for the MET
+	private final FeatureInputs inputs;
+	
+	/**
+	 * @param cascade
+	 * the cheap stages batches go through before the classifier, or null if not used
+	 * 
+	 * @param labelActivities
+	 * the activity id of each of the classifier's labels, see {@link ActivityRegistry#getIds(String[])}
+	 */
+	public ClassificationJob(ClassifierThread owner, Classifier classifier, ClassifierCascade cascade,
+			FeatureSet featureSet, MetUtilOrig metUtil, int[] labelActivities) {
+		this.owner = owner;
+		this.classifier = classifier;
+		this.cascade = cascade;
+		this.featureSet = featureSet;
+		this.metUtil = metUtil;
+		this.labelActivities = labelActivities;
+		this.inputs = new FeatureInputs(featureSet, metUtil);
+		this.features = new float[featureSet.size()];
+		this.posteriors = new float[classifier.getNumOfLabels()];
+	}
+	
+	/**
+	 * Assigns a batch to the job, before it is given to the compute stage.
+	 * 
+	 * @param forceCalibration
+	 * if true, nothing is computed, the batch is used for calibration when committed
+	 * 
+	 * @param calibration
+	 * the calibration values to compute the batch with
+	 */
+	public void dispatch(long sequence, SampleBatch batch, boolean forceCalibration,
+			CalibrationValues calibration) {
+		//	the sequence is updated after computed is reset, see ClassifierThread.commitComputedJobs()
+		this.computed = false;
+		this.batch = batch;
+		this.forceCalibration = forceCalibration;
+		this.calibration = calibration;
+		this.result = RESULT_NONE;
+		this.activity = ActivityRegistry.NONE;
+		this.eeAct = 0.0;
+		this.met = 1.0;
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * Clears the job once committed.
+	 */
+	public void release() {
+		this.batch = null;
+	}
+	
+	public void run() {
+		try {
+			compute();
+		} finally {
+			this.computed = true;
+			owner.commitComputedJobs();
+		}
+	}
+	
+	private void compute() {
+		computeStart = System.currentTimeMillis();
+		try {
+			if (forceCalibration) {
+				result = RESULT_CALIBRATION;
+				return;
+			}
+			
+			float[][] data = batch.axisData;
+			int size = batch.getSize();
+			
+			//	take out accelerometer axis offsets, and compute the unrotated statistics
+			kernel.assignRaw(data, size, calibration.getOffset(), calibration.getScale());
+			
+			//	check the current gravity, rotate and perform classification
+			RunningStatistics rawStatistics = kernel.getRawStatistics();
+			float gravity = calibration.getGravity();
+			calcGravity = rawStatistics.calcMag(rawStatistics.getMean());
+			minGravity = gravity - gravity*Constants.MIN_GRAVITY_DEV;
+			maxGravity = gravity + gravity*Constants.MIN_GRAVITY_DEV;
+			
+			if (calcGravity<minGravity || calcGravity>maxGravity) {
+				result = RESULT_GRAVITY_OUT_OF_LIMITS;
+				return;
+			}
+			
+			if (cascade!=null) {
+				//	plainly still batches, etc. don't need to be rotated
+				activity = cascade.classify(rawStatistics);
+				if (activity!=ActivityRegistry.NONE) {
+					result = RESULT_CLASSIFIED_EARLY;
+					return;
+				}
+			}
+			
+			if (batch.isFeaturesOnly() && batch.hasStreamingFeatures() &&
+					batch.getStreamingCalibration()==calibration &&
+					!featureSet.requires(FeatureRegistry.INPUT_ROTATED)) {
+				//	overloaded, and the features were extracted while sampling,
+				//		with the same calibration, hence there's no need to rotate the samples
+				inputs.assignTimeDomain(batch.getStreamingFeatures());
+				featureSet.compute(inputs, features);
+				classify();
+				result = RESULT_CLASSIFIED_STREAMING;
+				return;
+			}
+			
+			// first rotate samples to world-orientation, and extract the features
+			long fullStart = System.nanoTime();
+			if (!kernel.rotateAndExtract(data, size)) {
+				result = RESULT_ROTATION_FAILED;
+				return;
+			}
+			
+			inputs.assign(kernel.getFeatures(), data, size, batch.timeStamps);
+			featureSet.compute(inputs, features);
+			classify();
+			result = RESULT_CLASSIFIED;
+			if (cascade!=null)
+				cascade.addFullClassificationTime(System.nanoTime()-fullStart);
+			
+			if (!batch.isFeaturesOnly()) {
+				//	shared with the model's features, if the model requires the counts
+				eeAct = metUtil.computeEEact(inputs.getCounts());
+				met = metUtil.computeMET(eeAct);
+			}
+		} finally {
+			computeEnd = System.currentTimeMillis();
+		}
+	}
+	
+	private void classify() {
+		int label = classifier.classify(features, posteriors);
+		if (label<0)
+			activity = ActivityRegistry.UNKNOWN;
+		else
+			activity = labelActivities[label];
+	}
+	
+	public long getSequence() {
+		return sequence;
+	}
+	
+	public boolean isComputed() {
+		return computed;
+	}
+	
+	public SampleBatch getBatch() {
+		return batch;
+	}
+	
+	public int getResult() {
+		return result;
+	}
+	
+	/**
+	 * @return
+	 * the statistics of the samples, after the offsets were taken out, and before rotation
+	 */
+	public RunningStatistics getRawStatistics() {
+		return kernel.getRawStatistics();
+	}
+	
+	/**
+	 * @return
+	 * the statistics of the horizontal magnitude and vertical component of the rotated samples,
+	 * only valid if the result is {@link #RESULT_CLASSIFIED}
+	 */
+	public RunningStatistics getHorVerStatistics() {
+		return kernel.getHorVerStatistics();
+	}
+	
+	public float getCalcGravity() {
+		return calcGravity;
+	}
+	
+	public float getMinGravity() {
+		return minGravity;
+	}
+	
+	public float getMaxGravity() {
+		return maxGravity;
+	}
+	
+	/**
+	 * @return
+	 * the id of the classifier's output (see {@link ActivityRegistry}),
+	 * or {@link ActivityRegistry#NONE} if the batch couldn't be classified
+	 */
+	public int getActivity() {
+		return activity;
+	}
+	
+	/**
+	 * @return
+	 * the classifier's posterior of each label, indexed by the label id (see
+	 * {@link Classifier#getLabelName(int)}), only valid if the result is
+	 * {@link #RESULT_CLASSIFIED} or {@link #RESULT_CLASSIFIED_STREAMING},
+	 * owned by the job, hence only valid until the job is released
+	 */
+	public float[] getPosteriors() {
+		return posteriors;
+	}
+	
+	/**
+	 * @return
+	 * the counts per second of the rotated samples,
+	 * only valid if the result is {@link #RESULT_CLASSIFIED}, and the batch wasn't features only
+	 */
+	public double[] getCounts() {
+		return inputs.getCounts();
+	}
+	
+	public double getEeAct() {
+		return eeAct;
+	}
+	
+	public double getMet() {
+		return met;
+	}
+	
+	public long getComputeStart() {
+		return computeStart;
+	}
+	
+	public long getComputeEnd() {
+		return computeEnd;
+	}
+	
+}
@@ -7,18 +7,26 @@ package com.urremote.classifier.service.threads;
 
 import java.io.File;
 import java.util.Arrays;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.urremote.classifier.accel.CalibrationValues;
 import com.urremote.classifier.accel.SampleBatch;
 import com.urremote.classifier.accel.SampleBatchBuffer;
 import com.urremote.classifier.activity.MainSettingsActivity;
 import com.urremote.classifier.activity.MainTabActivity;
 import com.urremote.classifier.aggregator.Aggregator;
+import com.urremote.classifier.aggregator.HmmAggregator;
+import com.urremote.classifier.classifier.CascadeStage;
 import com.urremote.classifier.classifier.Classifier;
+import com.urremote.classifier.classifier.ClassifierCascade;
 import com.urremote.classifier.classifier.KnnClassifier;
 import com.urremote.classifier.classifier.NaiveBayesClassifier;
-import com.urremote.classifier.common.ActivityNames;
+import com.urremote.classifier.classifier.StillnessStage;
+import com.urremote.classifier.common.ActivityRegistry;
 import com.urremote.classifier.common.Constants;
 import com.urremote.classifier.common.ExceptionHandler;
 import com.urremote.classifier.db.ActivitiesTable;
@@ -26,16 +34,17 @@ import com.urremote.classifier.db.DebugDataTable;
 import com.urremote.classifier.db.OptionUpdateHandler;
 import com.urremote.classifier.db.OptionsTable;
 import com.urremote.classifier.db.SqlLiteAdapter;
+import com.urremote.classifier.model.ClassifierModel;
 import com.urremote.classifier.model.ModelReader;
 import com.urremote.classifier.service.RecorderService;
-import com.urremote.classifier.utils.CalcStatistics;
 import com.urremote.classifier.utils.Calibrator;
-import com.urremote.classifier.utils.FeatureExtractor;
+import com.urremote.classifier.utils.FeatureRegistry;
+import com.urremote.classifier.utils.FeatureSet;
 import com.urremote.classifier.utils.LogRedirect;
 import com.urremote.classifier.utils.MetUtilFinal;
 import com.urremote.classifier.utils.MetUtilOrig;
 import com.urremote.classifier.utils.RawDump;
-import com.urremote.classifier.utils.RotateSamplesToVerticalHorizontal;
+import com.urremote.classifier.utils.RunningStatistics;
 import com.urremote.classifier.utils.WalkingSpeedUtil;
 
 import com.urremote.classifier.R;
@@ -79,6 +88,16 @@ import android.widget.TabHost;
  * removed here, after analysis, the batches are posted back into the buffer as
  * empty batches where the recorder class removes them and fills them with
  * sampled data.
+ * <p>
+ * Batches are classified in a pipeline of two stages. Each batch taken from the
+ * buffer is assigned to a {@link ClassificationJob}, and passed on to the compute
+ * stage, which takes out the calibration offsets, computes the statistics, rotates
+ * the samples, extracts the features, classifies them and computes the MET values.
+ * The compute stage doesn't depend on previous batches, hence runs on a pool of
+ * {@link Constants#CLASSIFIER_WORKER_COUNT} worker threads. The commit stage, which
+ * updates the calibrator and aggregator, saves the debugging data and submits
+ * the classification, is then run for each job in the order the batches were taken,
+ * by whichever worker completes the next job in sequence.
  * 
  * @author chris, modified by Justin Lee
  * 
@@ -91,35 +110,63 @@ public class ClassifierThread extends Thread implements OptionUpdateHandler {
 	private SampleBatchBuffer batchBuffer;
 	private RawDump rawDump;
 
-	private Map<Float[],Object[]> model; 
+	private ClassifierModel model; 
 
 	private SqlLiteAdapter sqlLiteAdapter;
 	private OptionsTable optionsTable;
 	private DebugDataTable debugDataTable;
 
-	private CalcStatistics rawSampleStatistics = new CalcStatistics(Constants.ACCEL_DIM);
-	private CalcStatistics rotatedSampleStatistics = new CalcStatistics(Constants.ACCEL_DIM);	
+	//	used when calibrating
+	private RunningStatistics rawSampleStatistics = new RunningStatistics(Constants.ACCEL_DIM);
 
-	private float[][] rotatedMergedSamples = new float[Constants.NUMBER_OF_SAMPLES][2];
-	private CalcStatistics rotatedMergedSampleStatistics = new CalcStatistics(2);	
 
-	private RotateSamplesToVerticalHorizontal rotateSamples = new RotateSamplesToVerticalHorizontal();
-	private FeatureExtractor featureExtractor = new FeatureExtractor();
 	private Classifier classifier;
+	//	cheap stages before the classifier, null if not used
+	private ClassifierCascade cascade;
+	//	the features the model requires, only these are computed for each batch
+	private FeatureSet featureSet;
 	private Aggregator aggregator;
-
-	public static boolean forceCalibration;
+	//	used in place of the aggregator if set, see OptionsTable.getAggregatorType(),
+	//		both are only replaced under the commit lock
+	private HmmAggregator hmmAggregator;
+	//	set when the aggregator type option changes, the aggregators are
+	//		replaced by the classifier thread before it dispatches the next batch
+	private volatile boolean aggregatorTypeChanged;
+	//	the activity id of each of the model's labels
+	private int[] labelActivities;
+
+	public static volatile boolean forceCalibration;
 	private boolean isCalibrated;
 	private Calibrator calibrator;
 	
-	double counts[] = new double[3];
-	double eeAct[] = new double[1];
-	double met[] = new double[1];
 	private MetUtilOrig metUtil;
 	
+	//	the compute stage, which runs the jobs on the worker threads
+	private final ExecutorService computeStage;
+	//	one job per sample batch, reused in sequence
+	private final ClassificationJob[] jobs;
+	//	sequence of the next job to dispatch (only used by this thread)
+	private long nextDispatchSequence;
+	//	sequence of the next job to commit, guarded by commitLock
+	private long nextCommitSequence;
+	private final Object commitLock = new Object();
+	//	the calibration values after each batch was committed, by the batch's sequence
+	//		modulo the pipeline depth (see Constants.CLASSIFIER_PIPELINE_DEPTH), guarded by commitLock
+	private final CalibrationValues[] committedCalibrations = new CalibrationValues[Constants.CLASSIFIER_PIPELINE_DEPTH];
+	//	the calibration values before any batch was committed
+	private CalibrationValues initialCalibration;
+	//	the latest calibration values published, guarded by commitLock
+	private CalibrationValues latestCalibration;
+	
 	private WalkingSpeedUtil walkingSpeedUtil = new WalkingSpeedUtil(Constants.PATH_SD_CARD_APP_LOC, Constants.DB_DATE_FORMAT);
 
 	private volatile boolean shouldExit;
+	
+	//	the throughput is logged every time this many batches are processed
+	private static final int THROUGHPUT_LOG_INTERVAL = 100;
+	private long throughputStart;
+	private long throughputProcessingTime;
+	private int throughputBatchCount;
 
 	public ClassifierThread(
 			Context context,
@@ -137,16 +184,33 @@ public class ClassifierThread extends Thread implements OptionUpdateHandler {
 		this.metUtil = metUtil;
 		this.rawDump = rawDump;
 
-		this.model = ModelReader.getModel(context, R.raw.new_basic_model);
+		this.model = ModelReader.getBinaryModel(context, R.raw.new_basic_model_bin);
 
 		this.sqlLiteAdapter = SqlLiteAdapter.getInstance(context);
 		this.optionsTable = sqlLiteAdapter.getOptionsTable();
 		this.debugDataTable = sqlLiteAdapter.getDebugDataTable();
 
 		this.classifier = new NaiveBayesClassifier();
-		this.classifier.setModel(this.model.entrySet());
+		this.classifier.setModel(this.model);
+		int[] labelActivities = ActivityRegistry.getIds(this.model.getLabelNames());
+		
+		if (Constants.USE_CLASSIFIER_CASCADE) {
+			this.cascade = new ClassifierCascade(new CascadeStage[] {
+					new StillnessStage(Constants.CASCADE_STILL_MAX_SD),
+			});
+		}
+		
+		this.featureSet = FeatureRegistry.select(this.model.getFeatureNames());
+		Log.i(Constants.TAG, "Model features: "+featureSet+" (relative cost "+featureSet.getCost()+")");
 		
 		this.aggregator = new Aggregator();
+		this.labelActivities = labelActivities;
+		this.hmmAggregator = createHmmAggregator();
+
+		this.jobs = new ClassificationJob[sampleBatchBuffer.getCapacity()];
+		for (int i=0; i<jobs.length; ++i)
+			this.jobs[i] = new ClassificationJob(this, classifier, cascade, featureSet, metUtil, labelActivities);
+		this.computeStage = Executors.newFixedThreadPool(Constants.CLASSIFIER_WORKER_COUNT, workerThreadFactory);
 
 		this.isCalibrated = this.optionsTable.isCalibrated();
 		this.calibrator = new Calibrator(
@@ -158,10 +222,20 @@ public class ClassifierThread extends Thread implements OptionUpdateHandler {
 				this.optionsTable.getMean().clone(),
 				this.optionsTable.getValueOfGravity()
 		);
+		this.initialCalibration = currentCalibration();
+		this.batchBuffer.setCalibration(initialCalibration);
 
 		this.shouldExit = false;
 	}
 
+	private static final ThreadFactory workerThreadFactory = new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		public Thread newThread(Runnable r) {
+			return new Thread(r, ClassifierThread.class.getName()+"-worker-"+count.incrementAndGet());
+		}
+	};
+
 	/**
 	 * Stops the thread cautiously
 	 */
@@ -183,18 +257,13 @@ public class ClassifierThread extends Thread implements OptionUpdateHandler {
 	{
 		int size = batch.getSize();
 		long sampleTime = batch.sampleTime;
-		float[][] data = batch.data;
+		float[][] data = batch.axisData;
 
 
 		//if(!calibrator.isCalibrated())
 		{
-			rawSampleStatistics.assign(data, size);
-			calibrator.MainForceCalibrationProcess(sampleTime, 
-					rawSampleStatistics.getMean(), 
-					rawSampleStatistics.getSampleStandardDeviation(), 
-					rawSampleStatistics.getSum(), 
-					rawSampleStatistics.getSumSqr(), 
-					rawSampleStatistics.getCount());
+			rawSampleStatistics.assignColumns(data, size);
+			calibrator.MainForceCalibrationProcess(sampleTime, rawSampleStatistics);
 
 			float[] sd = calibrator.getSd();
 			float[] mean = calibrator.getMean();
@@ -277,28 +346,16 @@ public class ClassifierThread extends Thread implements OptionUpdateHandler {
 						service.showServiceToast("Unable to classify sensor data fast enough!");
 					}
 
-					// this function blocks until a filled sample batch is obtained
-					SampleBatch batch = batchBuffer.takeFilledInstance();
+					// this function blocks until a filled sample batch is obtained,
+					//	when overloaded, the buffer's overload policy is applied
+					SampleBatch batch = batchBuffer.takeFilledForProcessing();
 
 					Log.v(Constants.TAG, "Classifier thread received batch");
 
-					// process the sample batch to obtain the classification
-					long sampleTime = batch.sampleTime;
-					if (forceCalibration) {
-						startCalibration(batch);
-					} else {
-						String classification = processData(batch, eeAct, met);
-
-						//	submit the classification (if any)
-						if (classification!=null && classification.length()>0) {
-							Log.v(Constants.TAG, "Classification found: '"+classification+"'");
-							// submit the classification
-							service.submitClassification(sampleTime, classification, eeAct[0], met[0]);
-						}
-					}
-
-					// return the sample batch to the buffer as an empty batch
-					batchBuffer.returnEmptyInstance(batch);
+					if (aggregatorTypeChanged)
+						applyAggregatorType();
+					
+					dispatch(batch);
 
 				} catch (RemoteException ex) {
 					Log.e(Constants.TAG,
@@ -311,6 +368,7 @@ public class ClassifierThread extends Thread implements OptionUpdateHandler {
 			Log.d(Constants.TAG, "Classifier thread exitting");
 		} catch (RemoteException e) {
 		} finally {
+			this.computeStage.shutdownNow();
 			this.optionsTable.unregisterUpdateHandler(this);
 			Log.d(Constants.TAG, "Classification thread exiting.");
 		}
@@ -321,72 +379,254 @@ public class ClassifierThread extends Thread implements OptionUpdateHandler {
 		if (updatedKeys.contains(OptionsTable.KEY_IS_CALIBRATED)) {
 			if (!this.optionsTable.isCalibrated()) {
 				Log.v(Constants.TAG, "Calibration Values Reset! Classifier Thread resetting calibration.");
-				this.isCalibrated = this.optionsTable.isCalibrated();
-				this.calibrator.setResetValues(
-						this.optionsTable.isCalibrated(),
-						this.optionsTable.getAllowedMultiplesOfSd(),
-						this.optionsTable.getCount(),
-						this.optionsTable.getSd().clone(),
-						this.optionsTable.getMean().clone(),
-						this.optionsTable.getValueOfGravity()
-				);
+				//	the calibrator is only used by the commit stage,
+				//		batches are computed with the reset values once the next batch is committed
+				synchronized (commitLock) {
+					this.isCalibrated = this.optionsTable.isCalibrated();
+					this.calibrator.setResetValues(
+							this.optionsTable.isCalibrated(),
+							this.optionsTable.getAllowedMultiplesOfSd(),
+							this.optionsTable.getCount(),
+							this.optionsTable.getSd().clone(),
+							this.optionsTable.getMean().clone(),
+							this.optionsTable.getValueOfGravity()
+					);
+				}
 			}
 		}
+		if (updatedKeys.contains(OptionsTable.KEY_AGGREGATOR_TYPE)) {
+			//	called on the thread saving the options (e.g. the UI thread),
+			//		hence the aggregators are rebuilt later, by the classifier thread
+			this.aggregatorTypeChanged = true;
+		}
 		if (updatedKeys.contains(OptionsTable.KEY_IS_SERVICE_USER_STARTED)) {
 		}
 
 	}
 	
-	private String processData(SampleBatch batch, double retEeAct[], double retMet[]) throws InterruptedException, RemoteException {
-		Log.v(Constants.TAG, "Processing batch.");
-		retEeAct[0] = 0.0;
-		retMet[0] = 1.0;
-
-		long start = System.currentTimeMillis();
-		String classification = ActivityNames.UNKNOWN;
+	/**
+	 * Replaces the aggregators if the aggregator type option no longer matches
+	 * the one in use, with new instances, so that neither resumes from the
+	 * classifications it aggregated before it was last switched away from.
+	 * Called by the classifier thread, between batches.
+	 */
+	private void applyAggregatorType() {
+		this.aggregatorTypeChanged = false;
+		
+		boolean useHmm = this.optionsTable.getAggregatorType()==Constants.AGGREGATOR_HMM;
+		boolean hasHmmAggregator;
+		synchronized (commitLock) {
+			hasHmmAggregator = this.hmmAggregator!=null;
+		}
+		if (useHmm==hasHmmAggregator)
+			return;
+		
+		Log.v(Constants.TAG, "Aggregator type changed to "+this.optionsTable.getAggregatorType());
+		//	the transitions are learnt outside the commit lock, as they're loaded from the database
+		HmmAggregator newHmmAggregator = createHmmAggregator();
+		Aggregator newAggregator = newHmmAggregator!=null ? this.aggregator : new Aggregator();
+		synchronized (commitLock) {
+			this.hmmAggregator = newHmmAggregator;
+			this.aggregator = newAggregator;
+		}
+	}
+	
+	/**
+	 * @return
+	 * a new HMM aggregator, with the transitions learnt from the activities saved,
+	 * if the aggregator type option is {@link Constants#AGGREGATOR_HMM}, otherwise null
+	 */
+	private HmmAggregator createHmmAggregator() {
+		if (optionsTable.getAggregatorType()!=Constants.AGGREGATOR_HMM)
+			return null;
+		
+		HmmAggregator hmmAggregator = new HmmAggregator(Constants.HMM_SMOOTHING_LAG, Constants.HMM_DEFAULT_STAY_PROBABILITY);
+		hmmAggregator.init(labelActivities);
+		long now = System.currentTimeMillis();
+		long transitions = hmmAggregator.learnTransitions(sqlLiteAdapter.getActivitiesTable(),
+				now-Constants.DURATION_KEEP_DB_ACTIVITY_DATA, now);
+		Log.i(Constants.TAG, "HMM aggregator transitions learnt from "+transitions+" saved transitions");
+		return hmmAggregator;
+	}
+	
+	/**
+	 * Assigns the batch to the next job in sequence, and passes it on to
+	 * the compute stage.
+	 * 
+	 * <p>
+	 * The calibration values are only changed by the commit stage, hence
+	 * the batch is computed with the values published once the batch
+	 * {@link Constants#CLASSIFIER_PIPELINE_DEPTH} batches before it was
+	 * committed, waiting for that batch to be committed if required.
+	 * Batches used for calibration change the calibration values, and stop
+	 * the calibration once done, hence the next batch isn't dispatched
+	 * until they are committed.
+	 * 
+	 * <p>
+	 * Since each job holds on to its batch until committed, there are never
+	 * more jobs in the pipeline than batches, hence the job being reused has
+	 * always been committed.
+	 */
+	private void dispatch(SampleBatch batch) throws InterruptedException {
+		if (Constants.OUTPUT_DEBUG_INFO && Constants.OUTPUT_RAW_DATA &&
+				rawDump!=null && !batch.isFeaturesOnly()) {
+			//	dumped here, before the offsets are taken out, and in the order sampled
+			rawDump.dumpRawData(batch);
+		}
+		
+		long sequence = nextDispatchSequence;
+		CalibrationValues calibration;
 		try {
-			//	get local copies of the data
-			float[][] data = batch.data;
+			calibration = awaitCalibration(sequence);
+		} catch (InterruptedException e) {
+			batchBuffer.returnEmptyInstance(batch);
+			throw e;
+		}
+		++nextDispatchSequence;
+		//	the samplers extract features with the values batches are computed with
+		batchBuffer.setCalibration(calibration);
+		
+		boolean calibrate = forceCalibration;
+		ClassificationJob job = jobs[(int)(sequence % jobs.length)];
+		job.dispatch(sequence, batch, calibrate, calibration);
+		computeStage.execute(job);
+		
+		if (calibrate) {
+			synchronized (commitLock) {
+				awaitCommitted(sequence);
+			}
+		}
+	}
+	
+	/**
+	 * @return
+	 * the calibration values to compute the batch with the sequence given,
+	 * i.e. the values published once the batch {@link Constants#CLASSIFIER_PIPELINE_DEPTH}
+	 * batches before it was committed
+	 */
+	private CalibrationValues awaitCalibration(long sequence) throws InterruptedException {
+		long committedSequence = sequence - Constants.CLASSIFIER_PIPELINE_DEPTH;
+		if (committedSequence<0)
+			return initialCalibration;
+		synchronized (commitLock) {
+			awaitCommitted(committedSequence);
+			//	the entry is only overwritten once this batch is committed
+			return committedCalibrations[(int)(committedSequence % Constants.CLASSIFIER_PIPELINE_DEPTH)];
+		}
+	}
+	
+	/**
+	 * Waits until the batch with the sequence given is committed,
+	 * to be called with commitLock held.
+	 */
+	private void awaitCommitted(long sequence) throws InterruptedException {
+		while (nextCommitSequence<=sequence)
+			commitLock.wait();
+	}
+	
+	/**
+	 * @return
+	 * the current calibration values, the same instance as returned previously
+	 * if the values didn't change, to be called with commitLock held
+	 * (or before the thread starts)
+	 */
+	private CalibrationValues currentCalibration() {
+		float[] offset = calibrator.isCalibrated() ? optionsTable.getOffset() : null;
+		float[] scale = optionsTable.getScale();
+		float gravity = calibrator.getValueOfGravity();
+		if (latestCalibration==null || !latestCalibration.matches(offset, scale, gravity))
+			latestCalibration = new CalibrationValues(offset, scale, gravity);
+		return latestCalibration;
+	}
+	
+	/**
+	 * Called by the compute stage every time a job is computed,
+	 * commits all the computed jobs that are next in sequence.
+	 * Jobs computed out of order are left for the thread computing
+	 * the job before them to commit.
+	 */
+	void commitComputedJobs() {
+		synchronized (commitLock) {
+			for (;;) {
+				ClassificationJob job = jobs[(int)(nextCommitSequence % jobs.length)];
+				
+				//	the sequence should be checked before the computed flag,
+				//		as the job's sequence is updated after the flag is reset
+				if (job.getSequence()!=nextCommitSequence || !job.isComputed())
+					return;
+				
+				SampleBatch batch = job.getBatch();
+				try {
+					if (job.getResult()==ClassificationJob.RESULT_CALIBRATION) {
+						startCalibration(batch);
+					} else {
+						int activity = commit(job);
 
-			int size = batch.getSize();
+						//	submit the classification (if any)
+						if (activity!=ActivityRegistry.NONE) {
+							Log.v(Constants.TAG, "Classification found: '"+ActivityRegistry.getName(activity)+"'");
+							// submit the classification
+							service.submitClassification(batch.sampleTime, activity, job.getEeAct(), job.getMet());
+						}
+					}
+				} catch (RemoteException ex) {
+					Log.e(Constants.TAG,
+					"Exception error occured in connection in ClassifierService class");
+				} catch (InterruptedException e) {
+					//					Log.d(Constants.TAG,
+					//							"Interruption occured while performing classification", e);
+				} finally {
+					//	published for the batch dispatched CLASSIFIER_PIPELINE_DEPTH batches later
+					committedCalibrations[(int)(nextCommitSequence % Constants.CLASSIFIER_PIPELINE_DEPTH)] = currentCalibration();
+					++nextCommitSequence;
+					commitLock.notifyAll();
+					job.release();
+					
+					// return the sample batch to the buffer as an empty batch
+					try {
+						batchBuffer.returnEmptyInstance(batch);
+					} catch (InterruptedException e) {
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The ordered stage of the classification,
+	 * updates the calibrator and aggregator, and saves debugging data,
+	 * using the values computed for the job.
+	 * 
+	 * @return
+	 * the id of the final classification (see {@link ActivityRegistry}),
+	 * or {@link ActivityRegistry#NONE} if none
+	 */
+	private int commit(ClassificationJob job) throws InterruptedException, RemoteException {
+		SampleBatch batch = job.getBatch();
+		
+		//	when overloaded, debugging data isn't saved (see Constants.OVERLOAD_FEATURES_ONLY)
+		boolean outputDebugInfo = Constants.OUTPUT_DEBUG_INFO && !batch.isFeaturesOnly();
+
+		int activity = ActivityRegistry.UNKNOWN;
+		try {
 			long sampleTime = batch.sampleTime;
 
 			boolean chargingState = !Constants.IS_DEBUGGING && batch.isCharging();
 
-			if (Constants.OUTPUT_DEBUG_INFO) {
-				if (Constants.OUTPUT_RAW_DATA && rawDump!=null) {
-					rawDump.dumpRawData(batch);
-				}
+			if (outputDebugInfo) {
 				debugDataTable.reset(sampleTime);
-				debugDataTable.assignRaw(batch.data);
+				debugDataTable.assignRaw(batch.axisData);
 			}
 			
 			{
-				//	take out accelerometer axis offsets
-				if (calibrator.isCalibrated()) {
-					float[] offset = optionsTable.getOffset();
-					float[] scale = optionsTable.getScale();
-
-					for (int i=0; i<size; ++i) {
-						data[i][Constants.ACCEL_X_AXIS] -= offset[Constants.ACCEL_X_AXIS]; 
-						data[i][Constants.ACCEL_X_AXIS] /= scale[Constants.ACCEL_X_AXIS]; 
-
-						data[i][Constants.ACCEL_Y_AXIS] -= offset[Constants.ACCEL_Y_AXIS];
-						data[i][Constants.ACCEL_Y_AXIS] /= scale[Constants.ACCEL_Y_AXIS];
-
-						data[i][Constants.ACCEL_Z_AXIS] -= offset[Constants.ACCEL_Z_AXIS];
-						data[i][Constants.ACCEL_Z_AXIS] /= scale[Constants.ACCEL_Z_AXIS];
-					}
-				}
-
-				rawSampleStatistics.assign(data, size);
-
+				RunningStatistics rawSampleStatistics = job.getRawStatistics();
+				
 				float[] dataMin = rawSampleStatistics.getMin();
 				float[] dataMax = rawSampleStatistics.getMax();
 				float[] dataMeans = rawSampleStatistics.getMean();
 				float[] dataSd = rawSampleStatistics.getSampleStandardDeviation();
 
-				if (Constants.OUTPUT_DEBUG_INFO) {
+				if (outputDebugInfo) {
 					debugDataTable.setUnrotatedStats(
 							dataMeans[Constants.ACCEL_X_AXIS],
 							dataMeans[Constants.ACCEL_Y_AXIS],
@@ -400,158 +640,173 @@ public class ClassifierThread extends Thread implements OptionUpdateHandler {
 					);
 				}
 				
-				calibrator.processData(sampleTime, dataMeans, dataSd, rawSampleStatistics.getSum(), rawSampleStatistics.getSumSqr(), rawSampleStatistics.getCount());
+				calibrator.processData(sampleTime, rawSampleStatistics);
 
 				if (!isCalibrated && calibrator.isCalibrated()) {
 					//	Calibration was happening at odd angles, during testing.
 					//		Algorithm is not good enough for picking when the phone was flat.
-					
-//					Log.v(Constants.TAG, "Calibration just finished. Saving values to DB.");
-//
-//					float[] sd = calibrator.getSd();
-//					float[] mean = calibrator.getMean();
-//
-//					optionsTable.setCalibrated(true);
-//					optionsTable.setMean(mean);
-//					optionsTable.setSd(sd);
-//					optionsTable.setCount(calibrator.getCount());
-//					optionsTable.setValueOfGravity(calibrator.getValueOfGravity());
-//
-//					//mean[Constants.ACCEL_Z_AXIS] -= Constants.GRAVITY;
-//					mean[Constants.ACCEL_Z_AXIS] = 0.0f;
-//					optionsTable.setOffset(mean);
-//
-//					optionsTable.save();
 					this.isCalibrated = true;
 				}
 
-
-				//	check the current gravity, rotate and perform classification
+				switch (job.getResult()) {
+				case ClassificationJob.RESULT_CLASSIFIED_EARLY:
 				{
-					float gravity = calibrator.getValueOfGravity();
-					float calcGravity = rawSampleStatistics.calcMag(dataMeans);
-					float minGravity = gravity - gravity*Constants.MIN_GRAVITY_DEV;
-					float maxGravity = gravity + gravity*Constants.MIN_GRAVITY_DEV;
-
-					if (calcGravity>=minGravity && calcGravity<=maxGravity) {
-						// first rotate samples to world-orientation
-						if (rotateSamples.rotateToWorldCoordinates(dataMeans, data, size)) {
-							rotatedSampleStatistics.assign(data, size);
-							
-							classification = classifier.classify(featureExtractor.extractRotated(data, size));
-
-							Log.v(Constants.TAG, "Classifier Algorithm Output: "+classification);
-
-							if (Constants.OUTPUT_DEBUG_INFO) {
-								logRotatedValues(dataMeans, data, size);
-								debugDataTable.setClassifierAlgoOutput(classification);
-							}
-							
-//							walkingSpeedUtil.processData(batch.timeStamps, data, rotatedSampleStatistics.getMean(), size);
-//							float stepsFound = walkingSpeedUtil.getStepsFound();
-//							float walkingHeight = walkingSpeedUtil.getWalkingHeight();
-//							float walkingSpeed = walkingSpeedUtil.getWalkingSpeed();
-//							
-//							if (Constants.OUTPUT_DEBUG_INFO) {
-//								debugDataTable.setWalkingStats(stepsFound, walkingSpeed);
-//							}
-
-							metUtil.computeCountsPerSecond(size, data, batch.timeStamps, counts);
-							retEeAct[0] = metUtil.computeEEact(counts);
-							retMet[0] = metUtil.computeMET(retEeAct[0]);
-							
-//							metUtil.computeCountsZeroCrossing(size, data, rotatedSampleStatistics.getMean(), batch.timeStamps, counts);
-//							metUtil.computeCountsIntegration(size, data, rotatedSampleStatistics.getMean(), batch.timeStamps, counts);
-//							retEeAct[0] = metUtil.computeEEact(counts);
-//							retMet[0] = metUtil.computeMET(retEeAct[0]);
-//							Log.d(Constants.TAG, "MET="+retMet[0]+", EEact="+retEeAct[0]);
-							
-//							retEeAct[0] = walkingHeight;
-//							retMet[0] = walkingSpeed;
-							
-							if (Constants.OUTPUT_DEBUG_INFO) {
-								debugDataTable.setMetStats(
-										(float)counts[0],
-										(float)counts[1],
-										(float)counts[2],
-										(float)retEeAct[0],
-										(float)retMet[0]
-										              );
-							}
-
-						} else {
-							Log.v(Constants.TAG, "Unable to perform classification, data could not be rotated!");
-							if (Constants.OUTPUT_DEBUG_INFO) {
-								debugDataTable.setClassifierAlgoOutput("ERROR: Unable to rotate gravity "+Arrays.toString(dataMeans));
-							}
-						}
-					} else {
-						Log.v(Constants.TAG, "Unable to perform classification, Gravity "+calcGravity+" not within limits: ["+minGravity+","+maxGravity+"]!");
-						if (Constants.OUTPUT_DEBUG_INFO) {
-							debugDataTable.setClassifierAlgoOutput("ERROR: Gravity "+calcGravity+" not within limits: ["+minGravity+","+maxGravity+"]");
-						}
+					activity = job.getActivity();
+					Log.v(Constants.TAG, "Classifier Cascade Output: "+ActivityRegistry.getName(activity));
+					if (outputDebugInfo) {
+						debugDataTable.setClassifierAlgoOutput(ActivityRegistry.getName(activity));
+					}
+					break;
+				}
+				case ClassificationJob.RESULT_CLASSIFIED_STREAMING:
+				{
+					//	debugging data isn't saved for these (see Constants.OVERLOAD_FEATURES_ONLY)
+					activity = job.getActivity();
+					Log.v(Constants.TAG, "Classifier Algorithm Output (streaming features): "+ActivityRegistry.getName(activity));
+					break;
+				}
+				case ClassificationJob.RESULT_CLASSIFIED:
+				{
+					activity = job.getActivity();
+
+					Log.v(Constants.TAG, "Classifier Algorithm Output: "+ActivityRegistry.getName(activity));
+
+					if (outputDebugInfo) {
+						logRotatedValues(job.getHorVerStatistics());
+						debugDataTable.setClassifierAlgoOutput(ActivityRegistry.getName(activity));
+						
+						double[] counts = job.getCounts();
+						debugDataTable.setMetStats(
+								(float)counts[0],
+								(float)counts[1],
+								(float)counts[2],
+								(float)job.getEeAct(),
+								(float)job.getMet()
+								              );
+					}
+					break;
+				}
+				case ClassificationJob.RESULT_ROTATION_FAILED:
+				{
+					Log.v(Constants.TAG, "Unable to perform classification, data could not be rotated!");
+					if (outputDebugInfo) {
+						debugDataTable.setClassifierAlgoOutput("ERROR: Unable to rotate gravity "+Arrays.toString(dataMeans));
+					}
+					break;
+				}
+				case ClassificationJob.RESULT_GRAVITY_OUT_OF_LIMITS:
+				{
+					float calcGravity = job.getCalcGravity();
+					float minGravity = job.getMinGravity();
+					float maxGravity = job.getMaxGravity();
+					Log.v(Constants.TAG, "Unable to perform classification, Gravity "+calcGravity+" not within limits: ["+minGravity+","+maxGravity+"]!");
+					if (outputDebugInfo) {
+						debugDataTable.setClassifierAlgoOutput("ERROR: Gravity "+calcGravity+" not within limits: ["+minGravity+","+maxGravity+"]");
 					}
+					break;
+				}
 				}
 			}
 			
 			if (calibrator.isUncarried()) {
-				classification = ActivityNames.UNCARRIED;
+				activity = ActivityRegistry.UNCARRIED;
 			}
 			
 			if (optionsTable.getUseAggregator()) {
-				aggregator.addClassification(classification);
-				String aggrClassification = aggregator.getClassification();
-				if (aggrClassification!=null && aggrClassification.length()>0 &&
-						!ActivityNames.isSystemActivity(aggrClassification)) {
-					classification = aggrClassification;
+				int aggrActivity;
+				if (hmmAggregator!=null) {
+					int result = job.getResult();
+					if (!calibrator.isUncarried() && (result==ClassificationJob.RESULT_CLASSIFIED ||
+							result==ClassificationJob.RESULT_CLASSIFIED_STREAMING))
+						hmmAggregator.update(job.getPosteriors());
+					else
+						hmmAggregator.updateActivity(activity);
+					aggrActivity = hmmAggregator.getActivity();
+				} else {
+					aggregator.addClassification(activity);
+					aggrActivity = aggregator.getClassification();
+				}
+				if (aggrActivity!=ActivityRegistry.NONE && ActivityRegistry.isActivity(aggrActivity) &&
+						!ActivityRegistry.isSystemActivity(aggrActivity)) {
+					activity = aggrActivity;
 				}
 
+				String aggrClassification = aggrActivity!=ActivityRegistry.NONE ? ActivityRegistry.getName(aggrActivity) : "";
 				Log.v(Constants.TAG, "Aggregator Output: "+aggrClassification);
 
-				if (Constants.OUTPUT_DEBUG_INFO) {
+				if (outputDebugInfo) {
 					debugDataTable.setAggregatorAlgoOutput(aggrClassification);
 				}
 			} else {
-				if (Constants.OUTPUT_DEBUG_INFO) {
+				if (outputDebugInfo) {
 					debugDataTable.setAggregatorAlgoOutput("NOT USING AGGREGATOR");
 				}
 			}
 			
 			if (chargingState) {
-				if (classification.contains("TRAVEL"))
-					classification = ActivityNames.CHARGING_TRAVELLING;
+				if (ActivityRegistry.isTravelling(activity))
+					activity = ActivityRegistry.CHARGING_TRAVELLING;
 				else
-					classification = ActivityNames.CHARGING;
+					activity = ActivityRegistry.CHARGING;
 			}
 
-			if (Constants.OUTPUT_DEBUG_INFO) {
-				debugDataTable.setFinalClassifierOutput(classification);
+			if (outputDebugInfo) {
+				debugDataTable.setFinalClassifierOutput(ActivityRegistry.getName(activity));
 			}
-			Log.v(Constants.TAG, "Final Classifier Output: "+classification);
+			Log.v(Constants.TAG, "Final Classifier Output: "+ActivityRegistry.getName(activity));
 			
 			//service.showServiceToast(classification);
 
-			return classification;
+			return activity;
 		} finally {
-			if (Constants.OUTPUT_DEBUG_INFO) {
+			if (outputDebugInfo) {
 				debugDataTable.trim();
 				debugDataTable.insert();
 			}
-			Log.i(Constants.TAG, "Processing Batch Took: "+(System.currentTimeMillis()-start)+"ms");	        
+			long start = job.getComputeStart();
+			long end = job.getComputeEnd();
+			Log.i(Constants.TAG, "Processing Batch Took: "+(end-start)+"ms");	        
+			logThroughput(start, end);
 		}
 	}
 
-	private void logRotatedValues(float[] dataMeans, float[][] rotatedData, int dataSize)
-	{
-		for (int j=0; j<dataSize; ++j) {
-			rotatedMergedSamples[j][0] = (float)Math.sqrt(
-					rotatedData[j][0]*rotatedData[j][0] +
-					rotatedData[j][1]*rotatedData[j][1]);
-			rotatedMergedSamples[j][1] = rotatedData[j][2];
+	/**
+	 * Keeps track of the number of batches processed, and periodically logs
+	 * the number of batches processed per second, and the mean processing time
+	 * per batch, along with the number of batches affected by the buffer's
+	 * overload policy. Useful when replaying recorded samples faster than real time.
+	 */
+	private void logThroughput(long batchStart, long batchEnd) {
+		if (throughputBatchCount==0) {
+			throughputStart = batchStart;
+			throughputProcessingTime = 0;
 		}
+		
+		++throughputBatchCount;
+		throughputProcessingTime += batchEnd-batchStart;
+		
+		if (throughputBatchCount>=THROUGHPUT_LOG_INTERVAL) {
+			long duration = batchEnd-throughputStart;
+			Log.i(Constants.TAG, String.format("Processed %d batches: %.2f batches/sec, mean processing time %.2fms",
+					throughputBatchCount,
+					duration>0?(throughputBatchCount*1000.0/duration):0.0,
+					throughputProcessingTime/(double)throughputBatchCount));
+			Log.i(Constants.TAG, String.format("Overloaded batches: %d dropped, %d features only",
+					batchBuffer.getDroppedCount(),
+					batchBuffer.getFeaturesOnlyCount()));
+			if (cascade!=null) {
+				Log.i(Constants.TAG, cascade.getSummary());
+			}
+			throughputBatchCount = 0;
+		}
+	}
 
-		rotatedMergedSampleStatistics.assign(rotatedMergedSamples, dataSize);
-
+	/**
+	 * @param rotatedMergedSampleStatistics
+	 * the statistics of the horizontal and vertical components, as computed for the features
+	 */
+	private void logRotatedValues(RunningStatistics rotatedMergedSampleStatistics)
+	{
 		float[] rotatedMin = rotatedMergedSampleStatistics.getMin();
 		float[] rotatedMax = rotatedMergedSampleStatistics.getMax();
 		float[] rotatedMeans = rotatedMergedSampleStatistics.getMean();
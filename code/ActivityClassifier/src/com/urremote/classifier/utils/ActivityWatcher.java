@@ -3,7 +3,7 @@
  */
 package com.urremote.classifier.utils;
 
-import com.urremote.classifier.common.ActivityNames;
+import com.urremote.classifier.common.ActivityRegistry;
 import com.urremote.classifier.common.Constants;
 import com.urremote.classifier.db.OptionsTable;
 import com.urremote.classifier.db.SqlLiteAdapter;
@@ -28,7 +28,7 @@ public class ActivityWatcher {
 	private Context context;
 	private MyTracksIntergration myTracks;
 	private boolean wasWalking;
-	private String previousActivity;
+	private int previousActivity = ActivityRegistry.NONE;
 	private WalkingActivity previousWalkingActivitiy;
 	
 	private TwoWayBlockingQueue<WalkingActivity> walkingActivityQueue;
@@ -41,7 +41,7 @@ public class ActivityWatcher {
 		
 		//	initiate with twice the required number
 		this.walkingActivityQueue = new TwoWayBlockingQueue<ActivityWatcher.WalkingActivity>(
-				(int)(2*Constants.DURATION_MONITOR_MYTRACKS / Constants.DELAY_SAMPLE_BATCH)
+				(int)(2*Constants.DURATION_MONITOR_MYTRACKS / Constants.DELAY_BETWEEN_CLASSIFICATIONS)
 				)
 		{
 			@Override
@@ -61,8 +61,8 @@ public class ActivityWatcher {
 	}
 	
 	public void processLatest(Classification classification) {
-		String currentActivity = classification.getClassification(); 
-		boolean isWalking = currentActivity.equals(ActivityNames.WALKING);
+		int currentActivity = classification.getActivityId();
+		boolean isWalking = currentActivity==ActivityRegistry.WALKING;
 		
 		//	we might change the value of wasWalking,
 		//		but that shouldn't effect our current processing
@@ -136,7 +136,7 @@ public class ActivityWatcher {
 		
 		this.myTracks.isConnectedToSensor();
 		
-		if (this.myTracks.isRecording() && previousActivity!=null && !previousActivity.equals(currentActivity)) {
+		if (this.myTracks.isRecording() && previousActivity!=ActivityRegistry.NONE && previousActivity!=currentActivity) {
 			this.myTracks.insertMarker(classification.getNiceClassification(), classification.toString());
 			this.myTracks.insertStatistics(classification.getNiceClassification(), classification.toString());
 		}
@@ -52,6 +52,9 @@ public class Calibrator {
 	 * period of time
 	 */
 	private MeasurementsBuffer measurementsBuffer;
+	
+	//	statistics of the measurements used for calibration
+	private RunningStatistics calibrationStatistics = new RunningStatistics(Constants.ACCEL_DIM);
 
 	/**
 	 * Constructs the class
@@ -94,8 +97,8 @@ public class Calibrator {
 				(int)Math.round(
 						//	twice the longest duration we expect to cater for
 						(double)Math.max(Constants.DURATION_OF_CALIBRATION, Constants.DURATION_WAIT_FOR_UNCARRIED)*2.0 /
-						//	divided by the duration of each sample batch
-						(double)Constants.DELAY_SAMPLE_BATCH
+						//	divided by the duration between classifications
+						(double)Constants.DELAY_BETWEEN_CLASSIFICATIONS
 				)
 				+ 5 // have to give extra or else the threads will lock up
 		);
@@ -221,28 +224,23 @@ public class Calibrator {
 	}
 
 	/**
-	 * Computes the mean and the standard deviation given the sum of x square and
-	 * the sum of x
+	 * Takes the mean and the standard deviation from the statistics of the
+	 * samples collected, for the axis calibrated in the given orientation.
 	 * 
-	 * @see <a href="http://en.wikipedia.org/wiki/Standard_deviation#Identities_and_mathematical_properties">Combining
-	 *      Standard Deviation: Identities and mathematical properties</a>
-	 * 
-	 * @param sumOfX
-	 *            the sum of the samples for the 3 axis
-	 * @param sumOfXSqr
-	 *            the sum of the square of samples for the 3 axis
-	 * @param count
-	 *            the total number of samples used to obtain the sum and sum square
+	 * @param statistics
+	 *            the statistics of the samples for the 3 axis
 	 */
-	private void PerformeCalibration(float[] sumOfX, float[] sumOfXSqr,OrientationState state, int count) {
+	private void PerformeCalibration(RunningStatistics statistics, OrientationState state) {
+		float[] statsMean = statistics.getMean();
+		float[] statsSd = statistics.getPopStandardDeviation();
 		switch (state) {
 		case XYCALIBRATION:
 			this.valueOfGravity = 0.0f;
 			for (int i = 0; i < Constants.ACCEL_DIM; i++) {
 
-				this.mean[i] = sumOfX[i] / count;
+				this.mean[i] = statsMean[i];
 
-				this.sd[i] = (float)Math.sqrt( Math.abs(sumOfXSqr[i]/count - this.mean[i]*this.mean[i]));
+				this.sd[i] = statsSd[i];
 
 				//	just in case...
 				if (Float.isNaN(this.sd[i])) {
@@ -262,7 +260,7 @@ public class Calibrator {
 			break;
 
 		case ZCALIBRATION:
-			this.mean[Constants.ACCEL_Z_AXIS] = sumOfX[Constants.ACCEL_Z_AXIS] / count;
+			this.mean[Constants.ACCEL_Z_AXIS] = statsMean[Constants.ACCEL_Z_AXIS];
 			/*this.sd[Constants.ACCEL_Z_AXIS] = 0;/*(float)Math.sqrt( Math.abs(sumOfXSqr[Constants.ACCEL_Z_AXIS]/count 
 					- Math.pow(this.mean[Constants.ACCEL_Z_AXIS],2)));*/
 
@@ -273,30 +271,26 @@ public class Calibrator {
 		}
 
 
-		this.count = count;
+		this.count = statistics.getCount();
 	}
 
 	/**
-	 * Computes the mean and the standard deviation given the sum of x square and
-	 * the sum of x
-	 * 
-	 * @see <a href="http://en.wikipedia.org/wiki/Standard_deviation#Identities_and_mathematical_properties">Combining
-	 *      Standard Deviation: Identities and mathematical properties</a>
+	 * Takes the mean and the standard deviation from the statistics of the
+	 * samples collected, and computes the value of gravity from the mean.
 	 * 
-	 * @param sumOfX
-	 *            the sum of the samples for the 3 axis
-	 * @param sumOfXSqr
-	 *            the sum of the square of samples for the 3 axis
-	 * @param count
-	 *            the total number of samples used to obtain the sum and sum square
+	 * @param statistics
+	 *            the statistics of the samples for the 3 axis
 	 */
-	private void doCalibration(float[] sumOfX, float[] sumOfXSqr, int count) {
+	private void doCalibration(RunningStatistics statistics) {
+		float[] statsMean = statistics.getMean();
+		float[] statsSd = statistics.getPopStandardDeviation();
+		
 		this.valueOfGravity = 0.0f;
 
 		for (int i = 0; i < Constants.ACCEL_DIM; i++) {
 
-			this.mean[i] = sumOfX[i] / count;
-			this.sd[i] = (float)Math.sqrt( sumOfXSqr[i]/count - this.mean[i]*this.mean[i]);
+			this.mean[i] = statsMean[i];
+			this.sd[i] = statsSd[i];
 
 			//	just in case...
 			if (Float.isNaN(this.sd[i])) {
@@ -307,7 +301,7 @@ public class Calibrator {
 		}
 
 		this.valueOfGravity = (float)Math.sqrt(this.valueOfGravity);
-		this.count = count;
+		this.count = statistics.getCount();
 	}
 
 	/**
@@ -453,11 +447,11 @@ public class Calibrator {
 
 	public static int CalibrationAttempts = 0;
 	synchronized
-	public void MainForceCalibrationProcess(long sampleTime, float[] mean, float[] sd, float[] sum, float[] sumSqr, int count) throws InterruptedException, RemoteException
+	public void MainForceCalibrationProcess(long sampleTime, RunningStatistics statistics) throws InterruptedException, RemoteException
 	{
 		if(ClassifierThread.forceCalibration)
 		{
-			Measurement currGravity = UpdateGravity(sampleTime,mean,sd,sum,sumSqr,count);
+			Measurement currGravity = UpdateGravity(sampleTime,statistics);
 			//resetCalibrationOptionsBasedOnOrientation(calibrationState);
 			//		if(CalibrationAttempts>3)
 			//		{
@@ -485,17 +479,13 @@ public class Calibrator {
 			//		}
 
 			if(lastGravity != null)
-			{//	get the mean and sd from the sum, sum square, and count based on phone orientation.
+			{//	get the mean and sd from the statistics based on phone orientation.
 				calibrationState = PhoneOriantation(lastGravity);
 				ToastPhoneOrientation();
 
-				float sSum[] = new float[Constants.ACCEL_DIM];
-				float sSumSqr[] = new float[Constants.ACCEL_DIM];
-				int sCount = 0;
-
-				sCount = CalculateMeanForASample(sSum,sSumSqr,lastGravity);
+				calibrationStatistics.assign(lastGravity.statistics);
 
-				PerformeCalibration(sSum, sSumSqr, calibrationState, count);
+				PerformeCalibration(calibrationStatistics, calibrationState);
 
 				setToCalibratedStateBasedOnOrientation(calibrationState);
 
@@ -520,7 +510,7 @@ public class Calibrator {
 		return OrientationState.XYCALIBRATION;
 	}
 
-	private Measurement UpdateGravity(long sampleTime, float[] mean, float[] sd, float[] sum, float[] sumSqr, int count) throws InterruptedException
+	private Measurement UpdateGravity(long sampleTime, RunningStatistics statistics) throws InterruptedException
 	{
 		//	get rid of it
 
@@ -529,12 +519,12 @@ public class Calibrator {
 		Measurement Gravity = measurementsBuffer.takeEmptyInstance();
 
 		//	assign mean and standard deviations to be returned
+		Gravity.statistics.assign(statistics);
+		float[] mean = statistics.getMean();
+		float[] sd = statistics.getSampleStandardDeviation();
 		for (int i = 0; i<Constants.ACCEL_DIM; ++i) {
-			Gravity.sum[i] = sum[i];
-			Gravity.sumSqr[i] = sumSqr[i];
 			Gravity.axisSd[i] = sd[i];
 			Gravity.axisMean[i] = mean[i];
-			Gravity.count = count;
 		}
 
 		//	assign the time to the time the sample was taken
@@ -579,38 +569,18 @@ public class Calibrator {
 		return lastGravity;
 
 	}
-	private int CalculateMeanForASample(float[] sSum, float[] sSumSqr,Measurement sample)
+	private void CalculateMeanForCollectedSamples(RunningStatistics sStatistics) throws InterruptedException
 	{
-		for (int d=0; d<Constants.ACCEL_DIM; ++d) {
-			sSum[d] = sample.sum[d];
-			sSumSqr[d] = sample.sumSqr[d];
-		}
-
-		return sample.count;
-
-
-	}
-
-	private int CalculateMeanForCollectedSamples(float[] sSum, float[] sSumSqr) throws InterruptedException
-	{
-
-		int sCount = 0;
+		sStatistics.reset();
 
 		//	cycle through all the measurements and do calibration
 		int filledCount = measurementsBuffer.getPendingFilledInstances();
 		for (int i=0; i<filledCount; ++i) {
 			Measurement temp = measurementsBuffer.takeFilledInstance();
-			//	add to sum, sum square, and count
-			for (int d=0; d<Constants.ACCEL_DIM; ++d) {
-				sSum[d] += temp.sum[d];
-				sSumSqr[d] += temp.sumSqr[d];
-			}
-			sCount += temp.count;
+			//	merge the statistics of the measurement
+			sStatistics.merge(temp.statistics);
 			measurementsBuffer.returnEmptyInstance(temp);
 		}
-		return sCount;
-
-
 	}
 
 	/**
@@ -620,27 +590,18 @@ public class Calibrator {
 	 * @param sampleTime
 	 * The time the data sample was taken
 	 * 
-	 * @param data
-	 * The data taken in the sampling window
-	 *  
-	 * @param size
-	 * The number of samples taken in the sampling window.
-	 * 
-	 * @param returnedMeans
-	 * The means of the different axi of the data taken in the sampling window.
-	 * 
-	 * @param returnedSd
-	 * The standard deviation of the different axi of the data given 
+	 * @param statistics
+	 * The statistics of the data taken in the sampling window, copied
 	 * 
 	 * @throws InterruptedException
 	 */
 	synchronized
-	public void processData(long sampleTime, float[] mean, float[] sd, float[] sum, float[] sumSqr, int count) throws InterruptedException
+	public void processData(long sampleTime, RunningStatistics statistics) throws InterruptedException
 	{
 		//		Log.v(Constants.TAG, "Calibration/Uncarried process start: total instances="+measurementsBuffer.getTotalSize()+"/"+measurementsBuffer.getCapacity()+", empty="+measurementsBuffer.getEmptySize()+", filled="+measurementsBuffer.getFilledSize());
 		try {
 			//	current found gravity
-			Measurement currGravity = UpdateGravity(sampleTime,mean,sd,sum,sumSqr,count);
+			Measurement currGravity = UpdateGravity(sampleTime,statistics);
 
 			//	this is supposed to be the last item in the buffer that gives a continous
 			//		phone stationary period to the current sample. if null, then
@@ -681,14 +642,10 @@ public class Calibrator {
 					//					} catch (RemoteException e) {
 					//					}
 
-					float sSum[] = new float[Constants.ACCEL_DIM];
-					float sSumSqr[] = new float[Constants.ACCEL_DIM];
-					int sCount = 0;
-
-					sCount = CalculateMeanForCollectedSamples(sSum,sSumSqr);
+					CalculateMeanForCollectedSamples(calibrationStatistics);
 
-					//	get the mean and sd from the sum, sum square, and count
-					doCalibration(sSum, sSumSqr, sCount);
+					//	get the mean and sd from the merged statistics
+					doCalibration(calibrationStatistics);
 
 					setToCalibratedState();
 					ClassifierThread.forceCalibration = false;
@@ -716,17 +673,13 @@ public class Calibrator {
 		public long time;
 		public final float[] axisMean;
 		public final float[] axisSd;
-		public final float[] sumSqr;
-		public final float[] sum;
-		public int count;
+		public final RunningStatistics statistics;
 
 		public Measurement() {
 			this.time = 0;
 			this.axisMean = new float[Constants.ACCEL_DIM];
 			this.axisSd = new float[Constants.ACCEL_DIM];
-			this.sumSqr = new float[Constants.ACCEL_DIM];
-			this.sum = new float[Constants.ACCEL_DIM];
-			this.count = 0; 
+			this.statistics = new RunningStatistics(Constants.ACCEL_DIM);
 		}
 
 	}
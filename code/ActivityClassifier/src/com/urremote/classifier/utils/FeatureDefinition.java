@@ -0,0 +1,61 @@
+package com.urremote.classifier.utils;
+
+/**
+ * A feature that can be given to a classifier, as registered in
+ * the {@link FeatureRegistry}.
+ *
+ * <p>
+ * Each feature declares the intermediate results it is computed from
+ * (see {@link FeatureRegistry#INPUT_TIME_DOMAIN} etc.), which are computed
+ * at most once per batch by {@link FeatureInputs}, and shared by all the
+ * features that require them, and the cost of computing the feature
+ * itself from those results.
+ *
+ * @author Umran
+ */
+public abstract class FeatureDefinition {
+
+	private final String name;
+	private final int cost;
+	private final int requiredInputs;
+
+	/**
+	 * @param name
+	 * the name of the feature, as given in the models
+	 *
+	 * @param cost
+	 * the relative cost of computing the feature, once its inputs are computed
+	 *
+	 * @param requiredInputs
+	 * the intermediate results the feature is computed from,
+	 * a combination of the FeatureRegistry.INPUT_* flags
+	 */
+	protected FeatureDefinition(String name, int cost, int requiredInputs) {
+		this.name = name;
+		this.cost = cost;
+		this.requiredInputs = requiredInputs;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getCost() {
+		return cost;
+	}
+
+	public int getRequiredInputs() {
+		return requiredInputs;
+	}
+
+	/**
+	 * Computes the feature from the inputs of the current batch.
+	 */
+	public abstract float compute(FeatureInputs inputs);
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
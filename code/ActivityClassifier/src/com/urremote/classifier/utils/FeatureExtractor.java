@@ -5,15 +5,11 @@
 
 package com.urremote.classifier.utils;
 
-import com.urremote.classifier.common.Constants;
-
-import android.util.Log;
-
 /**
- *	Extracts features from a given sample window.
- *	The window could be already rotated to world-orientation.
- *	This class abstracts which features of the sampled data
- *	is extracted and later provided to the classifier.
+ *	Defines the features extracted from a sample window rotated to
+ *	world-orientation, and computes them from the statistics of the
+ *	horizontal magnitude and vertical component of the window
+ *	(see {@link FusedFeatureKernel} and {@link SlidingFeatureExtractor}).
  *
  *
  * @author Umran
@@ -37,50 +33,38 @@ public class FeatureExtractor {
     public static final int FEATURE_VER_MEAN   	= 3;
     public static final int FEATURE_HOR_SD   	= 4;
     public static final int FEATURE_VER_SD   	= 5;
-	
-    private RotateSamplesToVerticalHorizontal rotate;
-    private float[][] twoDimSamples;
-    private CalcStatistics twoDimSampleStats;
-    private float[] features;
-    
-
-    public FeatureExtractor() {
-        this.rotate = new RotateSamplesToVerticalHorizontal();
-        this.twoDimSamples = new float[Constants.NUMBER_OF_SAMPLES][2];
-        this.twoDimSampleStats = new CalcStatistics(2);
-        this.features = new float[NUM_FEATURES];
-        
-    }
-
-    synchronized
-    public float[] extractRotated(float[][] input, int windowSize)
-    {
-        for (int j=0; j<windowSize; ++j) {
-            twoDimSamples[j][0] = (float)Math.sqrt(
-                    input[j][0]*input[j][0] +
-                    input[j][1]*input[j][1]);
-            twoDimSamples[j][1] = input[j][2];
-        }
 
-        return internExtract(windowSize);
+    /**
+     * Computes the features from the statistics of the horizontal
+     * magnitude (dimension 0) and vertical component (dimension 1)
+     * of the rotated samples.
+     * 
+     * @param horVerStats
+     * the statistics of the horizontal and vertical samples
+     * 
+     * @param outFeatures
+     * an array of {@link #NUM_FEATURES} floats to save the features in
+     */
+    public static void assignFeatures(RunningStatistics horVerStats, float[] outFeatures) {
+        assignFeatures(
+                horVerStats.getMin(),
+                horVerStats.getMax(),
+                horVerStats.getMean(),
+                horVerStats.getSampleStandardDeviation(),
+                outFeatures);
     }
-	
-    private float[] internExtract(int windowSize) {
-        twoDimSampleStats.assign(twoDimSamples, windowSize);
 
-        float[] min = twoDimSampleStats.getMin();
-        float[] max = twoDimSampleStats.getMax();
-        float[] mean = twoDimSampleStats.getMean();
-        float[] sd = twoDimSampleStats.getSampleStandardDeviation();
-       
-        features[FEATURE_HOR_RANGE] = max[0] - min[0];
-        features[FEATURE_VER_RANGE] = max[1] - min[1];
-        features[FEATURE_HOR_MEAN] = mean[0];
-		features[FEATURE_VER_MEAN] = mean[1];
-        features[FEATURE_HOR_SD] = sd[0];
-        features[FEATURE_VER_SD] = sd[1];
-        
-        return features;
+    /**
+     * Same as {@link #assignFeatures(RunningStatistics, float[])}, with the
+     * statistics given separately, e.g. by {@link SlidingWindowStatistics}.
+     */
+    public static void assignFeatures(float[] min, float[] max, float[] mean, float[] sd, float[] outFeatures) {
+        outFeatures[FEATURE_HOR_RANGE] = max[0] - min[0];
+        outFeatures[FEATURE_VER_RANGE] = max[1] - min[1];
+        outFeatures[FEATURE_HOR_MEAN] = mean[0];
+        outFeatures[FEATURE_VER_MEAN] = mean[1];
+        outFeatures[FEATURE_HOR_SD] = sd[0];
+        outFeatures[FEATURE_VER_SD] = sd[1];
     }
 
     public static float[][] transpose(float [][] a) {
@@ -0,0 +1,178 @@
+package com.urremote.classifier.utils;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ * Holds the intermediate results that the features of a batch are computed
+ * from (see {@link FeatureRegistry}), each computed when first required by a
+ * feature, and shared by the rest of the features that require it.
+ *
+ * <p>
+ * Only the intermediate results required by the {@link FeatureSet} given
+ * are allocated, and nothing is allocated per batch. Each classification job
+ * has its own instance.
+ *
+ * @author Umran
+ */
+public class FeatureInputs {
+
+	//	the fraction of the standard deviation of the vertical component
+	//		above and below its mean, that a step has to cross
+	private static final float STEP_THRESHOLD_SD = 0.5f;
+	//	steps are ignored if the vertical component varies less than this
+	private static final float MIN_STEP_SD = Constants.GRAVITY * 0.05f;
+
+	private final MetUtilOrig metUtil;
+	private final SpectralFeatureExtractor spectralExtractor;
+
+	//	assigned per batch
+	private float[] timeDomainFeatures;
+	private float[][] rotatedSamples;
+	private int numSamples;
+	private long[] timeStamps;
+
+	//	computed when first required
+	private float[] spectralFeatures;
+	private boolean countsValid;
+	private final double[] counts = new double[Constants.ACCEL_DIM];
+	private boolean stepRateValid;
+	private float stepRate;
+
+	/**
+	 * @param featureSet
+	 * the features that will be computed from the inputs
+	 *
+	 * @param metUtil
+	 * used to compute the counts, only read from
+	 */
+	public FeatureInputs(FeatureSet featureSet, MetUtilOrig metUtil) {
+		this.metUtil = metUtil;
+		if (featureSet.requires(FeatureRegistry.INPUT_SPECTRUM))
+			this.spectralExtractor = new SpectralFeatureExtractor();
+		else
+			this.spectralExtractor = null;
+	}
+
+	private void clear() {
+		this.spectralFeatures = null;
+		this.countsValid = false;
+		this.stepRateValid = false;
+	}
+
+	/**
+	 * Assigns the rotated samples of a batch.
+	 *
+	 * @param timeDomainFeatures
+	 * the features of {@link FeatureExtractor}, computed from the samples
+	 *
+	 * @param rotatedSamples
+	 * the samples rotated to world coordinates, one array per axis
+	 *
+	 * @param timeStamps
+	 * the time stamps of the samples
+	 */
+	public void assign(float[] timeDomainFeatures, float[][] rotatedSamples, int numSamples, long[] timeStamps) {
+		this.timeDomainFeatures = timeDomainFeatures;
+		this.rotatedSamples = rotatedSamples;
+		this.numSamples = numSamples;
+		this.timeStamps = timeStamps;
+		clear();
+	}
+
+	/**
+	 * Assigns a batch whose samples weren't rotated, hence only the features
+	 * computed from {@link FeatureRegistry#INPUT_TIME_DOMAIN} can be computed.
+	 *
+	 * @param timeDomainFeatures
+	 * the features of {@link FeatureExtractor}, e.g. extracted while sampling
+	 */
+	public void assignTimeDomain(float[] timeDomainFeatures) {
+		this.timeDomainFeatures = timeDomainFeatures;
+		this.rotatedSamples = null;
+		this.numSamples = 0;
+		this.timeStamps = null;
+		clear();
+	}
+
+	private void checkRotated() {
+		if (rotatedSamples==null)
+			throw new IllegalStateException("The samples of the batch weren't rotated");
+	}
+
+	/**
+	 * @return
+	 * the features of {@link FeatureExtractor}, see {@link FeatureExtractor#FEATURE_NAMES}
+	 */
+	public float[] getTimeDomainFeatures() {
+		return timeDomainFeatures;
+	}
+
+	/**
+	 * @return
+	 * the features of the vertical component's spectrum,
+	 * see {@link SpectralFeatureExtractor#FEATURE_NAMES}
+	 */
+	public float[] getSpectralFeatures() {
+		if (spectralFeatures==null) {
+			checkRotated();
+			if (spectralExtractor==null)
+				throw new IllegalStateException("Spectral features weren't required by the feature set");
+			spectralFeatures = spectralExtractor.extract(rotatedSamples[Constants.ACCEL_Z_AXIS], numSamples);
+		}
+		return spectralFeatures;
+	}
+
+	/**
+	 * @return
+	 * the counts per second of each axis of the rotated samples,
+	 * see {@link MetUtilOrig#computeCountsPerSecond(int, float[][], long[], double[])}
+	 */
+	public double[] getCounts() {
+		if (!countsValid) {
+			checkRotated();
+			metUtil.computeCountsPerSecond(numSamples, rotatedSamples, timeStamps, counts);
+			countsValid = true;
+		}
+		return counts;
+	}
+
+	/**
+	 * @return
+	 * the number of steps per second, i.e. the number of times the vertical
+	 * component rises from below to above its mean by a fraction of its standard
+	 * deviation, per second
+	 */
+	public float getStepRate() {
+		if (!stepRateValid) {
+			checkRotated();
+			stepRate = computeStepRate();
+			stepRateValid = true;
+		}
+		return stepRate;
+	}
+
+	private float computeStepRate() {
+		float mean = timeDomainFeatures[FeatureExtractor.FEATURE_VER_MEAN];
+		float sd = timeDomainFeatures[FeatureExtractor.FEATURE_VER_SD];
+		float duration = numSamples>1 ? (timeStamps[numSamples-1] - timeStamps[0]) / 1000.0f : 0.0f;
+		if (sd<MIN_STEP_SD || duration<=0.0f)
+			return 0.0f;
+
+		final float[] ver = rotatedSamples[Constants.ACCEL_Z_AXIS];
+		final float upper = mean + sd*STEP_THRESHOLD_SD;
+		final float lower = mean - sd*STEP_THRESHOLD_SD;
+		int steps = 0;
+		boolean below = false;
+		for (int s=0; s<numSamples; ++s) {
+			if (ver[s]<lower) {
+				below = true;
+			} else if (below && ver[s]>upper) {
+				++steps;
+				below = false;
+			}
+		}
+
+		return steps / duration;
+	}
+
+}
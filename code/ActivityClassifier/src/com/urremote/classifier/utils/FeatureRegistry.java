@@ -0,0 +1,195 @@
+package com.urremote.classifier.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Lists all the features that a model can be trained on, by name.
+ *
+ * <p>
+ * A model declares the names of the features it requires, from which
+ * a {@link FeatureSet} is selected using {@link #select(String[])}. Only
+ * the features in the set, and the intermediate results they require,
+ * are computed for each batch, hence features can be added here without
+ * costing the models that don't use them anything.
+ *
+ * <p>
+ * The intermediate results (the INPUT_* flags) are computed by
+ * {@link FeatureInputs}, each may require other intermediate results,
+ * see {@link #getInputDependencies(int)}.
+ *
+ * @author Umran
+ */
+public class FeatureRegistry {
+
+	/**
+	 * The features of {@link FeatureExtractor}, computed with the statistics
+	 * of the batch, or while sampling (see {@link SlidingFeatureExtractor})
+	 */
+	public static final int INPUT_TIME_DOMAIN	= 0x01;
+	/**
+	 * The samples of the batch rotated to world coordinates
+	 */
+	public static final int INPUT_ROTATED		= 0x02;
+	/**
+	 * The features of the vertical component's spectrum, see {@link SpectralFeatureExtractor}
+	 */
+	public static final int INPUT_SPECTRUM		= 0x04;
+	/**
+	 * The counts per second used to compute the MET, see {@link MetUtilOrig}
+	 */
+	public static final int INPUT_COUNTS		= 0x08;
+	/**
+	 * The steps detected on the vertical component
+	 */
+	public static final int INPUT_STEPS			= 0x10;
+
+	private static final int[] INPUTS = new int[] {
+		INPUT_TIME_DOMAIN,
+		INPUT_ROTATED,
+		INPUT_SPECTRUM,
+		INPUT_COUNTS,
+		INPUT_STEPS,
+	};
+
+	//	the relative cost of computing each intermediate result, in the order of INPUTS
+	private static final int[] INPUT_COSTS = new int[] {
+		1,	//	statistics computed along with the rotation
+		4,	//	computing the rotation matrix, and rotating each sample
+		16,	//	windowing and the FFT
+		4,	//	zero crossings of each axis
+		2,	//	threshold crossings of the vertical component
+	};
+
+	//	the intermediate results each intermediate result is computed from, in the order of INPUTS
+	private static final int[] INPUT_DEPENDENCIES = new int[] {
+		0,
+		0,
+		INPUT_ROTATED,
+		INPUT_ROTATED,
+		INPUT_ROTATED | INPUT_TIME_DOMAIN,
+	};
+
+	/**
+	 * The names of the features of the models that don't declare
+	 * their features, i.e. models trained on {@link FeatureExtractor}'s features.
+	 */
+	public static final String[] DEFAULT_FEATURE_NAMES = FeatureExtractor.FEATURE_NAMES;
+
+	private static final List<FeatureDefinition> definitions = new ArrayList<FeatureDefinition>();
+	private static final Map<String,FeatureDefinition> definitionsByName = new TreeMap<String,FeatureDefinition>();
+
+	static {
+		for (int f=0; f<FeatureExtractor.NUM_FEATURES; ++f) {
+			final int index = f;
+			register(new FeatureDefinition(FeatureExtractor.FEATURE_NAMES[f], 1, INPUT_TIME_DOMAIN) {
+				public float compute(FeatureInputs inputs) {
+					return inputs.getTimeDomainFeatures()[index];
+				}
+			});
+		}
+
+		for (int f=0; f<SpectralFeatureExtractor.NUM_FEATURES; ++f) {
+			final int index = f;
+			register(new FeatureDefinition(SpectralFeatureExtractor.FEATURE_NAMES[f], 1, INPUT_SPECTRUM) {
+				public float compute(FeatureInputs inputs) {
+					return inputs.getSpectralFeatures()[index];
+				}
+			});
+		}
+
+		register(new FeatureDefinition("HOR COUNTS", 1, INPUT_COUNTS) {
+			public float compute(FeatureInputs inputs) {
+				double[] counts = inputs.getCounts();
+				return (float)Math.sqrt(counts[0]*counts[0] + counts[1]*counts[1]);
+			}
+		});
+
+		register(new FeatureDefinition("VER COUNTS", 1, INPUT_COUNTS) {
+			public float compute(FeatureInputs inputs) {
+				return (float)inputs.getCounts()[2];
+			}
+		});
+
+		register(new FeatureDefinition("STEP RATE", 1, INPUT_STEPS) {
+			public float compute(FeatureInputs inputs) {
+				return inputs.getStepRate();
+			}
+		});
+	}
+
+	private static void register(FeatureDefinition definition) {
+		if (definitionsByName.containsKey(definition.getName()))
+			throw new RuntimeException("Feature '"+definition.getName()+"' registered twice");
+		definitions.add(definition);
+		definitionsByName.put(definition.getName(), definition);
+	}
+
+	/**
+	 * @return
+	 * all the registered features
+	 */
+	public static List<FeatureDefinition> getDefinitions() {
+		return Collections.unmodifiableList(definitions);
+	}
+
+	/**
+	 * @return
+	 * the feature with the given name, or null if no such feature is registered
+	 */
+	public static FeatureDefinition get(String name) {
+		return definitionsByName.get(name);
+	}
+
+	/**
+	 * Selects the features a model requires.
+	 *
+	 * @param featureNames
+	 * the names of the features, in the order the model expects them
+	 *
+	 * @throws RuntimeException
+	 * if any of the features isn't registered
+	 */
+	public static FeatureSet select(String[] featureNames) {
+		FeatureDefinition[] selected = new FeatureDefinition[featureNames.length];
+		for (int i=0; i<featureNames.length; ++i) {
+			selected[i] = definitionsByName.get(featureNames[i]);
+			if (selected[i]==null)
+				throw new RuntimeException("The model requires an unknown feature '"+featureNames[i]+"'");
+		}
+		return new FeatureSet(selected);
+	}
+
+	/**
+	 * @return
+	 * the intermediate results given, along with all the intermediate
+	 * results they are computed from
+	 */
+	public static int getInputDependencies(int inputs) {
+		int closed = inputs;
+		int prev;
+		do {
+			prev = closed;
+			for (int i=0; i<INPUTS.length; ++i)
+				if ((closed & INPUTS[i])!=0)
+					closed |= INPUT_DEPENDENCIES[i];
+		} while (closed!=prev);
+		return closed;
+	}
+
+	/**
+	 * @return
+	 * the relative cost of computing the intermediate results given
+	 */
+	public static int getInputCost(int inputs) {
+		int cost = 0;
+		for (int i=0; i<INPUTS.length; ++i)
+			if ((inputs & INPUTS[i])!=0)
+				cost += INPUT_COSTS[i];
+		return cost;
+	}
+
+}
@@ -0,0 +1,96 @@
+package com.urremote.classifier.utils;
+
+/**
+ * The features a model requires, in the order the model expects them,
+ * as selected by {@link FeatureRegistry#select(String[])}.
+ *
+ * <p>
+ * Immutable, hence shared by all the classification jobs.
+ *
+ * @author Umran
+ */
+public class FeatureSet {
+
+	private final FeatureDefinition[] definitions;
+	private final String[] names;
+	private final int requiredInputs;
+	private final int cost;
+
+	FeatureSet(FeatureDefinition[] definitions) {
+		this.definitions = definitions;
+		this.names = new String[definitions.length];
+
+		int inputs = 0;
+		int featureCost = 0;
+		for (int i=0; i<definitions.length; ++i) {
+			this.names[i] = definitions[i].getName();
+			inputs |= definitions[i].getRequiredInputs();
+			featureCost += definitions[i].getCost();
+		}
+
+		this.requiredInputs = FeatureRegistry.getInputDependencies(inputs);
+		this.cost = featureCost + FeatureRegistry.getInputCost(this.requiredInputs);
+	}
+
+	public int size() {
+		return definitions.length;
+	}
+
+	/**
+	 * @return
+	 * the names of the features, not to be altered
+	 */
+	public String[] getNames() {
+		return names;
+	}
+
+	/**
+	 * @return
+	 * the intermediate results required, including the results they are computed from
+	 */
+	public int getRequiredInputs() {
+		return requiredInputs;
+	}
+
+	/**
+	 * @param input
+	 * one of the FeatureRegistry.INPUT_* flags
+	 *
+	 * @return
+	 * true if any of the features require the intermediate result given
+	 */
+	public boolean requires(int input) {
+		return (requiredInputs & input)!=0;
+	}
+
+	/**
+	 * @return
+	 * the relative cost of computing the features of a batch
+	 */
+	public int getCost() {
+		return cost;
+	}
+
+	/**
+	 * Computes the features of the batch assigned to the inputs given.
+	 *
+	 * @param outFeatures
+	 * an array of {@link #size()} floats to save the features in
+	 */
+	public void compute(FeatureInputs inputs, float[] outFeatures) {
+		for (int i=0; i<definitions.length; ++i)
+			outFeatures[i] = definitions[i].compute(inputs);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int i=0; i<names.length; ++i) {
+			if (i>0)
+				builder.append(", ");
+			builder.append(names[i]);
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,226 @@
+package com.urremote.classifier.utils;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ *
+ * Computes everything the classifier requires from a batch of samples
+ * in two passes over the samples, without allocating memory.
+ *
+ * <p>
+ * The first pass ({@link #assignRaw(float[][], int, float[], float[])})
+ * takes out the calibration offsets, and computes the statistics of the
+ * unrotated samples. The mean of the unrotated samples is the gravity vector
+ * required to rotate the samples, hence the rotation can only be done in a
+ * second pass ({@link #rotateAndExtract(float[][], int)}), which rotates the
+ * samples to world coordinates, derives the horizontal magnitude, and computes
+ * the statistics of the rotated samples, of the horizontal and vertical
+ * components, and the features (see {@link FeatureExtractor}).
+ *
+ * <p>
+ * The statistics are accumulated using Welford's method, in the same way
+ * as {@link RunningStatistics}, hence the results are the same as rotating
+ * the samples using {@link RotateSamplesToVerticalHorizontal}, and extracting
+ * the features using {@link FeatureExtractor}.
+ *
+ * @author Umran
+ *
+ */
+public class FusedFeatureKernel {
+
+	private final RotateSamplesToVerticalHorizontal rotateSamples = new RotateSamplesToVerticalHorizontal();
+	private final float[] rotationMat = new float[Constants.ACCEL_DIM*Constants.ACCEL_DIM];
+
+	private final RunningStatistics rawStatistics = new RunningStatistics(Constants.ACCEL_DIM);
+	private final RunningStatistics rotatedStatistics = new RunningStatistics(Constants.ACCEL_DIM);
+	private final RunningStatistics horVerStatistics = new RunningStatistics(2);
+	private final float[] features = new float[FeatureExtractor.NUM_FEATURES];
+
+	//	accumulators, reused for each set of statistics
+	private final double[] mean = new double[Constants.ACCEL_DIM];
+	private final double[] m2 = new double[Constants.ACCEL_DIM];
+	private final float[] min = new float[Constants.ACCEL_DIM];
+	private final float[] max = new float[Constants.ACCEL_DIM];
+
+	/**
+	 * Takes out the offsets from the samples (if given), and computes
+	 * the statistics of the unrotated samples (see {@link #getRawStatistics()}).
+	 *
+	 * @param axisSamples
+	 * the samples, one array per axis, the offsets are taken out in place
+	 *
+	 * @param offset
+	 * the offset of each axis, or null if the samples shouldn't be altered
+	 *
+	 * @param scale
+	 * the scale of each axis, ignored if offset is null
+	 */
+	public void assignRaw(float[][] axisSamples, int numSamples, float[] offset, float[] scale)
+	{
+		for (int d=0; d<Constants.ACCEL_DIM; ++d) {
+			final float[] axis = axisSamples[d];
+			final boolean applyOffset = offset!=null;
+			final float axisOffset = applyOffset ? offset[d] : 0.0f;
+			final float axisScale = applyOffset ? scale[d] : 1.0f;
+			double axisMean = 0.0;
+			double axisM2 = 0.0;
+			float axisMin = Float.POSITIVE_INFINITY;
+			float axisMax = Float.NEGATIVE_INFINITY;
+			float val;
+			double delta;
+
+			for (int s=0; s<numSamples; ++s) {
+				val = axis[s];
+				if (applyOffset) {
+					val = (val - axisOffset) / axisScale;
+					axis[s] = val;
+				}
+				delta = val - axisMean;
+				axisMean += delta / (s+1);
+				axisM2 += delta * (val - axisMean);
+				if (val > axisMax)
+					axisMax = val;
+				if (val < axisMin)
+					axisMin = val;
+			}
+
+			mean[d] = axisMean;
+			m2[d] = axisM2;
+			min[d] = axisMin;
+			max[d] = axisMax;
+		}
+
+		rawStatistics.assignMoments(numSamples, mean, m2, min, max);
+	}
+
+	/**
+	 * Rotates the samples to world coordinates, using the mean computed by
+	 * {@link #assignRaw(float[][], int, float[], float[])} as the gravity vector,
+	 * and computes the rotated statistics, the horizontal and vertical statistics
+	 * and the features.
+	 *
+	 * @param axisSamples
+	 * the same samples given to {@link #assignRaw(float[][], int, float[], float[])},
+	 * rotated in place
+	 *
+	 * @return
+	 * false if the rotation matrix couldn't be computed, in which case
+	 * the samples aren't altered
+	 */
+	public boolean rotateAndExtract(float[][] axisSamples, int numSamples)
+	{
+		if (!rotateSamples.computeRotationMatrix(rawStatistics.getMean(), rotationMat)) {
+			return false;
+		}
+
+		final float[] x = axisSamples[Constants.ACCEL_X_AXIS];
+		final float[] y = axisSamples[Constants.ACCEL_Y_AXIS];
+		final float[] z = axisSamples[Constants.ACCEL_Z_AXIS];
+
+		final float r0 = rotationMat[0], r1 = rotationMat[1], r2 = rotationMat[2];
+		final float r3 = rotationMat[3], r4 = rotationMat[4], r5 = rotationMat[5];
+		final float r6 = rotationMat[6], r7 = rotationMat[7], r8 = rotationMat[8];
+
+		double meanX = 0.0, meanY = 0.0, meanZ = 0.0, meanH = 0.0;
+		double m2X = 0.0, m2Y = 0.0, m2Z = 0.0, m2H = 0.0;
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+		float minZ = Float.POSITIVE_INFINITY, minH = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		float maxZ = Float.NEGATIVE_INFINITY, maxH = Float.NEGATIVE_INFINITY;
+
+		float ux, uy, uz, sx, sy, sz, h;
+		double invCount, delta;
+		for (int s=0; s<numSamples; ++s) {
+			ux = x[s];
+			uy = y[s];
+			uz = z[s];
+
+			sx = r0*ux + r1*uy + r2*uz;
+			sy = r3*ux + r4*uy + r5*uz;
+			sz = r6*ux + r7*uy + r8*uz;
+			h = (float)Math.sqrt(sx*sx + sy*sy);
+			x[s] = sx;
+			y[s] = sy;
+			z[s] = sz;
+
+			invCount = 1.0 / (s+1);
+			delta = sx - meanX;	meanX += delta * invCount;	m2X += delta * (sx - meanX);
+			delta = sy - meanY;	meanY += delta * invCount;	m2Y += delta * (sy - meanY);
+			delta = sz - meanZ;	meanZ += delta * invCount;	m2Z += delta * (sz - meanZ);
+			delta = h - meanH;	meanH += delta * invCount;	m2H += delta * (h - meanH);
+
+			if (sx > maxX) maxX = sx;
+			if (sx < minX) minX = sx;
+			if (sy > maxY) maxY = sy;
+			if (sy < minY) minY = sy;
+			if (sz > maxZ) maxZ = sz;
+			if (sz < minZ) minZ = sz;
+			if (h > maxH) maxH = h;
+			if (h < minH) minH = h;
+		}
+
+		mean[Constants.ACCEL_X_AXIS] = meanX;
+		mean[Constants.ACCEL_Y_AXIS] = meanY;
+		mean[Constants.ACCEL_Z_AXIS] = meanZ;
+		m2[Constants.ACCEL_X_AXIS] = m2X;
+		m2[Constants.ACCEL_Y_AXIS] = m2Y;
+		m2[Constants.ACCEL_Z_AXIS] = m2Z;
+		min[Constants.ACCEL_X_AXIS] = minX;
+		min[Constants.ACCEL_Y_AXIS] = minY;
+		min[Constants.ACCEL_Z_AXIS] = minZ;
+		max[Constants.ACCEL_X_AXIS] = maxX;
+		max[Constants.ACCEL_Y_AXIS] = maxY;
+		max[Constants.ACCEL_Z_AXIS] = maxZ;
+		rotatedStatistics.assignMoments(numSamples, mean, m2, min, max);
+
+		//	horizontal magnitude, and vertical (i.e. rotated z) component
+		mean[0] = meanH;
+		mean[1] = meanZ;
+		m2[0] = m2H;
+		m2[1] = m2Z;
+		min[0] = minH;
+		min[1] = minZ;
+		max[0] = maxH;
+		max[1] = maxZ;
+		horVerStatistics.assignMoments(numSamples, mean, m2, min, max);
+
+		FeatureExtractor.assignFeatures(horVerStatistics, features);
+
+		return true;
+	}
+
+	/**
+	 * @return
+	 * the statistics of the samples, after the offsets were taken out, and before rotation
+	 */
+	public RunningStatistics getRawStatistics() {
+		return rawStatistics;
+	}
+
+	/**
+	 * @return
+	 * the statistics of the rotated samples
+	 */
+	public RunningStatistics getRotatedStatistics() {
+		return rotatedStatistics;
+	}
+
+	/**
+	 * @return
+	 * the statistics of the horizontal magnitude (dimension 0) and vertical
+	 * component (dimension 1) of the rotated samples
+	 */
+	public RunningStatistics getHorVerStatistics() {
+		return horVerStatistics;
+	}
+
+	/**
+	 * @return
+	 * the features extracted by the last call to {@link #rotateAndExtract(float[][], int)},
+	 * see {@link FeatureExtractor#FEATURE_NAMES}
+	 */
+	public float[] getFeatures() {
+		return features;
+	}
+
+}
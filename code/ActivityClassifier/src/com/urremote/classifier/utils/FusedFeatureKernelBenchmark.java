@@ -0,0 +1,174 @@
+package com.urremote.classifier.utils;
+
+import java.util.Random;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ * Measures the per-batch cost of {@link FusedFeatureKernel} against doing
+ * the same work one step at a time, the way the classifier thread did
+ * before the kernel: take out the calibration offsets, compute the raw
+ * statistics, rotate the samples, compute the rotated statistics, derive
+ * the horizontal magnitude and vertical component into their own arrays,
+ * and compute their statistics to get the features. That's six passes
+ * over the batch against the kernel's two.
+ *
+ * <p>
+ * Before timing, the features of both are compared on every batch,
+ * and the run fails if any differs by more than a small relative error
+ * (the multi-pass statistics divide where the kernel multiplies by the
+ * reciprocal, hence the last bits may differ).
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path), e.g.:
+ * <pre>
+ *	java com.urremote.classifier.utils.FusedFeatureKernelBenchmark 200000
+ * </pre>
+ *
+ * @author Umran
+ */
+public class FusedFeatureKernelBenchmark {
+
+	private static final int DIM = Constants.ACCEL_DIM;
+	private static final int NUM_SAMPLES = Constants.NUMBER_OF_SAMPLES;
+	private static final int NUM_BATCHES = 64;
+	private static final int ROUNDS = 5;
+	private static final float MAX_RELATIVE_ERROR = 1e-4f;
+
+	private static final float[] OFFSET = { 0.1f, -0.2f, 0.15f };
+	private static final float[] SCALE = { 1.01f, 0.99f, 1.02f };
+
+	private final RotateSamplesToVerticalHorizontal rotateSamples = new RotateSamplesToVerticalHorizontal();
+	private final float[] rotationMat = new float[DIM*DIM];
+	private final RunningStatistics rawStatistics = new RunningStatistics(DIM);
+	private final RunningStatistics rotatedStatistics = new RunningStatistics(DIM);
+	private final RunningStatistics horVerStatistics = new RunningStatistics(2);
+	private final float[][] horVer = new float[2][NUM_SAMPLES];
+	private final float[] features = new float[FeatureExtractor.NUM_FEATURES];
+
+	private final FusedFeatureKernel kernel = new FusedFeatureKernel();
+
+	/**
+	 * The step by step version of {@link FusedFeatureKernel#assignRaw(float[][], int, float[], float[])}
+	 * followed by {@link FusedFeatureKernel#rotateAndExtract(float[][], int)}.
+	 */
+	boolean extractMultiPass(float[][] axes) {
+		for (int d=0; d<DIM; ++d) {
+			float[] axis = axes[d];
+			for (int s=0; s<NUM_SAMPLES; ++s)
+				axis[s] = (axis[s] - OFFSET[d]) / SCALE[d];
+		}
+
+		rawStatistics.assignColumns(axes, NUM_SAMPLES);
+
+		if (!rotateSamples.computeRotationMatrix(rawStatistics.getMean(), rotationMat))
+			return false;
+
+		float[] x = axes[Constants.ACCEL_X_AXIS];
+		float[] y = axes[Constants.ACCEL_Y_AXIS];
+		float[] z = axes[Constants.ACCEL_Z_AXIS];
+		for (int s=0; s<NUM_SAMPLES; ++s) {
+			float ux = x[s], uy = y[s], uz = z[s];
+			x[s] = rotationMat[0]*ux + rotationMat[1]*uy + rotationMat[2]*uz;
+			y[s] = rotationMat[3]*ux + rotationMat[4]*uy + rotationMat[5]*uz;
+			z[s] = rotationMat[6]*ux + rotationMat[7]*uy + rotationMat[8]*uz;
+		}
+
+		rotatedStatistics.assignColumns(axes, NUM_SAMPLES);
+
+		for (int s=0; s<NUM_SAMPLES; ++s) {
+			horVer[0][s] = (float)Math.sqrt(x[s]*x[s] + y[s]*y[s]);
+			horVer[1][s] = z[s];
+		}
+
+		horVerStatistics.assignColumns(horVer, NUM_SAMPLES);
+		FeatureExtractor.assignFeatures(horVerStatistics, features);
+		return true;
+	}
+
+	boolean extractFused(float[][] axes) {
+		kernel.assignRaw(axes, NUM_SAMPLES, OFFSET, SCALE);
+		return kernel.rotateAndExtract(axes, NUM_SAMPLES);
+	}
+
+	private static float[][][] createBatches(long seed) {
+		Random random = new Random(seed);
+		float[][][] batches = new float[NUM_BATCHES][DIM][NUM_SAMPLES];
+		for (int b=0; b<NUM_BATCHES; ++b) {
+			//	a random orientation of the phone, with some movement on top
+			float gx = random.nextFloat()*2.0f-1.0f;
+			float gy = random.nextFloat()*2.0f-1.0f;
+			float gz = random.nextFloat()*2.0f-1.0f;
+			float mag = (float)Math.sqrt(gx*gx+gy*gy+gz*gz) + 1e-3f;
+			float[] gravity = { 9.81f*gx/mag, 9.81f*gy/mag, 9.81f*gz/mag };
+			for (int d=0; d<DIM; ++d)
+				for (int s=0; s<NUM_SAMPLES; ++s)
+					batches[b][d][s] = gravity[d] +
+						2.0f*(float)Math.sin(s*0.3+d) + (float)random.nextGaussian()*0.5f;
+		}
+		return batches;
+	}
+
+	private static void copy(float[][] src, float[][] dst) {
+		for (int d=0; d<DIM; ++d)
+			System.arraycopy(src[d], 0, dst[d], 0, NUM_SAMPLES);
+	}
+
+	private static boolean close(float expected, float actual) {
+		float diff = Math.abs(expected-actual);
+		return diff<=MAX_RELATIVE_ERROR*Math.max(1.0f, Math.abs(expected));
+	}
+
+	public static void main(String[] args) {
+		int iterations = args.length>0 ? Integer.parseInt(args[0]) : 200000;
+
+		FusedFeatureKernelBenchmark benchmark = new FusedFeatureKernelBenchmark();
+		float[][][] batches = createBatches(12345L);
+		float[][] work = new float[DIM][NUM_SAMPLES];
+
+		for (int b=0; b<NUM_BATCHES; ++b) {
+			copy(batches[b], work);
+			boolean multiRotated = benchmark.extractMultiPass(work);
+			copy(batches[b], work);
+			boolean fusedRotated = benchmark.extractFused(work);
+			if (multiRotated!=fusedRotated) {
+				System.out.println("Batch "+b+": rotation succeeded in one version only");
+				System.exit(2);
+			}
+			float[] fused = benchmark.kernel.getFeatures();
+			for (int f=0; f<FeatureExtractor.NUM_FEATURES && multiRotated; ++f) {
+				if (!close(benchmark.features[f], fused[f])) {
+					System.out.println("Batch "+b+": "+FeatureExtractor.FEATURE_NAMES[f]+
+							" differs, multi-pass="+benchmark.features[f]+", fused="+fused[f]);
+					System.exit(2);
+				}
+			}
+		}
+		System.out.println("Features match on all "+NUM_BATCHES+" batches");
+
+		double sink = 0.0;
+		for (int round=0; round<ROUNDS; ++round) {
+			long start = System.nanoTime();
+			for (int i=0; i<iterations; ++i) {
+				copy(batches[i%NUM_BATCHES], work);
+				benchmark.extractMultiPass(work);
+				sink += benchmark.features[0];
+			}
+			long multiPass = System.nanoTime()-start;
+
+			start = System.nanoTime();
+			for (int i=0; i<iterations; ++i) {
+				copy(batches[i%NUM_BATCHES], work);
+				benchmark.extractFused(work);
+				sink += benchmark.kernel.getFeatures()[0];
+			}
+			long fused = System.nanoTime()-start;
+
+			System.out.printf("round %d: multi-pass %6.0f ns/batch, fused %6.0f ns/batch (%.2fx)%n",
+					round, (double)multiPass/iterations, (double)fused/iterations,
+					(double)multiPass/fused);
+		}
+		System.out.printf("[checksum %.3g]%n", sink);
+	}
+
+}
@@ -0,0 +1,220 @@
+package com.urremote.classifier.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * A bounded, pre-allocated, lock-free FIFO queue, used by {@link TwoWayBlockingQueue}.
+ *
+ * <p>
+ * Each slot in the ring carries a sequence number, which tells producers
+ * and consumers whether the slot is free to be written or ready to be read.
+ * A producer or consumer claims a position by incrementing the tail or head
+ * using compare-and-set, hence items can be offered and polled from any number
+ * of threads without locking. The ring holds exactly the number of items
+ * it was created with, so that offering more items than that fails, in the
+ * same way as a bounded {@link java.util.concurrent.ArrayBlockingQueue}.
+ *
+ * <p>
+ * Only {@link #poll(long, TimeUnit)} waits, by parking the calling thread
+ * until an item is offered. It is meant to be called by a single consumer
+ * thread at a time; any other thread calling it concurrently falls back to
+ * re-checking the queue every millisecond.
+ *
+ * @author Umran
+ *
+ * @param <ItemType>
+ * 	The type of item kept in the queue.
+ */
+public class LockFreeRing<ItemType> {
+
+	//	the period (in ns) a consumer, that couldn't register as the waiting consumer, re-checks the queue
+	private static final long SECONDARY_WAIT_PERIOD = 1000000L;
+
+	private final int capacity;
+	private final Object[] items;
+	private final AtomicLongArray sequences;
+
+	//	next position to write to
+	private final AtomicLong tail = new AtomicLong(0);
+	//	next position to read from
+	private final AtomicLong head = new AtomicLong(0);
+
+	//	the consumer thread currently waiting for an item, if any
+	private final AtomicReference<Thread> waitingConsumer = new AtomicReference<Thread>();
+
+	/**
+	 * @param capacity
+	 * 	the number of items the queue can hold
+	 */
+	public LockFreeRing(int capacity) {
+		if (capacity<1)
+			throw new IllegalArgumentException("Invalid capacity: "+capacity);
+
+		this.capacity = capacity;
+		this.items = new Object[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i=0; i<capacity; ++i)
+			this.sequences.set(i, i);
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Adds the item to the end of the queue, without blocking.
+	 *
+	 * @return
+	 * 	false if the queue is full
+	 */
+	public boolean offer(ItemType item) {
+		if (item==null)
+			throw new NullPointerException();
+
+		long pos = tail.get();
+		int index;
+		for (;;) {
+			index = (int)(pos % capacity);
+			long diff = sequences.get(index) - pos;
+			if (diff==0) {
+				if (tail.compareAndSet(pos, pos+1))
+					break;
+				pos = tail.get();
+			} else if (diff<0) {
+				return false;	// full
+			} else {
+				pos = tail.get();	// another producer claimed the slot
+			}
+		}
+
+		items[index] = item;
+		//	publishes the item to consumers
+		sequences.set(index, pos+1);
+
+		Thread waiting = waitingConsumer.get();
+		if (waiting!=null)
+			LockSupport.unpark(waiting);
+
+		return true;
+	}
+
+	/**
+	 * Removes the item at the front of the queue, without blocking.
+	 *
+	 * @return
+	 * 	the item removed, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public ItemType poll() {
+		long pos = head.get();
+		int index;
+		for (;;) {
+			index = (int)(pos % capacity);
+			long diff = sequences.get(index) - (pos+1);
+			if (diff==0) {
+				if (head.compareAndSet(pos, pos+1))
+					break;
+				pos = head.get();
+			} else if (diff<0) {
+				return null;	// empty
+			} else {
+				pos = head.get();	// another consumer took the item
+			}
+		}
+
+		ItemType item = (ItemType)items[index];
+		items[index] = null;
+		//	frees the slot for producers, one lap later
+		sequences.set(index, pos+capacity);
+		return item;
+	}
+
+	/**
+	 * Removes the item at the front of the queue, waiting for an item
+	 * to be offered if the queue is empty.
+	 *
+	 * @return
+	 * 	the item removed, or null if the timeout elapsed
+	 *
+	 * @throws InterruptedException
+	 * 	if the thread is interrupted while waiting
+	 */
+	public ItemType poll(long timeout, TimeUnit unit) throws InterruptedException {
+		ItemType item = poll();
+		if (item!=null)
+			return item;
+
+		Thread current = Thread.currentThread();
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		boolean registered = waitingConsumer.compareAndSet(null, current);
+		try {
+			for (;;) {
+				//	re-check after registering, in case an item was offered in between
+				item = poll();
+				if (item!=null)
+					return item;
+
+				long remaining = deadline - System.nanoTime();
+				if (remaining<=0)
+					return null;
+
+				if (registered)
+					LockSupport.parkNanos(remaining);
+				else
+					LockSupport.parkNanos(Math.min(remaining, SECONDARY_WAIT_PERIOD));
+
+				if (Thread.interrupted())
+					throw new InterruptedException();
+			}
+		} finally {
+			if (registered)
+				waitingConsumer.compareAndSet(current, null);
+		}
+	}
+
+	/**
+	 * @return
+	 * 	the item at the front of the queue without removing it,
+	 * 	or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	public ItemType peek() {
+		for (;;) {
+			long pos = head.get();
+			int index = (int)(pos % capacity);
+			long diff = sequences.get(index) - (pos+1);
+			if (diff<0)
+				return null;	// empty
+			ItemType item = (ItemType)items[index];
+			//	make sure the item wasn't taken while being read
+			if (diff==0 && head.get()==pos && item!=null)
+				return item;
+		}
+	}
+
+	/**
+	 * @return
+	 * 	the number of items in the queue, which may be out of date
+	 * 	by the time it's returned, if other threads are using the queue
+	 */
+	public int size() {
+		for (;;) {
+			long h = head.get();
+			long t = tail.get();
+			if (head.get()==h) {
+				long size = t-h;
+				if (size<0)
+					return 0;
+				if (size>capacity)
+					return capacity;
+				return (int)size;
+			}
+		}
+	}
+
+}
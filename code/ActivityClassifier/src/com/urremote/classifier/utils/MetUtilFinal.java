@@ -158,7 +158,7 @@ public class MetUtilFinal implements OptionUpdateHandler {
 	 * samples given (after rotation) per second.
 	 * 
 	 * @param len				the number of accelerometer samples in each dimension
-	 * @param rotatedData		the accelerometer samples (3 dimensions, after rotation)
+	 * @param rotatedData		the accelerometer samples (3 dimensions, after rotation), one array per dimension
 	 * @param rotatedDataMeans  the means of the rotated data, in each dimension
 	 * @param timeStamps		timestamps of the accelerometer samples
 	 * @param results			an array of three doubles to return the average number of
@@ -169,6 +169,7 @@ public class MetUtilFinal implements OptionUpdateHandler {
 		double timePeriod = ((double)(timeStamps[len-1]-timeStamps[0])) / 1000.0;
 		
 		for (int dim=0; dim<3; ++dim) {
+			final float[] dimData = rotatedData[dim];
 			
 			//	number of zero-crossings found
 			double counts = 0.0;
@@ -183,7 +184,7 @@ public class MetUtilFinal implements OptionUpdateHandler {
 				//		frequency to the required frequency
 				value = 0.0f;
 				for (int k=0; k<MEAN_GROUP_SIZE; ++k) {
-					value += rotatedData[iSample+k][dim] - rotatedDataMeans[dim];
+					value += dimData[iSample+k] - rotatedDataMeans[dim];
 				}
 				value /= MEAN_GROUP_SIZE;
 				
@@ -233,7 +234,7 @@ public class MetUtilFinal implements OptionUpdateHandler {
 	 * 2) this method is insensitive to high intensity activities (e.g. jogging)
 	 * 
 	 * @param len				the number of accelerometer samples in each dimension
-	 * @param rotatedData		the accelerometer samples (3 dimensions, after rotation)
+	 * @param rotatedData		the accelerometer samples (3 dimensions, after rotation), one array per dimension
 	 * @param rotatedDataMeans  the means of the rotated data, in each dimension
 	 * @param timeStamps		timestamps of the accelerometer samples
 	 * @param results			an array of three doubles to return the average number of
@@ -256,7 +257,7 @@ public class MetUtilFinal implements OptionUpdateHandler {
 			//	compute mean of the first data group
 			prevMean[dim] = 0.0;
 			for (int iSample=0; iSample<MEAN_GROUP_SIZE; ++iSample) {
-				prevMean[dim] += rotatedData[iSample][dim];
+				prevMean[dim] += rotatedData[dim][iSample];
 			}			
 			prevMean[dim] /= MEAN_GROUP_SIZE;
 			
@@ -275,7 +276,7 @@ public class MetUtilFinal implements OptionUpdateHandler {
 				//	get the mean of current data group
 				currentMean = 0.0;
 				for (int k=0; k<MEAN_GROUP_SIZE; ++k) {
-					currentMean += rotatedData[iSample+k][dim];
+					currentMean += rotatedData[dim][iSample+k];
 				}			
 				currentMean /= MEAN_GROUP_SIZE;
 				
@@ -171,7 +171,8 @@ public class MetUtilOrig implements OptionUpdateHandler {
 	 * @param len
 	 *            the number of accelerometer samples in each dimension
 	 * @param rotatedData
-	 *            the accelerometer samples (3 dimensions, after rotation)
+	 *            the accelerometer samples (3 dimensions, after rotation),
+	 *            one array per dimension
 	 * @param timeStamps
 	 *            timestamps of the accelerometer samples
 	 * @param results
@@ -184,6 +185,8 @@ public class MetUtilOrig implements OptionUpdateHandler {
 		double timePeriod = ((double) (timeStamps[len - 1] - timeStamps[0])) / 1000.0;
 
 		for (int dim = 0; dim < 3; ++dim) {
+			final float[] dimData = rotatedData[dim];
+			final double dc = DC_COMPONENTS[dim];
 
 			// number of zero-crossings found
 			double counts = 0.0;
@@ -198,7 +201,7 @@ public class MetUtilOrig implements OptionUpdateHandler {
 				// frequency to the required frequency
 				value = 0.0f;
 				for (int k = 0; k < MEAN_GROUP_SIZE; ++k) {
-					value += rotatedData[iSample + k][dim] - DC_COMPONENTS[dim];
+					value += dimData[iSample + k] - dc;
 				}
 				value /= MEAN_GROUP_SIZE;
 
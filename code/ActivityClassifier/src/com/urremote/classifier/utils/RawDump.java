@@ -16,7 +16,7 @@ import android.util.Log;
 
 public class RawDump {
 	
-	private static final String PATH_DUMP_FOLDER = Constants.PATH_SD_CARD_APP_LOC + File.separator + "RawDump";
+	public static final String PATH_DUMP_FOLDER = Constants.PATH_SD_CARD_APP_LOC + File.separator + "RawDump";
 	private static final long DURATION_KEEP_DUMPS = 24*60*60*1000L;	// 24hrs
 	private static final long INTERVAL_DELETE_DUMPS = 10*60*1000L;	//	10min
 	
@@ -38,26 +38,36 @@ public class RawDump {
 			}
 		}
 		
+		this.dumpFiles = listDumpFiles(this.dumpFolder);
+	}
+	
+	/**
+	 * @return
+	 * the names of the dump files found in the folder given, oldest first
+	 */
+	public static ArrayList<String> listDumpFiles(File dumpFolder) {
 		//	fetch all required files in the folder
-		File[] files = this.dumpFolder.listFiles(new FilenameFilter() {
+		File[] files = dumpFolder.listFiles(new FilenameFilter() {
 			public boolean accept(File dir, String filename) {
 				return filename.matches("\\d\\d\\d\\d_\\d\\d_\\d\\d_\\d\\d_\\d\\d_\\d\\d\\.txt");
 			}
 		});
 		
+		ArrayList<String> dumpFiles;
 		if (files==null) {
-			this.dumpFiles = new ArrayList<String>();
+			dumpFiles = new ArrayList<String>();
 		} else {
 			//	add to list
-			this.dumpFiles = new ArrayList<String>(files.length);
+			dumpFiles = new ArrayList<String>(files.length);
 			for (File f:files)
-				this.dumpFiles.add(f.getName());
+				dumpFiles.add(f.getName());
 			
 			//	sort list
-			if (!this.dumpFiles.isEmpty())
+			if (!dumpFiles.isEmpty())
 				Collections.sort(dumpFiles, comparebyDate);
 		}
 		
+		return dumpFiles;
 	}
 	
 	private void deleteOldDumps(long currentTime) {
@@ -114,7 +124,7 @@ public class RawDump {
 			for (int i=0; i<len; ++i) {
 				out.print(i+","+batch.timeStamps[i]);
 				for (int j=0; j<Constants.ACCEL_DIM; ++j) {
-					out.print(","+batch.data[i][j]);
+					out.print(","+batch.axisData[j][i]);
 				}
 				out.println();
 			}
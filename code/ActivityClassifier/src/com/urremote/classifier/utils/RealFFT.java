@@ -0,0 +1,197 @@
+package com.urremote.classifier.utils;
+
+/**
+ * Computes the discrete Fourier transform of real valued signals
+ * of a fixed length, without allocating memory once constructed.
+ *
+ * <p>
+ * A real signal of length N is packed into a complex signal of length N/2,
+ * with the even samples as the real parts, and the odd samples as the imaginary
+ * parts. A radix-2 complex FFT of length N/2 is computed in place, after which the
+ * spectrum of the real signal is separated from it, using the symmetry of the
+ * spectrum of real signals. The bit-reversal permutation and all the twiddle
+ * factors are computed once, when constructed.
+ *
+ * <p>
+ * The spectrum is kept in the instance's buffers, and is only valid until
+ * the next transform, hence each thread should use its own instance.
+ *
+ * @author Umran
+ */
+public class RealFFT {
+
+	private final int n;
+	private final int half;
+	private final int halfLog2;
+
+	//	bit-reversal permutation of the complex signal of length N/2
+	private final int[] bitReverse;
+	//	twiddle factors of the complex FFT of length N/2: e^(-2*PI*i*k/(N/2)), k<N/4
+	private final float[] fftCos;
+	private final float[] fftSin;
+	//	twiddle factors used to separate the spectrum: e^(-2*PI*i*k/N), k<N/2
+	private final float[] splitCos;
+	private final float[] splitSin;
+
+	//	packed complex signal, transformed in place
+	private final float[] zRe;
+	private final float[] zIm;
+
+	//	spectrum of the real signal, bins 0..N/2
+	private final float[] re;
+	private final float[] im;
+	private final float[] power;
+
+	/**
+	 * @param n
+	 * the length of the signals to transform, a power of 2, at least 4
+	 */
+	public RealFFT(int n) {
+		if (n<4 || (n & (n-1))!=0)
+			throw new IllegalArgumentException("FFT length must be a power of 2 (at least 4), not "+n);
+
+		this.n = n;
+		this.half = n/2;
+
+		int log2 = 0;
+		while ((1<<log2)<half)
+			++log2;
+		this.halfLog2 = log2;
+
+		this.bitReverse = new int[half];
+		for (int i=0; i<half; ++i) {
+			int rev = 0;
+			for (int b=0; b<halfLog2; ++b)
+				if ((i & (1<<b))!=0)
+					rev |= 1<<(halfLog2-1-b);
+			this.bitReverse[i] = rev;
+		}
+
+		this.fftCos = new float[Math.max(1, half/2)];
+		this.fftSin = new float[Math.max(1, half/2)];
+		for (int k=0; k<half/2; ++k) {
+			double angle = -2.0*Math.PI*k/half;
+			this.fftCos[k] = (float)Math.cos(angle);
+			this.fftSin[k] = (float)Math.sin(angle);
+		}
+
+		this.splitCos = new float[half];
+		this.splitSin = new float[half];
+		for (int k=0; k<half; ++k) {
+			double angle = -2.0*Math.PI*k/n;
+			this.splitCos[k] = (float)Math.cos(angle);
+			this.splitSin[k] = (float)Math.sin(angle);
+		}
+
+		this.zRe = new float[half];
+		this.zIm = new float[half];
+		this.re = new float[half+1];
+		this.im = new float[half+1];
+		this.power = new float[half+1];
+	}
+
+	public int getLength() {
+		return n;
+	}
+
+	/**
+	 * @return
+	 * the number of bins in the spectrum, i.e. N/2+1 (from 0 up to the Nyquist frequency)
+	 */
+	public int getBinCount() {
+		return half+1;
+	}
+
+	/**
+	 * Computes the spectrum of the signal given.
+	 *
+	 * @param signal
+	 * the signal, of which the first N values are transformed, not altered
+	 */
+	public void transform(float[] signal) {
+		//	pack the real signal into a complex signal of half the length,
+		//		in bit-reversed order
+		for (int i=0; i<half; ++i) {
+			int j = bitReverse[i];
+			zRe[j] = signal[2*i];
+			zIm[j] = signal[2*i+1];
+		}
+
+		//	iterative radix-2 decimation in time
+		for (int size=2, stride=half/2; size<=half; size<<=1, stride>>=1) {
+			int halfSize = size>>1;
+			for (int start=0; start<half; start+=size) {
+				for (int k=0, t=0; k<halfSize; ++k, t+=stride) {
+					int a = start+k;
+					int b = a+halfSize;
+					float c = fftCos[t];
+					float s = fftSin[t];
+					float tRe = c*zRe[b] - s*zIm[b];
+					float tIm = s*zRe[b] + c*zIm[b];
+					zRe[b] = zRe[a] - tRe;
+					zIm[b] = zIm[a] - tIm;
+					zRe[a] += tRe;
+					zIm[a] += tIm;
+				}
+			}
+		}
+
+		//	separate the spectrum of the even (E) and odd (O) samples:
+		//		E[k] = (Z[k] + conj(Z[N/2-k])) / 2
+		//		O[k] = (Z[k] - conj(Z[N/2-k])) / 2i
+		//		X[k] = E[k] + e^(-2*PI*i*k/N) * O[k]
+		re[0] = zRe[0] + zIm[0];
+		im[0] = 0.0f;
+		re[half] = zRe[0] - zIm[0];
+		im[half] = 0.0f;
+		for (int k=1; k<half; ++k) {
+			float aRe = zRe[k], aIm = zIm[k];
+			float bRe = zRe[half-k], bIm = -zIm[half-k];
+
+			float eRe = 0.5f*(aRe + bRe);
+			float eIm = 0.5f*(aIm + bIm);
+			float oRe = 0.5f*(aIm - bIm);
+			float oIm = -0.5f*(aRe - bRe);
+
+			float c = splitCos[k];
+			float s = splitSin[k];
+			re[k] = eRe + c*oRe - s*oIm;
+			im[k] = eIm + s*oRe + c*oIm;
+		}
+	}
+
+	/**
+	 * @return
+	 * the real parts of the spectrum computed by the last transform, bins 0..N/2
+	 */
+	public float[] getReal() {
+		return re;
+	}
+
+	/**
+	 * @return
+	 * the imaginary parts of the spectrum computed by the last transform, bins 0..N/2
+	 */
+	public float[] getImaginary() {
+		return im;
+	}
+
+	/**
+	 * @return
+	 * the squared magnitude of each bin of the spectrum computed by the last transform, bins 0..N/2
+	 */
+	public float[] getPowerSpectrum() {
+		for (int k=0; k<=half; ++k)
+			power[k] = re[k]*re[k] + im[k]*im[k];
+		return power;
+	}
+
+	/**
+	 * @return
+	 * the frequency of the given bin, given the sampling frequency
+	 */
+	public float getBinFrequency(int bin, float samplingFrequency) {
+		return bin*samplingFrequency/n;
+	}
+
+}
@@ -1,156 +1,103 @@
 package com.urremote.classifier.utils;
 
-import java.util.Arrays;
-
 import com.urremote.classifier.common.Constants;
 
-import android.hardware.SensorManager;
-import android.util.Log;
-
 /**
  * 
- * An object of class RotateSamplesToVerticalHorizontal will rotate a set 
- * of sampled accelerometer data to vertical axis Z dominant horizontal 
- * axis Y and minor horizontal axis Y.  Numbers are passed in a 3D array 
- * of X,Y,Z. Methods are provided to return: 
- * The rotated array.
+ * An object of class RotateSamplesToVerticalHorizontal computes the matrix
+ * that rotates sampled accelerometer data to vertical axis Z and horizontal
+ * axes X and Y, see {@link #computeRotationMatrix(float[], float[])}. The
+ * matrix is applied by the callers, e.g. {@link FusedFeatureKernel} and
+ * {@link SlidingFeatureExtractor}.
+ * 
+ * <p>
+ * The rotation matrix is built directly from the gravity vector, its last
+ * row being the normalised gravity vector, and the other rows two horizontal
+ * vectors perpendicular to it (the same matrix that Android's
+ * <code>SensorManager.getRotationMatrix</code> returns, given the gravity
+ * vector and a horizontal vector). Nothing is shared between instances, and
+ * Android isn't required, hence samples can be rotated concurrently, as long
+ * as each thread uses its own instance.
  *  
  * @author Ken Taylor
  */
 
 public class RotateSamplesToVerticalHorizontal {
 	
-	//	derived horizontal vector
-	private float[] horizontalVec = new float[Constants.ACCEL_DIM];
-	
-	//	computed rotation matrix
-	private float[] rotationMat = new float[Constants.ACCEL_DIM*Constants.ACCEL_DIM];
-	
-	//	a temporary vector to hold values while doing matrix multiplication
-	private float[] tempVec = new float[Constants.ACCEL_DIM];
+	//	the rotation matrix can't be computed from smaller gravity vectors,
+	//		as with SensorManager.getRotationMatrix
+	private static final float MIN_GRAVITY_MAGNITUDE = 0.1f;
 	
 	/**
-	 * Rotates the accelerometer samples to world coordinates,
-	 * using a gravity vector derived from the same samples.
+	 * Computes the matrix that rotates samples to world coordinates,
+	 * using the gravity vector given, i.e. the mean of the samples.
 	 * 
-	 * Note that, a horizontal vector is then derived from the
-	 * gravity vector, which is used to rotate the samples to the
-	 * world coordinates. This makes the final samples' direction-less
-	 * and hence only the magnitude of the horizontal component should
-	 * be used.
+	 * <p>
+	 * Note that, a horizontal vector is derived from the gravity vector,
+	 * which makes the rotated samples' direction-less, hence only the
+	 * magnitude of the horizontal component should be used.
 	 * 
-	 * Use {@link #rotateToWorldCoordinates(float[], float[])}
-	 * in order to keep the direction of the horizontal component
-	 * of the sampled vectors relative to magnetic north.
+	 * <p>
+	 * The horizontal vector (the second row) is derived from the axis least
+	 * aligned with gravity, less its projection on the gravity vector, and the
+	 * first row is the cross product of the horizontal and gravity vectors.
 	 * 
-	 * @param samples
-	 * The samples to convert to world coordinates. The array will
-	 * contain the world coordinates upon return. Unless the
-	 * function returns false, which means that the samples haven't
-	 * been altered. 
+	 * Source: <a>http://stackoverflow.com/questions/2096474/given-a-surface-normal-find-rotation-for-3d-plane</a>
 	 * 
 	 * @param gravityVec
-	 *	This array (which should be created using the function {@link #createVector()})
-	 *	provides the gravity vector, which should be an array of
-	 *	size {@link Constants.ACCEL_DIM}, with each value containing
-	 *	the mean of it's respective dimension in the samples.
-	 *	i.e. value 0 should contain the mean of samples[0..N][0],
-	 *		value 1 should contain the mean of samples[0..N][1], etc. 
+	 * the gravity vector, i.e. the mean of each dimension of the samples, not altered
+	 * 
+	 * @param outRotationMat
+	 * an array of 9 floats to save the rotation matrix in, row by row
 	 * 
 	 * @return
-	 * Returns false if the function is unable to compute the rotation
-	 * matrix and hence unable to change the samples to world coordinates.
+	 * false if the rotation matrix couldn't be computed, i.e. the gravity vector is too small
 	 */
-	public synchronized boolean rotateToWorldCoordinates(float[] gravityVec, float[][] samples, int numSamples)
+	public boolean computeRotationMatrix(float[] gravityVec, float[] outRotationMat)
 	{
-		convertToHorVec(gravityVec, horizontalVec);
-		
-		return internRotateToWorldCoordinates(samples, numSamples, gravityVec, horizontalVec);
-	}
-		
-	private boolean internRotateToWorldCoordinates(float[][] samples, int numSamples, float[] gravityVec, float[] horVec)
-	{
-		Log.v(Constants.TAG, "gravity="+Arrays.toString(gravityVec)+", hor="+Arrays.toString(horVec));
-		if (!SensorManager.getRotationMatrix(rotationMat, null, gravityVec, horVec)) {
-			//	sometimes fails, according to the api
+		float gx = gravityVec[Constants.ACCEL_X_AXIS];
+		float gy = gravityVec[Constants.ACCEL_Y_AXIS];
+		float gz = gravityVec[Constants.ACCEL_Z_AXIS];
+		float gravityMag = (float)Math.sqrt(gx*gx + gy*gy + gz*gz);
+		if (!(gravityMag>=MIN_GRAVITY_MAGNITUDE)) {
+			//	also false for NaN
 			return false;
 		}
 		
-		//	apply to current samples
-		applyRotation(samples,numSamples);
+		//	normalised gravity vector, i.e. the vertical axis
+		float ax = gx / gravityMag;
+		float ay = gy / gravityMag;
+		float az = gz / gravityMag;
 		
-		return true;
-	}
-	
-	
-	/**
-	 * Applies the current rotation matrix to the samples
-	 * 
-	 * @param samples
-	 * samples to apply the current rotation matrix to
-	 * 
-	 * rotation matrix:
-	 * [ 0 ][ 1 ][ 2 ]
-	 * [ 3 ][ 4 ][ 5 ]
-	 * [ 6 ][ 7 ][ 8 ]
-	 *
-	 */
-	private void applyRotation(float[][] samples, int numSamples)
-	{
-		for (int s=0; s<numSamples; ++s) {
-			for (int d=0; d<Constants.ACCEL_DIM; ++d) {
-				tempVec[d] = 0.0f;
-				
-				for (int k=0; k<Constants.ACCEL_DIM; ++k) {
-					tempVec[d] += rotationMat[(d*3)+k] * samples[s][k];
-				}
-			}
-			
-			for (int d=0; d<Constants.ACCEL_DIM; ++d) {
-				samples[s][d] = tempVec[d];
-			}
-		}
-	}
-	
-	private static float[] normalizedGravity = new float[Constants.ACCEL_DIM];
-	
-	/**
-	 * 
-	 * Source: <a>http://stackoverflow.com/questions/2096474/given-a-surface-normal-find-rotation-for-3d-plane</a>
-	 * 
-	 * @param inGravityVec
-	 * the gravity vector(3 dimensions) to convert to a horizontal vector
-	 * 
-	 * @param outVec
-	 * an array of 3 floats to save the final horizontal vector in
-	 */
-	synchronized
-	private static void convertToHorVec(float[] inGravityVec, float[] outVec)
-	{
-		for (int i=0; i<Constants.ACCEL_DIM; ++i) {
-			normalizedGravity[i] = inGravityVec[i];
-			outVec[i] = 0.0f;
-		}
+		//	horizontal vector: the unit vector of the axis least aligned with gravity,
+		//		less its projection on the gravity vector
+		int imin = findIndexOfSmallest(gravityVec);
+		float dt = imin==Constants.ACCEL_X_AXIS ? ax : (imin==Constants.ACCEL_Y_AXIS ? ay : az);
+		float ex = -dt*ax;
+		float ey = -dt*ay;
+		float ez = -dt*az;
+		if (imin==Constants.ACCEL_X_AXIS)
+			ex += 1.0f;
+		else if (imin==Constants.ACCEL_Y_AXIS)
+			ey += 1.0f;
+		else
+			ez += 1.0f;
+		//	never less than sqrt(2/3), as dt is at most 1/sqrt(3)
+		float horMag = (float)Math.sqrt(ex*ex + ey*ey + ez*ez);
+		ex /= horMag;
+		ey /= horMag;
+		ez /= horMag;
 		
-		//	normalize gravity vector
-		CalcStatistics.normalize(Constants.ACCEL_DIM, normalizedGravity);
+		//	the other horizontal vector, perpendicular to both
+		float hx = ey*az - ez*ay;
+		float hy = ez*ax - ex*az;
+		float hz = ex*ay - ey*ax;
 		
-		//	get the minimum axis
-        int imin = 0;
-		for (int i=0; i<Constants.ACCEL_DIM; ++i)
-            if(normalizedGravity[i] < normalizedGravity[imin])
-                imin = i;
-
-        //	get the scaling value
-        float dt = normalizedGravity[imin];
-
-        //	subtract the scaled value from the unit vector of the minimum axis
-        outVec[imin] = 1;
-		for (int i=0; i<Constants.ACCEL_DIM; ++i)
-        	outVec[i] -= dt*normalizedGravity[i];
-
-        // now normalize the vector being returned
-        CalcStatistics.normalize(Constants.ACCEL_DIM, outVec);
+		outRotationMat[0] = hx;	outRotationMat[1] = hy;	outRotationMat[2] = hz;
+		outRotationMat[3] = ex;	outRotationMat[4] = ey;	outRotationMat[5] = ez;
+		outRotationMat[6] = ax;	outRotationMat[7] = ay;	outRotationMat[8] = az;
+		
+		return true;
 	}
 	
 	/**
@@ -180,37 +127,6 @@ public class RotateSamplesToVerticalHorizontal {
 		return index;
 	}
 	
-	/**
-	 * 
-	 * Returns the index of the largest value in the vector
-	 * 
-	 * @param vector
-	 * The 3 dimensional vector to find the minimum value
-	 * 
-	 * @return
-	 * The index of the minimum value in the vector
-	 */
-	private static int findIndexOfLargest(float[] vector) {
-		int index = -1;
-		float value = Float.NEGATIVE_INFINITY;
-		float temp;
-		for (int d=0; d<Constants.ACCEL_DIM; ++d) {
-			temp = vector[d];
-			if (temp<0.0f)
-				temp = -temp;
-			
-			if (temp>value) {
-				value = temp;
-				index = d;
-			}
-		}
-		return index;
-	}
-	
-	private static String vec2str(float[] vec) {
-		return String.format("{x=% 3.2f, y=% 3.2f, z=% 3.2f}", vec[Constants.ACCEL_X_AXIS], vec[Constants.ACCEL_Y_AXIS], vec[Constants.ACCEL_Z_AXIS]);
-	}
-
 	@SuppressWarnings("unused")
 	private static String vec2str(float[] vec, int start) {
 		return String.format("{x=% 3.2f, y=% 3.2f, z=% 3.2f}", vec[start+Constants.ACCEL_X_AXIS], vec[start+Constants.ACCEL_Y_AXIS], vec[start+Constants.ACCEL_Z_AXIS]);
@@ -0,0 +1,408 @@
+package com.urremote.classifier.utils;
+
+/**
+ * Keeps the count, mean, variance, minimum and maximum of a set of vectors,
+ * updated one vector at a time.
+ *
+ * <p>
+ * The mean and the sum of squared differences from the mean are kept in
+ * double precision, and updated using Welford's method, which unlike
+ * accumulating the sum and the sum of squares, doesn't lose precision
+ * when the variance is small relative to the mean (e.g. the accelerometer
+ * axis that gravity is on, while the phone is still), hence the variance
+ * computed is never negative.
+ *
+ * <p>
+ * Vectors can be added ({@link #add(float[])}) and removed ({@link #remove(float[])})
+ * one at a time, and the statistics of two separate sets of vectors can be merged
+ * ({@link #merge(RunningStatistics)}) in constant time, e.g. statistics computed
+ * by different threads, or of consecutive periods.
+ *
+ * <p>
+ * The statistics are returned as float arrays, which are only recomputed
+ * when requested after a change.
+ *
+ * @see <a href="http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance">Algorithms for calculating variance</a>
+ *
+ * @author Umran
+ */
+public class RunningStatistics {
+
+	/**
+	 * Number of dimensions we're computing
+	 */
+	private final int dimensions;
+
+	private int count;
+	private final double[] mean;
+	//	sum of squared differences from the mean
+	private final double[] m2;
+	private final float[] min;
+	private final float[] max;
+
+	//	derived values, computed when requested
+	private boolean derivedValid;
+	private final float[] meanOut;
+	private final float[] sum;
+	private final float[] sumSqr;
+	private final float[] var_p;
+	private final float[] sd_p;
+	private final float[] var_s;
+	private final float[] sd_s;
+
+	public RunningStatistics(int dimensions) {
+		this.dimensions = dimensions;
+
+		this.mean = new double[dimensions];
+		this.m2 = new double[dimensions];
+		this.min = new float[dimensions];
+		this.max = new float[dimensions];
+
+		this.meanOut = new float[dimensions];
+		this.sum = new float[dimensions];
+		this.sumSqr = new float[dimensions];
+		this.var_p = new float[dimensions];
+		this.sd_p = new float[dimensions];
+		this.var_s = new float[dimensions];
+		this.sd_s = new float[dimensions];
+
+		reset();
+	}
+
+	public int getDimensions() {
+		return dimensions;
+	}
+
+	/**
+	 * Removes all the vectors.
+	 */
+	public void reset() {
+		this.count = 0;
+		for (int j=0; j<dimensions; ++j) {
+			this.mean[j] = 0.0;
+			this.m2[j] = 0.0;
+			this.min[j] = Float.POSITIVE_INFINITY;
+			this.max[j] = Float.NEGATIVE_INFINITY;
+		}
+		this.derivedValid = false;
+	}
+
+	/**
+	 * Adds a vector.
+	 *
+	 * @param values
+	 * a vector of the dimensions given in {@link #RunningStatistics(int)}
+	 */
+	public void add(float[] values) {
+		++count;
+		double invCount = 1.0 / count;
+		for (int j=0; j<dimensions; ++j) {
+			float val = values[j];
+			double delta = val - mean[j];
+			mean[j] += delta * invCount;
+			m2[j] += delta * (val - mean[j]);
+			if (val > max[j])
+				max[j] = val;
+			if (val < min[j])
+				min[j] = val;
+		}
+		derivedValid = false;
+	}
+
+	/**
+	 * Removes a vector previously added, e.g. the oldest vector in a sliding window.
+	 *
+	 * <p>
+	 * Note that the minimum and maximum can't be updated when a vector is
+	 * removed, hence are left as they are, i.e. the minimum and maximum
+	 * of all the vectors added since the last reset.
+	 *
+	 * @param values
+	 * the vector to remove
+	 */
+	public void remove(float[] values) {
+		if (count<=1) {
+			//	only the moments are cleared, the minimum and maximum stay as documented
+			count = 0;
+			for (int j=0; j<dimensions; ++j) {
+				mean[j] = 0.0;
+				m2[j] = 0.0;
+			}
+			derivedValid = false;
+			return;
+		}
+
+		--count;
+		double invCount = 1.0 / count;
+		for (int j=0; j<dimensions; ++j) {
+			float val = values[j];
+			double prevMean = mean[j];
+			mean[j] = prevMean + (prevMean - val) * invCount;
+			m2[j] -= (val - prevMean) * (val - mean[j]);
+			if (m2[j] < 0.0)
+				m2[j] = 0.0;	//	rounding errors
+		}
+		derivedValid = false;
+	}
+
+	/**
+	 * Adds all the vectors of another instance to this instance.
+	 *
+	 * @param other
+	 * statistics of the same dimensions, not altered
+	 */
+	public void merge(RunningStatistics other) {
+		if (other.count==0)
+			return;
+		if (this.count==0) {
+			assign(other);
+			return;
+		}
+
+		int total = this.count + other.count;
+		double otherWeight = (double)other.count / total;
+		double crossWeight = (double)this.count * other.count / total;
+		for (int j=0; j<dimensions; ++j) {
+			double delta = other.mean[j] - this.mean[j];
+			this.mean[j] += delta * otherWeight;
+			this.m2[j] += other.m2[j] + delta * delta * crossWeight;
+			if (other.max[j] > this.max[j])
+				this.max[j] = other.max[j];
+			if (other.min[j] < this.min[j])
+				this.min[j] = other.min[j];
+		}
+		this.count = total;
+		derivedValid = false;
+	}
+
+	/**
+	 * Copies the statistics of another instance.
+	 *
+	 * @param other
+	 * statistics of the same dimensions, not altered
+	 */
+	public void assign(RunningStatistics other) {
+		this.count = other.count;
+		for (int j=0; j<dimensions; ++j) {
+			this.mean[j] = other.mean[j];
+			this.m2[j] = other.m2[j];
+			this.min[j] = other.min[j];
+			this.max[j] = other.max[j];
+		}
+		derivedValid = false;
+	}
+
+	/**
+	 * Replaces the statistics with those of the given vectors.
+	 *
+	 * @param rows
+	 *            an array of vectors
+	 * @param samples
+	 *            number of vectors used from the array
+	 */
+	public void assign(float[][] rows, int samples) {
+		reset();
+		for (int s=0; s<samples; ++s)
+			add(rows[s]);
+	}
+
+	/**
+	 * Replaces the statistics with those of the given vectors,
+	 * with the values of each dimension given in their own array,
+	 * e.g. as in {@link com.urremote.classifier.accel.SampleBatch#axisData}.
+	 *
+	 * @param columns
+	 *            an array per dimension, holding the values of that dimension
+	 * @param samples
+	 *            number of values used from each array
+	 */
+	public void assignColumns(float[][] columns, int samples) {
+		this.count = samples;
+		for (int j=0; j<dimensions; ++j) {
+			final float[] column = columns[j];
+			double colMean = 0.0;
+			double colM2 = 0.0;
+			float colMin = Float.POSITIVE_INFINITY;
+			float colMax = Float.NEGATIVE_INFINITY;
+			float val;
+			double delta;
+			for (int s=0; s<samples; ++s) {
+				val = column[s];
+				delta = val - colMean;
+				colMean += delta / (s+1);
+				colM2 += delta * (val - colMean);
+				if (val > colMax)
+					colMax = val;
+				if (val < colMin)
+					colMin = val;
+			}
+			mean[j] = colMean;
+			m2[j] = colM2;
+			min[j] = colMin;
+			max[j] = colMax;
+		}
+		derivedValid = false;
+	}
+
+	/**
+	 * Replaces the statistics with ones already accumulated elsewhere,
+	 * e.g. by {@link FusedFeatureKernel}.
+	 *
+	 * @param count
+	 *            number of vectors accumulated
+	 * @param mean
+	 *            the mean of each dimension
+	 * @param m2
+	 *            the sum of squared differences from the mean of each dimension
+	 * @param min
+	 *            the smallest value of each dimension
+	 * @param max
+	 *            the largest value of each dimension
+	 */
+	public void assignMoments(int count, double[] mean, double[] m2, float[] min, float[] max) {
+		this.count = count;
+		for (int j=0; j<dimensions; ++j) {
+			this.mean[j] = mean[j];
+			this.m2[j] = m2[j];
+			this.min[j] = min[j];
+			this.max[j] = max[j];
+		}
+		derivedValid = false;
+	}
+
+	private void computeDerived() {
+		if (derivedValid)
+			return;
+
+		for (int j=0; j<dimensions; ++j) {
+			meanOut[j] = (float)mean[j];
+			sum[j] = (float)(mean[j] * count);
+			sumSqr[j] = (float)(m2[j] + mean[j] * mean[j] * count);
+
+			double varP = count>0 ? m2[j] / count : 0.0;
+			double varS = count>1 ? m2[j] / (count-1) : 0.0;
+			var_p[j] = (float)varP;
+			sd_p[j] = (float)Math.sqrt(varP);
+			var_s[j] = (float)varS;
+			sd_s[j] = (float)Math.sqrt(varS);
+		}
+
+		derivedValid = true;
+	}
+
+	/**
+	 *
+	 * @return number of vectors added.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the mean of each dimension, 0 if no vectors were added
+	 */
+	public float[] getMean() {
+		computeDerived();
+		return meanOut;
+	}
+
+	/**
+	 * @return the sum of each dimension, derived from the mean
+	 */
+	public float[] getSum() {
+		computeDerived();
+		return sum;
+	}
+
+	/**
+	 * @return the sum of the squares of each dimension, derived from the mean and variance
+	 */
+	public float[] getSumSqr() {
+		computeDerived();
+		return sumSqr;
+	}
+
+	/**
+	 *
+	 * @return population-based variance of all the items that have been entered.
+	 *			(i.e. assumes the data given is the whole population)
+	 */
+	public float[] getPopVariance() {
+		computeDerived();
+		return var_p;
+	}
+
+	/**
+	 *
+	 * @return population-based standard deviation of all the items that have been entered.
+	 *			(i.e. assumes the data given is the whole population)
+	 */
+	public float[] getPopStandardDeviation() {
+		computeDerived();
+		return sd_p;
+	}
+
+	/**
+	 *
+	 * @return sample-based variance of all the items that have been entered.
+	 *			(i.e. assumes the data given is a subset of the population)
+	 */
+	public float[] getSampleVariance() {
+		computeDerived();
+		return var_s;
+	}
+
+	/**
+	 *
+	 * @return sample-based standard deviation of all the items that have been entered.
+	 *			(i.e. assumes the data given is a subset of the population)
+	 */
+	public float[] getSampleStandardDeviation() {
+		computeDerived();
+		return sd_s;
+	}
+
+	/**
+	 *
+	 * @return the smallest item that has been entered. Value will be +infinity
+	 *         if no items have been entered.
+	 */
+	public float[] getMin() {
+		return min;
+	}
+
+	/**
+	 *
+	 * @return the largest item that has been entered. Value will be -infinity
+	 *         if no items have been entered.
+	 */
+	public float[] getMax() {
+		return max;
+	}
+
+	/**
+	 * Computes the magnitude of a vector.
+	 *
+	 * @param vec
+	 * A vector of dimensions as given when the instance is constructed
+	 * using {@link #RunningStatistics(int)}
+	 *
+	 * @return
+	 * the magnitude of the vector
+	 */
+	public float calcMag(float[] vec) {
+		return calcMag(dimensions, vec);
+	}
+
+	/**
+	 * @return
+	 * the magnitude of the first <code>dimensions</code> values of the vector
+	 */
+	public static float calcMag(int dimensions, float[] vec) {
+		double mag = 0.0;
+		for (int i=0; i<dimensions; ++i)
+			mag += vec[i]*vec[i];
+		return (float)Math.sqrt(mag);
+	}
+
+}
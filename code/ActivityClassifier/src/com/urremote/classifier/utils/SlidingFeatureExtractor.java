@@ -0,0 +1,150 @@
+package com.urremote.classifier.utils;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ * Extracts the features of {@link FeatureExtractor} from a continuous stream
+ * of samples, over a window of the latest {@link Constants#NUMBER_OF_SAMPLES}
+ * samples, with constant work per sample, instead of recomputing the
+ * features over the whole window every time overlapping windows are sampled.
+ *
+ * <p>
+ * Each sample has the calibration offsets taken out as it arrives, the same way
+ * as {@link FusedFeatureKernel#assignRaw(float[][], int, float[], float[])} does,
+ * see {@link #setCalibration(float[], float[])}, and is then rotated to world
+ * coordinates, and its horizontal magnitude and vertical component are added to a
+ * {@link SlidingWindowStatistics}, from which the features are taken whenever required.
+ *
+ * <p>
+ * Unlike {@link FusedFeatureKernel}, which rotates a window using the mean of the
+ * same window as the gravity vector, samples can't be rotated again once added, hence
+ * they are rotated using the mean of the (unrotated) window at the last call to
+ * {@link #updateRotation()}, e.g. at every hop, i.e. the rotation lags one hop behind.
+ * The features hence only approximate those extracted from the whole window: while
+ * the orientation of the phone changes they differ, and they only match once a
+ * full window has been added, with the same calibration, since the orientation settled.
+ *
+ * @author Umran
+ */
+public class SlidingFeatureExtractor {
+
+	private final SlidingWindowStatistics rawWindow;
+	private final SlidingWindowStatistics horVerWindow;
+
+	private final RotateSamplesToVerticalHorizontal rotateSamples = new RotateSamplesToVerticalHorizontal();
+	private final float[] rotationMat = new float[Constants.ACCEL_DIM*Constants.ACCEL_DIM];
+	private boolean hasRotation;
+
+	private final float[] horVer = new float[2];
+
+	//	the calibration taken out of the samples, offset is null if none
+	private float[] offset;
+	private float[] scale;
+	private final float[] calibrated = new float[Constants.ACCEL_DIM];
+
+	public SlidingFeatureExtractor() {
+		this.rawWindow = new SlidingWindowStatistics(Constants.ACCEL_DIM, Constants.NUMBER_OF_SAMPLES);
+		this.horVerWindow = new SlidingWindowStatistics(2, Constants.NUMBER_OF_SAMPLES);
+	}
+
+	public void reset() {
+		clearSamples();
+		hasRotation = false;
+	}
+
+	/**
+	 * Forgets the samples added, keeping the rotation computed so far.
+	 */
+	public void clearSamples() {
+		rawWindow.reset();
+		horVerWindow.reset();
+	}
+
+	/**
+	 * Sets the calibration taken out of the samples added after this call,
+	 * the samples added before aren't altered, hence the caller should
+	 * {@link #reset()} and add the window's samples again.
+	 *
+	 * @param offset
+	 * the offset of each axis, or null if the samples shouldn't be altered
+	 *
+	 * @param scale
+	 * the scale of each axis, ignored if offset is null
+	 */
+	public void setCalibration(float[] offset, float[] scale) {
+		if (offset!=null) {
+			this.offset = offset.clone();
+			this.scale = scale.clone();
+		} else {
+			this.offset = null;
+			this.scale = null;
+		}
+	}
+
+	/**
+	 * Adds the next sample of the stream.
+	 *
+	 * @param sample
+	 * an unrotated and uncalibrated sample, of {@link Constants#ACCEL_DIM} values,
+	 * which is left unaltered
+	 */
+	public void addSample(float[] sample) {
+		if (offset!=null) {
+			for (int d=0; d<Constants.ACCEL_DIM; ++d)
+				calibrated[d] = (sample[d] - offset[d]) / scale[d];
+			sample = calibrated;
+		}
+
+		rawWindow.add(sample);
+
+		if (!hasRotation) {
+			//	first sample, or rotation couldn't be computed so far
+			updateRotation();
+			if (!hasRotation)
+				return;
+		}
+
+		final float sx = sample[Constants.ACCEL_X_AXIS];
+		final float sy = sample[Constants.ACCEL_Y_AXIS];
+		final float sz = sample[Constants.ACCEL_Z_AXIS];
+		final float x = rotationMat[0]*sx + rotationMat[1]*sy + rotationMat[2]*sz;
+		final float y = rotationMat[3]*sx + rotationMat[4]*sy + rotationMat[5]*sz;
+		final float z = rotationMat[6]*sx + rotationMat[7]*sy + rotationMat[8]*sz;
+
+		horVer[0] = (float)Math.sqrt(x*x + y*y);
+		horVer[1] = z;
+		horVerWindow.add(horVer);
+	}
+
+	/**
+	 * Recomputes the rotation applied to the samples added after this call,
+	 * using the mean of the window as the gravity vector.
+	 */
+	public void updateRotation() {
+		if (rawWindow.getCount()>0)
+			hasRotation = rotateSamples.computeRotationMatrix(rawWindow.getMean(), rotationMat) || hasRotation;
+	}
+
+	/**
+	 * @return
+	 * true once a full window of samples has been rotated
+	 */
+	public boolean isReady() {
+		return horVerWindow.isFull();
+	}
+
+	/**
+	 * @param outFeatures
+	 * an array of {@link FeatureExtractor#NUM_FEATURES} floats to save the
+	 * features of the current window in, see {@link FeatureExtractor#FEATURE_NAMES}
+	 */
+	public void getFeatures(float[] outFeatures) {
+		FeatureExtractor.assignFeatures(
+				horVerWindow.getMin(),
+				horVerWindow.getMax(),
+				horVerWindow.getMean(),
+				horVerWindow.getSampleStandardDeviation(),
+				outFeatures);
+	}
+
+}
@@ -0,0 +1,185 @@
+package com.urremote.classifier.utils;
+
+/**
+ * Keeps the minimum, maximum, mean and variance of the latest
+ * <code>windowSize</code> vectors of a stream, with constant work
+ * per vector added.
+ *
+ * <p>
+ * The mean and variance are kept in a {@link RunningStatistics}, the
+ * oldest vector being removed as each new vector is added. Since removing
+ * accumulates rounding errors, the moments are recomputed from the window
+ * every {@link #REBUILD_INTERVAL} windows.
+ *
+ * <p>
+ * The minimum and maximum of each dimension are kept using monotonic
+ * queues of sample indices, i.e. the queue for the maximum holds the
+ * samples in the window that are larger than all the samples after them,
+ * hence the front of the queue is the maximum of the window. Each sample
+ * is added to and removed from each queue at most once.
+ *
+ * @author Umran
+ */
+public class SlidingWindowStatistics {
+
+	//	number of windows after which the moments are recomputed from the window
+	private static final int REBUILD_INTERVAL = 64;
+
+	private final int dimensions;
+	private final int windowSize;
+
+	//	the samples in the window, one array per dimension, indexed by (sample index % windowSize)
+	private final float[][] values;
+	//	index of the next sample to be added
+	private long nextIndex;
+	private long samplesSinceRebuild;
+
+	private final RunningStatistics moments;
+	private final float[] oldest;
+
+	//	monotonic queues of sample indices, per dimension, each a ring of windowSize items
+	private final long[][] minQueue;
+	private final long[][] maxQueue;
+	private final int[] minFront, minCount;
+	private final int[] maxFront, maxCount;
+
+	private final float[] min;
+	private final float[] max;
+
+	public SlidingWindowStatistics(int dimensions, int windowSize) {
+		if (windowSize<1)
+			throw new IllegalArgumentException("Invalid window size "+windowSize);
+
+		this.dimensions = dimensions;
+		this.windowSize = windowSize;
+		this.values = new float[dimensions][windowSize];
+		this.moments = new RunningStatistics(dimensions);
+		this.oldest = new float[dimensions];
+		this.minQueue = new long[dimensions][windowSize];
+		this.maxQueue = new long[dimensions][windowSize];
+		this.minFront = new int[dimensions];
+		this.minCount = new int[dimensions];
+		this.maxFront = new int[dimensions];
+		this.maxCount = new int[dimensions];
+		this.min = new float[dimensions];
+		this.max = new float[dimensions];
+
+		reset();
+	}
+
+	public void reset() {
+		nextIndex = 0;
+		samplesSinceRebuild = 0;
+		moments.reset();
+		for (int d=0; d<dimensions; ++d) {
+			minFront[d] = minCount[d] = 0;
+			maxFront[d] = maxCount[d] = 0;
+		}
+	}
+
+	/**
+	 * Adds a vector to the window, removing the oldest vector once the window is full.
+	 *
+	 * @param sample
+	 * a vector of the dimensions given in the constructor
+	 */
+	public void add(float[] sample) {
+		final long index = nextIndex++;
+		final int slot = (int)(index % windowSize);
+		final boolean full = index>=windowSize;
+
+		if (full) {
+			for (int d=0; d<dimensions; ++d)
+				oldest[d] = values[d][slot];
+			moments.remove(oldest);
+		}
+
+		for (int d=0; d<dimensions; ++d) {
+			final float val = sample[d];
+			values[d][slot] = val;
+
+			//	samples that fell out of the window
+			final long expired = index-windowSize;
+			final long[] minQ = minQueue[d];
+			final long[] maxQ = maxQueue[d];
+			if (minCount[d]>0 && minQ[minFront[d]]<=expired) {
+				minFront[d] = (minFront[d]+1) % windowSize;
+				--minCount[d];
+			}
+			if (maxCount[d]>0 && maxQ[maxFront[d]]<=expired) {
+				maxFront[d] = (maxFront[d]+1) % windowSize;
+				--maxCount[d];
+			}
+
+			//	samples that can no longer be the minimum or maximum
+			final float[] window = values[d];
+			while (minCount[d]>0 &&
+					window[(int)(minQ[(minFront[d]+minCount[d]-1) % windowSize] % windowSize)]>=val)
+				--minCount[d];
+			while (maxCount[d]>0 &&
+					window[(int)(maxQ[(maxFront[d]+maxCount[d]-1) % windowSize] % windowSize)]<=val)
+				--maxCount[d];
+
+			minQ[(minFront[d]+minCount[d]) % windowSize] = index;
+			++minCount[d];
+			maxQ[(maxFront[d]+maxCount[d]) % windowSize] = index;
+			++maxCount[d];
+		}
+
+		moments.add(sample);
+
+		if (++samplesSinceRebuild>=(long)windowSize*REBUILD_INTERVAL && full) {
+			rebuildMoments();
+		}
+	}
+
+	private void rebuildMoments() {
+		moments.assignColumns(values, windowSize);
+		samplesSinceRebuild = 0;
+	}
+
+	/**
+	 * @return
+	 * true once the window holds windowSize vectors
+	 */
+	public boolean isFull() {
+		return nextIndex>=windowSize;
+	}
+
+	/**
+	 * @return
+	 * the number of vectors in the window
+	 */
+	public int getCount() {
+		return (int)Math.min(nextIndex, windowSize);
+	}
+
+	/**
+	 * @return
+	 * the minimum of each dimension in the window
+	 */
+	public float[] getMin() {
+		for (int d=0; d<dimensions; ++d)
+			min[d] = minCount[d]>0 ? values[d][(int)(minQueue[d][minFront[d]] % windowSize)] : Float.POSITIVE_INFINITY;
+		return min;
+	}
+
+	/**
+	 * @return
+	 * the maximum of each dimension in the window
+	 */
+	public float[] getMax() {
+		for (int d=0; d<dimensions; ++d)
+			max[d] = maxCount[d]>0 ? values[d][(int)(maxQueue[d][maxFront[d]] % windowSize)] : Float.NEGATIVE_INFINITY;
+		return max;
+	}
+
+	public float[] getMean() {
+		return moments.getMean();
+	}
+
+	public float[] getSampleStandardDeviation() {
+		return moments.getSampleStandardDeviation();
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.urremote.classifier.utils;
+
+import java.util.Random;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ * Checks the spectral features against what's known of a few synthetic signals,
+ * and compares them, and what they cost, with the time-domain features.
+ *
+ * <p>
+ * First, the power spectrum of {@link RealFFT} is checked against a direct
+ * evaluation of the discrete Fourier transform, and both are timed, for the
+ * lengths 128, 256 and 512.
+ *
+ * <p>
+ * Then, synthetic vertical components are generated: still (noise only),
+ * walking (2Hz), running (3Hz), a tone at the Nyquist frequency, and a window
+ * shorter than the transform. The dominant frequency found must be the one
+ * generated, and the tone at the Nyquist frequency must fall in the top band.
+ * The spectral features of each are printed next to its time-domain features
+ * (those of {@link FusedFeatureKernel}), followed by the time per batch of each.
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path), e.g.:
+ * <pre>
+ *	java com.urremote.classifier.utils.SpectralFeatureBenchmark 100000
+ * </pre>
+ *
+ * @author Umran
+ */
+public class SpectralFeatureBenchmark {
+
+	private static final int[] FFT_LENGTHS = { 128, 256, 512 };
+	private static final float MAX_RELATIVE_ERROR = 1e-3f;
+
+	private static final int NUM_SAMPLES = Constants.NUMBER_OF_SAMPLES;
+	private static final float FREQUENCY = Constants.RECOMMENDED_SAMPLING_FREQUENCY;
+	private static final float GRAVITY = 9.81f;
+
+	private static float[] directPowerSpectrum(float[] signal) {
+		int n = signal.length;
+		float[] power = new float[n/2+1];
+		for (int k=0; k<=n/2; ++k) {
+			double re = 0.0, im = 0.0;
+			for (int i=0; i<n; ++i) {
+				double angle = -2*Math.PI*k*i/n;
+				re += signal[i]*Math.cos(angle);
+				im += signal[i]*Math.sin(angle);
+			}
+			power[k] = (float)(re*re + im*im);
+		}
+		return power;
+	}
+
+	private static boolean checkTransform(int n, int iterations, Random random) {
+		float[] signal = new float[n];
+		float[] work = new float[n];
+		for (int i=0; i<n; ++i)
+			signal[i] = (float)random.nextGaussian();
+
+		RealFFT fft = new RealFFT(n);
+		System.arraycopy(signal, 0, work, 0, n);
+		fft.transform(work);
+		float[] power = fft.getPowerSpectrum();
+		float[] expected = directPowerSpectrum(signal);
+
+		float peak = 0.0f;
+		for (int k=0; k<expected.length; ++k)
+			peak = Math.max(peak, expected[k]);
+		for (int k=0; k<expected.length; ++k) {
+			if (Math.abs(power[k]-expected[k])>MAX_RELATIVE_ERROR*peak) {
+				System.out.println("N="+n+", bin "+k+": fft="+power[k]+", direct="+expected[k]);
+				return false;
+			}
+		}
+
+		double sink = 0.0;
+		long start = System.nanoTime();
+		for (int i=0; i<iterations; ++i) {
+			System.arraycopy(signal, 0, work, 0, n);
+			fft.transform(work);
+			sink += fft.getPowerSpectrum()[1];
+		}
+		long fftTime = System.nanoTime()-start;
+
+		int directIterations = Math.max(1, iterations/(n*4));
+		start = System.nanoTime();
+		for (int i=0; i<directIterations; ++i)
+			sink += directPowerSpectrum(signal)[1];
+		long directTime = System.nanoTime()-start;
+
+		System.out.printf("N=%3d: real FFT %8.0f ns, direct DFT %10.0f ns [checksum %.3g]%n",
+				n, (double)fftTime/iterations, (double)directTime/directIterations, sink);
+		return true;
+	}
+
+	/**
+	 * @return
+	 * a batch, one array per axis, of the phone lying flat and moving
+	 * vertically at the frequency given (none if 0) with the amplitude given
+	 */
+	private static float[][] createBatch(float frequency, float amplitude, float noise, Random random) {
+		float[][] axes = new float[Constants.ACCEL_DIM][NUM_SAMPLES];
+		for (int s=0; s<NUM_SAMPLES; ++s) {
+			double t = s/(double)FREQUENCY;
+			float vertical = frequency>0.0f ? amplitude*(float)Math.cos(2*Math.PI*frequency*t) : 0.0f;
+			axes[Constants.ACCEL_X_AXIS][s] = 0.3f*vertical + (float)random.nextGaussian()*noise;
+			axes[Constants.ACCEL_Y_AXIS][s] = (float)random.nextGaussian()*noise;
+			axes[Constants.ACCEL_Z_AXIS][s] = GRAVITY + vertical + (float)random.nextGaussian()*noise;
+		}
+		return axes;
+	}
+
+	private static void print(String label, String[] names, float[] values) {
+		StringBuilder builder = new StringBuilder(label);
+		for (int f=0; f<values.length; ++f)
+			builder.append(String.format("  %s=%.3f", names[f], values[f]));
+		System.out.println(builder);
+	}
+
+	private static boolean checkSignal(String name, float frequency, int length,
+			SpectralFeatureExtractor spectral, FusedFeatureKernel kernel, Random random) {
+		float[][] axes = createBatch(frequency, 2.0f, 0.05f, random);
+		kernel.assignRaw(axes, NUM_SAMPLES, null, null);
+		kernel.rotateAndExtract(axes, NUM_SAMPLES);
+		float[] spectralFeatures = spectral.extract(axes[Constants.ACCEL_Z_AXIS], length);
+
+		System.out.println(name+" ("+length+" samples):");
+		print("  time    ", FeatureExtractor.FEATURE_NAMES, kernel.getFeatures());
+		print("  spectral", SpectralFeatureExtractor.FEATURE_NAMES, spectralFeatures);
+
+		if (frequency>0.0f) {
+			float resolution = FREQUENCY/NUM_SAMPLES;
+			float found = spectralFeatures[SpectralFeatureExtractor.FEATURE_DOMINANT_FREQ];
+			if (Math.abs(found-frequency)>resolution) {
+				System.out.println("  dominant frequency "+found+"Hz, expected "+frequency+"Hz");
+				return false;
+			}
+		}
+		if (frequency>=FREQUENCY/2 &&
+				spectralFeatures[SpectralFeatureExtractor.FEATURE_BAND_4]<0.5f) {
+			System.out.println("  the Nyquist frequency isn't counted in the top band");
+			return false;
+		}
+		return true;
+	}
+
+	public static void main(String[] args) {
+		int iterations = args.length>0 ? Integer.parseInt(args[0]) : 100000;
+		Random random = new Random(12345L);
+		boolean ok = true;
+
+		for (int n : FFT_LENGTHS)
+			ok &= checkTransform(n, iterations, random);
+
+		SpectralFeatureExtractor spectral = new SpectralFeatureExtractor();
+		FusedFeatureKernel kernel = new FusedFeatureKernel();
+		ok &= checkSignal("still", 0.0f, NUM_SAMPLES, spectral, kernel, random);
+		ok &= checkSignal("walking", 2.0f, NUM_SAMPLES, spectral, kernel, random);
+		ok &= checkSignal("running", 3.0f, NUM_SAMPLES, spectral, kernel, random);
+		ok &= checkSignal("nyquist", FREQUENCY/2, NUM_SAMPLES, spectral, kernel, random);
+		ok &= checkSignal("walking, short window", 2.0f, NUM_SAMPLES*3/4, spectral, kernel, random);
+
+		float[][] batch = createBatch(2.0f, 2.0f, 0.05f, random);
+		float[][] work = new float[Constants.ACCEL_DIM][NUM_SAMPLES];
+		double sink = 0.0;
+
+		long start = System.nanoTime();
+		for (int i=0; i<iterations; ++i) {
+			for (int d=0; d<Constants.ACCEL_DIM; ++d)
+				System.arraycopy(batch[d], 0, work[d], 0, NUM_SAMPLES);
+			kernel.assignRaw(work, NUM_SAMPLES, null, null);
+			kernel.rotateAndExtract(work, NUM_SAMPLES);
+			sink += kernel.getFeatures()[0];
+		}
+		long timeDomain = System.nanoTime()-start;
+
+		start = System.nanoTime();
+		for (int i=0; i<iterations; ++i)
+			sink += spectral.extract(work[Constants.ACCEL_Z_AXIS], NUM_SAMPLES)[0];
+		long spectralTime = System.nanoTime()-start;
+
+		System.out.printf("per batch: time-domain %6.0f ns, spectral (on top) %6.0f ns [checksum %.3g]%n",
+				(double)timeDomain/iterations, (double)spectralTime/iterations, sink);
+
+		if (!ok)
+			System.exit(2);
+	}
+
+}
@@ -0,0 +1,165 @@
+package com.urremote.classifier.utils;
+
+import com.urremote.classifier.common.Constants;
+
+/**
+ * Extracts frequency domain features from a window of samples of
+ * a single signal (e.g. the vertical component of the rotated samples),
+ * using a {@link RealFFT}, without allocating memory once constructed.
+ *
+ * <p>
+ * The mean of the signal is taken out and a Blackman window is applied
+ * to the samples given, before zero padding them to the length of the transform.
+ * The DC bin is ignored when computing the features. The bands include their
+ * lower edge, and the last band also includes its upper edge, hence at the
+ * default 20Hz, the 5-10Hz band includes the Nyquist bin.
+ *
+ * @author Umran
+ */
+public class SpectralFeatureExtractor {
+
+	public static final int NUM_FEATURES = 6;
+
+	public static final String FEATURE_NAMES[] = new String[] {
+		"DOMINANT FREQ",
+		"BAND 0.5-1.5HZ",
+		"BAND 1.5-3HZ",
+		"BAND 3-5HZ",
+		"BAND 5-10HZ",
+		"SPECTRAL ENTROPY",
+	};
+
+	public static final int FEATURE_DOMINANT_FREQ	= 0;
+	public static final int FEATURE_BAND_1			= 1;
+	public static final int FEATURE_BAND_2			= 2;
+	public static final int FEATURE_BAND_3			= 3;
+	public static final int FEATURE_BAND_4			= 4;
+	public static final int FEATURE_ENTROPY			= 5;
+
+	//	edges of the bands whose share of the energy is extracted (in Hz)
+	private static final float[] BAND_EDGES = new float[] { 0.5f, 1.5f, 3.0f, 5.0f, 10.0f };
+
+	private final RealFFT fft;
+	private final float samplingFrequency;
+	//	Blackman window over the last number of samples given, see windowLength
+	private final float[] window;
+	private int windowLength;
+	private final float[] buffer;
+	//	first bin of each band, and the bin after the last band
+	private final int[] bandBins;
+	private final float[] features;
+
+	/**
+	 * Extracts features from windows of {@link Constants#NUMBER_OF_SAMPLES},
+	 * sampled at {@link Constants#RECOMMENDED_SAMPLING_FREQUENCY}.
+	 */
+	public SpectralFeatureExtractor() {
+		this(Constants.NUMBER_OF_SAMPLES, Constants.RECOMMENDED_SAMPLING_FREQUENCY);
+	}
+
+	/**
+	 * @param windowSize
+	 * the length of the transform, a power of 2, shorter windows are zero padded
+	 *
+	 * @param samplingFrequency
+	 * the frequency the signal is sampled at (in Hz)
+	 */
+	public SpectralFeatureExtractor(int windowSize, float samplingFrequency) {
+		this.fft = new RealFFT(windowSize);
+		this.samplingFrequency = samplingFrequency;
+		this.buffer = new float[windowSize];
+		this.features = new float[NUM_FEATURES];
+
+		this.window = new float[windowSize];
+		computeWindow(windowSize);
+
+		int lastBin = fft.getBinCount()-1;
+		int lastEdge = BAND_EDGES.length-1;
+		this.bandBins = new int[BAND_EDGES.length];
+		for (int b=0; b<BAND_EDGES.length; ++b) {
+			float edgeBin = BAND_EDGES[b]*windowSize/samplingFrequency;
+			//	a bin on an edge belongs to the band above it, except on the last edge
+			int bin = b<lastEdge ? (int)Math.ceil(edgeBin) : (int)Math.floor(edgeBin)+1;
+			this.bandBins[b] = Math.max(1, Math.min(lastBin+1, bin));
+		}
+	}
+
+	/**
+	 * Blackman window over the given number of samples:
+	 * w(i) = 0.42 - 0.5cos(2*PI*i/(L-1)) + 0.08cos(4*PI*i/(L-1))
+	 */
+	private void computeWindow(int length) {
+		for (int i=0; i<length; ++i)
+			window[i] = length>1 ? (float)(0.42 - 0.5*Math.cos(2*Math.PI*i/(length-1))
+					+ 0.08*Math.cos(4*Math.PI*i/(length-1))) : 1.0f;
+		windowLength = length;
+	}
+
+	/**
+	 * @param signal
+	 * the samples of the signal
+	 *
+	 * @param length
+	 * the number of samples used from the signal, at most the window size,
+	 * the window is recomputed whenever this changes
+	 *
+	 * @return
+	 * the features (see {@link #FEATURE_NAMES}), in an array reused by the next call
+	 */
+	public float[] extract(float[] signal, int length) {
+		final int windowSize = buffer.length;
+		if (length>windowSize)
+			length = windowSize;
+		if (length!=windowLength)
+			computeWindow(length);
+
+		float mean = 0.0f;
+		for (int i=0; i<length; ++i)
+			mean += signal[i];
+		if (length>0)
+			mean /= length;
+
+		for (int i=0; i<length; ++i)
+			buffer[i] = (signal[i] - mean) * window[i];
+		for (int i=length; i<windowSize; ++i)
+			buffer[i] = 0.0f;
+
+		fft.transform(buffer);
+		float[] power = fft.getPowerSpectrum();
+		int bins = fft.getBinCount();
+
+		//	total energy, and dominant frequency, ignoring the DC bin
+		float total = 0.0f;
+		int dominant = 1;
+		for (int k=1; k<bins; ++k) {
+			total += power[k];
+			if (power[k]>power[dominant])
+				dominant = k;
+		}
+
+		features[FEATURE_DOMINANT_FREQ] = total>0.0f ? fft.getBinFrequency(dominant, samplingFrequency) : 0.0f;
+
+		for (int b=0; b<BAND_EDGES.length-1; ++b) {
+			float energy = 0.0f;
+			for (int k=bandBins[b]; k<bandBins[b+1]; ++k)
+				energy += power[k];
+			features[FEATURE_BAND_1+b] = total>0.0f ? energy/total : 0.0f;
+		}
+
+		//	entropy of the normalised power spectrum, normalised to 0..1
+		double entropy = 0.0;
+		if (total>0.0f) {
+			for (int k=1; k<bins; ++k) {
+				if (power[k]>0.0f) {
+					double p = power[k]/total;
+					entropy -= p*Math.log(p);
+				}
+			}
+			entropy /= Math.log(bins-1);
+		}
+		features[FEATURE_ENTROPY] = (float)entropy;
+
+		return features;
+	}
+
+}
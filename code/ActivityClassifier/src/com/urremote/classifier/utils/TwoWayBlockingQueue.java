@@ -1,6 +1,5 @@
 package com.urremote.classifier.utils;
 
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -8,10 +7,16 @@ import java.util.concurrent.TimeUnit;
  * A generic class that is stores items while they wait to be processed (filled),
  * as well as items that aren't ready to be processed (empty). The items are
  * pre-allocated and meant to be reused to avoid construction/destruction overhead
- * and the garbage collection overhead. The take and put functions of each of the
+ * and the garbage collection overhead. The take functions of each of the
  * two queues are blocking and hence should be used with care not to cause a dead-lock.  
  * Also, an item taken should be returned in order to avoid dead-locks while taking.
  * 
+ * <p>
+ * Both queues are {@link LockFreeRing}s, hence items are passed between
+ * threads without locking, and a thread only waits (parks) while taking
+ * from an empty queue. Since all the items are created up front, and each
+ * queue can hold all of them, returning an item never has to wait.
+ * 
  * @author Umran
  *
  * @param <InstanceType>
@@ -23,17 +28,17 @@ public abstract class TwoWayBlockingQueue<InstanceType> {
 	private static final long POLLING_TIMEOUT = 120000;	// 120 seconds
 	
 	private int capacity;
-	private ArrayBlockingQueue<InstanceType> filledInstances;
-	private ArrayBlockingQueue<InstanceType> emptyInstances;
+	private LockFreeRing<InstanceType> filledInstances;
+	private LockFreeRing<InstanceType> emptyInstances;
 	
 	public TwoWayBlockingQueue(int capacity) {
 		
 		this.capacity = capacity;
-		this.filledInstances = new ArrayBlockingQueue<InstanceType>(capacity, true);
-		this.emptyInstances = new ArrayBlockingQueue<InstanceType>(capacity, true);
+		this.filledInstances = new LockFreeRing<InstanceType>(capacity);
+		this.emptyInstances = new LockFreeRing<InstanceType>(capacity);
 		
 		for (int i=0; i<capacity; ++i)
-			this.emptyInstances.add(getNewInstance());
+			this.emptyInstances.offer(getNewInstance());
 	}
 	
 	protected abstract InstanceType getNewInstance();
@@ -62,8 +67,33 @@ public abstract class TwoWayBlockingQueue<InstanceType> {
 		return instance;
 	}
 	
+	/**
+	 * Same as {@link #takeEmptyInstance()}, but waits at most the time given.
+	 *
+	 * @return
+	 * an empty instance, or null if none became available in time
+	 *
+	 * @throws InterruptedException
+	 * only if the calling thread is interrupted while waiting
+	 */
+	public InstanceType pollEmptyInstance(long timeout, TimeUnit unit) throws InterruptedException {
+		return emptyInstances.poll(timeout, unit);
+	}
+	
+	/**
+	 * Same as {@link #takeEmptyInstance()}, but doesn't block.
+	 *
+	 * @return
+	 * an empty instance, or null if none is currently available.
+	 */
+	public InstanceType pollEmptyInstance() {
+		return emptyInstances.poll();
+	}
+
 	public void returnEmptyInstance(InstanceType instance) throws InterruptedException {
-		emptyInstances.put(instance);
+		if (!emptyInstances.offer(instance))
+			throw new IllegalStateException("More instances returned than taken. Empty count = "+
+					emptyInstances.size()+", filled count = "+filledInstances.size());
 	}
 	
 	public InstanceType takeFilledInstance() throws InterruptedException {
@@ -74,12 +104,24 @@ public abstract class TwoWayBlockingQueue<InstanceType> {
 		return instance;
 	}
 	
+	/**
+	 * Same as {@link #takeFilledInstance()}, but doesn't block.
+	 *
+	 * @return
+	 * a filled instance, or null if none is currently available.
+	 */
+	public InstanceType pollFilledInstance() {
+		return filledInstances.poll();
+	}
+	
 	public InstanceType peekFilledInstance() {
 		return filledInstances.peek();
 	} 
 	
 	public void returnFilledInstance(InstanceType instance) throws InterruptedException {
-		filledInstances.put(instance);
+		if (!filledInstances.offer(instance))
+			throw new IllegalStateException("More instances returned than taken. Empty count = "+
+					emptyInstances.size()+", filled count = "+filledInstances.size());
 	}
 	
 	public int getPendingFilledInstances() {
@@ -0,0 +1,170 @@
+package com.urremote.classifier.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the hand-off rate of the {@link TwoWayBlockingQueue}, now backed by
+ * {@link LockFreeRing}s, with the fair {@link ArrayBlockingQueue}s it used to be
+ * backed by (kept here as {@link FairQueue}).
+ *
+ * <p>
+ * A producer thread takes empty instances, stamps them and returns them filled,
+ * while a consumer thread takes the filled instances and returns them empty,
+ * the same way the sampler and the classifier thread pass the sample batches
+ * between them, only without any work in between, so that the queue is all
+ * that's measured. Besides the hand-offs per second, the mean time between
+ * an instance being returned filled and it being taken by the consumer is given.
+ *
+ * <p>
+ * Run on a desktop JVM (with the android.jar on the class path), e.g.:
+ * <pre>
+ *	java com.urremote.classifier.utils.TwoWayQueueHandoffBenchmark 1000000 20
+ * </pre>
+ * where the arguments are the number of hand-offs per round and the queue capacity.
+ *
+ * @author Umran
+ */
+public class TwoWayQueueHandoffBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	/**
+	 * The instance passed between the threads.
+	 */
+	private static class Item {
+		long sequence;
+		long filledAt;
+	}
+
+	/**
+	 * The operations both queues have in common.
+	 */
+	private interface Queue {
+		Item takeEmpty() throws InterruptedException;
+		void returnEmpty(Item item) throws InterruptedException;
+		Item takeFilled() throws InterruptedException;
+		void returnFilled(Item item) throws InterruptedException;
+	}
+
+	private static class RingQueue implements Queue {
+		private final TwoWayBlockingQueue<Item> queue;
+
+		RingQueue(int capacity) {
+			queue = new TwoWayBlockingQueue<Item>(capacity) {
+				@Override
+				protected Item getNewInstance() {
+					return new Item();
+				}
+			};
+		}
+
+		public Item takeEmpty() throws InterruptedException { return queue.takeEmptyInstance(); }
+		public void returnEmpty(Item item) throws InterruptedException { queue.returnEmptyInstance(item); }
+		public Item takeFilled() throws InterruptedException { return queue.takeFilledInstance(); }
+		public void returnFilled(Item item) throws InterruptedException { queue.returnFilledInstance(item); }
+	}
+
+	/**
+	 * The queue as it was before it moved to {@link LockFreeRing}s.
+	 */
+	private static class FairQueue implements Queue {
+		private final ArrayBlockingQueue<Item> filledInstances;
+		private final ArrayBlockingQueue<Item> emptyInstances;
+
+		FairQueue(int capacity) {
+			filledInstances = new ArrayBlockingQueue<Item>(capacity, true);
+			emptyInstances = new ArrayBlockingQueue<Item>(capacity, true);
+			for (int i=0; i<capacity; ++i)
+				emptyInstances.add(new Item());
+		}
+
+		public Item takeEmpty() throws InterruptedException { return emptyInstances.poll(120, TimeUnit.SECONDS); }
+		public void returnEmpty(Item item) throws InterruptedException { emptyInstances.put(item); }
+		public Item takeFilled() throws InterruptedException { return filledInstances.poll(120, TimeUnit.SECONDS); }
+		public void returnFilled(Item item) throws InterruptedException { filledInstances.put(item); }
+	}
+
+	private static class Producer extends Thread {
+		private final Queue queue;
+		private final int count;
+		volatile Throwable error;
+
+		Producer(Queue queue, int count) {
+			super("Producer");
+			this.queue = queue;
+			this.count = count;
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (int i=0; i<count; ++i) {
+					Item item = queue.takeEmpty();
+					item.sequence = i;
+					item.filledAt = System.nanoTime();
+					queue.returnFilled(item);
+				}
+			} catch (Throwable e) {
+				error = e;
+			}
+		}
+	}
+
+	/**
+	 * Runs a single round over the queue given.
+	 *
+	 * @return
+	 * the mean time in nanoseconds between an instance being filled and
+	 * it being taken, or -1 if the instances arrived out of order
+	 */
+	private static double runRound(Queue queue, int count, long[] elapsed) throws Exception {
+		Producer producer = new Producer(queue, count);
+		long latencySum = 0;
+		boolean inOrder = true;
+
+		long start = System.nanoTime();
+		producer.start();
+		for (int i=0; i<count; ++i) {
+			Item item = queue.takeFilled();
+			if (item==null)
+				throw new IllegalStateException("Timed out waiting for instance "+i);
+			latencySum += System.nanoTime()-item.filledAt;
+			if (item.sequence!=i)
+				inOrder = false;
+			queue.returnEmpty(item);
+		}
+		producer.join();
+		elapsed[0] = System.nanoTime()-start;
+
+		if (producer.error!=null)
+			throw new IllegalStateException("Producer failed", producer.error);
+		return inOrder ? (double)latencySum/count : -1;
+	}
+
+	private static boolean report(String name, Queue queue, int count) throws Exception {
+		long[] elapsed = new long[1];
+		for (int round=0; round<ROUNDS; ++round) {
+			double latency = runRound(queue, count, elapsed);
+			if (latency<0) {
+				System.out.println(name+": instances arrived out of order");
+				return false;
+			}
+			System.out.printf("%-6s round %d: %10.0f hand-offs/s, mean fill-to-take %8.1f us%n",
+					name, round, count*1e9/elapsed[0], latency/1000.0);
+		}
+		return true;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int count = args.length>0 ? Integer.parseInt(args[0]) : 1000000;
+		int capacity = args.length>1 ? Integer.parseInt(args[1]) : 20;
+
+		System.out.println(count+" hand-offs per round, capacity "+capacity);
+		boolean ok = report("fair", new FairQueue(capacity), count);
+		ok &= report("ring", new RingQueue(capacity), count);
+		if (!ok)
+			System.exit(2);
+	}
+
+}
@@ -141,7 +141,7 @@ public class WalkingSpeedUtil {
 
 				sample.index = i;
 				sample.timeStamp = timeStamps[i];
-				sample.accel = rotatedData[i][DATA_V_DIM] - rotatedDataMeans[DATA_V_DIM];
+				sample.accel = rotatedData[DATA_V_DIM][i] - rotatedDataMeans[DATA_V_DIM];
 
 				if (i>0 && (sample.accel>0.0)!=(samples[i-1].accel>0.0)) {
 					++zeroCrossings;